@@ -14,6 +14,7 @@ import com.jetbrains.edu.learning.courseFormat.Course;
 import com.jetbrains.edu.learning.courseFormat.Lesson;
 import com.jetbrains.edu.learning.courseFormat.RemoteCourse;
 import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import com.jetbrains.edu.learning.courseGeneration.StudyCourseArchiveReader;
 import com.jetbrains.edu.learning.intellij.generation.EduCourseModuleBuilder;
 import com.jetbrains.edu.learning.intellij.generation.EduGradleModuleGenerator;
 import com.jetbrains.edu.learning.intellij.generation.EduIntellijCourseProjectGeneratorBase;
@@ -37,6 +38,7 @@ public class KoansAndroidProjectGenerator extends EduIntellijCourseProjectGenera
   public void generateProject(@NotNull Project project, @NotNull VirtualFile baseDir, @Nullable Object o, @NotNull Module module) {
     ApplicationManager.getApplication().runWriteAction(() -> {
       try {
+        StudyCourseArchiveReader.loadLessons(myCourse);
         StudyTaskManager.getInstance(project).setCourse(myCourse);
         if (CCUtils.isCourseCreator(project)) {
           Lesson lesson = new CCCreateLesson().createAndInitItem(myCourse, null, EduNames.LESSON + 1, 1);
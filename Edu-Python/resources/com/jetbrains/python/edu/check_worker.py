@@ -0,0 +1,82 @@
+import os
+import runpy
+import sys
+import traceback
+
+try:
+    from StringIO import StringIO
+except ImportError:
+    from io import StringIO
+
+DONE = "#educational_plugin_worker done"
+STDOUT_PREFIX = "o "
+STDERR_PREFIX = "e "
+TASK_MODULES = ("tmp", "user_file")
+
+
+def is_course_module(module, course_dir):
+    path = getattr(module, "__file__", None)
+    if not path:
+        return False
+    return os.path.abspath(path).startswith(course_dir)
+
+
+def unload_course_modules(loaded_before, course_dir):
+    """ Course modules and task files are imported again by the next check, so that changes are visible """
+    for name in list(sys.modules):
+        if name in loaded_before and name not in TASK_MODULES:
+            continue
+        module = sys.modules[name]
+        if name in TASK_MODULES or module is None or is_course_module(module, course_dir):
+            del sys.modules[name]
+
+
+def run_check(course_dir, task_dir, test_file, file_to_check):
+    saved_argv, saved_path, saved_cwd = sys.argv, sys.path[:], os.getcwd()
+    saved_streams = sys.stdin, sys.stdout, sys.stderr
+    loaded_before = set(sys.modules)
+    out, err = StringIO(), StringIO()
+    sys.argv = [test_file, file_to_check]
+    sys.path.insert(0, task_dir)
+    os.chdir(task_dir)
+    sys.stdin, sys.stdout, sys.stderr = StringIO(), out, err
+    try:
+        runpy.run_path(test_file, run_name="__main__")
+    except SystemExit:
+        pass
+    except BaseException:
+        traceback.print_exc()
+    finally:
+        sys.stdin, sys.stdout, sys.stderr = saved_streams
+        sys.argv, sys.path[:] = saved_argv, saved_path
+        os.chdir(saved_cwd)
+        unload_course_modules(loaded_before, course_dir)
+    return out.getvalue(), err.getvalue()
+
+
+def write_lines(prefix, text):
+    for line in text.splitlines():
+        sys.stdout.write(prefix + line + "\n")
+
+
+def main():
+    # files are checked right after they're saved, so cached bytecode with the same mtime may be stale
+    sys.dont_write_bytecode = True
+    course_dir = os.path.abspath(sys.argv[1])
+    while True:
+        request = sys.stdin.readline()
+        if not request:
+            break
+        request = request.rstrip("\r\n")
+        if not request:
+            continue
+        task_dir, test_file, file_to_check = request.split("\t")
+        stdout, stderr = run_check(course_dir, task_dir, test_file, file_to_check)
+        write_lines(STDOUT_PREFIX, stdout)
+        write_lines(STDERR_PREFIX, stderr)
+        sys.stdout.write(DONE + "\n")
+        sys.stdout.flush()
+
+
+if __name__ == "__main__":
+    main()
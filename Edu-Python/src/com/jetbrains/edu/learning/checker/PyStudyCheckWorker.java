@@ -0,0 +1,209 @@
+package com.jetbrains.edu.learning.checker;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.execution.process.ProcessOutput;
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Python process which is started once per project and interpreter and runs task tests on request.
+ * Interpreter startup and imports of standard modules are paid once, course modules and task files
+ * are imported again for every check, so that changes made by the student are visible.
+ * Disabled by default, see {@link #ENABLED_PROPERTY}.
+ */
+public class PyStudyCheckWorker implements Disposable {
+  private static final Logger LOG = Logger.getInstance(PyStudyCheckWorker.class);
+  public static final String ENABLED_PROPERTY = "Edu.Python.UseCheckWorker";
+  private static final String WORKER_SCRIPT = "check_worker.py";
+  private static final String DONE = "#educational_plugin_worker done";
+  private static final String STDOUT_PREFIX = "o ";
+  private static final String STDERR_PREFIX = "e ";
+  private static final long POLL_INTERVAL_MS = 10;
+  // tests of one file, so a hung check doesn't block all later checks
+  private static final long TEST_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(1);
+
+  private final long myTestTimeout;
+  private Process myProcess;
+  private String myPythonPath;
+  private BufferedReader myReader;
+  private Writer myWriter;
+
+  public PyStudyCheckWorker() {
+    this(TEST_TIMEOUT_MS);
+  }
+
+  /**
+   * @param testTimeout how long tests of one file may run, in milliseconds
+   */
+  PyStudyCheckWorker(long testTimeout) {
+    myTestTimeout = testTimeout;
+  }
+
+  public static PyStudyCheckWorker getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, PyStudyCheckWorker.class);
+  }
+
+  public static boolean isEnabled() {
+    return PropertiesComponent.getInstance().getBoolean(ENABLED_PROPERTY, false);
+  }
+
+  /**
+   * Runs tests in the worker, starting it if needed. Supposed to be called under progress.
+   *
+   * @return output of the tests or null if the worker failed, then tests should be run in a separate process
+   */
+  @Nullable
+  public ProcessOutput runTests(@NotNull String pythonPath, @NotNull String courseDir, @NotNull String taskDir,
+                                @NotNull String testFile, @NotNull String fileToCheck) {
+    final List<ProcessOutput> outputs = runTests(pythonPath, courseDir, taskDir, testFile, Collections.singletonList(fileToCheck));
+    return outputs != null ? outputs.get(0) : null;
+  }
+
+  /**
+   * Runs tests for every file in one batch. Tests of a file which don't finish in time
+   * get an output marked as timed out, the worker running them is stopped and the rest of the batch goes to a new one.
+   *
+   * @return outputs in the order of files or null if the worker failed
+   */
+  @Nullable
+  public synchronized List<ProcessOutput> runTests(@NotNull String pythonPath, @NotNull String courseDir, @NotNull String taskDir,
+                                                   @NotNull String testFile, @NotNull List<String> filesToCheck) {
+    try {
+      final List<ProcessOutput> outputs = new ArrayList<>(filesToCheck.size());
+      while (outputs.size() < filesToCheck.size()) {
+        ensureStarted(pythonPath, courseDir);
+        final List<String> remainingFiles = filesToCheck.subList(outputs.size(), filesToCheck.size());
+        for (String fileToCheck : remainingFiles) {
+          myWriter.write(taskDir + "\t" + testFile + "\t" + fileToCheck + "\n");
+        }
+        myWriter.flush();
+        for (int i = 0; i < remainingFiles.size(); i++) {
+          final ProcessOutput output = readOutput();
+          outputs.add(output);
+          if (output.isTimeout()) {
+            // the worker is still running the hung tests
+            stop();
+            break;
+          }
+        }
+      }
+      return outputs;
+    }
+    catch (IOException | ExecutionException e) {
+      LOG.warn("Check worker failed: " + e.getMessage());
+      stop();
+      return null;
+    }
+    catch (RuntimeException e) {
+      // the check was cancelled, the worker may still be running the tests
+      stop();
+      throw e;
+    }
+  }
+
+  @NotNull
+  private ProcessOutput readOutput() throws IOException {
+    final ProcessOutput output = new ProcessOutput();
+    final long deadline = System.currentTimeMillis() + myTestTimeout;
+    while (true) {
+      while (!myReader.ready()) {
+        ProgressManager.checkCanceled();
+        if (!myProcess.isAlive()) {
+          throw new IOException("worker exited with code " + myProcess.exitValue());
+        }
+        if (System.currentTimeMillis() > deadline) {
+          output.setTimeout();
+          output.appendStderr("Tests didn't finish in " + TimeUnit.MILLISECONDS.toSeconds(myTestTimeout) + " seconds\n");
+          return output;
+        }
+        try {
+          Thread.sleep(POLL_INTERVAL_MS);
+        }
+        catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      final String line = myReader.readLine();
+      if (line == null) {
+        throw new IOException("worker closed output stream");
+      }
+      if (line.equals(DONE)) {
+        output.setExitCode(0);
+        return output;
+      }
+      if (line.startsWith(STDOUT_PREFIX)) {
+        output.appendStdout(line.substring(STDOUT_PREFIX.length()) + "\n");
+      }
+      else if (line.startsWith(STDERR_PREFIX)) {
+        output.appendStderr(line.substring(STDERR_PREFIX.length()) + "\n");
+      }
+    }
+  }
+
+  private void ensureStarted(@NotNull String pythonPath, @NotNull String courseDir) throws IOException, ExecutionException {
+    if (myProcess != null && myProcess.isAlive() && pythonPath.equals(myPythonPath)) {
+      return;
+    }
+    stop();
+    final GeneralCommandLine commandLine = new GeneralCommandLine();
+    commandLine.setExePath(pythonPath);
+    commandLine.addParameter(extractWorkerScript().getPath());
+    commandLine.addParameter(courseDir);
+    commandLine.withWorkDirectory(courseDir);
+    commandLine.getEnvironment().put("PYTHONPATH", courseDir);
+    commandLine.getEnvironment().put("PYTHONIOENCODING", CharsetToolkit.UTF8);
+    commandLine.getEnvironment().put("PYTHONUNBUFFERED", "1");
+    commandLine.withRedirectErrorStream(true);
+    myProcess = commandLine.createProcess();
+    myPythonPath = pythonPath;
+    myReader = new BufferedReader(new InputStreamReader(myProcess.getInputStream(), CharsetToolkit.UTF8_CHARSET));
+    myWriter = new OutputStreamWriter(myProcess.getOutputStream(), CharsetToolkit.UTF8_CHARSET);
+  }
+
+  @NotNull
+  private File extractWorkerScript() throws IOException {
+    final File script = new File(new File(PathManager.getSystemPath(), "edu-python"), WORKER_SCRIPT);
+    try (InputStream stream = PyStudyCheckWorker.class.getResourceAsStream("/com/jetbrains/python/edu/" + WORKER_SCRIPT)) {
+      if (stream == null) {
+        throw new IOException(WORKER_SCRIPT + " not found");
+      }
+      // the script is rewritten on every start, so that it's updated together with the plugin
+      FileUtil.createParentDirs(script);
+      try (OutputStream output = new FileOutputStream(script)) {
+        FileUtil.copy(stream, output);
+      }
+    }
+    return script;
+  }
+
+  private void stop() {
+    if (myProcess != null) {
+      myProcess.destroy();
+    }
+    myProcess = null;
+    myPythonPath = null;
+    myReader = null;
+    myWriter = null;
+  }
+
+  @Override
+  public void dispose() {
+    stop();
+  }
+}
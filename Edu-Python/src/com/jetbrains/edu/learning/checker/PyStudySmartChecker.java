@@ -1,144 +1,188 @@
 package com.jetbrains.edu.learning.checker;
 
-import com.intellij.execution.ExecutionException;
-import com.intellij.execution.process.CapturingProcessHandler;
 import com.intellij.execution.process.ProcessOutput;
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.Pair;
-import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.jetbrains.edu.learning.StudyTaskManager;
-import com.jetbrains.edu.learning.StudyUtils;
-import com.jetbrains.edu.learning.core.EduDocumentListener;
 import com.jetbrains.edu.learning.core.EduNames;
-import com.jetbrains.edu.learning.core.EduUtils;
 import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholder;
-import com.jetbrains.edu.learning.courseFormat.Course;
+import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholderIndex;
 import com.jetbrains.edu.learning.courseFormat.StudyStatus;
 import com.jetbrains.edu.learning.courseFormat.TaskFile;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.*;
 
+/**
+ * Finds out which answer placeholders are filled correctly when tests of the task fail.
+ * For every placeholder a variant of the task file is built where this placeholder contains the student's answer
+ * and all others contain right answers, then tests are run for all variants in one process.
+ */
 class PyStudySmartChecker {
+  private static final Logger LOG = Logger.getInstance(PyStudySmartChecker.class);
+  private static final String WINDOW_PREFIX = "#educational_plugin_window = ";
+
   private PyStudySmartChecker() {
 
   }
 
-  private static final Logger LOG = Logger.getInstance(PyStudySmartChecker.class);
+  /**
+   * Builds variants from the current document text. Should be called in EDT or inside read action.
+   */
+  @Nullable
+  static Variants createVariants(@NotNull final VirtualFile taskDir,
+                                 @NotNull final String taskFileName,
+                                 @NotNull final TaskFile taskFile) {
+    final VirtualFile virtualFile = taskDir.findFileByRelativePath(taskFileName);
+    if (virtualFile == null) {
+      return null;
+    }
+    final Document document = FileDocumentManager.getInstance().getDocument(virtualFile);
+    if (document == null) {
+      return null;
+    }
+    final CharSequence text = document.getImmutableCharSequence();
+    final Variants variants = new Variants(taskDir.getPath(), virtualFile.getNameWithoutExtension(), virtualFile.getExtension());
+    final AnswerPlaceholderIndex index = taskFile.getPlaceholderIndex();
+    final StringBuilder answers = new StringBuilder(text.length());
+    int lastEnd = 0;
+    for (int i = 0; i < index.size(); i++) {
+      final AnswerPlaceholder placeholder = index.get(i);
+      if (!placeholder.isActive()) {
+        continue;
+      }
+      final int start = placeholder.getOffset();
+      final int end = start + placeholder.getRealLength();
+      if (start < lastEnd || end > text.length()) {
+        LOG.warn("Answer placeholders of " + taskFileName + " are broken");
+        return null;
+      }
+      answers.append(text, lastEnd, start);
+      final int answerStart = answers.length();
+      final String rightAnswer = StringUtil.notNullize(placeholder.getPossibleAnswer());
+      answers.append(rightAnswer);
+      variants.add(placeholder, text.subSequence(start, end).toString(), rightAnswer, answerStart, answers.length());
+      lastEnd = end;
+    }
+    answers.append(text, lastEnd, text.length());
+    variants.myAnswers = answers.toString();
+    return variants;
+  }
 
-  private static void smartCheck(@NotNull final AnswerPlaceholder placeholder,
-                                @NotNull final Project project,
-                                @NotNull final VirtualFile answerFile,
-                                @NotNull final TaskFile answerTaskFile,
-                                @NotNull final TaskFile usersTaskFile,
-                                @NotNull final PyStudyTestRunner testRunner,
-                                @NotNull final VirtualFile virtualFile,
-                                @NotNull final Document usersDocument) {
-    VirtualFile fileWindows = null;
-    VirtualFile windowCopy = null;
+  /**
+   * Runs tests for all variants. Supposed to be called on a background thread.
+   *
+   * @return statuses of placeholders, empty if tests failed to run
+   */
+  @NotNull
+  static Map<AnswerPlaceholder, StudyStatus> runSmartTests(@NotNull final Project project,
+                                                           @NotNull final PyStudyTestRunner testRunner,
+                                                           @NotNull final Variants variants,
+                                                           boolean isAdaptive) {
+    final List<File> createdFiles = new ArrayList<>();
     try {
-      final int index = placeholder.getIndex();
-      String windowCopyName = answerFile.getNameWithoutExtension() + index + EduNames.WINDOW_POSTFIX + answerFile.getExtension();
-      windowCopy = answerFile.copy(project, answerFile.getParent(), windowCopyName);
-      final FileDocumentManager documentManager = FileDocumentManager.getInstance();
-      final Document windowDocument = documentManager.getDocument(windowCopy);
-      if (windowDocument != null) {
-        TaskFile windowTaskFile = answerTaskFile.getTask().copy().getTaskFile(StudyUtils.pathRelativeToTask(virtualFile));
-        if (windowTaskFile == null) {
-          return;
-        }
-        EduDocumentListener listener = new EduDocumentListener(windowTaskFile);
-        windowDocument.addDocumentListener(listener);
-        int start = placeholder.getOffset();
-        int end = start + placeholder.getRealLength();
-        final AnswerPlaceholder userAnswerPlaceholder = usersTaskFile.getAnswerPlaceholders().get(placeholder.getIndex());
-        int userStart = userAnswerPlaceholder.getOffset();
-        int userEnd = userStart + userAnswerPlaceholder.getRealLength();
-        String text = usersDocument.getText(new TextRange(userStart, userEnd));
-        windowDocument.replaceString(start, end, text);
-        ApplicationManager.getApplication().runWriteAction(() -> documentManager.saveDocument(windowDocument));
-        fileWindows = EduUtils.flushWindows(windowTaskFile, windowCopy);
-        Process smartTestProcess = testRunner.createCheckProcess(project, windowCopy.getPath());
-        final CapturingProcessHandler handler = new CapturingProcessHandler(smartTestProcess, null, windowCopy.getPath());
-        final ProcessOutput output = handler.runProcess();
-        final Course course = StudyTaskManager.getInstance(project).getCourse();
-        if (course != null) {
-          boolean res = StudyTestsOutputParser.getTestsOutput(output, course.isAdaptive()).isSuccess();
-          StudyTaskManager.getInstance(project).setStatus(userAnswerPlaceholder, res ? StudyStatus.Solved : StudyStatus.Failed);
-        }
+      final List<String> paths = variants.writeFiles(createdFiles);
+      final List<ProcessOutput> outputs = testRunner.runInSingleProcess(project, paths);
+      if (outputs == null) {
+        return Collections.emptyMap();
+      }
+      final Map<AnswerPlaceholder, StudyStatus> statuses = new HashMap<>();
+      for (int i = 0; i < outputs.size(); i++) {
+        final boolean solved = StudyTestsOutputParser.getTestsOutput(outputs.get(i), isAdaptive).isSuccess();
+        statuses.put(variants.myPlaceholders.get(i), solved ? StudyStatus.Solved : StudyStatus.Failed);
       }
+      return statuses;
     }
-    catch (ExecutionException | IOException e) {
+    catch (IOException e) {
       LOG.error(e);
+      return Collections.emptyMap();
     }
     finally {
-      StudyUtils.deleteFile(windowCopy);
-      StudyUtils.deleteFile(fileWindows);
+      for (File file : createdFiles) {
+        FileUtil.delete(file);
+      }
     }
   }
 
-  static void runSmartTestProcess(@NotNull final VirtualFile taskDir,
-                                         @NotNull final PyStudyTestRunner testRunner,
-                                         @NotNull final String taskFileName,
-                                         @NotNull final TaskFile taskFile,
-                                         @NotNull final Project project) {
-    final VirtualFile virtualFile = taskDir.findFileByRelativePath(taskFileName);
-    if (virtualFile == null) {
-      return;
+  static class Variants {
+    private final String myDirPath;
+    private final String myName;
+    private final String myExtension;
+    private final List<AnswerPlaceholder> myPlaceholders = new ArrayList<>();
+    private final List<String> myUserAnswers = new ArrayList<>();
+    private final List<String> myRightAnswers = new ArrayList<>();
+    private final List<Integer> myAnswerStarts = new ArrayList<>();
+    private final List<Integer> myAnswerEnds = new ArrayList<>();
+    private String myAnswers;
+
+    private Variants(@NotNull String dirPath, @NotNull String name, @Nullable String extension) {
+      myDirPath = dirPath;
+      myName = name;
+      myExtension = extension;
     }
-    Pair<VirtualFile, TaskFile> pair = getCopyWithAnswers(taskDir, virtualFile, taskFile);
-    if (pair == null) {
-      return;
+
+    private void add(@NotNull AnswerPlaceholder placeholder, @NotNull String userAnswer, @NotNull String rightAnswer,
+                     int answerStart, int answerEnd) {
+      myPlaceholders.add(placeholder);
+      myUserAnswers.add(userAnswer);
+      myRightAnswers.add(rightAnswer);
+      myAnswerStarts.add(answerStart);
+      myAnswerEnds.add(answerEnd);
     }
-    VirtualFile answerFile = pair.getFirst();
-    TaskFile answerTaskFile = pair.getSecond();
-    try {
-      for (final AnswerPlaceholder answerPlaceholder : answerTaskFile.getActivePlaceholders()) {
-        final Document document = FileDocumentManager.getInstance().getDocument(virtualFile);
-        if (document == null) {
-          continue;
-        }
-        smartCheck(answerPlaceholder, project, answerFile, answerTaskFile, taskFile, testRunner,
-                   virtualFile, document);
+
+    boolean isEmpty() {
+      return myPlaceholders.isEmpty();
+    }
+
+    /**
+     * Writes variants and their placeholder descriptions next to the task file
+     *
+     * @return paths of variants
+     */
+    @NotNull
+    private List<String> writeFiles(@NotNull List<File> createdFiles) throws IOException {
+      final List<String> paths = new ArrayList<>(myPlaceholders.size());
+      for (int i = 0; i < myPlaceholders.size(); i++) {
+        final String variantName = myName + EduNames.ANSWERS_POSTFIX + i + EduNames.WINDOW_POSTFIX;
+        final File variant = new File(myDirPath, variantName + StringUtil.notNullize(myExtension));
+        final File windows = new File(myDirPath, StringUtil.trimEnd(variantName, ".") + EduNames.WINDOWS_POSTFIX);
+        createdFiles.add(variant);
+        createdFiles.add(windows);
+
+        FileUtil.writeToFile(variant, getText(i).getBytes(CharsetToolkit.UTF8_CHARSET));
+        FileUtil.writeToFile(windows, getDescriptions(i).getBytes(CharsetToolkit.UTF8_CHARSET));
+        paths.add(variant.getPath());
       }
+      return paths;
     }
-    finally {
-      StudyUtils.deleteFile(answerFile);
+
+    int size() {
+      return myPlaceholders.size();
     }
-  }
 
-  static Pair<VirtualFile, TaskFile> getCopyWithAnswers(@NotNull final VirtualFile taskDir,
-                                                                @NotNull final VirtualFile file,
-                                                                @NotNull final TaskFile source) {
-    try {
-      VirtualFile answerFile = file.copy(taskDir, taskDir, file.getNameWithoutExtension() + EduNames.ANSWERS_POSTFIX + "." + file.getExtension());
-      final FileDocumentManager documentManager = FileDocumentManager.getInstance();
-      final Document document = documentManager.getDocument(answerFile);
-      if (document != null) {
-        TaskFile answerTaskFile = source.getTask().copy().getTaskFile(StudyUtils.pathRelativeToTask(file));
-        if (answerTaskFile == null) {
-          return null;
-        }
-        EduDocumentListener listener = new EduDocumentListener(answerTaskFile);
-        document.addDocumentListener(listener);
-        for (AnswerPlaceholder answerPlaceholder : answerTaskFile.getActivePlaceholders()) {
-          final int start = answerPlaceholder.getOffset();
-          final int end = start + answerPlaceholder.getRealLength();
-          final String text = answerPlaceholder.getPossibleAnswer();
-          document.replaceString(start, end, text);
-        }
-        ApplicationManager.getApplication().runWriteAction(() -> documentManager.saveDocument(document));
-        return Pair.create(answerFile, answerTaskFile);
-      }
+    /**
+     * @return text of the task file where i-th placeholder contains the student's answer and all others contain right answers
+     */
+    @NotNull
+    String getText(int i) {
+      return myAnswers.substring(0, myAnswerStarts.get(i)) + myUserAnswers.get(i) + myAnswers.substring(myAnswerEnds.get(i));
     }
-    catch (IOException e) {
-      LOG.error(e);
+
+    @NotNull
+    String getDescriptions(int i) {
+      final StringBuilder descriptions = new StringBuilder();
+      for (int j = 0; j < myPlaceholders.size(); j++) {
+        descriptions.append(WINDOW_PREFIX).append(i == j ? myUserAnswers.get(j) : myRightAnswers.get(j)).append("\n");
+      }
+      return descriptions.toString();
     }
-    return null;
   }
 }
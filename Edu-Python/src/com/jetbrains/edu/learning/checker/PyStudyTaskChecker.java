@@ -1,9 +1,12 @@
 package com.jetbrains.edu.learning.checker;
 
 import com.intellij.execution.ExecutionException;
+import com.intellij.execution.process.ProcessOutput;
 import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.command.CommandProcessor;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task.Backgroundable;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.jetbrains.edu.learning.StudyState;
@@ -11,6 +14,7 @@ import com.jetbrains.edu.learning.StudyTaskManager;
 import com.jetbrains.edu.learning.StudyUtils;
 import com.jetbrains.edu.learning.actions.StudyCheckAction;
 import com.jetbrains.edu.learning.core.EduUtils;
+import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholder;
 import com.jetbrains.edu.learning.courseFormat.Course;
 import com.jetbrains.edu.learning.courseFormat.StudyStatus;
 import com.jetbrains.edu.learning.courseFormat.TaskFile;
@@ -23,6 +27,9 @@ import one.util.streamex.EntryStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 
@@ -57,10 +64,16 @@ public class PyStudyTaskChecker extends StudyTaskChecker<PyCharmTask> {
       if (fileToCheck != null) {
         //otherwise answer placeholders might have been not flushed yet
         latch.await();
-        Process testProcess = testRunner.createCheckProcess(myProject, fileToCheck.getPath());
-        StudyTestsOutputParser.TestsOutput output =
-          StudyCheckUtils
-            .getTestOutput(testProcess, testRunner.getCommandLine().getCommandLineString(), myTask.getLesson().getCourse().isAdaptive());
+        final boolean isAdaptive = myTask.getLesson().getCourse().isAdaptive();
+        final ProcessOutput workerOutput = testRunner.runInCheckWorker(myProject, fileToCheck.getPath());
+        final StudyTestsOutputParser.TestsOutput output;
+        if (workerOutput != null) {
+          output = StudyCheckUtils.getTestOutput(workerOutput, isAdaptive);
+        }
+        else {
+          Process testProcess = testRunner.createCheckProcess(myProject, fileToCheck.getPath());
+          output = StudyCheckUtils.getTestOutput(testProcess, testRunner.getCommandLine().getCommandLineString(), isAdaptive);
+        }
         return new StudyCheckResult(output.isSuccess() ? StudyStatus.Solved : StudyStatus.Failed, output.getMessage());
       }
     }
@@ -87,23 +100,59 @@ public class PyStudyTaskChecker extends StudyTaskChecker<PyCharmTask> {
     ApplicationManager.getApplication().invokeLater(() -> {
       VirtualFile taskDir = myTask.getTaskDir(myProject);
       if (taskDir == null) return;
-      for (Map.Entry<String, TaskFile> entry : myTask.getTaskFiles().entrySet()) {
-        final String name = entry.getKey();
-        final TaskFile taskFile = entry.getValue();
-        if (taskFile.getActivePlaceholders().size() < 2) {
-          continue;
-        }
-        final Course course = myTask.getLesson().getCourse();
-        if (course != null && course.isStudy()) {
-          CommandProcessor.getInstance().runUndoTransparentAction(
-            () -> ApplicationManager.getApplication().runWriteAction(
-              () -> PyStudySmartChecker.runSmartTestProcess(taskDir, new PyStudyTestRunner(myTask, taskDir), name, taskFile, myProject)));
+      final Course course = myTask.getLesson().getCourse();
+      final List<PyStudySmartChecker.Variants> variantsList = new ArrayList<>();
+      if (course != null && course.isStudy()) {
+        for (Map.Entry<String, TaskFile> entry : myTask.getTaskFiles().entrySet()) {
+          final TaskFile taskFile = entry.getValue();
+          if (taskFile.getActivePlaceholders().size() < 2) {
+            continue;
+          }
+          final PyStudySmartChecker.Variants variants = PyStudySmartChecker.createVariants(taskDir, entry.getKey(), taskFile);
+          if (variants != null && !variants.isEmpty()) {
+            variantsList.add(variants);
+          }
         }
       }
-      StudyCheckUtils.navigateToFailedPlaceholder(new StudyState(StudyUtils.getSelectedStudyEditor(myProject)), myTask, taskDir, myProject);
+      if (variantsList.isEmpty()) {
+        navigateToFailedPlaceholder(taskDir);
+        return;
+      }
+      ProgressManager.getInstance().run(new Backgroundable(myProject, "Checking Answer Placeholders", true) {
+        private final Map<AnswerPlaceholder, StudyStatus> myStatuses = new HashMap<>();
+
+        @Override
+        public void run(@NotNull ProgressIndicator indicator) {
+          final PyStudyTestRunner testRunner = new PyStudyTestRunner(myTask, taskDir);
+          for (PyStudySmartChecker.Variants variants : variantsList) {
+            indicator.checkCanceled();
+            myStatuses.putAll(PyStudySmartChecker.runSmartTests(myProject, testRunner, variants, course.isAdaptive()));
+          }
+        }
+
+        @Override
+        public void onSuccess() {
+          if (myProject.isDisposed()) return;
+          final StudyTaskManager taskManager = StudyTaskManager.getInstance(myProject);
+          for (Map.Entry<AnswerPlaceholder, StudyStatus> entry : myStatuses.entrySet()) {
+            taskManager.setStatus(entry.getKey(), entry.getValue());
+          }
+          navigateToFailedPlaceholder(taskDir);
+        }
+
+        @Override
+        public void onCancel() {
+          if (myProject.isDisposed()) return;
+          navigateToFailedPlaceholder(taskDir);
+        }
+      });
     });
   }
 
+  private void navigateToFailedPlaceholder(@NotNull VirtualFile taskDir) {
+    StudyCheckUtils.navigateToFailedPlaceholder(new StudyState(StudyUtils.getSelectedStudyEditor(myProject)), myTask, taskDir, myProject);
+  }
+
   @Nullable
   private static VirtualFile getTaskVirtualFile(@NotNull final Task task,
                                                 @NotNull final VirtualFile taskDir) {
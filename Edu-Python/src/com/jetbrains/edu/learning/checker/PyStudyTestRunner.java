@@ -2,9 +2,11 @@ package com.jetbrains.edu.learning.checker;
 
 import com.intellij.execution.ExecutionException;
 import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.execution.process.ProcessOutput;
 import com.intellij.openapi.module.ModuleManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -14,8 +16,10 @@ import com.jetbrains.edu.learning.courseFormat.tasks.Task;
 import com.jetbrains.edu.learning.courseFormat.tasks.TaskWithSubtasks;
 import com.jetbrains.python.sdk.PythonSdkType;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.util.List;
 import java.util.Map;
 
 class PyStudyTestRunner {
@@ -30,15 +34,7 @@ class PyStudyTestRunner {
   }
 
   Process createCheckProcess(@NotNull final Project project, @NotNull final String executablePath) throws ExecutionException {
-    final Sdk sdk = PythonSdkType.findPythonSdk(ModuleManager.getInstance(project).getModules()[0]);
-    PyEduPluginConfigurator configurator = new PyEduPluginConfigurator();
-    String testsFileName = configurator.getTestFileName();
-    if (myTask instanceof TaskWithSubtasks) {
-      testsFileName = FileUtil.getNameWithoutExtension(testsFileName);
-      int index = ((TaskWithSubtasks)myTask).getActiveSubtaskIndex();
-      testsFileName += EduNames.SUBTASK_MARKER + index + "." + FileUtilRt.getExtension(configurator.getTestFileName());
-    }
-    final File testRunner = new File(myTaskDir.getPath(), testsFileName);
+    final File testRunner = getTestFile();
     myCommandLine = new GeneralCommandLine();
     myCommandLine.withWorkDirectory(myTaskDir.getPath());
     final Map<String, String> env = myCommandLine.getEnvironment();
@@ -47,18 +43,77 @@ class PyStudyTestRunner {
     if (courseDir != null) {
       env.put(PYTHONPATH, courseDir.getPath());
     }
-    if (sdk != null) {
-      String pythonPath = sdk.getHomePath();
-      if (pythonPath != null) {
-        myCommandLine.setExePath(pythonPath);
-        myCommandLine.addParameter(testRunner.getPath());
-        myCommandLine.addParameter(FileUtil.toSystemDependentName(executablePath));
-        return myCommandLine.createProcess();
-      }
+    final String pythonPath = getPythonPath(project);
+    if (pythonPath != null) {
+      myCommandLine.setExePath(pythonPath);
+      myCommandLine.addParameter(testRunner.getPath());
+      myCommandLine.addParameter(FileUtil.toSystemDependentName(executablePath));
+      return myCommandLine.createProcess();
     }
     return null;
   }
 
+  /**
+   * Runs tests in the project check worker instead of a new process
+   *
+   * @return null if the worker is disabled or failed to run the tests
+   */
+  @Nullable
+  ProcessOutput runInCheckWorker(@NotNull final Project project, @NotNull final String executablePath) {
+    if (!PyStudyCheckWorker.isEnabled()) {
+      return null;
+    }
+    final VirtualFile courseDir = project.getBaseDir();
+    final String pythonPath = getPythonPath(project);
+    if (courseDir == null || pythonPath == null) {
+      return null;
+    }
+    return PyStudyCheckWorker.getInstance(project).runTests(pythonPath, courseDir.getPath(), myTaskDir.getPath(), getTestFile().getPath(),
+                                                           FileUtil.toSystemDependentName(executablePath));
+  }
+
+  /**
+   * Runs tests for all files in one process: in the project check worker if it's enabled, otherwise in a worker started for this batch
+   *
+   * @return outputs in the order of files or null if tests failed to run
+   */
+  @Nullable
+  List<ProcessOutput> runInSingleProcess(@NotNull final Project project, @NotNull final List<String> filesToCheck) {
+    final VirtualFile courseDir = project.getBaseDir();
+    final String pythonPath = getPythonPath(project);
+    if (courseDir == null || pythonPath == null) {
+      return null;
+    }
+    final boolean useProjectWorker = PyStudyCheckWorker.isEnabled();
+    final PyStudyCheckWorker worker = useProjectWorker ? PyStudyCheckWorker.getInstance(project) : new PyStudyCheckWorker();
+    try {
+      return worker.runTests(pythonPath, courseDir.getPath(), myTaskDir.getPath(), getTestFile().getPath(), filesToCheck);
+    }
+    finally {
+      if (!useProjectWorker) {
+        Disposer.dispose(worker);
+      }
+    }
+  }
+
+  @NotNull
+  private File getTestFile() {
+    PyEduPluginConfigurator configurator = new PyEduPluginConfigurator();
+    String testsFileName = configurator.getTestFileName();
+    if (myTask instanceof TaskWithSubtasks) {
+      testsFileName = FileUtil.getNameWithoutExtension(testsFileName);
+      int index = ((TaskWithSubtasks)myTask).getActiveSubtaskIndex();
+      testsFileName += EduNames.SUBTASK_MARKER + index + "." + FileUtilRt.getExtension(configurator.getTestFileName());
+    }
+    return new File(myTaskDir.getPath(), testsFileName);
+  }
+
+  @Nullable
+  private static String getPythonPath(@NotNull final Project project) {
+    final Sdk sdk = PythonSdkType.findPythonSdk(ModuleManager.getInstance(project).getModules()[0]);
+    return sdk != null ? sdk.getHomePath() : null;
+  }
+
   GeneralCommandLine getCommandLine() {
     return myCommandLine;
   }
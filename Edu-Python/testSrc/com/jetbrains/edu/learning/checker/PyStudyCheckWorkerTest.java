@@ -0,0 +1,118 @@
+package com.jetbrains.edu.learning.checker;
+
+import com.intellij.execution.configurations.PathEnvironmentVariableUtil;
+import com.intellij.execution.process.ProcessOutput;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class PyStudyCheckWorkerTest extends LightPlatformCodeInsightFixtureTestCase {
+  private static final String TESTS = "import sys\n" +
+                                      "import time\n" +
+                                      "text = open(sys.argv[1]).read().strip()\n" +
+                                      "if text == 'hang':\n" +
+                                      "    time.sleep(60)\n" +
+                                      "print('checked ' + text)\n" +
+                                      "sys.stderr.write('warning\\n')\n";
+
+  private PyStudyCheckWorker myWorker;
+  private String myPythonPath;
+  private File myCourseDir;
+  private File myTaskDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myWorker = new PyStudyCheckWorker(2000);
+    Disposer.register(getTestRootDisposable(), myWorker);
+    final File python = PathEnvironmentVariableUtil.findInPath("python3");
+    myPythonPath = python != null ? python.getPath() : "python";
+    myCourseDir = FileUtil.createTempDirectory("course", null);
+    myTaskDir = new File(myCourseDir, "lesson1/task1");
+    FileUtil.writeToFile(new File(myTaskDir, "tests.py"), TESTS);
+  }
+
+  public void testOutputsAreSplitByFile() throws IOException {
+    final List<ProcessOutput> outputs = runTests(createFile("first.py", "first"), createFile("second.py", "second"));
+    assertNotNull(outputs);
+    assertEquals(2, outputs.size());
+    assertPassed(outputs.get(0), "first");
+    assertPassed(outputs.get(1), "second");
+  }
+
+  public void testNextCheckSucceedsAfterTimeout() throws IOException {
+    final ProcessOutput timedOut = runTest(createFile("hung.py", "hang"));
+    assertNotNull(timedOut);
+    assertTrue(timedOut.isTimeout());
+
+    assertPassed(runTest(createFile("task.py", "task")), "task");
+  }
+
+  public void testRestOfBatchRunsAfterTimeout() throws IOException {
+    final List<ProcessOutput> outputs = runTests(createFile("hung.py", "hang"), createFile("task.py", "task"));
+    assertNotNull(outputs);
+    assertTrue(outputs.get(0).isTimeout());
+    assertPassed(outputs.get(1), "task");
+  }
+
+  public void testNextCheckSucceedsAfterCancel() throws IOException {
+    final String hungFile = createFile("hung.py", "hang");
+    final ProgressIndicatorBase indicator = new ProgressIndicatorBase();
+    // well before the timeout, while the worker is still running the tests
+    AppExecutorUtil.getAppScheduledExecutorService().schedule(indicator::cancel, 200, TimeUnit.MILLISECONDS);
+    try {
+      ProgressManager.getInstance().runProcess(() -> runTest(hungFile), indicator);
+      fail("Cancelled check should be interrupted");
+    }
+    catch (ProcessCanceledException ignored) {
+    }
+
+    assertPassed(runTest(createFile("task.py", "task")), "task");
+  }
+
+  public void testMissingInterpreter() throws IOException {
+    // null tells the caller to run tests in a separate process
+    final String file = createFile("task.py", "task");
+    assertNull(myWorker.runTests(new File(myCourseDir, "no-python").getPath(), myCourseDir.getPath(), myTaskDir.getPath(),
+                                 getTestFile(), file));
+  }
+
+  private ProcessOutput runTest(@NotNull String fileToCheck) {
+    return myWorker.runTests(myPythonPath, myCourseDir.getPath(), myTaskDir.getPath(), getTestFile(), fileToCheck);
+  }
+
+  private List<ProcessOutput> runTests(@NotNull String... filesToCheck) {
+    return myWorker.runTests(myPythonPath, myCourseDir.getPath(), myTaskDir.getPath(), getTestFile(), Arrays.asList(filesToCheck));
+  }
+
+  @NotNull
+  private String getTestFile() {
+    return new File(myTaskDir, "tests.py").getPath();
+  }
+
+  @NotNull
+  private String createFile(@NotNull String name, @NotNull String text) throws IOException {
+    final File file = new File(myTaskDir, name);
+    FileUtil.writeToFile(file, text);
+    return file.getPath();
+  }
+
+  private static void assertPassed(ProcessOutput output, @NotNull String text) {
+    assertNotNull(output);
+    assertFalse(output.isTimeout());
+    assertEquals(0, output.getExitCode());
+    assertEquals("checked " + text + "\n", output.getStdout());
+    assertEquals("warning\n", output.getStderr());
+  }
+}
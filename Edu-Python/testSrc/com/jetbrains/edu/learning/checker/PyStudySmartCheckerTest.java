@@ -0,0 +1,70 @@
+package com.jetbrains.edu.learning.checker;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholder;
+import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholderSubtaskInfo;
+import com.jetbrains.edu.learning.courseFormat.TaskFile;
+import org.jetbrains.annotations.NotNull;
+
+public class PyStudySmartCheckerTest extends LightPlatformCodeInsightFixtureTestCase {
+  private static final String TEXT = "x = foo(bar)\ny = \nz = 1\n";
+
+  public void testVariants() {
+    final TaskFile taskFile = new TaskFile();
+    addPlaceholder(taskFile, TEXT.indexOf("foo"), 3, "max");
+    // adjacent to the previous one
+    addPlaceholder(taskFile, TEXT.indexOf("(bar)"), 5, "(1, 2)");
+    // empty, the student hasn't typed anything yet
+    addPlaceholder(taskFile, TEXT.indexOf("\nz"), 0, "3");
+
+    final PyStudySmartChecker.Variants variants = createVariants(taskFile);
+    assertNotNull(variants);
+    assertEquals(3, variants.size());
+    assertEquals("x = foo(1, 2)\ny = 3\nz = 1\n", variants.getText(0));
+    assertEquals("x = max(bar)\ny = 3\nz = 1\n", variants.getText(1));
+    assertEquals("x = max(1, 2)\ny = \nz = 1\n", variants.getText(2));
+    assertEquals("#educational_plugin_window = max\n" +
+                 "#educational_plugin_window = (bar)\n" +
+                 "#educational_plugin_window = 3\n", variants.getDescriptions(1));
+    assertEquals("#educational_plugin_window = max\n" +
+                 "#educational_plugin_window = (1, 2)\n" +
+                 "#educational_plugin_window = \n", variants.getDescriptions(2));
+  }
+
+  public void testPlaceholderAtFileEnd() {
+    final TaskFile taskFile = new TaskFile();
+    addPlaceholder(taskFile, 0, 1, "a");
+    addPlaceholder(taskFile, TEXT.length(), 0, "# end");
+
+    final PyStudySmartChecker.Variants variants = createVariants(taskFile);
+    assertNotNull(variants);
+    assertEquals(2, variants.size());
+    assertEquals("x = foo(bar)\ny = \nz = 1\n# end", variants.getText(0));
+    assertEquals("a = foo(bar)\ny = \nz = 1\n", variants.getText(1));
+  }
+
+  public void testOverlappingPlaceholders() {
+    final TaskFile taskFile = new TaskFile();
+    addPlaceholder(taskFile, 4, 4, "max(");
+    addPlaceholder(taskFile, 7, 5, "(1, 2)");
+    assertNull(createVariants(taskFile));
+  }
+
+  private PyStudySmartChecker.Variants createVariants(@NotNull TaskFile taskFile) {
+    final VirtualFile file = myFixture.configureByText("task.py", TEXT).getVirtualFile();
+    return PyStudySmartChecker.createVariants(file.getParent(), file.getName(), taskFile);
+  }
+
+  private static void addPlaceholder(@NotNull TaskFile taskFile, int offset, int length, @NotNull String possibleAnswer) {
+    final AnswerPlaceholder placeholder = new AnswerPlaceholder();
+    placeholder.setOffset(offset);
+    placeholder.setLength(length);
+    placeholder.setUseLength(true);
+    final AnswerPlaceholderSubtaskInfo info = new AnswerPlaceholderSubtaskInfo();
+    info.setPossibleAnswer(possibleAnswer);
+    placeholder.getSubtaskInfos().put(0, info);
+    placeholder.setTaskFile(taskFile);
+    taskFile.addAnswerPlaceholder(placeholder);
+  }
+}
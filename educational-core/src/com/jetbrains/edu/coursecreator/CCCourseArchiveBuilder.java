@@ -0,0 +1,240 @@
+package com.jetbrains.edu.coursecreator;
+
+import com.google.gson.Gson;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.containers.ContainerUtil;
+import com.jetbrains.edu.learning.StudySerializationUtils;
+import com.jetbrains.edu.learning.StudyUtils;
+import com.jetbrains.edu.learning.core.EduNames;
+import com.jetbrains.edu.learning.core.EduUtils;
+import com.jetbrains.edu.learning.courseFormat.*;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import com.jetbrains.edu.learning.courseFormat.tasks.TaskWithSubtasks;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Builds course archive from a copy of the course: answer files are converted to student ones and course.json
+ * is written straight into the zip.
+ * Files of tasks without subtasks are converted as text in parallel without holding any lock, tasks with subtasks
+ * need documents to switch subtasks and are converted on EDT with {@link EduUtils#createStudentFile}.
+ */
+public class CCCourseArchiveBuilder {
+  private static final Logger LOG = Logger.getInstance(CCCourseArchiveBuilder.class);
+
+  private final Project myProject;
+  private final Course myCourse;
+  private final List<Task> myTasks = new ArrayList<>();
+  private final List<AnswerFile> myTextFiles = new ArrayList<>();
+  private final List<AnswerFile> myDocumentFiles = Collections.synchronizedList(new ArrayList<>());
+
+  private CCCourseArchiveBuilder(@NotNull Project project, @NotNull Course course) {
+    myProject = project;
+    myCourse = course;
+  }
+
+  /**
+   * Should be called on a background thread after documents are saved
+   */
+  public static void build(@NotNull Project project, @NotNull Course course, @NotNull File zipFile,
+                           @Nullable ProgressIndicator indicator) throws IOException {
+    final CCCourseArchiveBuilder builder = ApplicationManager.getApplication().runReadAction(
+      (Computable<CCCourseArchiveBuilder>)() -> createBuilder(project, course));
+    builder.convertAnswerFiles(indicator);
+    ApplicationManager.getApplication().runReadAction(() -> {
+      final Lesson lesson = CCUtils.createAdditionalLesson(builder.myCourse, project);
+      if (lesson != null) {
+        builder.myCourse.addLesson(lesson);
+      }
+    });
+    builder.writeArchive(zipFile);
+  }
+
+  @NotNull
+  private static CCCourseArchiveBuilder createBuilder(@NotNull Project project, @NotNull Course course) {
+    final Course courseCopy = course.copy();
+    courseCopy.sortLessons();
+    final CCCourseArchiveBuilder builder = new CCCourseArchiveBuilder(project, courseCopy);
+    final VirtualFile baseDir = project.getBaseDir();
+    for (Lesson lesson : courseCopy.getLessons()) {
+      if (baseDir.findChild(EduNames.LESSON + String.valueOf(lesson.getIndex())) == null) continue;
+      for (Task task : lesson.getTaskList()) {
+        final VirtualFile taskDir = task.getTaskDir(project);
+        if (taskDir == null) continue;
+        builder.collectAnswerFiles(task, taskDir);
+        addTestsToTask(project, task, taskDir);
+      }
+    }
+    return builder;
+  }
+
+  private void collectAnswerFiles(@NotNull Task task, @NotNull VirtualFile taskDir) {
+    myTasks.add(task);
+    for (Map.Entry<String, TaskFile> entry : task.getTaskFiles().entrySet()) {
+      final VirtualFile answerFile = taskDir.findFileByRelativePath(entry.getKey());
+      if (answerFile == null) continue;
+      final TaskFile taskFile = entry.getValue();
+      if (task instanceof TaskWithSubtasks || EduUtils.isImage(taskFile.name)) {
+        myDocumentFiles.add(new AnswerFile(task, entry.getKey(), taskFile, answerFile, null));
+        continue;
+      }
+      final Document document = FileDocumentManager.getInstance().getDocument(answerFile);
+      if (document != null) {
+        myTextFiles.add(new AnswerFile(task, entry.getKey(), taskFile, answerFile, document.getImmutableCharSequence()));
+      }
+    }
+  }
+
+  private void convertAnswerFiles(@Nullable ProgressIndicator indicator) {
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(myTextFiles, indicator, false, file -> {
+      final StudentText studentText = createStudentText(file.myTaskFile, file.myText);
+      if (studentText != null) {
+        studentText.applyTo(file.myTaskFile);
+        file.myStudentFile = file.myTaskFile;
+      }
+      else {
+        // placeholders don't fit the text, let documents report it as before
+        myDocumentFiles.add(file);
+      }
+      return true;
+    });
+    if (!myDocumentFiles.isEmpty()) {
+      ApplicationManager.getApplication().invokeAndWait(() -> ApplicationManager.getApplication().runWriteAction(() -> {
+        for (AnswerFile file : myDocumentFiles) {
+          file.myStudentFile = EduUtils.createStudentFile(myProject, file.myAnswerFile, file.myTask, 0);
+        }
+      }));
+    }
+    for (Task task : myTasks) {
+      task.taskFiles = new HashMap<>();
+    }
+    for (AnswerFile file : ContainerUtil.concat(myTextFiles, myDocumentFiles)) {
+      if (file.myStudentFile != null) {
+        file.myTask.taskFiles.put(file.myName, file.myStudentFile);
+      }
+    }
+  }
+
+  private void writeArchive(@NotNull File zipFile) throws IOException {
+    final Gson gson = StudySerializationUtils.Json.getGson(StudySerializationUtils.Json.GsonProfile.COURSE_ARCHIVE);
+    try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)))) {
+      zos.putNextEntry(new ZipEntry(EduNames.COURSE_META_FILE));
+      final Writer writer = new OutputStreamWriter(zos, CharsetToolkit.UTF8_CHARSET);
+      gson.toJson(myCourse, writer);
+      writer.flush();
+      zos.closeEntry();
+    }
+  }
+
+  /**
+   * Replaces placeholders with their texts the same way as {@link EduUtils#createStudentFile} does with a document
+   * for tasks without subtasks, placeholders following the replaced one are shifted.
+   * Placeholders of the task file itself aren't changed.
+   *
+   * @return null if placeholders don't fit the text
+   */
+  @Nullable
+  private static StudentText createStudentText(@NotNull TaskFile taskFile, @NotNull CharSequence text) {
+    final StringBuilder builder = new StringBuilder(text);
+    final List<AnswerPlaceholder> placeholders = taskFile.getAnswerPlaceholders();
+    final int[] offsets = placeholders.stream().mapToInt(AnswerPlaceholder::getOffset).toArray();
+    for (int i = 0; i < placeholders.size(); i++) {
+      final AnswerPlaceholder placeholder = placeholders.get(i);
+      final AnswerPlaceholderSubtaskInfo info = placeholder.getSubtaskInfos().get(0);
+      if (info == null) continue;
+      final String replacement = info.getPlaceholderText();
+      if (replacement == null || Collections.min(placeholder.getSubtaskInfos().keySet()) != 0) {
+        return null;
+      }
+      final int offset = offsets[i];
+      final int length = placeholder.getVisibleLength(0);
+      if (offset < 0 || offset + length > builder.length()) {
+        return null;
+      }
+      builder.replace(offset, offset + length, replacement);
+      final int change = replacement.length() - length;
+      for (int j = 0; j < offsets.length; j++) {
+        if (offsets[j] > offset) {
+          offsets[j] += change;
+        }
+      }
+    }
+    return new StudentText(builder.toString(), offsets);
+  }
+
+  private static void addTestsToTask(@NotNull Project project, @NotNull Task task, @NotNull VirtualFile taskDir) {
+    task.getTestsText().clear();
+    for (VirtualFile file : getTestFiles(project, taskDir)) {
+      try {
+        task.addTestsTexts(file.getName(), VfsUtilCore.loadText(file));
+      }
+      catch (IOException e) {
+        LOG.warn("Failed to load text " + file.getName());
+      }
+    }
+  }
+
+  @NotNull
+  private static List<VirtualFile> getTestFiles(@NotNull Project project, @NotNull VirtualFile taskDir) {
+    if (EduUtils.isAndroidStudio()) {
+      VirtualFile testDir = taskDir.getParent().findChild(EduNames.TEST);
+      return testDir == null ? Collections.emptyList() : Arrays.asList(testDir.getChildren());
+    }
+    return Arrays.stream(taskDir.getChildren())
+      .filter(file -> StudyUtils.isTestsFile(project, file.getName()))
+      .collect(Collectors.toList());
+  }
+
+  private static class AnswerFile {
+    private final Task myTask;
+    private final String myName;
+    private final TaskFile myTaskFile;
+    private final VirtualFile myAnswerFile;
+    @Nullable private final CharSequence myText;
+    @Nullable private TaskFile myStudentFile;
+
+    private AnswerFile(@NotNull Task task, @NotNull String name, @NotNull TaskFile taskFile, @NotNull VirtualFile answerFile,
+                       @Nullable CharSequence text) {
+      myTask = task;
+      myName = name;
+      myTaskFile = taskFile;
+      myAnswerFile = answerFile;
+      myText = text;
+    }
+  }
+
+  private static class StudentText {
+    private final String myText;
+    private final int[] myOffsets;
+
+    private StudentText(@NotNull String text, @NotNull int[] offsets) {
+      myText = text;
+      myOffsets = offsets;
+    }
+
+    private void applyTo(@NotNull TaskFile taskFile) {
+      final List<AnswerPlaceholder> placeholders = taskFile.getAnswerPlaceholders();
+      for (int i = 0; i < placeholders.size(); i++) {
+        placeholders.get(i).setOffset(myOffsets[i]);
+      }
+      taskFile.setTrackLengths(false);
+      taskFile.text = myText;
+    }
+  }
+}
@@ -26,6 +26,7 @@ import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.util.xmlb.XmlSerializer;
 import com.intellij.util.xmlb.annotations.Transient;
+import com.jetbrains.edu.coursecreator.stepik.CCStepikManifest;
 import com.jetbrains.edu.learning.StudyUtils;
 import com.jetbrains.edu.learning.courseFormat.Course;
 import org.jdom.Element;
@@ -37,12 +38,14 @@ import static com.jetbrains.edu.learning.StudySerializationUtils.*;
 import static com.jetbrains.edu.learning.StudySerializationUtils.Xml.*;
 
 /**
- * @deprecated since version 3
+ * Keeps {@link CCStepikManifest} of the course creator. Course stored here is deprecated since version 3
+ * and only read to migrate old projects, see {@link CCProjectComponent#migrateIfNeeded()}.
  */
 @State(name = "CCProjectService", storages = @Storage("course_service.xml"))
 public class CCProjectService implements PersistentStateComponent<Element> {
   private static final Logger LOG = Logger.getInstance(CCProjectService.class);
   private Course myCourse;
+  private CCStepikManifest myStepikManifest = new CCStepikManifest();
   @Transient private final Project myProject;
 
   public CCProjectService() {
@@ -61,49 +64,68 @@ public class CCProjectService implements PersistentStateComponent<Element> {
     myCourse = course;
   }
 
+  @NotNull
+  public CCStepikManifest getStepikManifest() {
+    return myStepikManifest;
+  }
+
+  public void setStepikManifest(@NotNull CCStepikManifest stepikManifest) {
+    myStepikManifest = stepikManifest;
+  }
+
   @Override
   public Element getState() {
-    if (myCourse == null) {
-      return null;
+    // manifest is updated by uploads running in background
+    synchronized (myStepikManifest) {
+      if (myCourse == null && myStepikManifest.isEmpty()) {
+        return null;
+      }
+      return XmlSerializer.serialize(this);
     }
-    return XmlSerializer.serialize(this);
   }
 
   @Override
   public void loadState(Element state) {
     try {
-      Element courseElement = getChildWithName(state, COURSE).getChild(COURSE_TITLED);
-      for (Element lesson : getChildList(courseElement, LESSONS, true)) {
-        int lessonIndex = getAsInt(lesson, INDEX);
-        for (Element task : getChildList(lesson, TASK_LIST, true)) {
-          int taskIndex = getAsInt(task, INDEX);
-          Map<String, Element> taskFiles = getChildMap(task, TASK_FILES, true);
-          for (Map.Entry<String, Element> entry : taskFiles.entrySet()) {
-            Element taskFileElement = entry.getValue();
-            String name = entry.getKey();
-            String answerName = FileUtil.getNameWithoutExtension(name) + CCUtils.ANSWER_EXTENSION_DOTTED + FileUtilRt.getExtension(name);
-            Document document = StudyUtils.getDocument(myProject.getBasePath(), lessonIndex, taskIndex, answerName);
+      Element courseOption = getChildWithName(state, COURSE, true);
+      Element courseElement = courseOption != null ? courseOption.getChild(COURSE_TITLED) : null;
+      if (courseElement != null) {
+        convertPlaceholderPositions(courseElement);
+      }
+      XmlSerializer.deserializeInto(this, state);
+    } catch (StudyUnrecognizedFormatException e) {
+      LOG.error(e);
+    }
+  }
+
+  private void convertPlaceholderPositions(@NotNull Element courseElement) throws StudyUnrecognizedFormatException {
+    for (Element lesson : getChildList(courseElement, LESSONS, true)) {
+      int lessonIndex = getAsInt(lesson, INDEX);
+      for (Element task : getChildList(lesson, TASK_LIST, true)) {
+        int taskIndex = getAsInt(task, INDEX);
+        Map<String, Element> taskFiles = getChildMap(task, TASK_FILES, true);
+        for (Map.Entry<String, Element> entry : taskFiles.entrySet()) {
+          Element taskFileElement = entry.getValue();
+          String name = entry.getKey();
+          String answerName = FileUtil.getNameWithoutExtension(name) + CCUtils.ANSWER_EXTENSION_DOTTED + FileUtilRt.getExtension(name);
+          Document document = StudyUtils.getDocument(myProject.getBasePath(), lessonIndex, taskIndex, answerName);
+          if (document == null) {
+            document = StudyUtils.getDocument(myProject.getBasePath(), lessonIndex, taskIndex, name);
             if (document == null) {
-              document = StudyUtils.getDocument(myProject.getBasePath(), lessonIndex, taskIndex, name);
-              if (document == null) {
-                continue;
-              }
-            }
-            for (Element placeholder : getChildList(taskFileElement, ANSWER_PLACEHOLDERS, true)) {
-              Element lineElement = getChildWithName(placeholder, LINE, true);
-              int line = lineElement != null ? Integer.valueOf(lineElement.getAttributeValue(VALUE)) : 0;
-              Element startElement = getChildWithName(placeholder, START, true);
-              int start = startElement != null ? Integer.valueOf(startElement.getAttributeValue(VALUE)) : 0;
-              int offset = document.getLineStartOffset(line) + start;
-              addChildWithName(placeholder, OFFSET, offset);
-              addChildWithName(placeholder, "useLength", "false");
+              continue;
             }
           }
+          for (Element placeholder : getChildList(taskFileElement, ANSWER_PLACEHOLDERS, true)) {
+            Element lineElement = getChildWithName(placeholder, LINE, true);
+            int line = lineElement != null ? Integer.valueOf(lineElement.getAttributeValue(VALUE)) : 0;
+            Element startElement = getChildWithName(placeholder, START, true);
+            int start = startElement != null ? Integer.valueOf(startElement.getAttributeValue(VALUE)) : 0;
+            int offset = document.getLineStartOffset(line) + start;
+            addChildWithName(placeholder, OFFSET, offset);
+            addChildWithName(placeholder, "useLength", "false");
+          }
         }
       }
-      XmlSerializer.deserializeInto(this, state);
-    } catch (StudyUnrecognizedFormatException e) {
-      LOG.error(e);
     }
   }
 
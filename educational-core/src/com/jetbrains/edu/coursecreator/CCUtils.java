@@ -158,29 +158,6 @@ public class CCUtils {
     return generatedRoot.get();
   }
 
-  @Nullable
-  public static VirtualFile generateFolder(@NotNull Project project, @NotNull Module module, String name) {
-    VirtualFile generatedRoot = getGeneratedFilesFolder(project, module);
-    if (generatedRoot == null) {
-      return null;
-    }
-
-    final Ref<VirtualFile> folder = new Ref<>(generatedRoot.findChild(name));
-    //need to delete old folder
-    ApplicationManager.getApplication().runWriteAction(() -> {
-      try {
-        if (folder.get() != null) {
-          folder.get().delete(null);
-        }
-        folder.set(generatedRoot.createChildDirectory(null, name));
-      }
-      catch (IOException e) {
-        LOG.info("Failed to generate folder " + name, e);
-      }
-    });
-    return folder.get();
-  }
-
   public static boolean isCourseCreator(@NotNull Project project) {
     Course course = StudyTaskManager.getInstance(project).getCourse();
     if (course == null) {
@@ -118,7 +118,7 @@ public class CCFromCourseArchive extends DumbAwareAction {
     CommandProcessor.getInstance().executeCommand(project,() -> ApplicationManager.getApplication().runWriteAction(
       () -> document.replaceString(0, document.getTextLength(), document.getCharsSequence())),
                                                   "Create answer document", "Create answer document");
-    EduDocumentListener listener = new EduDocumentListener(taskFile, false);
+    EduDocumentListener listener = new EduDocumentListener(project, taskFile, false);
     document.addDocumentListener(listener);
     taskFile.sortAnswerPlaceholders();
 
@@ -10,6 +10,7 @@ import com.intellij.openapi.fileEditor.TextEditor;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.jetbrains.edu.learning.StudyUtils;
+import com.jetbrains.edu.learning.core.EduAnswerPlaceholderHighlighters;
 import com.jetbrains.edu.learning.core.EduUtils;
 import com.jetbrains.edu.learning.courseFormat.Course;
 import com.jetbrains.edu.learning.courseFormat.TaskFile;
@@ -80,7 +81,7 @@ public class CCHideFromStudent extends CCTaskFileActionBase {
       for (FileEditor fileEditor : FileEditorManager.getInstance(project).getEditors(file)) {
         if (fileEditor instanceof TextEditor) {
           Editor editor = ((TextEditor)fileEditor).getEditor();
-          editor.getMarkupModel().removeAllHighlighters();
+          EduAnswerPlaceholderHighlighters.removeAll(editor);
         }
       }
     }
@@ -10,10 +10,8 @@ import com.intellij.openapi.editor.SelectionModel;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.ui.JBColor;
 import com.intellij.util.DocumentUtil;
 import com.jetbrains.edu.learning.StudyUtils;
-import com.jetbrains.edu.learning.core.EduAnswerPlaceholderPainter;
 import com.jetbrains.edu.learning.core.EduUtils;
 import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholder;
 import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholderSubtaskInfo;
@@ -101,17 +99,14 @@ public class CCAddAnswerPlaceholder extends CCAnswerPlaceholderAction {
       final List<AnswerPlaceholder> answerPlaceholders = myTaskFile.getAnswerPlaceholders();
       if (answerPlaceholders.contains(myPlaceholder)) {
         answerPlaceholders.remove(myPlaceholder);
-        myEditor.getMarkupModel().removeAllHighlighters();
         StudyUtils.drawAllAnswerPlaceholders(myEditor, myTaskFile);
-        EduAnswerPlaceholderPainter.createGuardedBlocks(myEditor, myTaskFile);
       }
     }
 
     @Override
     public void redo() throws UnexpectedUndoException {
       myTaskFile.addAnswerPlaceholder(myPlaceholder);
-      EduAnswerPlaceholderPainter.drawAnswerPlaceholder(myEditor, myPlaceholder, JBColor.BLUE);
-      EduAnswerPlaceholderPainter.createGuardedBlocks(myEditor, myPlaceholder);
+      StudyUtils.drawAllAnswerPlaceholders(myEditor, myTaskFile);
     }
   }
 
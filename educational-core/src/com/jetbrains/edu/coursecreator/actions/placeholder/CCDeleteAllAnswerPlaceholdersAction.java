@@ -63,7 +63,6 @@ public class CCDeleteAllAnswerPlaceholdersAction extends DumbAwareAction {
 
   private static void updateView(@NotNull final Editor editor,
                                  @NotNull final TaskFile taskFile) {
-    editor.getMarkupModel().removeAllHighlighters();
     StudyUtils.drawAllAnswerPlaceholders(editor, taskFile);
   }
 
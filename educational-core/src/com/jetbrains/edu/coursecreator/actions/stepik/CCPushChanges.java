@@ -0,0 +1,52 @@
+package com.jetbrains.edu.coursecreator.actions.stepik;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.jetbrains.edu.coursecreator.CCUtils;
+import com.jetbrains.edu.coursecreator.stepik.CCStepicConnector;
+import com.jetbrains.edu.learning.StudyTaskManager;
+import com.jetbrains.edu.learning.courseFormat.Course;
+import com.jetbrains.edu.learning.courseFormat.RemoteCourse;
+import com.jetbrains.edu.learning.statistics.EduUsagesCollector;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Uploads to Stepik only lessons and tasks changed since the last upload
+ */
+public class CCPushChanges extends DumbAwareAction {
+  public CCPushChanges() {
+    super("Upload Changes to Stepik", "Upload changed lessons and tasks to Stepik", null);
+  }
+
+  @Override
+  public void update(@NotNull AnActionEvent e) {
+    final Project project = e.getProject();
+    final boolean isPublished = project != null && CCUtils.isCourseCreator(project) &&
+                                StudyTaskManager.getInstance(project).getCourse() instanceof RemoteCourse;
+    e.getPresentation().setEnabledAndVisible(isPublished);
+  }
+
+  @Override
+  public void actionPerformed(@NotNull AnActionEvent e) {
+    final Project project = e.getProject();
+    if (project == null) {
+      return;
+    }
+    final Course course = StudyTaskManager.getInstance(project).getCourse();
+    if (!(course instanceof RemoteCourse)) {
+      return;
+    }
+    ProgressManager.getInstance().run(new Task.Modal(project, "Uploading Changes", true) {
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        indicator.setIndeterminate(true);
+        CCStepicConnector.pushChanges(project, (RemoteCourse)course);
+      }
+    });
+    EduUsagesCollector.courseUploaded();
+  }
+}
@@ -19,6 +19,7 @@ import com.intellij.refactoring.move.MoveHandlerDelegate;
 import com.intellij.util.Function;
 import com.jetbrains.edu.coursecreator.CCUtils;
 import com.jetbrains.edu.coursecreator.ui.CCMoveStudyItemDialog;
+import com.jetbrains.edu.learning.StudyTaskFileIndex;
 import com.jetbrains.edu.learning.StudyTaskManager;
 import com.jetbrains.edu.learning.core.EduNames;
 import com.jetbrains.edu.learning.courseFormat.Course;
@@ -124,6 +125,8 @@ public class CCLessonMoveHandlerDelegate extends MoveHandlerDelegate {
         }
       }
     });
+    // indices of items changed, while some of their directories weren't renamed
+    StudyTaskFileIndex.getInstance(project).clear();
   }
 
   @Override
@@ -18,6 +18,7 @@ import com.intellij.refactoring.move.MoveCallback;
 import com.intellij.refactoring.move.MoveHandlerDelegate;
 import com.jetbrains.edu.coursecreator.CCUtils;
 import com.jetbrains.edu.coursecreator.ui.CCMoveStudyItemDialog;
+import com.jetbrains.edu.learning.StudyTaskFileIndex;
 import com.jetbrains.edu.learning.StudyTaskManager;
 import com.jetbrains.edu.learning.core.EduNames;
 import com.jetbrains.edu.learning.core.EduUtils;
@@ -181,6 +182,8 @@ public class CCTaskMoveHandlerDelegate extends MoveHandlerDelegate {
         }
       }
     });
+    // indices of items changed, while some of their directories weren't renamed
+    StudyTaskFileIndex.getInstance(sourceDirectory.getProject()).clear();
   }
 
   @Override
@@ -1,8 +1,9 @@
 package com.jetbrains.edu.coursecreator.stepik;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 import com.intellij.lang.Language;
 import com.intellij.notification.Notification;
@@ -11,18 +12,26 @@ import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ConcurrencyUtil;
+import com.intellij.util.TimeoutUtil;
+import com.intellij.util.containers.ContainerUtil;
 import com.jetbrains.edu.coursecreator.CCUtils;
 import com.jetbrains.edu.learning.EduPluginConfigurator;
 import com.jetbrains.edu.learning.EduSettings;
-import com.jetbrains.edu.learning.StudySerializationUtils;
+import com.jetbrains.edu.learning.StudySerializationUtils.Json.GsonProfile;
 import com.jetbrains.edu.learning.StudyTaskManager;
 import com.jetbrains.edu.learning.core.EduNames;
-import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholder;
 import com.jetbrains.edu.learning.courseFormat.Course;
 import com.jetbrains.edu.learning.courseFormat.Lesson;
 import com.jetbrains.edu.learning.courseFormat.RemoteCourse;
@@ -30,28 +39,36 @@ import com.jetbrains.edu.learning.courseFormat.tasks.Task;
 import com.jetbrains.edu.learning.stepic.*;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpStatus;
-import org.apache.http.StatusLine;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpDelete;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.*;
+import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.net.ConnectException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
+import static com.jetbrains.edu.learning.StudySerializationUtils.Json.getGson;
 import static com.jetbrains.edu.learning.StudyUtils.showOAuthDialog;
 
 public class CCStepicConnector {
   private static final Logger LOG = Logger.getInstance(CCStepicConnector.class.getName());
   private static final String FAILED_TITLE = "Failed to publish ";
+  static final int UPLOAD_THREADS = 4;
+  static final int UPLOAD_QUEUE_CAPACITY = 16;
+  static final int MAX_ATTEMPTS = 3;
+  static final long RETRY_DELAY = 1000;
+  private static final ExecutorService ourUploadExecutor = createUploadExecutor();
 
   private CCStepicConnector() {
   }
@@ -101,55 +118,188 @@ public class CCStepicConnector {
       course.setAuthors(Collections.singletonList(currentUser));
     }
 
-    String requestBody = new Gson().toJson(new StepicWrappers.CourseWrapper(course));
+    String requestBody = getGson(GsonProfile.STEPIK_REQUEST).toJson(new StepicWrappers.CourseWrapper(course));
     request.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
 
     try {
-      final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient();
-      if (client == null) {
-        LOG.warn("Http client is null");
-        return;
-      }
-      final CloseableHttpResponse response = client.execute(request);
-      final HttpEntity responseEntity = response.getEntity();
-      final String responseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
-      final StatusLine line = response.getStatusLine();
-      EntityUtils.consume(responseEntity);
-      if (line.getStatusCode() != HttpStatus.SC_CREATED) {
+      final UploadResponse response = execute(request);
+      if (response.myStatusCode != HttpStatus.SC_CREATED) {
         final String message = FAILED_TITLE + "course ";
-        LOG.error(message + responseString);
-        showErrorNotification(project, FAILED_TITLE, responseString);
+        LOG.error(message + response.myBody);
+        showErrorNotification(project, FAILED_TITLE, response.myBody);
         return;
       }
-      final RemoteCourse postedCourse = new Gson().fromJson(responseString, StepicWrappers.CoursesContainer.class).courses.get(0);
+      final RemoteCourse postedCourse =
+        getGson(GsonProfile.STEPIK_REQUEST).fromJson(response.myBody, StepicWrappers.CoursesContainer.class).courses.get(0);
       postedCourse.setLessons(course.getLessons(true));
       postedCourse.setAuthors(course.getAuthors());
       postedCourse.setCourseMode(CCUtils.COURSE_MODE);
       postedCourse.setLanguage(course.getLanguageID());
       final int sectionId = postModule(postedCourse.getId(), 1, String.valueOf(postedCourse.getName()), project);
-      int position = 1;
-      for (Lesson lesson : course.getLessons()) {
+      final List<String> errors = new ArrayList<>();
+      if (sectionId != -1) {
+        uploadLessons(project, course.getLessons(), sectionId, indicator, errors);
+      }
+      final Lesson additionalLesson = ApplicationManager.getApplication().runReadAction(
+        (Computable<Lesson>)() -> CCUtils.createAdditionalLesson(course, project));
+      if (additionalLesson != null) {
         if (indicator != null) {
-          indicator.checkCanceled();
-          indicator.setText2("Publishing lesson " + lesson.getIndex());
+          indicator.setText2("Publishing additional files");
         }
-        final int lessonId = postLesson(project, lesson);
-        postUnit(lessonId, position, sectionId, project);
-        if (indicator != null) {
-          indicator.setFraction((double)lesson.getIndex()/course.getLessons().size());
-          indicator.checkCanceled();
+        final int additionalSectionId = postModule(postedCourse.getId(), 2, EduNames.PYCHARM_ADDITIONAL, project);
+        if (additionalSectionId != -1) {
+          uploadLessons(project, Collections.singletonList(additionalLesson), additionalSectionId, null, errors);
         }
-        position += 1;
       }
-      ApplicationManager.getApplication().runReadAction(() -> postAdditionalFiles(course, project, postedCourse.getId()));
       StudyTaskManager.getInstance(project).setCourse(postedCourse);
-      showNotification(project, "Course published");
+      if (errors.isEmpty()) {
+        showNotification(project, "Course published");
+      }
+      else {
+        showErrorsNotification(project, "Course published with errors", errors);
+      }
     }
     catch (IOException e) {
       LOG.error(e.getMessage());
     }
   }
 
+  /**
+   * Posts lessons and their steps in parallel, no more than {@link #UPLOAD_THREADS} requests run at the same time.
+   * Steps of a lesson are posted one by one and units are added to the section in the order of lessons,
+   * so positions on Stepik are the same as in the course.
+   */
+  private static void uploadLessons(@NotNull Project project, @NotNull List<Lesson> lessons, int sectionId,
+                                    @Nullable ProgressIndicator indicator, @NotNull List<String> errors) {
+    final Map<Lesson, List<StepicWrappers.StepSourceWrapper>> stepSources = createStepSources(project, lessons);
+    final List<String> uploadErrors = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger uploaded = new AtomicInteger();
+    final List<Integer> lessonIds = uploadInParallel(lessons, lesson -> {
+      if (indicator != null) {
+        indicator.setText2("Publishing lesson " + lesson.getIndex());
+      }
+      final int lessonId = uploadLesson(project, lesson, stepSources.get(lesson), uploadErrors);
+      if (indicator != null) {
+        indicator.setFraction((double)uploaded.incrementAndGet() / lessons.size());
+      }
+      return lessonId;
+    }, (lesson, e) -> {
+      uploadErrors.add(FAILED_TITLE + "lesson " + lesson.getName() + ": " + e.getMessage());
+      return -1;
+    });
+    for (int i = 0; i < lessons.size(); i++) {
+      if (lessonIds.get(i) > 0) {
+        addError(uploadErrors, postUnitInfo(lessonIds.get(i), i + 1, sectionId));
+      }
+    }
+    errors.addAll(uploadErrors);
+  }
+
+  /**
+   * @return id of the posted lesson, -1 if the lesson wasn't posted
+   */
+  private static int uploadLesson(@NotNull Project project, @NotNull Lesson lesson,
+                                  @NotNull List<StepicWrappers.StepSourceWrapper> stepSources, @NotNull List<String> errors) {
+    final HttpPost request = new HttpPost(EduStepicNames.STEPIC_API_URL + "/lessons");
+    String requestBody = getGson(GsonProfile.STEPIK_REQUEST).toJson(new StepicWrappers.LessonWrapper(lesson));
+    request.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
+
+    final int lessonId;
+    try {
+      final UploadResponse response = execute(request);
+      if (response.myStatusCode != HttpStatus.SC_CREATED) {
+        errors.add(getError(FAILED_TITLE + "lesson " + lesson.getName(), response));
+        return -1;
+      }
+      lessonId = getGson(GsonProfile.STEPIK_REQUEST).fromJson(response.myBody, RemoteCourse.class).getLessons(true).get(0).getId();
+    }
+    catch (IOException e) {
+      errors.add(FAILED_TITLE + "lesson " + lesson.getName() + ": " + e.getMessage());
+      return -1;
+    }
+    lesson.setId(lessonId);
+    CCStepikManifest.getInstance(project).lessonPublished(lesson);
+    final List<Task> tasks = lesson.getTaskList();
+    for (int i = 0; i < tasks.size(); i++) {
+      ProgressManager.checkCanceled();
+      final String error = postStepSource(project, tasks.get(i), stepSources.get(i), lessonId);
+      if (error != null) {
+        errors.add(error);
+      }
+    }
+    return lessonId;
+  }
+
+  /**
+   * @return step sources of tasks of each lesson, see {@link #createTaskStepSources(Project, List)}
+   */
+  @NotNull
+  private static Map<Lesson, List<StepicWrappers.StepSourceWrapper>> createStepSources(@NotNull Project project,
+                                                                                       @NotNull List<Lesson> lessons) {
+    final List<Task> tasks = ContainerUtil.concat(lessons, Lesson::getTaskList);
+    final List<StepicWrappers.StepSourceWrapper> sources = createTaskStepSources(project, tasks);
+    final Map<Lesson, List<StepicWrappers.StepSourceWrapper>> stepSources = new IdentityHashMap<>();
+    int start = 0;
+    for (Lesson lesson : lessons) {
+      final int end = start + lesson.getTaskList().size();
+      stepSources.put(lesson, sources.subList(start, end));
+      start = end;
+    }
+    return stepSources;
+  }
+
+  @NotNull
+  private static StepicWrappers.StepSourceWrapper createStepSource(@NotNull Project project, @NotNull Task task) {
+    return createTaskStepSources(project, Collections.singletonList(task)).get(0);
+  }
+
+  /**
+   * Step sources are built from documents of task files which are saved and copied in write actions,
+   * so sources for all tasks are created in one go on EDT. Texts of tests are always reloaded from test files,
+   * so a posted step and the same unchanged step compared by {@link #pushChanges} have equal sources.
+   */
+  @NotNull
+  private static List<StepicWrappers.StepSourceWrapper> createTaskStepSources(@NotNull Project project, @NotNull List<Task> tasks) {
+    final List<StepicWrappers.StepSourceWrapper> sources = new ArrayList<>();
+    ApplicationManager.getApplication().invokeAndWait(() -> {
+      for (Task task : tasks) {
+        loadTestsTexts(project, task);
+        sources.add(new StepicWrappers.StepSourceWrapper(project, task, task.getLesson().getId()));
+      }
+    });
+    return sources;
+  }
+
+  /**
+   * @return error message or null if the step was posted
+   */
+  @Nullable
+  private static String postStepSource(@NotNull Project project, @NotNull Task task,
+                                       @NotNull StepicWrappers.StepSourceWrapper stepSource, int lessonId) {
+    stepSource.setLesson(lessonId);
+    return postStepSource(project, task, getGson(GsonProfile.STEP_SOURCE_UPLOAD).toJson(stepSource));
+  }
+
+  @Nullable
+  private static String postStepSource(@NotNull Project project, @NotNull Task task, @NotNull String requestBody) {
+    final HttpPost request = new HttpPost(EduStepicNames.STEPIC_API_URL + "/step-sources");
+    request.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
+    try {
+      final UploadResponse response = execute(request);
+      if (response.myStatusCode != HttpStatus.SC_CREATED) {
+        return getError(FAILED_TITLE + "task " + task.getName(), response);
+      }
+      final JsonObject postedTask = getGson(GsonProfile.STEPIK_REQUEST).fromJson(response.myBody, JsonObject.class);
+      final JsonObject postedStepSource = postedTask.getAsJsonArray("step-sources").get(0).getAsJsonObject();
+      task.setStepId(postedStepSource.getAsJsonPrimitive("id").getAsInt());
+      CCStepikManifest.getInstance(project).stepPublished(task.getStepId(), requestBody);
+      return null;
+    }
+    catch (IOException e) {
+      return FAILED_TITLE + "task " + task.getName() + ": " + e.getMessage();
+    }
+  }
+
   private static boolean checkIfAuthorized(@NotNull Project project, @NotNull String failedActionName) {
     boolean isAuthorized = EduSettings.getInstance().getUser() != null;
     if (!isAuthorized) {
@@ -159,22 +309,21 @@ public class CCStepicConnector {
     return true;
   }
 
-  private static void postAdditionalFiles(Course course, @NotNull final Project project, int id) {
-    final Lesson lesson = CCUtils.createAdditionalLesson(course, project);
-    if (lesson != null) {
-      final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
-      if (indicator != null) {
-        indicator.setText2("Publishing additional files");
-      }
-      final int sectionId = postModule(id, 2, EduNames.PYCHARM_ADDITIONAL, project);
-      final int lessonId = postLesson(project, lesson);
-      postUnit(lessonId, 1, sectionId, project);
-    }
-  }
-
   public static void postUnit(int lessonId, int position, int sectionId, Project project) {
     if (!checkIfAuthorized(project, "postTask")) return;
 
+    final String error = postUnitInfo(lessonId, position, sectionId);
+    if (error != null) {
+      LOG.error(error);
+      showErrorsNotification(project, FAILED_TITLE, Collections.singletonList(error));
+    }
+  }
+
+  /**
+   * @return error message or null if the unit was posted
+   */
+  @Nullable
+  private static String postUnitInfo(int lessonId, int position, int sectionId) {
     final HttpPost request = new HttpPost(EduStepicNames.STEPIC_API_URL + EduStepicNames.UNITS);
     final StepicWrappers.UnitWrapper unitWrapper = new StepicWrappers.UnitWrapper();
     final StepicWrappers.Unit unit = new StepicWrappers.Unit();
@@ -183,24 +332,18 @@ public class CCStepicConnector {
     unit.setSection(sectionId);
     unitWrapper.setUnit(unit);
 
-    String requestBody = new Gson().toJson(unitWrapper);
+    String requestBody = getGson(GsonProfile.STEPIK_REQUEST).toJson(unitWrapper);
     request.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
 
     try {
-      final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient();
-      if (client == null) return;
-      final CloseableHttpResponse response = client.execute(request);
-      final HttpEntity responseEntity = response.getEntity();
-      final String responseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
-      final StatusLine line = response.getStatusLine();
-      EntityUtils.consume(responseEntity);
-      if (line.getStatusCode() != HttpStatus.SC_CREATED) {
-        LOG.error(FAILED_TITLE + responseString);
-        showErrorNotification(project, FAILED_TITLE, responseString);
+      final UploadResponse response = execute(request);
+      if (response.myStatusCode != HttpStatus.SC_CREATED) {
+        return getError(FAILED_TITLE + "unit " + position, response);
       }
+      return null;
     }
     catch (IOException e) {
-      LOG.error(e.getMessage());
+      return FAILED_TITLE + "unit " + position + ": " + e.getMessage();
     }
   }
 
@@ -212,24 +355,19 @@ public class CCStepicConnector {
     section.setPosition(position);
     final StepicWrappers.SectionWrapper sectionContainer = new StepicWrappers.SectionWrapper();
     sectionContainer.setSection(section);
-    String requestBody = new Gson().toJson(sectionContainer);
+    String requestBody = getGson(GsonProfile.STEPIK_REQUEST).toJson(sectionContainer);
     request.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
 
     try {
-      final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient();
-      if (client == null) return -1;
-      final CloseableHttpResponse response = client.execute(request);
-      final HttpEntity responseEntity = response.getEntity();
-      final String responseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
-      final StatusLine line = response.getStatusLine();
-      EntityUtils.consume(responseEntity);
-      if (line.getStatusCode() != HttpStatus.SC_CREATED) {
-        LOG.error(FAILED_TITLE + responseString);
-        showErrorNotification(project, FAILED_TITLE, responseString);
+      final UploadResponse response = execute(request);
+      if (response.myStatusCode != HttpStatus.SC_CREATED) {
+        LOG.error(FAILED_TITLE + response.myBody);
+        showErrorNotification(project, FAILED_TITLE, response.myBody);
         return -1;
       }
       final StepicWrappers.Section
-        postedSection = new Gson().fromJson(responseString, StepicWrappers.SectionContainer.class).getSections().get(0);
+        postedSection = getGson(GsonProfile.STEPIK_REQUEST).fromJson(response.myBody, StepicWrappers.SectionContainer.class)
+        .getSections().get(0);
       return postedSection.getId();
     }
     catch (IOException e) {
@@ -238,6 +376,11 @@ public class CCStepicConnector {
     return -1;
   }
 
+  /**
+   * Should be called on a background thread, step source is prepared on EDT and request is executed on the calling thread
+   *
+   * @return step id of the task or -1 if the task wasn't updated
+   */
   public static int updateTask(@NotNull final Project project, @NotNull final Task task) {
     if (!checkIfAuthorized(project, "update task")) return -1;
     final Lesson lesson = task.getLesson();
@@ -246,101 +389,286 @@ public class CCStepicConnector {
     VirtualFile taskDir = task.getTaskDir(project);
     if (taskDir == null) return -1;
 
+    final StepicWrappers.StepSourceWrapper stepSource = createStepSource(project, task);
+    stepSource.setLesson(lessonId);
+    final String error = putStepSource(project, task, getGson(GsonProfile.STEP_SOURCE_UPLOAD).toJson(stepSource));
+    if (error != null) {
+      LOG.warn(error);
+      showErrorsNotification(project, "Failed to update task ", Collections.singletonList(error));
+      return -1;
+    }
+    showNotification(project, "Task updated");
+    return task.getStepId();
+  }
+
+  private static void loadTestsTexts(@NotNull Project project, @NotNull Task task) {
+    final VirtualFile taskDir = task.getTaskDir(project);
+    if (taskDir == null) return;
+    final Language language = task.getLesson().getCourse().getLanguageById();
+    final EduPluginConfigurator configurator = EduPluginConfigurator.INSTANCE.forLanguage(language);
+    if (configurator == null) return;
+
+    List<VirtualFile> testFiles = Arrays.stream(taskDir.getChildren()).filter(configurator::isTestFile)
+                                               .collect(Collectors.toList());
+    for (VirtualFile file : testFiles) {
+      try {
+        task.addTestsTexts(file.getName(), VfsUtilCore.loadText(file));
+      }
+      catch (IOException e) {
+        LOG.warn("Failed to load text " + file.getName());
+      }
+    }
+  }
+
+  /**
+   * @return error message or null if the step was updated
+   */
+  @Nullable
+  private static String putStepSource(@NotNull Project project, @NotNull Task task, @NotNull String requestBody) {
     final HttpPut request = new HttpPut(EduStepicNames.STEPIC_API_URL + "/step-sources/" + String.valueOf(task.getStepId()));
-    final Gson gson = new GsonBuilder().setPrettyPrinting().excludeFieldsWithoutExposeAnnotation().
-      registerTypeAdapter(AnswerPlaceholder.class, new StudySerializationUtils.Json.StepicAnswerPlaceholderAdapter()).create();
-    ApplicationManager.getApplication().invokeLater(() -> {
-      final Language language = lesson.getCourse().getLanguageById();
-      final EduPluginConfigurator configurator = EduPluginConfigurator.INSTANCE.forLanguage(language);
-
-      List<VirtualFile> testFiles = Arrays.stream(taskDir.getChildren()).filter(configurator::isTestFile)
-                                                 .collect(Collectors.toList());
-      for (VirtualFile file : testFiles) {
-        try {
-          task.addTestsTexts(file.getName(), VfsUtilCore.loadText(file));
-        }
-        catch (IOException e) {
-          LOG.warn("Failed to load text " + file.getName());
+    request.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
+    try {
+      final UploadResponse response = execute(request);
+      if (response.myStatusCode != HttpStatus.SC_OK) {
+        return getError("Failed to update task " + task.getName(), response);
+      }
+      CCStepikManifest.getInstance(project).stepPublished(task.getStepId(), requestBody);
+      return null;
+    }
+    catch (IOException e) {
+      return "Failed to update task " + task.getName() + ": " + e.getMessage();
+    }
+  }
+
+  /**
+   * Updates metadata of the lesson without its steps
+   *
+   * @return error message or null if the lesson was updated
+   */
+  @Nullable
+  private static String putLessonInfo(@NotNull Project project, @NotNull Lesson lesson) {
+    final HttpPut request = new HttpPut(EduStepicNames.STEPIC_API_URL + EduStepicNames.LESSONS + String.valueOf(lesson.getId()));
+    String requestBody = getGson(GsonProfile.STEPIK_REQUEST).toJson(new StepicWrappers.LessonWrapper(lesson));
+    request.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
+    try {
+      final UploadResponse response = execute(request);
+      if (response.myStatusCode != HttpStatus.SC_OK) {
+        return getError("Failed to update lesson " + lesson.getName(), response);
+      }
+      CCStepikManifest.getInstance(project).lessonPublished(lesson);
+      return null;
+    }
+    catch (IOException e) {
+      return "Failed to update lesson " + lesson.getName() + ": " + e.getMessage();
+    }
+  }
+
+  /**
+   * Uploads only lessons and tasks which changed since they were published last time, see {@link CCStepikManifest}.
+   * Metadata of changed lessons and new tasks are uploaded one by one to keep their positions,
+   * changed tasks are updated in parallel. New lessons are posted with all their tasks.
+   * Lessons and tasks removed from the course aren't deleted from Stepik.
+   */
+  public static void pushChanges(@NotNull Project project, @NotNull RemoteCourse course) {
+    if (!checkIfAuthorized(project, "upload changes")) return;
+
+    final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    final CCStepikManifest manifest = CCStepikManifest.getInstance(project);
+    final List<Lesson> lessons = new ArrayList<>();
+    final List<Lesson> newLessons = new ArrayList<>();
+    for (Lesson lesson : course.getLessons()) {
+      (lesson.getId() > 0 ? lessons : newLessons).add(lesson);
+    }
+    final List<String> errors = new ArrayList<>();
+    int uploaded = 0;
+    int skipped = 0;
+
+    for (Lesson lesson : lessons) {
+      ProgressManager.checkCanceled();
+      if (manifest.isLessonChanged(lesson)) {
+        if (!addError(errors, putLessonInfo(project, lesson))) {
+          uploaded++;
         }
       }
-      final String requestBody = gson.toJson(new StepicWrappers.StepSourceWrapper(project, task, lessonId));
-      request.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
+    }
 
-      try {
-        final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient();
-        if (client == null) return;
-        final CloseableHttpResponse response = client.execute(request);
-        final HttpEntity responseEntity = response.getEntity();
-        final String responseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
-        EntityUtils.consume(responseEntity);
-        final StatusLine line = response.getStatusLine();
-        if (line.getStatusCode() != HttpStatus.SC_OK) {
-          final String message = "Failed to update task ";
-          LOG.error(message + responseString);
-          showErrorNotification(project, message, responseString);
+    final Gson gson = getGson(GsonProfile.STEP_SOURCE_UPLOAD);
+    final Map<Lesson, List<StepicWrappers.StepSourceWrapper>> stepSources = createStepSources(project, lessons);
+    // tasks are compared by their contents, so equal tasks of different lessons would share a key in a hash map
+    final List<Task> changedTasks = new ArrayList<>();
+    final Map<Task, String> changedSteps = new IdentityHashMap<>();
+    for (Lesson lesson : lessons) {
+      final List<Task> tasks = lesson.getTaskList();
+      for (int i = 0; i < tasks.size(); i++) {
+        final Task task = tasks.get(i);
+        final String requestBody = gson.toJson(stepSources.get(lesson).get(i));
+        if (task.getStepId() <= 0) {
+          ProgressManager.checkCanceled();
+          if (!addError(errors, postStepSource(project, task, requestBody))) {
+            uploaded++;
+          }
+        }
+        else if (manifest.isStepChanged(task.getStepId(), requestBody)) {
+          changedTasks.add(task);
+          changedSteps.put(task, requestBody);
         }
         else {
-          showNotification(project, "Task updated");
+          skipped++;
         }
       }
-      catch (IOException e) {
-        LOG.error(e.getMessage());
+    }
+    final List<String> updateErrors = uploadInParallel(changedTasks,
+                                                       task -> putStepSource(project, task, changedSteps.get(task)),
+                                                       (task, e) -> "Failed to update task " + task.getName() + ": " + e.getMessage());
+    for (String error : updateErrors) {
+      if (!addError(errors, error)) {
+        uploaded++;
       }
-    });
-    return -1;
+    }
+
+    final List<Integer> sections = course.getSections();
+    if (!newLessons.isEmpty() && !sections.isEmpty()) {
+      final int sectionId = sections.get(sections.size() - 1);
+      final Map<Lesson, List<StepicWrappers.StepSourceWrapper>> newStepSources = createStepSources(project, newLessons);
+      for (Lesson lesson : newLessons) {
+        ProgressManager.checkCanceled();
+        final int lessonId = uploadLesson(project, lesson, newStepSources.get(lesson), errors);
+        if (lessonId > 0 && !addError(errors, postUnitInfo(lessonId, lesson.getIndex(), sectionId))) {
+          uploaded++;
+        }
+      }
+    }
+
+    final String summary = "Uploaded " + uploaded + " items, skipped " + skipped + " unchanged tasks";
+    if (errors.isEmpty()) {
+      showNotification(project, summary);
+    }
+    else {
+      errors.add(0, summary);
+      showErrorsNotification(project, "Changes uploaded with errors", errors);
+    }
+  }
+
+  /**
+   * @return true if there was an error
+   */
+  private static boolean addError(@NotNull List<String> errors, @Nullable String error) {
+    if (error == null) {
+      return false;
+    }
+    LOG.warn(error);
+    errors.add(error);
+    return true;
   }
 
   public static int updateLesson(@NotNull final Project project, @NotNull final Lesson lesson) {
     if(!checkIfAuthorized(project, "update lesson")) return -1;
 
-    final HttpPut request = new HttpPut(EduStepicNames.STEPIC_API_URL + EduStepicNames.LESSONS + String.valueOf(lesson.getId()));
+    final List<StepicWrappers.StepSourceWrapper> stepSources = createTaskStepSources(project, lesson.getTaskList());
+    final List<String> errors = new ArrayList<>();
+    final int lessonId = updateLesson(project, lesson, stepSources, errors);
+    if (errors.isEmpty()) {
+      showNotification(project, "Lesson updated");
+    }
+    else {
+      showErrorsNotification(project, "Failed to update lesson " + lesson.getName(), errors);
+    }
+    return lessonId;
+  }
 
-    String requestBody = new Gson().toJson(new StepicWrappers.LessonWrapper(lesson));
+  /**
+   * Updates metadata of the lesson and replaces its steps on Stepik with the current ones
+   *
+   * @return id of the lesson or -1 if the lesson wasn't updated
+   */
+  private static int updateLesson(@NotNull Project project, @NotNull Lesson lesson,
+                                  @NotNull List<StepicWrappers.StepSourceWrapper> stepSources, @NotNull List<String> errors) {
+    final HttpPut request = new HttpPut(EduStepicNames.STEPIC_API_URL + EduStepicNames.LESSONS + String.valueOf(lesson.getId()));
+    String requestBody = getGson(GsonProfile.STEPIK_REQUEST).toJson(new StepicWrappers.LessonWrapper(lesson));
     request.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
-
     try {
-      final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient();
-      if (client == null) return -1;
-      final CloseableHttpResponse response = client.execute(request);
-      final HttpEntity responseEntity = response.getEntity();
-      final String responseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
-      final StatusLine line = response.getStatusLine();
-      EntityUtils.consume(responseEntity);
-      if (line.getStatusCode() != HttpStatus.SC_OK) {
-        final String message = "Failed to update lesson ";
-        LOG.error(message + responseString);
-        showErrorNotification(project, message, responseString);
+      final UploadResponse response = execute(request);
+      if (response.myStatusCode != HttpStatus.SC_OK) {
+        addError(errors, getError("Failed to update lesson " + lesson.getName(), response));
         return -1;
       }
-      else {
-        showNotification(project, "Lesson updated");
+      CCStepikManifest.getInstance(project).lessonPublished(lesson);
+      final Lesson postedLesson = getGson(GsonProfile.STEPIK_REQUEST).fromJson(response.myBody, RemoteCourse.class).getLessons().get(0);
+      for (Integer step : postedLesson.steps) {
+        ProgressManager.checkCanceled();
+        if (!addError(errors, deleteStep(step))) {
+          CCStepikManifest.getInstance(project).stepRemoved(step);
+        }
       }
+    }
+    catch (IOException e) {
+      addError(errors, "Failed to update lesson " + lesson.getName() + ": " + e.getMessage());
+      return -1;
+    }
 
-      final Lesson postedLesson = new Gson().fromJson(responseString, RemoteCourse.class).getLessons().get(0);
-      for (Integer step : postedLesson.steps) {
-        deleteTask(step, project);
+    final List<Task> tasks = lesson.getTaskList();
+    for (int i = 0; i < tasks.size(); i++) {
+      ProgressManager.checkCanceled();
+      addError(errors, postStepSource(project, tasks.get(i), stepSources.get(i), lesson.getId()));
+    }
+    return lesson.getId();
+  }
+
+  /**
+   * Updates lessons of the course in parallel. Lessons published before are updated with all their steps,
+   * new lessons are posted and added to the last section of the course in the order of lessons.
+   */
+  public static void updateCourse(@NotNull Project project, @NotNull RemoteCourse course) {
+    if (!checkIfAuthorized(project, "update course")) return;
+
+    final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    final List<Lesson> lessons = course.getLessons();
+    final List<Lesson> newLessons = lessons.stream().filter(lesson -> lesson.getId() <= 0).collect(Collectors.toList());
+    final Map<Lesson, List<StepicWrappers.StepSourceWrapper>> stepSources = createStepSources(project, lessons);
+    final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger updated = new AtomicInteger();
+    uploadInParallel(lessons, lesson -> {
+      if (indicator != null) {
+        indicator.setText2("Publishing lesson " + lesson.getIndex());
+      }
+      final boolean isNew = ContainerUtil.indexOfIdentity(newLessons, lesson) >= 0;
+      final int lessonId = isNew ? uploadLesson(project, lesson, stepSources.get(lesson), errors)
+                                 : updateLesson(project, lesson, stepSources.get(lesson), errors);
+      if (indicator != null) {
+        indicator.setFraction((double)updated.incrementAndGet() / lessons.size());
       }
+      return lessonId;
+    }, (lesson, e) -> {
+      errors.add("Failed to update lesson " + lesson.getName() + ": " + e.getMessage());
+      return -1;
+    });
 
-      for (Task task : lesson.getTaskList()) {
-        final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
-        if (indicator != null) {
-          indicator.checkCanceled();
+    final List<Integer> sections = course.getSections();
+    if (!newLessons.isEmpty() && !sections.isEmpty()) {
+      final int sectionId = sections.get(sections.size() - 1);
+      for (Lesson lesson : newLessons) {
+        if (lesson.getId() > 0) {
+          addError(errors, postUnitInfo(lesson.getId(), lesson.getIndex(), sectionId));
         }
-        postTask(project, task, lesson.getId());
       }
-      return lesson.getId();
     }
-    catch (IOException e) {
-      LOG.error(e.getMessage());
+    if (errors.isEmpty()) {
+      showNotification(project, "Course updated");
+    }
+    else {
+      showErrorsNotification(project, "Course updated with errors", errors);
     }
-    return -1;
   }
 
   private static void showErrorNotification(@NotNull Project project, String message, String responseString) {
-    final JsonObject details = new JsonParser().parse(responseString).getAsJsonObject();
-    final String detailString = details.get("detail").getAsString();
     final Notification notification =
-      new Notification("Push.course", message, detailString, NotificationType.ERROR);
+      new Notification("Push.course", message, getDetail(responseString), NotificationType.ERROR);
+    notification.notify(project);
+  }
+
+  private static void showErrorsNotification(@NotNull Project project, @NotNull String title, @NotNull List<String> errors) {
+    final Notification notification =
+      new Notification("Push.course", title, StringUtil.join(errors, "<br>"), NotificationType.ERROR);
     notification.notify(project);
   }
 
@@ -369,96 +697,224 @@ public class CCStepicConnector {
   public static int postLesson(@NotNull final Project project, @NotNull final Lesson lesson) {
     if (!checkIfAuthorized(project, "postLesson")) return -1;
 
-    final HttpPost request = new HttpPost(EduStepicNames.STEPIC_API_URL + "/lessons");
-
-    String requestBody = new Gson().toJson(new StepicWrappers.LessonWrapper(lesson));
-    request.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
+    final List<StepicWrappers.StepSourceWrapper> stepSources = createTaskStepSources(project, lesson.getTaskList());
+    final List<String> errors = new ArrayList<>();
+    final int lessonId = uploadLesson(project, lesson, stepSources, errors);
+    if (!errors.isEmpty()) {
+      LOG.warn(StringUtil.join(errors, "\n"));
+      showErrorsNotification(project, FAILED_TITLE + "lesson ", errors);
+    }
+    return lessonId;
+  }
 
+  /**
+   * @return error message or null if the step was deleted
+   */
+  @Nullable
+  private static String deleteStep(int stepId) {
+    final HttpDelete request = new HttpDelete(EduStepicNames.STEPIC_API_URL + EduStepicNames.STEP_SOURCES + stepId);
     try {
-      final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient();
-      if (client == null) return -1;
-      final CloseableHttpResponse response = client.execute(request);
-      final HttpEntity responseEntity = response.getEntity();
-      final String responseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
-      final StatusLine line = response.getStatusLine();
-      EntityUtils.consume(responseEntity);
-      if (line.getStatusCode() != HttpStatus.SC_CREATED) {
-        final String message = FAILED_TITLE + "lesson ";
-        LOG.error(message + responseString);
-        showErrorNotification(project, message, responseString);
-        return 0;
-      }
-      final Lesson postedLesson = new Gson().fromJson(responseString, RemoteCourse.class).getLessons(true).get(0);
-      lesson.setId(postedLesson.getId());
-      for (Task task : lesson.getTaskList()) {
-        final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
-        if (indicator != null) {
-          indicator.checkCanceled();
-        }
-        postTask(project, task, postedLesson.getId());
+      final UploadResponse response = execute(request);
+      if (response.myStatusCode != HttpStatus.SC_NO_CONTENT) {
+        return getError("Failed to delete step " + stepId, response);
       }
-      return postedLesson.getId();
+      return null;
     }
     catch (IOException e) {
-      LOG.error(e.getMessage());
+      return "Failed to delete step " + stepId + ": " + e.getMessage();
     }
-    return -1;
   }
 
-  public static void deleteTask(@NotNull final Integer task, Project project) {
-    final HttpDelete request = new HttpDelete(EduStepicNames.STEPIC_API_URL + EduStepicNames.STEP_SOURCES + task);
-    ApplicationManager.getApplication().invokeLater(() -> {
-      try {
-        final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient();
-        if (client == null) return;
-        final CloseableHttpResponse response = client.execute(request);
+  /**
+   * Should be called on a background thread, step source is prepared on EDT and request is executed on the calling thread
+   */
+  public static void postTask(final Project project, @NotNull final Task task, final int lessonId) {
+    if (!checkIfAuthorized(project, "postTask")) return;
+
+    final String error = postStepSource(project, task, createStepSource(project, task), lessonId);
+    if (error != null) {
+      LOG.warn(error);
+      showErrorsNotification(project, FAILED_TITLE + "task ", Collections.singletonList(error));
+    }
+  }
+
+  /**
+   * Executes the request and retries it with growing delays when connection can't be established or Stepik
+   * is temporarily unavailable. Only failures which mean that the request wasn't processed are retried,
+   * so posted items aren't duplicated. Checks cancellation of the current progress indicator between attempts.
+   */
+  @NotNull
+  private static UploadResponse execute(@NotNull HttpRequestBase request) throws IOException {
+    final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient();
+    if (client == null) {
+      throw new IOException("Http client is null");
+    }
+    return execute(request, () -> {
+      try (CloseableHttpResponse response = client.execute(request)) {
         final HttpEntity responseEntity = response.getEntity();
         final String responseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
         EntityUtils.consume(responseEntity);
-        final StatusLine line = response.getStatusLine();
-        if (line.getStatusCode() != HttpStatus.SC_NO_CONTENT) {
-          LOG.error("Failed to delete task " + responseString);
-          showErrorNotification(project, "Failed to delete task ", responseString);
+        return new UploadResponse(response.getStatusLine().getStatusCode(), responseString);
+      }
+    }, CCStepicConnector::sleep);
+  }
+
+  /**
+   * @param send executes the request once
+   * @param sleep waits for the given number of milliseconds before the next attempt
+   */
+  @NotNull
+  static UploadResponse execute(@NotNull HttpRequestBase request, @NotNull ThrowableComputable<UploadResponse, IOException> send,
+                                @NotNull LongConsumer sleep) throws IOException {
+    long delay = RETRY_DELAY;
+    for (int attempt = 1; ; attempt++) {
+      ProgressManager.checkCanceled();
+      try {
+        final UploadResponse response = send.compute();
+        final int statusCode = response.myStatusCode;
+        final boolean isUnavailable = statusCode == HttpStatus.SC_SERVICE_UNAVAILABLE || statusCode == 429;
+        if (!isUnavailable || attempt == MAX_ATTEMPTS) {
+          return response;
         }
+        LOG.info(request.getMethod() + " " + request.getURI() + " responded with " + statusCode + ", retrying");
       }
-      catch (IOException e) {
-        LOG.error(e.getMessage());
+      catch (ConnectException | ConnectTimeoutException e) {
+        if (attempt == MAX_ATTEMPTS) {
+          throw e;
+        }
+        LOG.info("Failed to connect to " + request.getURI() + ", retrying");
       }
-    });
+      EduStepicMetrics.recordRetry(request);
+      sleep.accept(delay);
+      delay *= 2;
+    }
   }
 
-  public static void postTask(final Project project, @NotNull final Task task, final int lessonId) {
-    if (!checkIfAuthorized(project, "postTask")) return;
+  private static void sleep(long delay) {
+    final long end = System.currentTimeMillis() + delay;
+    while (System.currentTimeMillis() < end) {
+      ProgressManager.checkCanceled();
+      TimeoutUtil.sleep(50);
+    }
+  }
 
-    final HttpPost request = new HttpPost(EduStepicNames.STEPIC_API_URL + "/step-sources");
-    final Gson gson = new GsonBuilder().setPrettyPrinting().excludeFieldsWithoutExposeAnnotation().
-      registerTypeAdapter(AnswerPlaceholder.class, new StudySerializationUtils.Json.StepicAnswerPlaceholderAdapter()).create();
-    ApplicationManager.getApplication().invokeLater(() -> {
-      final String requestBody = gson.toJson(new StepicWrappers.StepSourceWrapper(project, task, lessonId));
-      request.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
+  private static <T> T underProgress(@Nullable ProgressIndicator indicator, @NotNull Computable<T> computable) {
+    if (indicator == null) {
+      return computable.compute();
+    }
+    final Ref<T> result = Ref.create();
+    ProgressManager.getInstance().executeProcessUnderProgress(() -> result.set(computable.compute()), indicator);
+    return result.get();
+  }
 
-      try {
-        final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient();
-        if (client == null) return;
-        final CloseableHttpResponse response = client.execute(request);
-        final StatusLine line = response.getStatusLine();
-        final HttpEntity responseEntity = response.getEntity();
-        final String responseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
-        EntityUtils.consume(responseEntity);
-        if (line.getStatusCode() != HttpStatus.SC_CREATED) {
-          final String message = FAILED_TITLE + "task ";
-          LOG.error(message + responseString);
-          showErrorNotification(project, message, responseString);
-          return;
-        }
+  /**
+   * Runs uploads in the upload pool and waits for them checking cancellation of the current progress.
+   * Unexpected exceptions of uploads are logged and converted to results by {@code onFailure}.
+   *
+   * @return results of uploads in the order of items
+   */
+  @NotNull
+  static <T, R> List<R> uploadInParallel(@NotNull List<T> items, @NotNull Function<T, R> upload,
+                                         @NotNull BiFunction<T, RuntimeException, R> onFailure) {
+    final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    final List<Future<R>> futures = new ArrayList<>();
+    try {
+      for (T item : items) {
+        futures.add(ourUploadExecutor.submit(() -> underProgress(indicator, () -> {
+          try {
+            return upload.apply(item);
+          }
+          catch (ProcessCanceledException e) {
+            throw e;
+          }
+          catch (RuntimeException e) {
+            LOG.warn(e);
+            return onFailure.apply(item, e);
+          }
+        })));
+      }
+      final List<R> results = new ArrayList<>();
+      for (Future<R> future : futures) {
+        results.add(await(future));
+      }
+      return results;
+    }
+    finally {
+      for (Future<R> future : futures) {
+        future.cancel(true);
+      }
+    }
+  }
 
-        final JsonObject postedTask = new Gson().fromJson(responseString, JsonObject.class);
-        final JsonObject stepSource = postedTask.getAsJsonArray("step-sources").get(0).getAsJsonObject();
-        task.setStepId(stepSource.getAsJsonPrimitive("id").getAsInt());
+  private static <T> T await(@NotNull Future<T> future) {
+    try {
+      ProgressIndicatorUtils.awaitWithCheckCanceled(future);
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException(e);
+    }
+    catch (ExecutionException e) {
+      // exceptions of uploads are converted to results, so only cancellation and errors get here
+      final Throwable cause = e.getCause();
+      if (cause instanceof Error) {
+        throw (Error)cause;
       }
-      catch (IOException e) {
-        LOG.error(e.getMessage());
+      throw cause instanceof ProcessCanceledException ? (ProcessCanceledException)cause : new ProcessCanceledException(cause);
+    }
+  }
+
+  @NotNull
+  private static String getError(@NotNull String message, @NotNull UploadResponse response) {
+    return message + ": " + getDetail(response.myBody);
+  }
+
+  @NotNull
+  private static String getDetail(@NotNull String responseString) {
+    try {
+      final JsonElement details = new JsonParser().parse(responseString);
+      if (details.isJsonObject() && details.getAsJsonObject().has("detail")) {
+        return details.getAsJsonObject().get("detail").getAsString();
       }
-    });
+    }
+    catch (JsonParseException ignored) {
+    }
+    return StringUtil.shortenTextWithEllipsis(responseString, 200, 0);
+  }
+
+  @NotNull
+  private static ExecutorService createUploadExecutor() {
+    // when the queue is full, the submitting thread waits for a free place instead of running the upload itself,
+    // so no more than UPLOAD_THREADS requests are sent at the same time
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(UPLOAD_THREADS, UPLOAD_THREADS, 60, TimeUnit.SECONDS,
+                                                               new LinkedBlockingQueue<>(UPLOAD_QUEUE_CAPACITY),
+                                                               ConcurrencyUtil.newNamedThreadFactory("Stepik Uploader"),
+                                                               CCStepicConnector::waitForQueue);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static void waitForQueue(@NotNull Runnable upload, @NotNull ThreadPoolExecutor executor) {
+    if (executor.isShutdown()) {
+      throw new RejectedExecutionException("Upload pool is shut down");
+    }
+    try {
+      executor.getQueue().put(upload);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException(e);
+    }
+  }
+
+  static class UploadResponse {
+    final int myStatusCode;
+    final String myBody;
+
+    UploadResponse(int statusCode, @NotNull String body) {
+      myStatusCode = statusCode;
+      myBody = body;
+    }
   }
 }
@@ -0,0 +1,72 @@
+package com.jetbrains.edu.coursecreator.stepik;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.jetbrains.edu.coursecreator.CCProjectService;
+import com.jetbrains.edu.learning.courseFormat.Lesson;
+import org.jetbrains.annotations.NotNull;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hashes of lessons and steps as they were published to Stepik last time, used to upload only changed items.
+ * Step hash is computed from the serialized step source, so it covers task files, tests and description.
+ * Lesson hash covers lesson metadata only.
+ * Stored with the course creator state in {@link CCProjectService}, which synchronizes on the manifest while saving it.
+ */
+public class CCStepikManifest {
+  public Map<Integer, String> lessons = new HashMap<>();
+  public Map<Integer, String> steps = new HashMap<>();
+
+  @NotNull
+  public static CCStepikManifest getInstance(@NotNull Project project) {
+    return CCProjectService.getInstance(project).getStepikManifest();
+  }
+
+  public synchronized boolean isEmpty() {
+    return lessons.isEmpty() && steps.isEmpty();
+  }
+
+  public synchronized boolean isLessonChanged(@NotNull Lesson lesson) {
+    return !lessonHash(lesson).equals(lessons.get(lesson.getId()));
+  }
+
+  public synchronized void lessonPublished(@NotNull Lesson lesson) {
+    lessons.put(lesson.getId(), lessonHash(lesson));
+  }
+
+  /**
+   * @param stepSource step source as it's sent to Stepik
+   */
+  public synchronized boolean isStepChanged(int stepId, @NotNull String stepSource) {
+    return !hash(stepSource).equals(steps.get(stepId));
+  }
+
+  public synchronized void stepPublished(int stepId, @NotNull String stepSource) {
+    steps.put(stepId, hash(stepSource));
+  }
+
+  public synchronized void stepRemoved(int stepId) {
+    steps.remove(stepId);
+  }
+
+  @NotNull
+  private static String lessonHash(@NotNull Lesson lesson) {
+    return hash(lesson.getName() + "\n" + lesson.getIndex());
+  }
+
+  @NotNull
+  private static String hash(@NotNull String text) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      return StringUtil.toHexString(digest.digest(text.getBytes(CharsetToolkit.UTF8_CHARSET)));
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
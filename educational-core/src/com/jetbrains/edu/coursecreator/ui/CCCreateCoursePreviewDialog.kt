@@ -44,7 +44,7 @@ class CCCreateCoursePreviewDialog(
     val courseName = myCourse.name
     val archiveName = if (courseName.isNullOrEmpty()) EduNames.COURSE else FileUtil.sanitizeFileName(courseName)
     val locationDir = folder.path
-    val isSuccessful = CCCreateCourseArchive.createCourseArchive(myProject, myModule, archiveName, locationDir, false)
+    val isSuccessful = CCCreateCourseArchive.createCourseArchive(myProject, archiveName, locationDir, false)
 
     if (isSuccessful) {
       val archivePath = FileUtil.join(FileUtil.toSystemDependentName(folder.path), archiveName + ".zip")
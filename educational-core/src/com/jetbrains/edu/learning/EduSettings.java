@@ -7,6 +7,7 @@ import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
 import com.intellij.util.messages.Topic;
 import com.intellij.util.xmlb.XmlSerializerUtil;
+import com.jetbrains.edu.learning.stepic.StepicResponseCache;
 import com.jetbrains.edu.learning.stepic.StepicUser;
 import com.jetbrains.edu.learning.ui.StudyStepicUserWidget;
 import org.jetbrains.annotations.Nullable;
@@ -18,6 +19,7 @@ public class EduSettings implements PersistentStateComponent<EduSettings> {
   public long LAST_TIME_CHECKED = 0;
   private boolean myEnableTestingFromSamples = false;
   public boolean myShouldUseJavaFx = StudyUtils.hasJavaFx();
+  public int SUBMISSION_CHECK_TIMEOUT = 5 * 60;
 
   public EduSettings() {
   }
@@ -30,6 +32,13 @@ public class EduSettings implements PersistentStateComponent<EduSettings> {
     LAST_TIME_CHECKED = timeChecked;
   }
 
+  /**
+   * @return how long results of a submission to Stepik are waited for, in seconds
+   */
+  public int getSubmissionCheckTimeout() {
+    return SUBMISSION_CHECK_TIMEOUT;
+  }
+
   @Nullable
   @Override
   public EduSettings getState() {
@@ -51,6 +60,10 @@ public class EduSettings implements PersistentStateComponent<EduSettings> {
   }
 
   public void setUser(@Nullable final StepicUser user) {
+    if (myUser != null && (user == null || user.getId() != myUser.getId())) {
+      // cached responses may contain private data of the previous user
+      ApplicationManager.getApplication().executeOnPooledThread(StepicResponseCache::clear);
+    }
     myUser = user;
     ApplicationManager.getApplication().getMessageBus().syncPublisher(SETTINGS_CHANGED).settingsChanged();
     updateStepicUserWidget();
@@ -0,0 +1,489 @@
+package com.jetbrains.edu.learning;
+
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.util.ReflectionUtil;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.jetbrains.edu.learning.courseFormat.*;
+import com.jetbrains.edu.learning.courseFormat.tasks.*;
+import com.jetbrains.edu.learning.stepic.StepicUser;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary form of the course stored next to study_project.xml.
+ * It contains the same properties as the xml and is read instead of it on project open.
+ * The xml stays the source of truth: the snapshot is used only if it was written together with the same xml,
+ * so migrations and manual edits of the xml are always respected.
+ */
+class StudyCourseSnapshot {
+  static final String FILE_NAME = "study_project.snapshot";
+  private static final int MAGIC = 0x45445553;
+  private static final int FORMAT_VERSION = 1;
+  private static final List<Class<? extends Task>> TASK_CLASSES = Arrays.asList(
+    PyCharmTask.class, ChoiceTask.class, TheoryTask.class, CodeTask.class, TaskWithSubtasks.class, OutputTask.class);
+
+  private StudyCourseSnapshot() {
+  }
+
+  /**
+   * @return serialized course or null if the course contains items which can't be stored in snapshot
+   */
+  @Nullable
+  static byte[] write(@NotNull Course course) {
+    if (course.getClass() != Course.class && course.getClass() != RemoteCourse.class) {
+      return null;
+    }
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      if (!writeCourse(out, course)) {
+        return null;
+      }
+    }
+    catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  @NotNull
+  static Course read(@NotNull byte[] bytes) throws IOException {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      return readCourse(in);
+    }
+  }
+
+  static long checksum(@NotNull byte[] bytes) {
+    final CRC32 crc = new CRC32();
+    crc.update(bytes);
+    return crc.getValue();
+  }
+
+  static long checksum(@NotNull Element element) {
+    return checksum(JDOMUtil.writeElement(element).getBytes(CharsetToolkit.UTF8_CHARSET));
+  }
+
+  static void save(@NotNull File file, @NotNull byte[] course, long xmlChecksum) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(course.length + 32);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(StudyTaskManager.CURRENT_VERSION);
+      out.writeLong(xmlChecksum);
+      out.writeLong(checksum(course));
+      out.writeInt(course.length);
+      out.write(course);
+    }
+    FileUtil.writeToFile(file, bytes.toByteArray());
+  }
+
+  /**
+   * @return serialized course if the snapshot is valid and was saved together with the xml, null otherwise
+   */
+  @Nullable
+  static byte[] load(@NotNull File file, long xmlChecksum) throws IOException {
+    if (!file.isFile()) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != StudyTaskManager.CURRENT_VERSION) {
+        return null;
+      }
+      if (in.readLong() != xmlChecksum) {
+        return null;
+      }
+      final long courseChecksum = in.readLong();
+      final int length = in.readInt();
+      if (length < 0 || length > file.length()) {
+        return null;
+      }
+      final byte[] course = new byte[length];
+      in.readFully(course);
+      return checksum(course) == courseChecksum ? course : null;
+    }
+    catch (EOFException e) {
+      return null;
+    }
+  }
+
+  private static boolean writeCourse(@NotNull DataOutput out, @NotNull Course course) throws IOException {
+    final boolean isRemote = course instanceof RemoteCourse;
+    out.writeBoolean(isRemote);
+    writeString(out, course.getName());
+    writeString(out, course.getDescription());
+    writeString(out, course.getLanguage());
+    writeString(out, course.getCourseType());
+    writeString(out, course.getCourseMode());
+    final List<StepicUser> authors = course.getAuthors();
+    DataInputOutputUtil.writeINT(out, authors.size());
+    for (StepicUser author : authors) {
+      DataInputOutputUtil.writeINT(out, author.getId());
+      writeString(out, author.getFirstName());
+      writeString(out, author.getLastName());
+    }
+    if (isRemote) {
+      final RemoteCourse remoteCourse = (RemoteCourse)course;
+      DataInputOutputUtil.writeINT(out, remoteCourse.getId());
+      writeDate(out, remoteCourse.getUpdateDate());
+      out.writeBoolean(remoteCourse.isAdaptive());
+      out.writeBoolean(remoteCourse.isLoadSolutions());
+      writeIntegers(out, remoteCourse.getSections());
+      writeIntegers(out, remoteCourse.getInstructors());
+    }
+    final List<Lesson> lessons = course.getLessons();
+    DataInputOutputUtil.writeINT(out, lessons.size());
+    for (Lesson lesson : lessons) {
+      if (!writeLesson(out, lesson)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @NotNull
+  private static Course readCourse(@NotNull DataInput in) throws IOException {
+    final Course course = in.readBoolean() ? new RemoteCourse() : new Course();
+    course.setName(readString(in));
+    course.setDescription(readString(in));
+    final String language = readString(in);
+    if (language != null) {
+      course.setLanguage(language);
+    }
+    course.setCourseType(readString(in));
+    course.setCourseMode(readString(in));
+    final int authorsCount = DataInputOutputUtil.readINT(in);
+    final List<StepicUser> authors = new ArrayList<>(authorsCount);
+    for (int i = 0; i < authorsCount; i++) {
+      final StepicUser author = StepicUser.createEmptyUser();
+      author.setId(DataInputOutputUtil.readINT(in));
+      author.setFirstName(readString(in));
+      author.setLastName(readString(in));
+      authors.add(author);
+    }
+    course.setAuthors(authors);
+    if (course instanceof RemoteCourse) {
+      final RemoteCourse remoteCourse = (RemoteCourse)course;
+      remoteCourse.setId(DataInputOutputUtil.readINT(in));
+      remoteCourse.setUpdateDate(readDate(in));
+      remoteCourse.setAdaptive(in.readBoolean());
+      remoteCourse.setLoadSolutions(in.readBoolean());
+      remoteCourse.setSections(readIntegers(in));
+      remoteCourse.setInstructors(readIntegers(in));
+    }
+    final int lessonsCount = DataInputOutputUtil.readINT(in);
+    final List<Lesson> lessons = new ArrayList<>(lessonsCount);
+    for (int i = 0; i < lessonsCount; i++) {
+      lessons.add(readLesson(in));
+    }
+    course.setLessons(lessons);
+    return course;
+  }
+
+  private static boolean writeLesson(@NotNull DataOutput out, @NotNull Lesson lesson) throws IOException {
+    DataInputOutputUtil.writeINT(out, lesson.getId());
+    writeDate(out, lesson.getUpdateDate());
+    writeString(out, lesson.getName());
+    DataInputOutputUtil.writeINT(out, lesson.getIndex());
+    final List<Task> tasks = lesson.getTaskList();
+    DataInputOutputUtil.writeINT(out, tasks.size());
+    for (Task task : tasks) {
+      if (!writeTask(out, task)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @NotNull
+  private static Lesson readLesson(@NotNull DataInput in) throws IOException {
+    final Lesson lesson = new Lesson();
+    lesson.setId(DataInputOutputUtil.readINT(in));
+    lesson.setUpdateDate(readDate(in));
+    lesson.setName(readString(in));
+    lesson.setIndex(DataInputOutputUtil.readINT(in));
+    final int tasksCount = DataInputOutputUtil.readINT(in);
+    for (int i = 0; i < tasksCount; i++) {
+      lesson.addTask(readTask(in));
+    }
+    return lesson;
+  }
+
+  private static boolean writeTask(@NotNull DataOutput out, @NotNull Task task) throws IOException {
+    final int taskClass = TASK_CLASSES.indexOf(task.getClass());
+    if (taskClass == -1) {
+      return false;
+    }
+    DataInputOutputUtil.writeINT(out, taskClass);
+    writeString(out, task.getName());
+    DataInputOutputUtil.writeINT(out, task.getIndex());
+    DataInputOutputUtil.writeINT(out, task.getStepId());
+    writeStatus(out, task.getStatus());
+    writeDate(out, task.getUpdateDate());
+    writeStrings(out, task.getTestsText());
+    writeStrings(out, task.getTaskTexts());
+    if (task instanceof TaskWithSubtasks) {
+      DataInputOutputUtil.writeINT(out, ((TaskWithSubtasks)task).getActiveSubtaskIndex());
+      DataInputOutputUtil.writeINT(out, ((TaskWithSubtasks)task).getLastSubtaskIndex());
+    }
+    if (task instanceof ChoiceTask) {
+      final ChoiceTask choiceTask = (ChoiceTask)task;
+      DataInputOutputUtil.writeINT(out, choiceTask.getChoiceVariants().size());
+      for (String variant : choiceTask.getChoiceVariants()) {
+        writeString(out, variant);
+      }
+      out.writeBoolean(choiceTask.isMultipleChoice());
+      writeIntegers(out, choiceTask.getSelectedVariants());
+    }
+    final Map<String, TaskFile> taskFiles = task.getTaskFiles();
+    DataInputOutputUtil.writeINT(out, taskFiles.size());
+    for (Map.Entry<String, TaskFile> entry : taskFiles.entrySet()) {
+      writeString(out, entry.getKey());
+      writeTaskFile(out, entry.getValue());
+    }
+    return true;
+  }
+
+  @NotNull
+  private static Task readTask(@NotNull DataInput in) throws IOException {
+    final int taskClass = DataInputOutputUtil.readINT(in);
+    if (taskClass < 0 || taskClass >= TASK_CLASSES.size()) {
+      throw new IOException("Unknown task class " + taskClass);
+    }
+    final Task task = ReflectionUtil.newInstance(TASK_CLASSES.get(taskClass));
+    task.setName(readString(in));
+    task.setIndex(DataInputOutputUtil.readINT(in));
+    task.setStepId(DataInputOutputUtil.readINT(in));
+    // status is set before task files are added, otherwise it's propagated to placeholders
+    task.setStatus(readStatus(in));
+    task.setUpdateDate(readDate(in));
+    task.setTestsText(readStrings(in));
+    task.setTaskTexts(readStrings(in));
+    if (task instanceof TaskWithSubtasks) {
+      ((TaskWithSubtasks)task).setActiveSubtaskIndex(DataInputOutputUtil.readINT(in));
+      ((TaskWithSubtasks)task).setLastSubtaskIndex(DataInputOutputUtil.readINT(in));
+    }
+    if (task instanceof ChoiceTask) {
+      final ChoiceTask choiceTask = (ChoiceTask)task;
+      final int variantsCount = DataInputOutputUtil.readINT(in);
+      final List<String> variants = new ArrayList<>(variantsCount);
+      for (int i = 0; i < variantsCount; i++) {
+        variants.add(readString(in));
+      }
+      choiceTask.setChoiceVariants(variants);
+      choiceTask.setMultipleChoice(in.readBoolean());
+      choiceTask.setSelectedVariants(readIntegers(in));
+    }
+    final int taskFilesCount = DataInputOutputUtil.readINT(in);
+    for (int i = 0; i < taskFilesCount; i++) {
+      final String name = readString(in);
+      task.getTaskFiles().put(name, readTaskFile(in));
+    }
+    return task;
+  }
+
+  private static void writeTaskFile(@NotNull DataOutput out, @NotNull TaskFile taskFile) throws IOException {
+    writeString(out, taskFile.name);
+    writeString(out, taskFile.text);
+    DataInputOutputUtil.writeINT(out, taskFile.getIndex());
+    out.writeBoolean(taskFile.isUserCreated());
+    out.writeBoolean(taskFile.isTrackChanges());
+    out.writeBoolean(taskFile.isTrackLengths());
+    out.writeBoolean(taskFile.isHighlightErrors());
+    final List<AnswerPlaceholder> placeholders = taskFile.getAnswerPlaceholders();
+    DataInputOutputUtil.writeINT(out, placeholders.size());
+    for (AnswerPlaceholder placeholder : placeholders) {
+      writePlaceholder(out, placeholder);
+    }
+  }
+
+  @NotNull
+  private static TaskFile readTaskFile(@NotNull DataInput in) throws IOException {
+    final TaskFile taskFile = new TaskFile();
+    taskFile.name = readString(in);
+    taskFile.text = readString(in);
+    taskFile.setIndex(DataInputOutputUtil.readINT(in));
+    taskFile.setUserCreated(in.readBoolean());
+    taskFile.setTrackChanges(in.readBoolean());
+    taskFile.setTrackLengths(in.readBoolean());
+    taskFile.setHighlightErrors(in.readBoolean());
+    final int placeholdersCount = DataInputOutputUtil.readINT(in);
+    final List<AnswerPlaceholder> placeholders = new ArrayList<>(placeholdersCount);
+    for (int i = 0; i < placeholdersCount; i++) {
+      placeholders.add(readPlaceholder(in));
+    }
+    taskFile.setAnswerPlaceholders(placeholders);
+    return taskFile;
+  }
+
+  private static void writePlaceholder(@NotNull DataOutput out, @NotNull AnswerPlaceholder placeholder) throws IOException {
+    // offsets and lengths are -1 for placeholders which aren't initialized yet, so they're written as plain ints
+    out.writeInt(placeholder.getOffset());
+    out.writeInt(placeholder.getLength());
+    out.writeInt(placeholder.getIndex());
+    final AnswerPlaceholder.MyInitialState initialState = placeholder.getInitialState();
+    out.writeBoolean(initialState != null);
+    if (initialState != null) {
+      out.writeInt(initialState.getOffset());
+      out.writeInt(initialState.getLength());
+    }
+    out.writeBoolean(placeholder.getSelected());
+    out.writeBoolean(placeholder.getUseLength());
+    final Map<Integer, AnswerPlaceholderSubtaskInfo> infos = placeholder.getSubtaskInfos();
+    DataInputOutputUtil.writeINT(out, infos.size());
+    for (Map.Entry<Integer, AnswerPlaceholderSubtaskInfo> entry : infos.entrySet()) {
+      DataInputOutputUtil.writeINT(out, entry.getKey());
+      writeSubtaskInfo(out, entry.getValue());
+    }
+  }
+
+  @NotNull
+  private static AnswerPlaceholder readPlaceholder(@NotNull DataInput in) throws IOException {
+    final AnswerPlaceholder placeholder = new AnswerPlaceholder();
+    placeholder.setOffset(in.readInt());
+    placeholder.setLength(in.readInt());
+    placeholder.setIndex(in.readInt());
+    if (in.readBoolean()) {
+      final int offset = in.readInt();
+      placeholder.setInitialState(new AnswerPlaceholder.MyInitialState(offset, in.readInt()));
+    }
+    placeholder.setSelected(in.readBoolean());
+    placeholder.setUseLength(in.readBoolean());
+    final int infosCount = DataInputOutputUtil.readINT(in);
+    for (int i = 0; i < infosCount; i++) {
+      final int subtaskIndex = DataInputOutputUtil.readINT(in);
+      placeholder.getSubtaskInfos().put(subtaskIndex, readSubtaskInfo(in));
+    }
+    return placeholder;
+  }
+
+  private static void writeSubtaskInfo(@NotNull DataOutput out, @NotNull AnswerPlaceholderSubtaskInfo info) throws IOException {
+    final List<String> hints = info.getHints();
+    DataInputOutputUtil.writeINT(out, hints.size());
+    for (String hint : hints) {
+      writeString(out, hint);
+    }
+    writeString(out, info.getPossibleAnswer());
+    writeString(out, info.getPlaceholderText());
+    writeString(out, info.getAnswer());
+    out.writeBoolean(info.getSelected());
+    writeStatus(out, info.getStatus());
+    out.writeBoolean(info.isHasFrame());
+    out.writeBoolean(info.isNeedInsertText());
+  }
+
+  @NotNull
+  private static AnswerPlaceholderSubtaskInfo readSubtaskInfo(@NotNull DataInput in) throws IOException {
+    final AnswerPlaceholderSubtaskInfo info = new AnswerPlaceholderSubtaskInfo();
+    final int hintsCount = DataInputOutputUtil.readINT(in);
+    final List<String> hints = new ArrayList<>(hintsCount);
+    for (int i = 0; i < hintsCount; i++) {
+      hints.add(readString(in));
+    }
+    info.setHints(hints);
+    info.setPossibleAnswer(readString(in));
+    info.setPlaceholderText(readString(in));
+    info.setAnswer(readString(in));
+    info.setSelected(in.readBoolean());
+    info.setStatus(readStatus(in));
+    info.setHasFrame(in.readBoolean());
+    info.setNeedInsertText(in.readBoolean());
+    return info;
+  }
+
+  private static void writeString(@NotNull DataOutput out, @Nullable String value) throws IOException {
+    if (value == null) {
+      DataInputOutputUtil.writeINT(out, -1);
+      return;
+    }
+    final byte[] bytes = value.getBytes(CharsetToolkit.UTF8_CHARSET);
+    DataInputOutputUtil.writeINT(out, bytes.length);
+    out.write(bytes);
+  }
+
+  @Nullable
+  private static String readString(@NotNull DataInput in) throws IOException {
+    final int length = DataInputOutputUtil.readINT(in);
+    if (length == -1) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, CharsetToolkit.UTF8_CHARSET);
+  }
+
+  private static void writeStrings(@NotNull DataOutput out, @NotNull Map<String, String> values) throws IOException {
+    DataInputOutputUtil.writeINT(out, values.size());
+    for (Map.Entry<String, String> entry : values.entrySet()) {
+      writeString(out, entry.getKey());
+      writeString(out, entry.getValue());
+    }
+  }
+
+  @NotNull
+  private static Map<String, String> readStrings(@NotNull DataInput in) throws IOException {
+    final int size = DataInputOutputUtil.readINT(in);
+    final Map<String, String> values = new HashMap<>(size);
+    for (int i = 0; i < size; i++) {
+      final String key = readString(in);
+      values.put(key, readString(in));
+    }
+    return values;
+  }
+
+  private static void writeIntegers(@NotNull DataOutput out, @Nullable List<Integer> values) throws IOException {
+    if (values == null) {
+      DataInputOutputUtil.writeINT(out, -1);
+      return;
+    }
+    DataInputOutputUtil.writeINT(out, values.size());
+    for (Integer value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  @Nullable
+  private static List<Integer> readIntegers(@NotNull DataInput in) throws IOException {
+    final int size = DataInputOutputUtil.readINT(in);
+    if (size == -1) {
+      return null;
+    }
+    final List<Integer> values = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      values.add(in.readInt());
+    }
+    return values;
+  }
+
+  private static void writeDate(@NotNull DataOutput out, @Nullable Date date) throws IOException {
+    out.writeBoolean(date != null);
+    if (date != null) {
+      out.writeLong(date.getTime());
+    }
+  }
+
+  @Nullable
+  private static Date readDate(@NotNull DataInput in) throws IOException {
+    return in.readBoolean() ? new Date(in.readLong()) : null;
+  }
+
+  private static void writeStatus(@NotNull DataOutput out, @Nullable StudyStatus status) throws IOException {
+    writeString(out, status != null ? status.name() : null);
+  }
+
+  @Nullable
+  private static StudyStatus readStatus(@NotNull DataInput in) throws IOException {
+    final String status = readString(in);
+    try {
+      return status != null ? StudyStatus.valueOf(status) : null;
+    }
+    catch (IllegalArgumentException e) {
+      throw new IOException("Unknown status " + status);
+    }
+  }
+}
@@ -16,6 +16,7 @@ import com.intellij.openapi.editor.EditorFactory;
 import com.intellij.openapi.editor.colors.EditorColorsListener;
 import com.intellij.openapi.editor.colors.EditorColorsManager;
 import com.intellij.openapi.editor.colors.EditorColorsScheme;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.ex.FileEditorManagerEx;
 import com.intellij.openapi.keymap.Keymap;
 import com.intellij.openapi.keymap.ex.KeymapManagerEx;
@@ -39,15 +40,15 @@ import com.intellij.util.messages.MessageBusConnection;
 import com.jetbrains.edu.learning.actions.StudyActionWithShortcut;
 import com.jetbrains.edu.learning.actions.StudyNextWindowAction;
 import com.jetbrains.edu.learning.actions.StudyPrevWindowAction;
+import com.jetbrains.edu.learning.builtInServer.EduCourseProjectsIndex;
 import com.jetbrains.edu.learning.core.EduNames;
 import com.jetbrains.edu.learning.core.EduUtils;
 import com.jetbrains.edu.learning.courseFormat.*;
 import com.jetbrains.edu.learning.courseFormat.tasks.Task;
-import com.jetbrains.edu.learning.courseGeneration.StudyGenerator;
 import com.jetbrains.edu.learning.editor.StudyEditorFactoryListener;
 import com.jetbrains.edu.learning.statistics.EduUsagesCollector;
-import com.jetbrains.edu.learning.stepic.EduStepicConnector;
 import com.jetbrains.edu.learning.stepic.EduStepicNames;
+import com.jetbrains.edu.learning.stepic.StudyCourseSynchronizer;
 import com.jetbrains.edu.learning.stepic.StudyStepikSolutionsLoader;
 import com.jetbrains.edu.learning.ui.StudyStepicUserWidget;
 import com.jetbrains.edu.learning.ui.StudyToolWindow;
@@ -57,7 +58,6 @@ import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
 import javax.swing.event.HyperlinkEvent;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -167,16 +167,7 @@ public class StudyProjectComponent implements ProjectComponent {
                          @Override
                          public void hyperlinkUpdate(@NotNull Notification notification, @NotNull HyperlinkEvent event) {
                            FileEditorManagerEx.getInstanceEx(myProject).closeAllFiles();
-
-                           ProgressManager.getInstance().runProcessWithProgressSynchronously(() -> {
-                             ProgressManager.getInstance().getProgressIndicator().setIndeterminate(true);
-                             return execCancelable(() -> {
-                               updateCourse();
-                               return true;
-                             });
-                           }, "Updating Course", true, myProject);
-                           EduUtils.synchronize();
-                           course.setUpdated();
+                           updateCourse();
                          }
                        });
     notification.notify(myProject);
@@ -202,74 +193,20 @@ public class StudyProjectComponent implements ProjectComponent {
 
   private void updateCourse() {
     final Course currentCourse = StudyTaskManager.getInstance(myProject).getCourse();
-    if (currentCourse == null || !(currentCourse instanceof RemoteCourse)) return;
-    final Course course = EduStepicConnector.getCourse(myProject, (RemoteCourse)currentCourse);
-    if (course == null) return;
-    course.initCourse(false);
-
-    EduPluginConfigurator configurator = EduPluginConfigurator.INSTANCE.forLanguage(course.getLanguageById());
-    if (configurator == null) {
-      LOG.info("EduPluginConfigurator not found for language " + course.getLanguageById().getDisplayName());
+    if (!(currentCourse instanceof RemoteCourse)) return;
+    final RemoteCourse course = (RemoteCourse)currentCourse;
+    final StudyCourseSynchronizer.CourseChanges changes = ProgressManager.getInstance().runProcessWithProgressSynchronously(() -> {
+      ProgressManager.getInstance().getProgressIndicator().setIndeterminate(true);
+      return execCancelable(() -> StudyCourseSynchronizer.collectChanges(course));
+    }, "Updating Course", true, myProject);
+    if (changes == null) {
+      LOG.warn("Failed to get course changes from Stepik");
       return;
     }
 
-    final ArrayList<Lesson> updatedLessons = new ArrayList<>();
-
-    int lessonIndex = 0;
-    for (Lesson lesson : course.getLessons(true)) {
-      lessonIndex += 1;
-      Lesson studentLesson = currentCourse.getLesson(lesson.getId());
-      final String lessonDirName = EduNames.LESSON + String.valueOf(lessonIndex);
-
-      final VirtualFile baseDir = myProject.getBaseDir();
-      final VirtualFile lessonDir = baseDir.findChild(lessonDirName);
-      if (lessonDir == null) {
-        try {
-          StudyGenerator.createLesson(lesson, baseDir);
-        }
-        catch (IOException e) {
-          LOG.error("Failed to create lesson");
-        }
-        lesson.setIndex(lessonIndex);
-        lesson.initLesson(currentCourse, false);
-        for (int i = 1; i <= lesson.getTaskList().size(); i++) {
-          Task task = lesson.getTaskList().get(i - 1);
-          task.setIndex(i);
-        }
-        updatedLessons.add(lesson);
-        continue;
-      }
-      studentLesson.setIndex(lessonIndex);
-      updatedLessons.add(studentLesson);
-
-      int index = 0;
-      final ArrayList<Task> tasks = new ArrayList<>();
-      for (Task task : lesson.getTaskList()) {
-        index += 1;
-        final Task studentTask = studentLesson.getTask(task.getStepId());
-        if (studentTask != null && StudyStatus.Solved.equals(studentTask.getStatus())) {
-          studentTask.setIndex(index);
-          tasks.add(studentTask);
-          continue;
-        }
-        task.initTask(studentLesson, false);
-        task.setIndex(index);
-
-        final String taskDirName = EduNames.TASK + String.valueOf(index);
-        final VirtualFile taskDir = lessonDir.findChild(taskDirName);
-
-        if (taskDir != null) return;
-        try {
-          StudyGenerator.createTask(task, lessonDir);
-        }
-        catch (IOException e) {
-          LOG.error("Failed to create task");
-        }
-        tasks.add(task);
-      }
-      studentLesson.updateTaskList(tasks);
-    }
-    currentCourse.setLessons(updatedLessons);
+    FileDocumentManager.getInstance().saveAllDocuments();
+    ApplicationManager.getApplication().runWriteAction(() -> StudyCourseSynchronizer.applyChanges(myProject, course, changes));
+    EduUtils.synchronize();
 
     final Notification notification =
       new Notification("Update.course", "Course update", "Current course is synchronized", NotificationType.INFORMATION);
@@ -300,6 +237,7 @@ public class StudyProjectComponent implements ProjectComponent {
   public void projectClosed() {
     final Course course = StudyTaskManager.getInstance(myProject).getCourse();
     if (course != null) {
+      EduCourseProjectsIndex.getInstance().projectClosed(myProject, course);
       final ToolWindow toolWindow = ToolWindowManager.getInstance(myProject).getToolWindow(StudyToolWindowFactory.STUDY_TOOL_WINDOW);
       if (toolWindow != null) {
         toolWindow.getContentManager().removeAllContents(false);
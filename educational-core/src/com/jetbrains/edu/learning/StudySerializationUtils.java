@@ -2,6 +2,9 @@ package com.jetbrains.edu.learning;
 
 import com.google.gson.*;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
@@ -24,6 +27,7 @@ import org.jdom.Content;
 import org.jdom.Element;
 import org.jdom.output.XMLOutputter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
@@ -553,14 +557,98 @@ public class StudySerializationUtils {
     public static final String NAME = "name";
     public static final String LAST_SUBTASK = "last_subtask_index";
 
+    /**
+     * Gson configurations used across the plugin. Gson instances are thread-safe and cache reflective type adapters,
+     * so they are created once and shared.
+     */
+    public enum GsonProfile {
+      /** Stepik API responses */
+      STEPIK_API,
+      /** Stepik API request bodies and responses to them */
+      STEPIK_REQUEST,
+      /** Step sources uploaded by course creators */
+      STEP_SOURCE_UPLOAD,
+      /** course.json written to course archive */
+      COURSE_ARCHIVE,
+      /** course.json read from course archive */
+      COURSE_ARCHIVE_READER,
+      /** Fields marked with {@link com.google.gson.annotations.Expose} only, used inside type adapters */
+      EXPOSED_ONLY,
+      /** Diagnostic dumps, e.g. Stepik request metrics */
+      DIAGNOSTICS
+    }
+
+    private static final Map<GsonProfile, Gson> ourGsons = createGsons();
+
     private Json() {
     }
 
-    public static class StepicStepOptionsAdapter implements JsonDeserializer<StepicWrappers.StepOptions> {
+    @NotNull
+    public static Gson getGson(@NotNull GsonProfile profile) {
+      return ourGsons.get(profile);
+    }
+
+    @NotNull
+    private static Map<GsonProfile, Gson> createGsons() {
+      final Map<GsonProfile, Gson> gsons = new EnumMap<>(GsonProfile.class);
+      gsons.put(GsonProfile.STEPIK_API, new GsonBuilder()
+        .registerTypeAdapter(StepicWrappers.StepOptions.class, new StepicStepOptionsAdapter())
+        .setDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'")
+        .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+        .create());
+      gsons.put(GsonProfile.STEPIK_REQUEST, new Gson());
+      gsons.put(GsonProfile.STEP_SOURCE_UPLOAD, new GsonBuilder().setPrettyPrinting().excludeFieldsWithoutExposeAnnotation()
+        .registerTypeAdapter(AnswerPlaceholder.class, new StepicAnswerPlaceholderAdapter())
+        .create());
+      gsons.put(GsonProfile.COURSE_ARCHIVE, new GsonBuilder().setPrettyPrinting().excludeFieldsWithoutExposeAnnotation()
+        .registerTypeAdapter(Task.class, new TaskAdapter())
+        .create());
+      gsons.put(GsonProfile.COURSE_ARCHIVE_READER, new GsonBuilder()
+        .registerTypeAdapter(Task.class, new TaskAdapter())
+        .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+        .create());
+      gsons.put(GsonProfile.EXPOSED_ONLY, new GsonBuilder().setPrettyPrinting().excludeFieldsWithoutExposeAnnotation().create());
+      gsons.put(GsonProfile.DIAGNOSTICS, new GsonBuilder().setPrettyPrinting().create());
+      return gsons;
+    }
+
+    /**
+     * Step options are read from the stream field by field: test and description files are the heaviest part of a step
+     * and need no format conversion, so they never end up in an intermediate json tree.
+     */
+    public static class StepicStepOptionsAdapter extends TypeAdapter<StepicWrappers.StepOptions> {
+      private static final Gson ourStepOptionsGson =
+        new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES).create();
+
       @Override
-      public StepicWrappers.StepOptions deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
-        throws JsonParseException {
-        JsonObject stepOptionsJson = json.getAsJsonObject();
+      public void write(JsonWriter out, StepicWrappers.StepOptions value) throws IOException {
+        ourStepOptionsGson.toJson(value, StepicWrappers.StepOptions.class, out);
+      }
+
+      @Override
+      public StepicWrappers.StepOptions read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+          return null;
+        }
+        JsonObject stepOptionsJson = new JsonObject();
+        List<StepicWrappers.FileWrapper> tests = null;
+        List<StepicWrappers.FileWrapper> texts = null;
+        in.beginObject();
+        while (in.hasNext()) {
+          final String name = in.nextName();
+          if (TESTS.equals(name)) {
+            tests = readFileWrappers(in);
+          }
+          else if (TEXTS.equals(name)) {
+            texts = readFileWrappers(in);
+          }
+          else {
+            stepOptionsJson.add(name, new JsonParser().parse(in));
+          }
+        }
+        in.endObject();
+
         JsonPrimitive versionJson = stepOptionsJson.getAsJsonPrimitive(FORMAT_VERSION);
         int version = 1;
         if (versionJson != null) {
@@ -570,47 +658,71 @@ public class StudySerializationUtils {
           case 1:
             stepOptionsJson = convertToSecondVersion(stepOptionsJson);
           case 2:
-            stepOptionsJson = convertToThirdVersion(stepOptionsJson);
+            convertToThirdVersion(stepOptionsJson, tests, texts);
           // uncomment for future versions
           //case 3:
           //  stepOptionsJson = convertToFourthVersion(stepOptionsJson);
         }
         convertSubtaskInfosToMap(stepOptionsJson);
-        StepicWrappers.StepOptions stepOptions =
-          new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES).create()
-            .fromJson(stepOptionsJson, StepicWrappers.StepOptions.class);
+        StepicWrappers.StepOptions stepOptions = ourStepOptionsGson.fromJson(stepOptionsJson, StepicWrappers.StepOptions.class);
+        stepOptions.test = tests;
+        stepOptions.text = texts;
         stepOptions.formatVersion = EduStepicConnector.CURRENT_VERSION;
         return stepOptions;
       }
 
-      private static JsonObject convertToThirdVersion(JsonObject stepOptionsJson) {
-        if (!stepOptionsJson.has(LAST_SUBTASK)) return stepOptionsJson;
-        final int lastSubtaskIndex = stepOptionsJson.get(LAST_SUBTASK).getAsInt();
-        if (lastSubtaskIndex == 0) return stepOptionsJson;
-        final JsonArray tests = stepOptionsJson.getAsJsonArray(TESTS);
-        if (tests.size() > 0) {
-          final JsonObject fileWrapper = tests.get(0).getAsJsonObject();
-          if (fileWrapper.has(NAME)) {
-            replaceWithSubtask(fileWrapper);
-          }
+      @Nullable
+      private static List<StepicWrappers.FileWrapper> readFileWrappers(@NotNull JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+          return null;
         }
-        final JsonArray descriptions = stepOptionsJson.getAsJsonArray(TEXTS);
-        if (descriptions != null && descriptions.size() > 0) {
-          final JsonObject fileWrapper = descriptions.get(0).getAsJsonObject();
-          if (fileWrapper.has(NAME)) {
-            replaceWithSubtask(fileWrapper);
+        final List<StepicWrappers.FileWrapper> wrappers = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+          String name = null;
+          String text = null;
+          in.beginObject();
+          while (in.hasNext()) {
+            final String property = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+              in.nextNull();
+            }
+            else if (NAME.equals(property)) {
+              name = in.nextString();
+            }
+            else if (TEXT.equals(property)) {
+              text = in.nextString();
+            }
+            else {
+              in.skipValue();
+            }
           }
+          in.endObject();
+          wrappers.add(new StepicWrappers.FileWrapper(name, text));
         }
-        return stepOptionsJson;
+        in.endArray();
+        return wrappers;
+      }
+
+      private static void convertToThirdVersion(JsonObject stepOptionsJson,
+                                                @Nullable List<StepicWrappers.FileWrapper> tests,
+                                                @Nullable List<StepicWrappers.FileWrapper> descriptions) {
+        if (!stepOptionsJson.has(LAST_SUBTASK)) return;
+        final int lastSubtaskIndex = stepOptionsJson.get(LAST_SUBTASK).getAsInt();
+        if (lastSubtaskIndex == 0) return;
+        replaceWithSubtask(tests);
+        replaceWithSubtask(descriptions);
       }
 
-      private static void replaceWithSubtask(JsonObject fileWrapper) {
-        final String file = fileWrapper.get(NAME).getAsString();
-        final String extension = FileUtilRt.getExtension(file);
-        final String name = FileUtil.getNameWithoutExtension(file);
+      private static void replaceWithSubtask(@Nullable List<StepicWrappers.FileWrapper> fileWrappers) {
+        if (fileWrappers == null || fileWrappers.isEmpty()) return;
+        final StepicWrappers.FileWrapper fileWrapper = fileWrappers.get(0);
+        if (fileWrapper.name == null) return;
+        final String extension = FileUtilRt.getExtension(fileWrapper.name);
+        final String name = FileUtil.getNameWithoutExtension(fileWrapper.name);
         if (!name.contains(EduNames.SUBTASK_MARKER)) {
-          fileWrapper.remove(NAME);
-          fileWrapper.add(NAME, new JsonPrimitive(name + "_subtask0." + extension));
+          fileWrappers.set(0, new StepicWrappers.FileWrapper(name + "_subtask0." + extension, fileWrapper.text));
         }
       }
 
@@ -630,7 +742,7 @@ public class StudySerializationUtils {
       }
 
       private static JsonObject convertToSecondVersion(JsonObject stepOptionsJson) {
-        Gson gson = new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES).create();
+        Gson gson = ourStepOptionsGson;
         final JsonArray files = stepOptionsJson.getAsJsonArray(FILES);
         if (files != null) {
           for (JsonElement taskFileElement : files) {
@@ -723,7 +835,7 @@ public class StudySerializationUtils {
 
       @Override
       public JsonElement serialize(Task src, Type typeOfSrc, JsonSerializationContext context) {
-        Gson gson = new GsonBuilder().setPrettyPrinting().excludeFieldsWithoutExposeAnnotation().create();
+        Gson gson = getGson(GsonProfile.EXPOSED_ONLY);
         JsonElement tree = gson.toJsonTree(src);
         final JsonObject task = tree.getAsJsonObject();
         task.add(TASK_TYPE, new JsonPrimitive(src.getTaskType()));
@@ -732,7 +844,7 @@ public class StudySerializationUtils {
 
       @Override
       public Task deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-        Gson gson = new GsonBuilder().setPrettyPrinting().excludeFieldsWithoutExposeAnnotation().create();
+        Gson gson = getGson(GsonProfile.EXPOSED_ONLY);
         final JsonObject object = json.getAsJsonObject();
         if (object.has(TASK_TYPE)) {
           final String taskType = object.get(TASK_TYPE).getAsString();
@@ -757,7 +869,7 @@ public class StudySerializationUtils {
     public static class StepicAnswerPlaceholderAdapter implements JsonSerializer<AnswerPlaceholder> {
       @Override
       public JsonElement serialize(AnswerPlaceholder placeholder, Type typeOfSrc, JsonSerializationContext context) {
-        Gson gson = new GsonBuilder().setPrettyPrinting().excludeFieldsWithoutExposeAnnotation().create();
+        Gson gson = getGson(GsonProfile.EXPOSED_ONLY);
         JsonElement answerPlaceholderJson = gson.toJsonTree(placeholder);
         JsonObject answerPlaceholderObject = answerPlaceholderJson.getAsJsonObject();
         JsonObject subtaskInfos = answerPlaceholderObject.getAsJsonObject(SUBTASK_INFOS);
@@ -1,6 +1,5 @@
 package com.jetbrains.edu.learning;
 
-import com.intellij.ide.projectView.ProjectView;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.undo.DocumentReferenceManager;
 import com.intellij.openapi.command.undo.UndoManager;
@@ -74,7 +73,7 @@ public class StudySubtaskUtils {
       }
       EduDocumentListener listener = null;
       if (!FileEditorManager.getInstance(project).isFileOpen(virtualFile)) {
-        listener = new EduDocumentListener(taskFile, true);
+        listener = new EduDocumentListener(project, taskFile, true);
         document.addDocumentListener(listener);
       }
       updatePlaceholderTexts(document, taskFile, fromSubtaskIndex, toSubtaskIndex);
@@ -168,7 +167,9 @@ public class StudySubtaskUtils {
 
   public static void updateUI(@NotNull Project project, @NotNull Task task, boolean navigateToTask) {
     StudyCheckUtils.drawAllPlaceholders(project, task);
-    ProjectView.getInstance(project).refresh();
+    // subtask files and the number of subtasks may change as well, so the node is updated even if the state is the same
+    task.notifyChanged(null);
+    StudyUtils.updateChangedTaskNodes(project);
     StudyToolWindow toolWindow = StudyUtils.getStudyToolWindow(project);
     if (toolWindow != null) {
       if (task.getTaskDescription() == null) {
@@ -0,0 +1,172 @@
+package com.jetbrains.edu.learning;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import com.intellij.util.containers.ContainerUtil;
+import com.jetbrains.edu.learning.core.EduNames;
+import com.jetbrains.edu.learning.core.EduUtils;
+import com.jetbrains.edu.learning.courseFormat.Course;
+import com.jetbrains.edu.learning.courseFormat.Lesson;
+import com.jetbrains.edu.learning.courseFormat.StudyCourseListener;
+import com.jetbrains.edu.learning.courseFormat.TaskFile;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Remembers tasks and task files which files of the project belong to.
+ * The index is cleared when files or directories are created, deleted, moved or renamed, when structure of the course
+ * changes, see {@link StudyCourseListener#structureChanged(Course)}, and when course creators move lessons or tasks,
+ * see {@link #clear()}, so found tasks and task files aren't validated on lookup.
+ * Files which don't belong to any task aren't remembered, so the index is bounded by the number of task files.
+ */
+public class StudyTaskFileIndex {
+  private final Map<VirtualFile, Entry<TaskFile>> myTaskFiles = ContainerUtil.newConcurrentMap();
+  private final Map<VirtualFile, Entry<Task>> myTasks = ContainerUtil.newConcurrentMap();
+  private final Project myProject;
+
+  public StudyTaskFileIndex(@NotNull Project project) {
+    myProject = project;
+    project.getMessageBus().connect().subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          if (isStructureChange(event)) {
+            clear();
+            return;
+          }
+        }
+      }
+    });
+    ApplicationManager.getApplication().getMessageBus().connect(project).subscribe(StudyCourseListener.TOPIC, new StudyCourseListener() {
+      @Override
+      public void structureChanged(@NotNull Course course) {
+        if (course == StudyTaskManager.getInstance(myProject).getCourse()) {
+          clear();
+        }
+      }
+    });
+  }
+
+  public static StudyTaskFileIndex getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, StudyTaskFileIndex.class);
+  }
+
+  /**
+   * Should be called after course structure is changed without changes of files, e.g. a file is added to a task
+   */
+  public void clear() {
+    myTaskFiles.clear();
+    myTasks.clear();
+  }
+
+  @Nullable
+  public TaskFile getTaskFile(@NotNull VirtualFile file) {
+    return get(myTaskFiles, file, StudyTaskFileIndex::findTaskFile);
+  }
+
+  @Nullable
+  public Task getTask(@NotNull VirtualFile file) {
+    return get(myTasks, file, StudyTaskFileIndex::findTask);
+  }
+
+  @Nullable
+  private <T> T get(@NotNull Map<VirtualFile, Entry<T>> entries, @NotNull VirtualFile file,
+                    @NotNull BiFunction<Course, VirtualFile, T> finder) {
+    final Course course = StudyTaskManager.getInstance(myProject).getCourse();
+    if (course == null) {
+      return null;
+    }
+    final Entry<T> entry = entries.get(file);
+    if (entry != null && entry.myCourse == course) {
+      return entry.myValue;
+    }
+    final T value = finder.apply(course, file);
+    if (value != null) {
+      entries.put(file, new Entry<>(course, value));
+    }
+    else if (entry != null) {
+      entries.remove(file);
+    }
+    return value;
+  }
+
+  private static boolean isStructureChange(@NotNull VFileEvent event) {
+    if (event instanceof VFilePropertyChangeEvent) {
+      return VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent)event).getPropertyName());
+    }
+    return event instanceof VFileCreateEvent || event instanceof VFileDeleteEvent ||
+           event instanceof VFileMoveEvent || event instanceof VFileCopyEvent;
+  }
+
+  @Nullable
+  private static TaskFile findTaskFile(@NotNull Course course, @NotNull VirtualFile file) {
+    VirtualFile taskDir = StudyUtils.getTaskDir(file);
+    if (taskDir == null) {
+      return null;
+    }
+    //need this because of multi-module generation
+    if (EduNames.SRC.equals(taskDir.getName())) {
+      taskDir = taskDir.getParent();
+      if (taskDir == null) {
+        return null;
+      }
+    }
+    final String taskDirName = taskDir.getName();
+    if (taskDirName.contains(EduNames.TASK)) {
+      final VirtualFile lessonDir = taskDir.getParent();
+      if (lessonDir != null) {
+        int lessonIndex = EduUtils.getIndex(lessonDir.getName(), EduNames.LESSON);
+        List<Lesson> lessons = course.getLessons();
+        if (!StudyUtils.indexIsValid(lessonIndex, lessons)) {
+          return null;
+        }
+        final Lesson lesson = lessons.get(lessonIndex);
+        int taskIndex = EduUtils.getIndex(taskDirName, EduNames.TASK);
+        final List<Task> tasks = lesson.getTaskList();
+        if (!StudyUtils.indexIsValid(taskIndex, tasks)) {
+          return null;
+        }
+        final Task task = tasks.get(taskIndex);
+        return task.getFile(StudyUtils.pathRelativeToTask(file));
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private static Task findTask(@NotNull Course course, @NotNull VirtualFile file) {
+    final VirtualFile taskDir = StudyUtils.getTaskDir(file);
+    if (taskDir == null) {
+      return null;
+    }
+    final VirtualFile lessonDir = taskDir.getParent();
+    if (lessonDir == null) {
+      return null;
+    }
+    final Lesson lesson = course.getLesson(lessonDir.getName());
+    if (lesson == null) {
+      return null;
+    }
+    return lesson.getTask(taskDir.getName());
+  }
+
+  private static class Entry<T> {
+    private final Course myCourse;
+    private final T myValue;
+
+    private Entry(@NotNull Course course, @NotNull T value) {
+      myCourse = course;
+      myValue = value;
+    }
+  }
+}
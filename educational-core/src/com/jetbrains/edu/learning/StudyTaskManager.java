@@ -3,6 +3,7 @@ package com.jetbrains.edu.learning;
 import com.intellij.ide.fileTemplates.FileTemplate;
 import com.intellij.ide.fileTemplates.FileTemplateManager;
 import com.intellij.ide.fileTemplates.FileTemplateUtil;
+import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.*;
 import com.intellij.openapi.diagnostic.Logger;
@@ -10,6 +11,7 @@ import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.startup.StartupManager;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDirectory;
 import com.intellij.psi.PsiManager;
@@ -17,6 +19,7 @@ import com.intellij.ui.JBColor;
 import com.intellij.util.containers.hash.HashMap;
 import com.intellij.util.xmlb.XmlSerializer;
 import com.intellij.util.xmlb.annotations.Transient;
+import com.jetbrains.edu.learning.builtInServer.EduCourseProjectsIndex;
 import com.jetbrains.edu.learning.core.EduNames;
 import com.jetbrains.edu.learning.courseFormat.*;
 import com.jetbrains.edu.learning.courseFormat.tasks.Task;
@@ -26,6 +29,8 @@ import org.jdom.output.XMLOutputter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -42,7 +47,16 @@ import static com.jetbrains.edu.learning.StudySerializationUtils.Xml.REMOTE_COUR
 public class StudyTaskManager implements PersistentStateComponent<Element>, DumbAware {
   private static final Logger LOG = Logger.getInstance(StudyTaskManager.class);
   public static final int CURRENT_VERSION = 6;
+  /**
+   * Disables binary snapshot of the course, see {@link StudyCourseSnapshot}
+   */
+  public static final String DISABLE_SNAPSHOT_PROPERTY = "Edu.DisableCourseSnapshot";
   private Course myCourse;
+  // snapshot of the course loaded on project open, the course is read from it on the first access
+  private volatile byte[] myPendingSnapshot;
+  // the course serialized on the last save with checksum of its snapshot, used to skip serialization of unchanged course
+  private Element myCourseElement;
+  private long mySnapshotChecksum;
   public int VERSION = CURRENT_VERSION;
 
   public final Map<Task, List<UserTest>> myUserTests = new HashMap<>();
@@ -61,14 +75,40 @@ public class StudyTaskManager implements PersistentStateComponent<Element>, Dumb
   }
 
   public void setCourse(Course course) {
-    myCourse = course;
+    synchronized (this) {
+      myPendingSnapshot = null;
+      myCourse = course;
+    }
   }
 
+  /**
+   * Course is serialized separately, see {@link #serialize()}
+   */
+  @Transient
   @Nullable
   public Course getCourse() {
+    if (myPendingSnapshot != null) {
+      readPendingSnapshot();
+    }
     return myCourse;
   }
 
+  private synchronized void readPendingSnapshot() {
+    if (myPendingSnapshot == null) {
+      return;
+    }
+    try {
+      final Course course = StudyCourseSnapshot.read(myPendingSnapshot);
+      course.initCourse(true);
+      myCourse = course;
+    }
+    catch (IOException e) {
+      // checksum of the snapshot is valid, so the format itself is broken
+      LOG.error("Failed to read course snapshot", e);
+    }
+    myPendingSnapshot = null;
+  }
+
   public void setStatus(AnswerPlaceholder placeholder, StudyStatus status) {
     placeholder.setStatus(status);
   }
@@ -119,11 +159,14 @@ public class StudyTaskManager implements PersistentStateComponent<Element>, Dumb
 
   @Nullable
   @Override
-  public Element getState() {
-    if (myCourse == null) {
+  public synchronized Element getState() {
+    if (myCourse == null && myPendingSnapshot == null) {
       return null;
     }
 
+    if (myCourse != null && myProject != null) {
+      EduCourseProjectsIndex.getInstance().projectSaved(myProject, myCourse);
+    }
     return serialize();
   }
 
@@ -132,24 +175,75 @@ public class StudyTaskManager implements PersistentStateComponent<Element>, Dumb
     Element el = new Element("taskManager");
     Element taskManagerElement = new Element(StudySerializationUtils.Xml.MAIN_ELEMENT);
     XmlSerializer.serializeInto(this, taskManagerElement);
+    // course goes first as it did when it was serialized as a property
+    taskManagerElement.addContent(0, getCourseElement().clone());
+    el.addContent(taskManagerElement);
+    return el;
+  }
 
-    if (myCourse instanceof RemoteCourse) {
-      try {
-        Element course = new Element(REMOTE_COURSE);
-        //noinspection RedundantCast
-        XmlSerializer.serializeInto((RemoteCourse)myCourse, course);
+  /**
+   * Course is serialized again only if the checksum of its snapshot changed since the last save.
+   * Modification count of the course can't be used here, as not every persistent setter notifies the course,
+   * e.g. {@link AnswerPlaceholder#reset()}.
+   */
+  @NotNull
+  private Element getCourseElement() {
+    if (myPendingSnapshot != null && myCourseElement != null) {
+      return myCourseElement;
+    }
+    final byte[] snapshot = StudyCourseSnapshot.write(myCourse);
+    final long checksum = snapshot != null ? StudyCourseSnapshot.checksum(snapshot) : 0;
+    if (snapshot != null && myCourseElement != null && checksum == mySnapshotChecksum) {
+      return myCourseElement;
+    }
+    myCourseElement = serializeCourse(myCourse);
+    mySnapshotChecksum = checksum;
+    if (snapshot != null) {
+      saveSnapshot(snapshot);
+    }
+    return myCourseElement;
+  }
 
-        final Element xmlCourse = StudySerializationUtils.Xml.getChildWithName(taskManagerElement, StudySerializationUtils.COURSE);
-        xmlCourse.removeContent();
-        xmlCourse.addContent(course);
-      }
-      catch (StudySerializationUtils.StudyUnrecognizedFormatException e) {
-        LOG.error("Failed to serialize remote course");
-      }
+  @NotNull
+  private static Element serializeCourse(@NotNull Course course) {
+    final Element courseElement;
+    if (course instanceof RemoteCourse) {
+      courseElement = new Element(REMOTE_COURSE);
+      XmlSerializer.serializeInto(course, courseElement);
     }
+    else {
+      courseElement = XmlSerializer.serialize(course);
+    }
+    final Element option = new Element(StudySerializationUtils.Xml.OPTION);
+    option.setAttribute(StudySerializationUtils.Xml.NAME, StudySerializationUtils.COURSE);
+    option.addContent(courseElement);
+    return option;
+  }
 
-    el.addContent(taskManagerElement);
-    return el;
+  private void saveSnapshot(@NotNull byte[] snapshot) {
+    final File file = getSnapshotFile();
+    if (file == null) {
+      return;
+    }
+    try {
+      StudyCourseSnapshot.save(file, snapshot, StudyCourseSnapshot.checksum(myCourseElement));
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to save course snapshot: " + e.getMessage());
+      FileUtil.delete(file);
+    }
+  }
+
+  @Nullable
+  private File getSnapshotFile() {
+    if (myProject == null || myProject.isDefault() || PropertiesComponent.getInstance().getBoolean(DISABLE_SNAPSHOT_PROPERTY)) {
+      return null;
+    }
+    final String basePath = myProject.getBasePath();
+    if (StringUtil.isEmpty(basePath)) {
+      return null;
+    }
+    return new File(new File(basePath, Project.DIRECTORY_STORE_FOLDER), StudyCourseSnapshot.FILE_NAME);
   }
 
   @Override
@@ -176,7 +270,7 @@ public class StudyTaskManager implements PersistentStateComponent<Element>, Dumb
         //case 6:
         //  state = StudySerializationUtils.Xml.convertToSixthVersion(state, myProject);
       }
-      deserialize(state);
+      deserialize(state, version == CURRENT_VERSION);
       VERSION = CURRENT_VERSION;
       if (myCourse != null) {
         myCourse.initCourse(true);
@@ -211,19 +305,59 @@ public class StudyTaskManager implements PersistentStateComponent<Element>, Dumb
     }));
   }
 
-  private void deserialize(Element state) throws StudySerializationUtils.StudyUnrecognizedFormatException {
+  private synchronized void deserialize(Element state, boolean useSnapshot)
+    throws StudySerializationUtils.StudyUnrecognizedFormatException {
     final Element taskManagerElement = state.getChild(StudySerializationUtils.Xml.MAIN_ELEMENT);
     if (taskManagerElement == null) {
       throw new StudySerializationUtils.StudyUnrecognizedFormatException();
     }
     XmlSerializer.deserializeInto(this, taskManagerElement);
-    final Element xmlCourse = StudySerializationUtils.Xml.getChildWithName(taskManagerElement, StudySerializationUtils.COURSE);
+    myCourse = null;
+    myPendingSnapshot = null;
+    myCourseElement = null;
+    final Element xmlCourse = StudySerializationUtils.Xml.getChildWithName(taskManagerElement, StudySerializationUtils.COURSE, true);
+    if (xmlCourse == null) {
+      return;
+    }
+    if (useSnapshot && loadSnapshot(xmlCourse)) {
+      return;
+    }
     final Element remoteCourseElement = xmlCourse.getChild(REMOTE_COURSE);
     if (remoteCourseElement != null) {
       final RemoteCourse remoteCourse = new RemoteCourse();
       XmlSerializer.deserializeInto(remoteCourse, remoteCourseElement);
       myCourse = remoteCourse;
     }
+    else {
+      final Element courseElement = xmlCourse.getChild(StudySerializationUtils.COURSE_TITLED);
+      if (courseElement != null) {
+        myCourse = XmlSerializer.deserialize(courseElement, Course.class);
+      }
+    }
+  }
+
+  /**
+   * Snapshot is used only if it was saved together with this xml
+   */
+  private boolean loadSnapshot(@NotNull Element xmlCourse) {
+    final File file = getSnapshotFile();
+    if (file == null) {
+      return false;
+    }
+    try {
+      final byte[] snapshot = StudyCourseSnapshot.load(file, StudyCourseSnapshot.checksum(xmlCourse));
+      if (snapshot == null) {
+        return false;
+      }
+      myPendingSnapshot = snapshot;
+      myCourseElement = xmlCourse.clone();
+      mySnapshotChecksum = StudyCourseSnapshot.checksum(snapshot);
+      return true;
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to load course snapshot: " + e.getMessage());
+      return false;
+    }
   }
 
   public static StudyTaskManager getInstance(@NotNull final Project project) {
@@ -3,6 +3,7 @@ package com.jetbrains.edu.learning;
 import com.intellij.ide.fileTemplates.FileTemplate;
 import com.intellij.ide.fileTemplates.FileTemplateManager;
 import com.intellij.ide.projectView.ProjectView;
+import com.intellij.ide.projectView.impl.AbstractProjectViewPane;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.CommonDataKeys;
 import com.intellij.openapi.actionSystem.DataContext;
@@ -40,7 +41,6 @@ import com.intellij.psi.PsiDirectory;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
-import com.intellij.ui.JBColor;
 import com.intellij.ui.awt.RelativePoint;
 import com.intellij.ui.content.Content;
 import com.intellij.util.DocumentUtil;
@@ -51,7 +51,7 @@ import com.intellij.util.io.ZipUtil;
 import com.intellij.util.text.MarkdownUtil;
 import com.intellij.util.ui.UIUtil;
 import com.jetbrains.edu.learning.core.EduAnswerPlaceholderDeleteHandler;
-import com.jetbrains.edu.learning.core.EduAnswerPlaceholderPainter;
+import com.jetbrains.edu.learning.core.EduAnswerPlaceholderHighlighters;
 import com.jetbrains.edu.learning.core.EduNames;
 import com.jetbrains.edu.learning.core.EduUtils;
 import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholder;
@@ -186,6 +186,44 @@ public class StudyUtils {
     }
   }
 
+  /**
+   * Updates project view nodes of tasks whose study state changed since the previous update and nodes of their lessons.
+   * The whole project view is refreshed if the current pane doesn't support partial updates.
+   */
+  public static void updateChangedTaskNodes(@NotNull final Project project) {
+    final Course course = StudyTaskManager.getInstance(project).getCourse();
+    final AbstractProjectViewPane pane = ProjectView.getInstance(project).getCurrentProjectViewPane();
+    if (course == null || pane == null || pane.getTreeBuilder() == null) {
+      ProjectView.getInstance(project).refresh();
+      return;
+    }
+    final Set<VirtualFile> dirs = new LinkedHashSet<>();
+    for (Task task : course.pollChangedTasks()) {
+      final Lesson lesson = task.getLesson();
+      // tasks removed from the course after the change have no nodes
+      if (lesson == null || lesson.getCourse() != course || ContainerUtil.indexOfIdentity(lesson.getTaskList(), task) < 0) {
+        continue;
+      }
+      final VirtualFile taskDir = task.getTaskDir(project);
+      if (taskDir == null) {
+        continue;
+      }
+      dirs.add(taskDir);
+      // status of the lesson depends on statuses of its tasks
+      final VirtualFile lessonDir = lesson.getLessonDir(project);
+      if (lessonDir != null) {
+        dirs.add(lessonDir);
+      }
+    }
+    final PsiManager psiManager = PsiManager.getInstance(project);
+    for (VirtualFile dir : dirs) {
+      final PsiDirectory psiDirectory = psiManager.findDirectory(dir);
+      if (psiDirectory != null) {
+        pane.getTreeBuilder().queueUpdateFrom(psiDirectory, false);
+      }
+    }
+  }
+
   public static void initToolWindows(@NotNull final Project project) {
     final ToolWindowManager windowManager = ToolWindowManager.getInstance(project);
     windowManager.getToolWindow(StudyToolWindowFactory.STUDY_TOOL_WINDOW).getContentManager().removeAllContents(false);
@@ -260,58 +298,22 @@ public class StudyUtils {
 
   @Nullable
   public static TaskFile getTaskFile(@NotNull final Project project, @NotNull final VirtualFile file) {
-    final Course course = StudyTaskManager.getInstance(project).getCourse();
-    if (course == null) {
-      return null;
-    }
-    VirtualFile taskDir = getTaskDir(file);
-    if (taskDir == null) {
-      return null;
-    }
-    //need this because of multi-module generation
-    if (EduNames.SRC.equals(taskDir.getName())) {
-      taskDir = taskDir.getParent();
-      if (taskDir == null) {
-        return null;
-      }
-    }
-    final String taskDirName = taskDir.getName();
-    if (taskDirName.contains(EduNames.TASK)) {
-      final VirtualFile lessonDir = taskDir.getParent();
-      if (lessonDir != null) {
-        int lessonIndex = EduUtils.getIndex(lessonDir.getName(), EduNames.LESSON);
-        List<Lesson> lessons = course.getLessons();
-        if (!indexIsValid(lessonIndex, lessons)) {
-          return null;
-        }
-        final Lesson lesson = lessons.get(lessonIndex);
-        int taskIndex = EduUtils.getIndex(taskDirName, EduNames.TASK);
-        final List<Task> tasks = lesson.getTaskList();
-        if (!indexIsValid(taskIndex, tasks)) {
-          return null;
-        }
-        final Task task = tasks.get(taskIndex);
-        return task.getFile(pathRelativeToTask(file));
-      }
-    }
-    return null;
+    return StudyTaskFileIndex.getInstance(project).getTaskFile(file);
   }
 
   public static void drawAllAnswerPlaceholders(Editor editor, TaskFile taskFile) {
-    editor.getMarkupModel().removeAllHighlighters();
     final Project project = editor.getProject();
     if (project == null) return;
-    if (!taskFile.isValid(editor.getDocument().getText())) return;
-    final StudyTaskManager taskManager = StudyTaskManager.getInstance(project);
-    for (AnswerPlaceholder answerPlaceholder : taskFile.getAnswerPlaceholders()) {
-      final JBColor color = taskManager.getColor(answerPlaceholder);
-      EduAnswerPlaceholderPainter.drawAnswerPlaceholder(editor, answerPlaceholder, color);
+    final Document document = editor.getDocument();
+    if (!taskFile.isValid(document.getTextLength())) {
+      EduAnswerPlaceholderHighlighters.removeAll(editor);
+      return;
     }
+    final StudyTaskManager taskManager = StudyTaskManager.getInstance(project);
+    EduAnswerPlaceholderHighlighters.update(editor, taskFile, taskManager::getColor);
 
-    final Document document = editor.getDocument();
     EditorActionManager.getInstance()
       .setReadonlyFragmentModificationHandler(document, new EduAnswerPlaceholderDeleteHandler(editor));
-    EduAnswerPlaceholderPainter.createGuardedBlocks(editor, taskFile);
     editor.getColorsScheme().setColor(EditorColors.READONLY_FRAGMENT_BACKGROUND_COLOR, null);
   }
 
@@ -533,11 +535,7 @@ public class StudyUtils {
 
   @Nullable
   public static Task getTaskForFile(@NotNull Project project, @NotNull VirtualFile taskFile) {
-    VirtualFile taskDir = getTaskDir(taskFile);
-    if (taskDir == null) {
-      return null;
-    }
-    return getTask(project, taskDir);
+    return StudyTaskFileIndex.getInstance(project).getTask(taskFile);
   }
 
   // supposed to be called under progress
@@ -604,7 +602,7 @@ public class StudyUtils {
     final Editor editor = studyEditor.getEditor();
     IdeFocusManager.getInstance(project).requestFocus(editor.getContentComponent(), true);
     final List<AnswerPlaceholder> placeholders = studyEditor.getTaskFile().getActivePlaceholders();
-    if (placeholders.isEmpty() || !studyEditor.getTaskFile().isValid(editor.getDocument().getText())) return;
+    if (placeholders.isEmpty() || !studyEditor.getTaskFile().isValid(editor.getDocument().getTextLength())) return;
     final AnswerPlaceholder placeholder = placeholders.get(0);
     Pair<Integer, Integer> offsets = getPlaceholderOffsets(placeholder, editor.getDocument());
     editor.getSelectionModel().setSelection(offsets.first, offsets.second);
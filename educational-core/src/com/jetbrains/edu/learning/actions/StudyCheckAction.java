@@ -1,6 +1,5 @@
 package com.jetbrains.edu.learning.actions;
 
-import com.intellij.ide.projectView.ProjectView;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.CommonDataKeys;
 import com.intellij.openapi.actionSystem.Presentation;
@@ -168,7 +167,7 @@ public class StudyCheckAction extends StudyActionWithShortcut {
       }
       ApplicationManager.getApplication().invokeLater(() -> {
         StudyUtils.updateToolWindows(myProject);
-        ProjectView.getInstance(myProject).refresh();
+        StudyUtils.updateChangedTaskNodes(myProject);
 
         for (StudyCheckListener listener : StudyCheckListener.EP_NAME.getExtensions()) {
           listener.afterCheck(myProject, myTask);
@@ -1,6 +1,5 @@
 package com.jetbrains.edu.learning.actions;
 
-import com.intellij.ide.projectView.ProjectView;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.Presentation;
 import com.intellij.openapi.application.ApplicationManager;
@@ -21,7 +20,6 @@ import com.jetbrains.edu.learning.StudyState;
 import com.jetbrains.edu.learning.StudySubtaskUtils;
 import com.jetbrains.edu.learning.StudyTaskManager;
 import com.jetbrains.edu.learning.StudyUtils;
-import com.jetbrains.edu.learning.core.EduAnswerPlaceholderPainter;
 import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholder;
 import com.jetbrains.edu.learning.courseFormat.Course;
 import com.jetbrains.edu.learning.courseFormat.StudyStatus;
@@ -85,7 +83,6 @@ public class StudyRefreshTaskFileAction extends StudyActionWithShortcut {
     WolfTheProblemSolver.getInstance(project).clearProblems(studyState.getVirtualFile());
     taskFile.setHighlightErrors(false);
     StudyUtils.drawAllAnswerPlaceholders(editor, taskFile);
-    EduAnswerPlaceholderPainter.createGuardedBlocks(editor, taskFile);
     ApplicationManager.getApplication().invokeLater(
       () -> IdeFocusManager.getInstance(project).requestFocus(editor.getContentComponent(), true));
 
@@ -103,7 +100,7 @@ public class StudyRefreshTaskFileAction extends StudyActionWithShortcut {
       ((ChoiceTask)task).setSelectedVariants(new ArrayList<>());
     }
     resetAnswerPlaceholders(taskFile, project);
-    ProjectView.getInstance(project).refresh();
+    StudyUtils.updateChangedTaskNodes(project);
     StudyUtils.updateToolWindows(project);
     return true;
   }
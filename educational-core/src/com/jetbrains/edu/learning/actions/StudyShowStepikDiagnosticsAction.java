@@ -0,0 +1,44 @@
+package com.jetbrains.edu.learning.actions;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowAnchor;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.ui.content.Content;
+import com.jetbrains.edu.learning.ui.StudyStepikDiagnosticsPanel;
+
+/**
+ * Internal action showing metrics of Stepik requests
+ */
+public class StudyShowStepikDiagnosticsAction extends DumbAwareAction {
+  private static final String ID = "Stepik Diagnostics";
+
+  public StudyShowStepikDiagnosticsAction() {
+    super("Stepik Diagnostics", "Show Stepik request metrics", null);
+  }
+
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    final Project project = e.getProject();
+    if (project == null) {
+      return;
+    }
+    final ToolWindowManager toolWindowManager = ToolWindowManager.getInstance(project);
+    ToolWindow window = toolWindowManager.getToolWindow(ID);
+    if (window == null) {
+      window = toolWindowManager.registerToolWindow(ID, true, ToolWindowAnchor.BOTTOM, project, true);
+      final StudyStepikDiagnosticsPanel panel = new StudyStepikDiagnosticsPanel(project);
+      final Content content = window.getContentManager().getFactory().createContent(panel, null, false);
+      content.setDisposer(panel);
+      window.getContentManager().addContent(content);
+    }
+    window.show(null);
+  }
+
+  @Override
+  public void update(AnActionEvent e) {
+    e.getPresentation().setEnabledAndVisible(e.getProject() != null);
+  }
+}
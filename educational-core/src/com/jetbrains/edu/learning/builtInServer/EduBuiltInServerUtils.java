@@ -25,7 +25,6 @@ import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
 import com.intellij.openapi.ui.Messages;
-import com.intellij.util.xmlb.XmlSerializationException;
 import com.jetbrains.edu.learning.StudyTaskManager;
 import com.jetbrains.edu.learning.courseFormat.Course;
 import com.jetbrains.edu.learning.courseFormat.RemoteCourse;
@@ -33,20 +32,13 @@ import com.jetbrains.edu.learning.newproject.ui.EduCreateNewStepikCourseDialog;
 import com.jetbrains.edu.learning.stepic.EduStepicAuthorizedClient;
 import com.jetbrains.edu.learning.stepic.EduStepicConnector;
 import com.jetbrains.edu.learning.stepic.StepicUser;
-import org.jdom.Document;
-import org.jdom.Element;
-import org.jdom.JDOMException;
-import org.jdom.input.SAXBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
 import java.io.IOException;
-import java.util.List;
 
 import static com.jetbrains.edu.learning.StudyUtils.execCancelable;
 import static com.jetbrains.edu.learning.StudyUtils.navigateToStep;
-import static com.jetbrains.edu.learning.core.EduNames.STUDY_PROJECT_XML_PATH;
 import static com.jetbrains.edu.learning.stepic.EduStepicNames.STEP_ID;
 
 public class EduBuiltInServerUtils {
@@ -102,57 +94,12 @@ public class EduBuiltInServerUtils {
       return false;
     }
 
-    List<String> recentPaths = state.recentPaths;
-
-    SAXBuilder parser = new SAXBuilder();
-
-    for (String projectPath : recentPaths) {
-      Element component = readComponent(parser, projectPath);
-      if (component == null) {
-        continue;
-      }
-      StudyTaskManager taskManager = getDefaultTaskManager();
-      int courseId = getCourseId(taskManager, component);
-
-      if (courseId == targetCourseId) {
-        PropertiesComponent.getInstance().setValue(STEP_ID, stepId, 0);
-        Project project = openProject(projectPath);
-        if (project != null) {
-          return true;
-        }
-      }
-    }
-    return false;
-  }
-
-
-  @Nullable
-  private static Element readComponent(@NotNull SAXBuilder parser, @NotNull String projectPath) {
-    Element component = null;
-    try {
-      String studyProjectXML = projectPath + STUDY_PROJECT_XML_PATH;
-      Document xmlDoc = parser.build(new File(studyProjectXML));
-      Element root = xmlDoc.getRootElement();
-      component = root.getChild("component");
-    }
-    catch (JDOMException | IOException ignored) {
-    }
-
-    return component;
-  }
-
-  private static int getCourseId(@NotNull StudyTaskManager taskManager, @NotNull Element component) {
-    try {
-      taskManager.loadState(component);
-      Course course = taskManager.getCourse();
-
-      if (course instanceof RemoteCourse) {
-        return ((RemoteCourse)course).getId();
-      }
-    }
-    catch (IllegalStateException | XmlSerializationException ignored) {
+    String projectPath = EduCourseProjectsIndex.getInstance().findProject(targetCourseId, state.recentPaths);
+    if (projectPath == null) {
+      return false;
     }
-    return 0;
+    PropertiesComponent.getInstance().setValue(STEP_ID, stepId, 0);
+    return openProject(projectPath) != null;
   }
 
   public static boolean createProject(int courseId, int stepId) {
@@ -186,10 +133,4 @@ public class EduBuiltInServerUtils {
       }
     });
   }
-
-  @NotNull
-  private static StudyTaskManager getDefaultTaskManager() {
-    Project defaultProject = ProjectManager.getInstance().getDefaultProject();
-    return StudyTaskManager.getInstance(defaultProject);
-  }
 }
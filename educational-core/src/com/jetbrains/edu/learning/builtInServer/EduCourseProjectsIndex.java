@@ -0,0 +1,205 @@
+package com.jetbrains.edu.learning.builtInServer;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.containers.ContainerUtil;
+import com.jetbrains.edu.learning.StudySerializationUtils;
+import com.jetbrains.edu.learning.courseFormat.Course;
+import com.jetbrains.edu.learning.courseFormat.RemoteCourse;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jdom.input.SAXBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static com.jetbrains.edu.learning.StudySerializationUtils.Xml.MAIN_ELEMENT;
+import static com.jetbrains.edu.learning.StudySerializationUtils.Xml.REMOTE_COURSE;
+import static com.jetbrains.edu.learning.StudySerializationUtils.Xml.VALUE;
+import static com.jetbrains.edu.learning.StudySerializationUtils.Xml.getChildWithName;
+import static com.jetbrains.edu.learning.core.EduNames.STUDY_PROJECT_XML_PATH;
+
+/**
+ * Remembers which Stepik course is studied in which project, so links to Stepik courses can be opened
+ * without reading settings of all recent projects.
+ * Entry is trusted while study_project.xml of the project has the same timestamp as when the entry was recorded,
+ * otherwise course id is read from the file again.
+ */
+@State(name = "EduCourseProjects", storages = @Storage("other.xml"))
+public class EduCourseProjectsIndex implements PersistentStateComponent<EduCourseProjectsIndex.IndexState> {
+  private final Map<String, ProjectEntry> myEntries = ContainerUtil.newConcurrentMap();
+  private final Map<Integer, String> myProjectPaths = ContainerUtil.newConcurrentMap();
+
+  public static EduCourseProjectsIndex getInstance() {
+    return ServiceManager.getService(EduCourseProjectsIndex.class);
+  }
+
+  @NotNull
+  @Override
+  public IndexState getState() {
+    final IndexState state = new IndexState();
+    state.PROJECTS.addAll(myEntries.values());
+    return state;
+  }
+
+  @Override
+  public void loadState(IndexState state) {
+    myEntries.clear();
+    myProjectPaths.clear();
+    for (ProjectEntry entry : state.PROJECTS) {
+      if (entry.path != null) {
+        put(entry);
+      }
+    }
+  }
+
+  /**
+   * Called when settings of the project are saved, study_project.xml is written after that,
+   * so the entry gets its timestamp when the project is closed or on the next lookup
+   */
+  public void projectSaved(@NotNull Project project, @NotNull Course course) {
+    update(project, course, false);
+  }
+
+  public void projectClosed(@NotNull Project project, @NotNull Course course) {
+    update(project, course, true);
+  }
+
+  private void update(@NotNull Project project, @NotNull Course course, boolean isSaved) {
+    final String path = project.getBasePath();
+    if (project.isDefault() || path == null) {
+      return;
+    }
+    final int courseId = course instanceof RemoteCourse ? ((RemoteCourse)course).getId() : 0;
+    final ProjectEntry entry = myEntries.get(path);
+    if (entry != null && entry.courseId == courseId && !isSaved) {
+      return;
+    }
+    put(new ProjectEntry(path, courseId, isSaved ? getTimestamp(path) : 0));
+  }
+
+  /**
+   * @return path of a recent project with the course, projects which aren't indexed yet are read and indexed
+   */
+  @Nullable
+  public String findProject(int courseId, @NotNull List<String> recentPaths) {
+    final Set<String> recent = new HashSet<>(recentPaths);
+    final String path = myProjectPaths.get(courseId);
+    if (path != null && recent.contains(path) && isUpToDate(myEntries.get(path))) {
+      return path;
+    }
+    myEntries.keySet().retainAll(recent);
+    // several projects may have the same course, so the mapping is rebuilt instead of removing pruned paths
+    myProjectPaths.clear();
+    for (ProjectEntry entry : myEntries.values()) {
+      if (entry.courseId != 0) {
+        myProjectPaths.put(entry.courseId, entry.path);
+      }
+    }
+    for (String projectPath : recentPaths) {
+      if (!isUpToDate(myEntries.get(projectPath))) {
+        put(readEntry(projectPath));
+      }
+    }
+    final String foundPath = myProjectPaths.get(courseId);
+    return foundPath != null && recent.contains(foundPath) ? foundPath : null;
+  }
+
+  private boolean isUpToDate(@Nullable ProjectEntry entry) {
+    if (entry == null) {
+      return false;
+    }
+    final long timestamp = getTimestamp(entry.path);
+    return timestamp != 0 && entry.timestamp == timestamp;
+  }
+
+  private void put(@NotNull ProjectEntry entry) {
+    final ProjectEntry oldEntry = myEntries.put(entry.path, entry);
+    if (oldEntry != null && oldEntry.courseId != entry.courseId) {
+      myProjectPaths.remove(oldEntry.courseId, oldEntry.path);
+    }
+    if (entry.courseId != 0) {
+      myProjectPaths.put(entry.courseId, entry.path);
+    }
+  }
+
+  private static long getTimestamp(@NotNull String projectPath) {
+    return new File(projectPath + STUDY_PROJECT_XML_PATH).lastModified();
+  }
+
+  @NotNull
+  private static ProjectEntry readEntry(@NotNull String projectPath) {
+    final long timestamp = getTimestamp(projectPath);
+    final Element component = timestamp != 0 ? readComponent(projectPath) : null;
+    final int courseId = component != null ? getCourseId(component) : 0;
+    return new ProjectEntry(projectPath, courseId, timestamp);
+  }
+
+  @Nullable
+  private static Element readComponent(@NotNull String projectPath) {
+    Element component = null;
+    try {
+      String studyProjectXML = projectPath + STUDY_PROJECT_XML_PATH;
+      Document xmlDoc = new SAXBuilder().build(new File(studyProjectXML));
+      Element root = xmlDoc.getRootElement();
+      component = root.getChild("component");
+    }
+    catch (JDOMException | IOException ignored) {
+    }
+
+    return component;
+  }
+
+  /**
+   * Reads course id from the xml without deserializing the course. Local courses have no id.
+   */
+  static int getCourseId(@NotNull Element component) {
+    try {
+      final Element taskManager = component.getChild(MAIN_ELEMENT);
+      if (taskManager == null) {
+        return 0;
+      }
+      final Element courseHolder = getChildWithName(taskManager, StudySerializationUtils.COURSE, true);
+      if (courseHolder == null) {
+        return 0;
+      }
+      Element courseElement = courseHolder.getChild(REMOTE_COURSE);
+      if (courseElement == null) {
+        // courses of old versions are migrated to remote ones only when the project is opened
+        courseElement = courseHolder.getChild(StudySerializationUtils.COURSE_TITLED);
+      }
+      final Element id = courseElement != null ? getChildWithName(courseElement, StudySerializationUtils.ID, true) : null;
+      return id != null ? Integer.parseInt(id.getAttributeValue(VALUE)) : 0;
+    }
+    catch (StudySerializationUtils.StudyUnrecognizedFormatException | NumberFormatException ignored) {
+    }
+    return 0;
+  }
+
+  public static class IndexState {
+    public List<ProjectEntry> PROJECTS = new ArrayList<>();
+  }
+
+  public static class ProjectEntry {
+    public String path;
+    public int courseId;
+    public long timestamp;
+
+    @SuppressWarnings("unused")
+    public ProjectEntry() {
+    }
+
+    private ProjectEntry(@NotNull String path, int courseId, long timestamp) {
+      this.path = path;
+      this.courseId = courseId;
+      this.timestamp = timestamp;
+    }
+  }
+}
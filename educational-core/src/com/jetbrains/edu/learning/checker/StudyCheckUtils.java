@@ -152,6 +152,10 @@ public class StudyCheckUtils {
     final ProcessOutput output = ProgressManager.getInstance().hasProgressIndicator() ? handler
       .runProcessWithProgressIndicator(ProgressManager.getInstance().getProgressIndicator()) :
                                  handler.runProcess();
+    return getTestOutput(output, isAdaptive);
+  }
+
+  public static StudyTestsOutputParser.TestsOutput getTestOutput(@NotNull ProcessOutput output, boolean isAdaptive) {
     final StudyTestsOutputParser.TestsOutput testsOutput = StudyTestsOutputParser.getTestsOutput(output, isAdaptive);
     String stderr = output.getStderr();
     if (!stderr.isEmpty() && output.getStdout().isEmpty()) {
@@ -0,0 +1,127 @@
+package com.jetbrains.edu.learning.core;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.RangeMarker;
+import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.Pair;
+import com.intellij.ui.JBColor;
+import com.jetbrains.edu.learning.StudyUtils;
+import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholder;
+import com.jetbrains.edu.learning.courseFormat.TaskFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Keeps range highlighters and guarded blocks of answer placeholders shown in an editor.
+ * On update only placeholders whose range, colour or subtask state changed are redrawn,
+ * other highlighters of the editor are left untouched.
+ */
+public class EduAnswerPlaceholderHighlighters {
+  private static final Key<Map<AnswerPlaceholder, PlaceholderHighlighting>> HIGHLIGHTINGS =
+    Key.create("Edu.AnswerPlaceholderHighlightings");
+
+  private EduAnswerPlaceholderHighlighters() {
+  }
+
+  public static void update(@NotNull Editor editor, @NotNull TaskFile taskFile,
+                            @NotNull Function<AnswerPlaceholder, JBColor> colorProvider) {
+    Map<AnswerPlaceholder, PlaceholderHighlighting> highlightings = editor.getUserData(HIGHLIGHTINGS);
+    if (highlightings == null) {
+      highlightings = new HashMap<>();
+      editor.putUserData(HIGHLIGHTINGS, highlightings);
+    }
+    final Document document = editor.getDocument();
+    final Set<AnswerPlaceholder> placeholders = new HashSet<>(taskFile.getAnswerPlaceholders());
+    for (Iterator<Map.Entry<AnswerPlaceholder, PlaceholderHighlighting>> iterator = highlightings.entrySet().iterator();
+         iterator.hasNext(); ) {
+      final Map.Entry<AnswerPlaceholder, PlaceholderHighlighting> entry = iterator.next();
+      if (!placeholders.contains(entry.getKey())) {
+        entry.getValue().dispose(document);
+        iterator.remove();
+      }
+    }
+
+    for (AnswerPlaceholder placeholder : taskFile.getAnswerPlaceholders()) {
+      final JBColor color = colorProvider.apply(placeholder);
+      final PlaceholderHighlighting highlighting = highlightings.get(placeholder);
+      if (highlighting != null) {
+        if (highlighting.isUpToDate(placeholder, color, document)) {
+          continue;
+        }
+        highlighting.dispose(document);
+      }
+      final RangeHighlighter highlighter = EduAnswerPlaceholderPainter.drawAnswerPlaceholder(editor, placeholder, color);
+      final List<RangeMarker> guardedBlocks = EduAnswerPlaceholderPainter.createGuardedBlocks(editor, placeholder);
+      highlightings.put(placeholder, new PlaceholderHighlighting(placeholder, color, highlighter, guardedBlocks));
+    }
+  }
+
+  /**
+   * Removes highlighters and guarded blocks of all placeholders shown in the editor
+   */
+  public static void removeAll(@NotNull Editor editor) {
+    final Map<AnswerPlaceholder, PlaceholderHighlighting> highlightings = editor.getUserData(HIGHLIGHTINGS);
+    if (highlightings == null) return;
+    for (PlaceholderHighlighting highlighting : highlightings.values()) {
+      highlighting.dispose(editor.getDocument());
+    }
+    editor.putUserData(HIGHLIGHTINGS, null);
+  }
+
+  private static class PlaceholderHighlighting {
+    private final JBColor myColor;
+    private final boolean myActive;
+    private final boolean myUseLength;
+    private final RangeHighlighter myHighlighter;
+    private final List<RangeMarker> myGuardedBlocks;
+
+    private PlaceholderHighlighting(@NotNull AnswerPlaceholder placeholder,
+                                    @NotNull JBColor color,
+                                    @Nullable RangeHighlighter highlighter,
+                                    @NotNull List<RangeMarker> guardedBlocks) {
+      myColor = color;
+      myActive = placeholder.isActive();
+      myUseLength = placeholder.getUseLength();
+      myHighlighter = highlighter;
+      myGuardedBlocks = guardedBlocks;
+    }
+
+    private boolean isUpToDate(@NotNull AnswerPlaceholder placeholder, @NotNull JBColor color, @NotNull Document document) {
+      if (!myColor.equals(color) || myActive != placeholder.isActive() || myUseLength != placeholder.getUseLength()) {
+        return false;
+      }
+      for (RangeMarker block : myGuardedBlocks) {
+        if (!block.isValid()) return false;
+      }
+      if (myHighlighter == null) {
+        return !isHighlighted(placeholder);
+      }
+      if (!myHighlighter.isValid() || placeholder.getOffset() == -1) {
+        return false;
+      }
+      final Pair<Integer, Integer> offsets = StudyUtils.getPlaceholderOffsets(placeholder, document);
+      return myHighlighter.getStartOffset() == offsets.first && myHighlighter.getEndOffset() == offsets.second;
+    }
+
+    private static boolean isHighlighted(@NotNull AnswerPlaceholder placeholder) {
+      if (placeholder.getOffset() == -1) return false;
+      return placeholder.isActive() ||
+             (!placeholder.getUseLength() && placeholder.getVisibleLength(placeholder.getActiveSubtaskIndex()) != 0);
+    }
+
+    private void dispose(@NotNull Document document) {
+      if (myHighlighter != null) {
+        myHighlighter.dispose();
+      }
+      for (RangeMarker block : myGuardedBlocks) {
+        document.removeGuardedBlock(block);
+        block.dispose();
+      }
+    }
+  }
+}
@@ -14,11 +14,11 @@ import com.intellij.ui.JBColor;
 import com.intellij.ui.SimpleTextAttributes;
 import com.jetbrains.edu.learning.StudyUtils;
 import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholder;
-import com.jetbrains.edu.learning.courseFormat.TaskFile;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.List;
 
 public class EduAnswerPlaceholderPainter {
@@ -30,15 +30,16 @@ public class EduAnswerPlaceholderPainter {
 
   }
 
-  public static void drawAnswerPlaceholder(@NotNull final Editor editor, @NotNull final AnswerPlaceholder placeholder,
-                                           @NotNull final JBColor color) {
+  @Nullable
+  public static RangeHighlighter drawAnswerPlaceholder(@NotNull final Editor editor, @NotNull final AnswerPlaceholder placeholder,
+                                                       @NotNull final JBColor color) {
     EditorColorsScheme scheme = EditorColorsManager.getInstance().getGlobalScheme();
     final TextAttributes textAttributes = new TextAttributes(scheme.getDefaultForeground(), scheme.getDefaultBackground(), null,
                                                              EffectType.BOXED, Font.PLAIN);
     textAttributes.setEffectColor(color);
     int startOffset = placeholder.getOffset();
     if (startOffset == -1) {
-      return;
+      return null;
     }
     final int length =
       placeholder.isActive() ? placeholder.getRealLength() : placeholder.getVisibleLength(placeholder.getActiveSubtaskIndex());
@@ -46,54 +47,55 @@ public class EduAnswerPlaceholderPainter {
     startOffset = offsets.first;
     int endOffset = offsets.second;
     if (placeholder.isActive()) {
-      drawAnswerPlaceholder(editor, startOffset, endOffset, textAttributes, PLACEHOLDERS_LAYER);
+      return drawAnswerPlaceholder(editor, startOffset, endOffset, textAttributes, PLACEHOLDERS_LAYER);
     }
     else if (!placeholder.getUseLength() && length != 0) {
-      drawAnswerPlaceholderFromPrevStep(editor, startOffset, endOffset);
+      return drawAnswerPlaceholderFromPrevStep(editor, startOffset, endOffset);
     }
+    return null;
   }
 
-  public static void drawAnswerPlaceholder(@NotNull Editor editor,
-                                           int start,
-                                           int end,
-                                           @Nullable TextAttributes textAttributes,
-                                           int placeholdersLayer) {
+  @Nullable
+  public static RangeHighlighter drawAnswerPlaceholder(@NotNull Editor editor,
+                                                       int start,
+                                                       int end,
+                                                       @Nullable TextAttributes textAttributes,
+                                                       int placeholdersLayer) {
     final Project project = editor.getProject();
     assert project != null;
     if (start == -1) {
-      return;
+      return null;
     }
     RangeHighlighter highlighter = editor.getMarkupModel().addRangeHighlighter(start, end, placeholdersLayer,
                                                                                textAttributes, HighlighterTargetArea.EXACT_RANGE);
     highlighter.setGreedyToLeft(true);
     highlighter.setGreedyToRight(true);
+    return highlighter;
   }
 
 
-  public static void drawAnswerPlaceholderFromPrevStep(@NotNull Editor editor, int start, int end) {
+  @Nullable
+  public static RangeHighlighter drawAnswerPlaceholderFromPrevStep(@NotNull Editor editor, int start, int end) {
     EditorColorsScheme scheme = EditorColorsManager.getInstance().getGlobalScheme();
     Color color = scheme.getColor(EditorColors.TEARLINE_COLOR);
     SimpleTextAttributes attributes = SimpleTextAttributes.GRAY_ATTRIBUTES;
     final TextAttributes textAttributes = new TextAttributes(attributes.getFgColor(), color, null,
                                                              null, attributes.getFontStyle());
 
-    drawAnswerPlaceholder(editor, start, end, textAttributes, HighlighterLayer.LAST);
+    return drawAnswerPlaceholder(editor, start, end, textAttributes, HighlighterLayer.LAST);
   }
 
-  public static void createGuardedBlock(Editor editor, List<RangeMarker> blocks, int start, int end) {
+  public static RangeHighlighter createGuardedBlock(Editor editor, List<RangeMarker> blocks, int start, int end) {
     RangeHighlighter rh = editor.getMarkupModel()
       .addRangeHighlighter(start, end, PLACEHOLDERS_LAYER, null, HighlighterTargetArea.EXACT_RANGE);
     blocks.add(rh);
+    return rh;
   }
 
 
-  public static void createGuardedBlocks(@NotNull final Editor editor, TaskFile taskFile) {
-    for (AnswerPlaceholder answerPlaceholder : taskFile.getAnswerPlaceholders()) {
-      createGuardedBlocks(editor, answerPlaceholder);
-    }
-  }
-
-  public static void createGuardedBlocks(@NotNull final Editor editor, AnswerPlaceholder placeholder) {
+  @NotNull
+  public static List<RangeMarker> createGuardedBlocks(@NotNull final Editor editor, AnswerPlaceholder placeholder) {
+    final List<RangeMarker> created = new ArrayList<>(2);
     Document document = editor.getDocument();
     if (document instanceof DocumentImpl) {
       DocumentImpl documentImpl = (DocumentImpl)document;
@@ -102,11 +104,12 @@ public class EduAnswerPlaceholderPainter {
       Integer start = offsets.first;
       Integer end = offsets.second;
       if (start != 0) {
-        createGuardedBlock(editor, blocks, start - 1, start);
+        created.add(createGuardedBlock(editor, blocks, start - 1, start));
       }
       if (end != document.getTextLength()) {
-        createGuardedBlock(editor, blocks, end, end + 1);
+        created.add(createGuardedBlock(editor, blocks, end, end + 1));
       }
     }
+    return created;
   }
 }
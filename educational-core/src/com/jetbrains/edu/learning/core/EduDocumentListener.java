@@ -1,32 +1,39 @@
 package com.jetbrains.edu.learning.core;
 
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.event.DocumentEvent;
 import com.intellij.openapi.editor.event.DocumentListener;
 import com.intellij.openapi.editor.impl.event.DocumentEventImpl;
 import com.intellij.openapi.util.TextRange;
+import com.intellij.util.Alarm;
 import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholder;
+import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholderIndex;
 import com.jetbrains.edu.learning.courseFormat.TaskFile;
-
-import java.util.ArrayList;
-import java.util.List;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * Listens changes in study files and updates
  * coordinates of all the windows in current task file
  */
 public class EduDocumentListener implements DocumentListener {
+  private static final int PLACEHOLDERS_MOVED_DELAY_MS = 300;
+  private final Disposable myParentDisposable;
   private final TaskFile myTaskFile;
   private final boolean myTrackLength;
-  private final List<AnswerPlaceholderWrapper> myAnswerPlaceholders = new ArrayList<>();
+  private Alarm myPlaceholdersMovedAlarm;
 
 
-  public EduDocumentListener(TaskFile taskFile) {
-    myTaskFile = taskFile;
-    myTrackLength = true;
+  /**
+   * @param parentDisposable disposes pending placeholders moved notification, usually the project
+   */
+  public EduDocumentListener(@NotNull Disposable parentDisposable, TaskFile taskFile) {
+    this(parentDisposable, taskFile, true);
   }
 
-  public EduDocumentListener(TaskFile taskFile, boolean trackLength) {
+  public EduDocumentListener(@NotNull Disposable parentDisposable, TaskFile taskFile, boolean trackLength) {
+    myParentDisposable = parentDisposable;
     myTaskFile = taskFile;
     myTrackLength = trackLength;
   }
@@ -37,13 +44,6 @@ public class EduDocumentListener implements DocumentListener {
       return;
     }
     myTaskFile.setHighlightErrors(true);
-    myAnswerPlaceholders.clear();
-    for (AnswerPlaceholder answerPlaceholder : myTaskFile.getAnswerPlaceholders()) {
-      int twStart = answerPlaceholder.getOffset();
-      int length = answerPlaceholder.getRealLength();
-      int twEnd = twStart + length;
-      myAnswerPlaceholders.add(new AnswerPlaceholderWrapper(answerPlaceholder, twStart, twEnd));
-    }
   }
 
   @Override
@@ -51,22 +51,22 @@ public class EduDocumentListener implements DocumentListener {
     if (!myTaskFile.isTrackChanges()) {
       return;
     }
-    if (myAnswerPlaceholders.isEmpty()) return;
     if (e instanceof DocumentEventImpl) {
       DocumentEventImpl event = (DocumentEventImpl)e;
       Document document = e.getDocument();
       int offset = e.getOffset();
       int change = event.getNewLength() - event.getOldLength();
-      for (AnswerPlaceholderWrapper answerPlaceholderWrapper : myAnswerPlaceholders) {
-        int twStart = answerPlaceholderWrapper.getTwStart();
+      // placeholders ending before the change offset are not affected
+      AnswerPlaceholderIndex index = myTaskFile.getPlaceholderIndex();
+      int first = index.firstEndingAtOrAfter(offset);
+      for (int i = first; i < index.size(); i++) {
+        AnswerPlaceholder answerPlaceholder = index.get(i);
+        int twStart = answerPlaceholder.getOffset();
+        int twEnd = twStart + answerPlaceholder.getRealLength();
         if (twStart > offset) {
           twStart += change;
         }
-        int twEnd = answerPlaceholderWrapper.getTwEnd();
-        if (twEnd >= offset) {
-          twEnd += change;
-        }
-        AnswerPlaceholder answerPlaceholder = answerPlaceholderWrapper.getAnswerPlaceholder();
+        twEnd += change;
         int length = twEnd - twStart;
         answerPlaceholder.setOffset(twStart);
         if (myTrackLength) {
@@ -79,31 +79,23 @@ public class EduDocumentListener implements DocumentListener {
           }
         }
       }
+      Task task = myTaskFile.getTask();
+      if (first < index.size() && task != null) {
+        task.notifyChanged(null);
+        queuePlaceholdersMoved(task);
+      }
     }
   }
 
-  private static class AnswerPlaceholderWrapper {
-    public AnswerPlaceholder myAnswerPlaceholder;
-    public int myTwStart;
-    public int myTwEnd;
-
-    public AnswerPlaceholderWrapper(AnswerPlaceholder answerPlaceholder, int twStart, int twEnd) {
-      myAnswerPlaceholder = answerPlaceholder;
-      myTwStart = twStart;
-      myTwEnd = twEnd;
-    }
-
-    public int getTwStart() {
-      return myTwStart;
-    }
-
-    public int getTwEnd() {
-      return myTwEnd;
-    }
-
-    public AnswerPlaceholder getAnswerPlaceholder() {
-      return myAnswerPlaceholder;
+  /**
+   * Modification is counted on every change, but listeners are notified once typing pauses
+   */
+  private void queuePlaceholdersMoved(@NotNull Task task) {
+    if (myPlaceholdersMovedAlarm == null) {
+      myPlaceholdersMovedAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, myParentDisposable);
     }
+    myPlaceholdersMovedAlarm.cancelAllRequests();
+    myPlaceholdersMovedAlarm.addRequest(() -> task.notifyChanged(listener -> listener.placeholdersMoved(myTaskFile)),
+                                        PLACEHOLDERS_MOVED_DELAY_MS);
   }
 }
-
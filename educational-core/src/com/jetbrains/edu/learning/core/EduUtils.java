@@ -151,7 +151,7 @@ public class EduUtils {
       if (studentDocument == null) {
         return null;
       }
-      EduDocumentListener listener = new EduDocumentListener(taskFile, false);
+      EduDocumentListener listener = new EduDocumentListener(project, taskFile, false);
       studentDocument.addDocumentListener(listener);
       taskFile.setTrackLengths(false);
       for (AnswerPlaceholder placeholder : taskFile.getAnswerPlaceholders()) {
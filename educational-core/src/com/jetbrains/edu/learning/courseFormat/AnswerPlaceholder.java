@@ -127,7 +127,14 @@ public class AnswerPlaceholder {
 
   @Transient
   public void setStatus(StudyStatus status) {
+    if (status == getStatus()) {
+      return;
+    }
     getActiveSubtaskInfo().setStatus(status);
+    final Task task = myTaskFile != null ? myTaskFile.getTask() : null;
+    if (task != null) {
+      task.notifyChanged(null);
+    }
   }
 
   public boolean getSelected() {
@@ -135,7 +142,14 @@ public class AnswerPlaceholder {
   }
 
   public void setSelected(boolean selected) {
+    if (mySelected == selected) {
+      return;
+    }
     mySelected = selected;
+    final Task task = myTaskFile != null ? myTaskFile.getTask() : null;
+    if (task != null) {
+      task.notifyChanged(null);
+    }
   }
 
   public void init() {
@@ -191,6 +205,26 @@ public class AnswerPlaceholder {
     mySubtaskInfos = subtaskInfos;
   }
 
+  /**
+   * Copies persistent state of the placeholder, task file isn't set
+   */
+  @NotNull
+  public AnswerPlaceholder copy() {
+    final AnswerPlaceholder copy = new AnswerPlaceholder();
+    copy.myOffset = myOffset;
+    copy.myLength = myLength;
+    copy.myIndex = myIndex;
+    if (myInitialState != null) {
+      copy.myInitialState = new MyInitialState(myInitialState.getOffset(), myInitialState.getLength());
+    }
+    copy.mySelected = mySelected;
+    copy.myUseLength = myUseLength;
+    for (Map.Entry<Integer, AnswerPlaceholderSubtaskInfo> entry : mySubtaskInfos.entrySet()) {
+      copy.mySubtaskInfos.put(entry.getKey(), entry.getValue().copy());
+    }
+    return copy;
+  }
+
   public boolean isActive() {
     return getActiveSubtaskInfo() != null;
   }
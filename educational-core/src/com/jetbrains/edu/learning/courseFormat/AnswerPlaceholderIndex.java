@@ -0,0 +1,84 @@
+package com.jetbrains.edu.learning.courseFormat;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Answer placeholders of a task file sorted by offset.
+ * Placeholders don't overlap, so their ends are sorted as well and placeholder at offset is found with binary search.
+ * Edits shift all placeholders after the edit offset by the same value and don't change the order,
+ * so the index is rebuilt only when placeholders are added or removed.
+ */
+public class AnswerPlaceholderIndex {
+  private static final AnswerPlaceholder[] EMPTY = new AnswerPlaceholder[0];
+  private final TaskFile myTaskFile;
+  private List<AnswerPlaceholder> myPlaceholders;
+  private AnswerPlaceholder[] mySorted = EMPTY;
+
+  AnswerPlaceholderIndex(@NotNull TaskFile taskFile) {
+    myTaskFile = taskFile;
+  }
+
+  void invalidate() {
+    myPlaceholders = null;
+  }
+
+  public int size() {
+    ensureUpToDate();
+    return mySorted.length;
+  }
+
+  @NotNull
+  public AnswerPlaceholder get(int index) {
+    ensureUpToDate();
+    return mySorted[index];
+  }
+
+  /**
+   * @return index of the first placeholder which ends at or after the offset, {@link #size()} if there is no such placeholder
+   */
+  public int firstEndingAtOrAfter(int offset) {
+    ensureUpToDate();
+    int low = 0;
+    int high = mySorted.length;
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      final AnswerPlaceholder placeholder = mySorted[middle];
+      if (placeholder.getOffset() + placeholder.getRealLength() < offset) {
+        low = middle + 1;
+      }
+      else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @param activeOnly if true, placeholders of inactive subtasks are ignored
+   * @return the first placeholder containing the offset (bounds included) or null if there is no such placeholder
+   */
+  @Nullable
+  public AnswerPlaceholder getAnswerPlaceholder(int offset, boolean activeOnly) {
+    for (int i = firstEndingAtOrAfter(offset); i < mySorted.length && mySorted[i].getOffset() <= offset; i++) {
+      if (!activeOnly || mySorted[i].getActiveSubtaskInfo() != null) {
+        return mySorted[i];
+      }
+    }
+    return null;
+  }
+
+  private void ensureUpToDate() {
+    final List<AnswerPlaceholder> placeholders = myTaskFile.getAnswerPlaceholders();
+    // placeholders list is also modified directly by actions, so the size is checked as well
+    if (placeholders == myPlaceholders && placeholders.size() == mySorted.length) {
+      return;
+    }
+    mySorted = placeholders.toArray(new AnswerPlaceholder[placeholders.size()]);
+    Arrays.sort(mySorted, new AnswerPlaceholderComparator());
+    myPlaceholders = placeholders;
+  }
+}
@@ -100,6 +100,20 @@ public class AnswerPlaceholderSubtaskInfo {
     myNeedInsertText = needInsertText;
   }
 
+  @NotNull
+  public AnswerPlaceholderSubtaskInfo copy() {
+    final AnswerPlaceholderSubtaskInfo copy = new AnswerPlaceholderSubtaskInfo();
+    copy.myHints = new ArrayList<>(myHints);
+    copy.myPossibleAnswer = myPossibleAnswer;
+    copy.myPlaceholderText = myPlaceholderText;
+    copy.myAnswer = myAnswer;
+    copy.mySelected = mySelected;
+    copy.myStatus = myStatus;
+    copy.myHasFrame = myHasFrame;
+    copy.myNeedInsertText = myNeedInsertText;
+    return copy;
+  }
+
   public String getAnswer() {
     return myAnswer;
   }
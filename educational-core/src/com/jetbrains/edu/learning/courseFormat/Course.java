@@ -3,21 +3,20 @@ package com.jetbrains.edu.learning.courseFormat;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 import com.intellij.lang.Language;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.util.text.StringUtil;
-import com.intellij.util.xmlb.XmlSerializer;
+import com.intellij.util.ReflectionUtil;
 import com.intellij.util.xmlb.annotations.Transient;
 import com.jetbrains.edu.learning.core.EduNames;
 import com.jetbrains.edu.learning.core.EduUtils;
 import com.jetbrains.edu.learning.courseFormat.tasks.Task;
 import com.jetbrains.edu.learning.stepic.StepicUser;
-import org.jdom.Element;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class Course {
@@ -35,6 +34,10 @@ public class Course {
   private String courseType = EduNames.PYCHARM;
   protected String courseMode = EduNames.STUDY; //this field is used to distinguish study and course creator modes
 
+  // study state and structure changes of the study course, changes made by course creators aren't tracked
+  transient private long myModificationCount;
+  transient private final Set<Task> myChangedTasks = Collections.newSetFromMap(new IdentityHashMap<>());
+
   public Course() {}
 
   /**
@@ -144,8 +147,6 @@ public class Course {
     return true;
   }
 
-  public void setUpdated() {}
-
   public Language getLanguageById() {
     return Language.findLanguageByID(getLanguageID());
   }
@@ -197,17 +198,85 @@ public class Course {
     this.courseMode = courseMode;
   }
 
+  /**
+   * Creates a deep copy of the course without the service lesson with additional files.
+   * Texts are immutable and are shared with the copy.
+   */
   public Course copy() {
-    Element element = XmlSerializer.serialize(this);
-    Course copy = XmlSerializer.deserialize(element, getClass());
+    final Course copy = ReflectionUtil.newInstance(getClass());
+    copyTo(copy);
     copy.initCourse(true);
     return copy;
   }
 
+  /**
+   * Copies persistent state of the course, subclasses with their own state should override it
+   */
+  protected void copyTo(@NotNull Course copy) {
+    copy.lessons = new ArrayList<>();
+    for (Lesson lesson : getLessons()) {
+      copy.lessons.add(lesson.copy());
+    }
+    copy.authors = new ArrayList<>(authors);
+    copy.description = description;
+    copy.name = name;
+    copy.setLanguage(myLanguage);
+    copy.courseType = courseType;
+    copy.courseMode = courseMode;
+  }
+
   public boolean isAdaptive() {
     return false;
   }
 
+  /**
+   * Is incremented when study state of a task of the course changes: statuses, placeholders or the active subtask,
+   * and when lessons or tasks are added, removed or reordered in study mode
+   */
+  public synchronized long getModificationCount() {
+    return myModificationCount;
+  }
+
+  /**
+   * Marks the task as changed and publishes the event to {@link StudyCourseListener#TOPIC}
+   */
+  public void taskChanged(@NotNull Task task, @Nullable Consumer<StudyCourseListener> event) {
+    synchronized (this) {
+      myModificationCount++;
+      myChangedTasks.add(task);
+    }
+    if (event != null) {
+      publish(event);
+    }
+  }
+
+  /**
+   * Should be called after lessons or tasks of the study course were added, removed or reordered
+   */
+  public void structureChanged() {
+    synchronized (this) {
+      myModificationCount++;
+    }
+    publish(listener -> listener.structureChanged(this));
+  }
+
+  private static void publish(@NotNull Consumer<StudyCourseListener> event) {
+    final Application application = ApplicationManager.getApplication();
+    if (application != null) {
+      event.accept(application.getMessageBus().syncPublisher(StudyCourseListener.TOPIC));
+    }
+  }
+
+  /**
+   * @return tasks changed since the previous call
+   */
+  @NotNull
+  public synchronized List<Task> pollChangedTasks() {
+    final List<Task> tasks = new ArrayList<>(myChangedTasks);
+    myChangedTasks.clear();
+    return tasks;
+  }
+
   public boolean isStudy() {
     return EduNames.STUDY.equals(courseMode);
   }
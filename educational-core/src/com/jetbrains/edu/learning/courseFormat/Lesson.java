@@ -2,6 +2,8 @@ package com.jetbrains.edu.learning.courseFormat;
 
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.xmlb.annotations.AbstractCollection;
 import com.intellij.util.xmlb.annotations.Transient;
 import com.jetbrains.edu.learning.core.EduNames;
@@ -9,6 +11,7 @@ import com.jetbrains.edu.learning.core.EduUtils;
 import com.jetbrains.edu.learning.courseFormat.tasks.*;
 import com.jetbrains.edu.learning.stepic.EduStepicConnector;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Date;
@@ -114,6 +117,28 @@ public class Lesson implements StudyItem {
     this.taskList = taskList;
   }
 
+  @Nullable
+  public VirtualFile getLessonDir(@NotNull final Project project) {
+    final VirtualFile courseDir = project.getBaseDir();
+    return courseDir != null ? courseDir.findChild(EduNames.LESSON + String.valueOf(myIndex)) : null;
+  }
+
+  /**
+   * Copies the lesson with its tasks, course isn't set
+   */
+  @NotNull
+  public Lesson copy() {
+    final Lesson copy = new Lesson();
+    copy.myId = myId;
+    copy.myUpdateDate = myUpdateDate;
+    copy.name = name;
+    copy.myIndex = myIndex;
+    for (Task task : taskList) {
+      copy.taskList.add(task.copy());
+    }
+    return copy;
+  }
+
   public StudyStatus getStatus() {
     for (Task task : taskList) {
       if (task.getStatus() != StudyStatus.Solved) {
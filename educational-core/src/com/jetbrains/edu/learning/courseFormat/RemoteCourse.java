@@ -2,20 +2,23 @@ package com.jetbrains.edu.learning.courseFormat;
 
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task.Backgroundable;
-import com.jetbrains.edu.learning.courseFormat.tasks.Task;
 import com.jetbrains.edu.learning.stepic.EduStepicConnector;
 import com.jetbrains.edu.learning.stepic.EduStepicNames;
+import com.jetbrains.edu.learning.stepic.StudyCourseSynchronizer;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 public class RemoteCourse extends Course {
+  private static final Logger LOG = Logger.getInstance(RemoteCourse.class);
   //course type in format "pycharm<version> <language>"
   @SerializedName("course_format") private String myType =
                         String.format("%s%d %s", EduStepicNames.PYCHARM_PREFIX, EduStepicConnector.CURRENT_VERSION, getLanguageID());
@@ -62,32 +65,21 @@ public class RemoteCourse extends Course {
     ProgressManager.getInstance().runProcessWithProgressAsynchronously(new Backgroundable(null, "Updating Course") {
       @Override
       public void run(@NotNull ProgressIndicator indicator) {
-        final Date date = EduStepicConnector.getCourseUpdateDate(id);
-        if (date == null) return;
-        if (date.after(myUpdateDate)) {
-          isUpToDate = false;
-        }
-        for (Lesson lesson : lessons) {
-          if (!lesson.isUpToDate()) {
+        try {
+          // steps are loaded only when the course is updated
+          if (!StudyCourseSynchronizer.isUpToDate(RemoteCourse.this)) {
             isUpToDate = false;
           }
         }
+        catch (IOException e) {
+          LOG.warn("Failed to check course updates: " + e.getMessage());
+        }
       }
     }, new EmptyProgressIndicator());
 
     return isUpToDate;
   }
 
-  public void setUpdated() {
-    setUpdateDate(EduStepicConnector.getCourseUpdateDate(id));
-    for (Lesson lesson : lessons) {
-      lesson.setUpdateDate(EduStepicConnector.getLessonUpdateDate(lesson.getId()));
-      for (Task task : lesson.getTaskList()) {
-        task.setUpdateDate(EduStepicConnector.getTaskUpdateDate(task.getStepId()));
-      }
-    }
-  }
-
   public void setUpdateDate(Date date) {
     myUpdateDate = date;
   }
@@ -117,6 +109,21 @@ public class RemoteCourse extends Course {
     setUpdateDate(course.getUpdateDate());
   }
 
+  @Override
+  protected void copyTo(@NotNull Course copy) {
+    super.copyTo(copy);
+    final RemoteCourse remoteCourse = (RemoteCourse)copy;
+    remoteCourse.myType = myType;
+    remoteCourse.isCompatible = isCompatible;
+    remoteCourse.sections = sections != null ? new ArrayList<>(sections) : null;
+    remoteCourse.instructors = instructors != null ? new ArrayList<>(instructors) : null;
+    remoteCourse.id = id;
+    remoteCourse.myUpdateDate = myUpdateDate;
+    remoteCourse.isAdaptive = isAdaptive;
+    remoteCourse.isPublic = isPublic;
+    remoteCourse.myLoadSolutions = myLoadSolutions;
+  }
+
   private void updateType(String language) {
     myType = String.format("%s%d %s", EduStepicNames.PYCHARM_PREFIX, EduStepicConnector.CURRENT_VERSION, language);
   }
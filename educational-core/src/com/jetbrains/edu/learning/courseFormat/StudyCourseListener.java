@@ -0,0 +1,33 @@
+package com.jetbrains.edu.learning.courseFormat;
+
+import com.intellij.util.messages.Topic;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import com.jetbrains.edu.learning.courseFormat.tasks.TaskWithSubtasks;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Changes of study state of courses. Model doesn't know its project, so events are published to the application
+ * message bus and listeners should check that the task belongs to the course of their project.
+ * Only tasks of courses are tracked, changes of detached copies aren't published.
+ */
+public interface StudyCourseListener {
+  Topic<StudyCourseListener> TOPIC = Topic.create("Edu.CourseChanged", StudyCourseListener.class);
+
+  default void taskStatusChanged(@NotNull Task task) {
+  }
+
+  /**
+   * Offsets or lengths of placeholders of the task file changed after the document was edited
+   */
+  default void placeholdersMoved(@NotNull TaskFile taskFile) {
+  }
+
+  default void subtaskChanged(@NotNull TaskWithSubtasks task) {
+  }
+
+  /**
+   * Lessons or tasks of the course were added, removed or reordered
+   */
+  default void structureChanged(@NotNull Course course) {
+  }
+}
@@ -3,7 +3,6 @@ package com.jetbrains.edu.learning.courseFormat;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 import com.intellij.util.xmlb.annotations.Transient;
-import com.jetbrains.edu.learning.StudyUtils;
 import com.jetbrains.edu.learning.courseFormat.tasks.Task;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -26,6 +25,7 @@ public class TaskFile {
   private boolean myHighlightErrors = false;
   @Expose @SerializedName("placeholders") private List<AnswerPlaceholder> myAnswerPlaceholders = new ArrayList<>();
   @Transient private Task myTask;
+  transient private final AnswerPlaceholderIndex myPlaceholderIndex = new AnswerPlaceholderIndex(this);
 
   public TaskFile() {
   }
@@ -40,6 +40,7 @@ public class TaskFile {
     for (int i = 0; i < answerPlaceholders.size(); i++) {
       answerPlaceholders.get(i).setIndex(i);
     }
+    myPlaceholderIndex.invalidate();
   }
 
   public List<AnswerPlaceholder> getAnswerPlaceholders() {
@@ -58,10 +59,18 @@ public class TaskFile {
 
   public void setAnswerPlaceholders(List<AnswerPlaceholder> answerPlaceholders) {
     this.myAnswerPlaceholders = answerPlaceholders;
+    myPlaceholderIndex.invalidate();
   }
 
   public void addAnswerPlaceholder(AnswerPlaceholder answerPlaceholder) {
     myAnswerPlaceholders.add(answerPlaceholder);
+    myPlaceholderIndex.invalidate();
+  }
+
+  @Transient
+  @NotNull
+  public AnswerPlaceholderIndex getPlaceholderIndex() {
+    return myPlaceholderIndex;
   }
 
   public int getIndex() {
@@ -88,7 +97,7 @@ public class TaskFile {
    */
   @Nullable
   public AnswerPlaceholder getAnswerPlaceholder(int offset) {
-    return StudyUtils.getAnswerPlaceholder(offset, getActivePlaceholders());
+    return myPlaceholderIndex.getAnswerPlaceholder(offset, true);
   }
 
   public boolean isTrackLengths() {
@@ -99,6 +108,25 @@ public class TaskFile {
     myTrackLengths = trackLengths;
   }
 
+  /**
+   * Copies persistent state of the task file, task isn't set
+   */
+  @NotNull
+  public TaskFile copy() {
+    final TaskFile copy = new TaskFile();
+    copy.name = name;
+    copy.text = text;
+    copy.myIndex = myIndex;
+    copy.myUserCreated = myUserCreated;
+    copy.myTrackChanges = myTrackChanges;
+    copy.myTrackLengths = myTrackLengths;
+    copy.myHighlightErrors = myHighlightErrors;
+    for (AnswerPlaceholder placeholder : myAnswerPlaceholders) {
+      copy.myAnswerPlaceholders.add(placeholder.copy());
+    }
+    return copy;
+  }
+
   public static void copy(@NotNull final TaskFile source, @NotNull final TaskFile target) {
     List<AnswerPlaceholder> sourceAnswerPlaceholders = source.getActivePlaceholders();
     List<AnswerPlaceholder> answerPlaceholdersCopy = new ArrayList<>(sourceAnswerPlaceholders.size());
@@ -149,6 +177,7 @@ public class TaskFile {
     for (int i = 0; i < myAnswerPlaceholders.size(); i++) {
       myAnswerPlaceholders.get(i).setIndex(i);
     }
+    myPlaceholderIndex.invalidate();
   }
 
   public boolean hasFailedPlaceholders() {
@@ -161,10 +190,13 @@ public class TaskFile {
   }
 
   public boolean isValid(@NotNull String text) {
-    int length = text.length();
+    return isValid(text.length());
+  }
+
+  public boolean isValid(int textLength) {
     List<AnswerPlaceholder> placeholders = getActivePlaceholders();
     for (AnswerPlaceholder placeholder : placeholders) {
-      if (!placeholder.isValid(length)) return false;
+      if (!placeholder.isValid(textLength)) return false;
     }
     return true;
   }
@@ -33,6 +33,7 @@ public class ChoiceTask extends Task {
 
   public void setSelectedVariants(List<Integer> selectedVariants) {
     mySelectedVariants = selectedVariants;
+    notifyChanged(null);
   }
 
   public boolean isMultipleChoice() {
@@ -55,6 +56,15 @@ public class ChoiceTask extends Task {
     super(name);
   }
 
+  @Override
+  protected void copyTo(@NotNull Task copy) {
+    super.copyTo(copy);
+    final ChoiceTask choiceTask = (ChoiceTask)copy;
+    choiceTask.myChoiceVariants = new ArrayList<>(myChoiceVariants);
+    choiceTask.myIsMultipleChoice = myIsMultipleChoice;
+    choiceTask.mySelectedVariants = new ArrayList<>(mySelectedVariants);
+  }
+
   @Override
   public String getTaskType() {
     return "choice";
@@ -6,7 +6,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.util.xmlb.XmlSerializer;
+import com.intellij.util.ReflectionUtil;
 import com.intellij.util.xmlb.annotations.Transient;
 import com.jetbrains.edu.learning.StudyUtils;
 import com.jetbrains.edu.learning.checker.StudyTaskChecker;
@@ -15,7 +15,6 @@ import com.jetbrains.edu.learning.courseFormat.*;
 import com.jetbrains.edu.learning.stepic.EduAdaptiveStepicConnector;
 import com.jetbrains.edu.learning.stepic.EduStepicConnector;
 import one.util.streamex.EntryStream;
-import org.jdom.Element;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -23,6 +22,7 @@ import java.io.IOException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Implementation of task which contains task files, tests, input file for tests
@@ -159,19 +159,15 @@ public abstract class Task implements StudyItem {
 
   @Nullable
   public VirtualFile getTaskDir(@NotNull final Project project) {
-    String lessonDirName = EduNames.LESSON + String.valueOf(myLesson.getIndex());
     String taskDirName = EduNames.TASK + String.valueOf(myIndex);
-    VirtualFile courseDir = project.getBaseDir();
-    if (courseDir != null) {
-      VirtualFile lessonDir = courseDir.findChild(lessonDirName);
-      if (lessonDir != null) {
-        VirtualFile taskDir = lessonDir.findChild(taskDirName);
-        if (taskDir == null) {
-          return null;
-        }
-        VirtualFile srcDir = taskDir.findChild(EduNames.SRC);
-        return srcDir != null ? srcDir : taskDir;
+    VirtualFile lessonDir = myLesson.getLessonDir(project);
+    if (lessonDir != null) {
+      VirtualFile taskDir = lessonDir.findChild(taskDirName);
+      if (taskDir == null) {
+        return null;
       }
+      VirtualFile srcDir = taskDir.findChild(EduNames.SRC);
+      return srcDir != null ? srcDir : taskDir;
     }
     return null;
   }
@@ -250,16 +246,52 @@ public abstract class Task implements StudyItem {
         placeholder.setStatus(status);
       }
     }
+    final StudyStatus oldStatus = myStatus;
     myStatus = status;
+    if (oldStatus != status) {
+      notifyChanged(listener -> listener.taskStatusChanged(this));
+    }
   }
 
+  /**
+   * Tracks change of study state of the task, see {@link Course#taskChanged(Task, Consumer)}.
+   * Tasks which don't belong to a course aren't tracked.
+   */
+  public void notifyChanged(@Nullable Consumer<StudyCourseListener> event) {
+    final Course course = myLesson != null ? myLesson.getCourse() : null;
+    if (course != null) {
+      course.taskChanged(this, event);
+    }
+  }
+
+  /**
+   * Creates a deep copy of the task which doesn't belong to any lesson.
+   * Texts are immutable and are shared with the copy.
+   */
   public Task copy() {
-    Element element = XmlSerializer.serialize(this);
-    Task copy = XmlSerializer.deserialize(element, getClass());
+    final Task copy = ReflectionUtil.newInstance(getClass());
+    copyTo(copy);
     copy.initTask(null, true);
     return copy;
   }
 
+  /**
+   * Copies persistent state of the task, subclasses with their own state should override it
+   */
+  protected void copyTo(@NotNull Task copy) {
+    copy.name = name;
+    copy.myIndex = myIndex;
+    copy.myStatus = myStatus;
+    copy.myStepId = myStepId;
+    copy.myUpdateDate = myUpdateDate;
+    copy.taskFiles = new HashMap<>(taskFiles.size());
+    for (Map.Entry<String, TaskFile> entry : taskFiles.entrySet()) {
+      copy.taskFiles.put(entry.getKey(), entry.getValue().copy());
+    }
+    copy.testsText = new HashMap<>(testsText);
+    copy.taskTexts = new HashMap<>(taskTexts);
+  }
+
   public void setUpdateDate(Date date) {
     myUpdateDate = date;
   }
@@ -31,12 +31,24 @@ public class TaskWithSubtasks extends PyCharmTask {
     copyTaskParameters(task);
   }
 
+  @Override
+  protected void copyTo(@NotNull Task copy) {
+    super.copyTo(copy);
+    final TaskWithSubtasks taskWithSubtasks = (TaskWithSubtasks)copy;
+    taskWithSubtasks.myActiveSubtaskIndex = myActiveSubtaskIndex;
+    taskWithSubtasks.myLastSubtaskIndex = myLastSubtaskIndex;
+  }
+
   public int getActiveSubtaskIndex() {
     return myActiveSubtaskIndex;
   }
 
   public void setActiveSubtaskIndex(int activeSubtaskIndex) {
+    final int oldIndex = myActiveSubtaskIndex;
     myActiveSubtaskIndex = activeSubtaskIndex;
+    if (oldIndex != activeSubtaskIndex) {
+      notifyChanged(listener -> listener.subtaskChanged(this));
+    }
   }
 
   public int getLastSubtaskIndex() {
@@ -53,6 +65,7 @@ public class TaskWithSubtasks extends PyCharmTask {
         placeholder.setStatus(status);
       }
     }
+    final StudyStatus oldStatus = myStatus;
     if (status == StudyStatus.Solved) {
       if (activeSubtaskNotLast()) {
         if (myStatus == StudyStatus.Failed) {
@@ -63,6 +76,9 @@ public class TaskWithSubtasks extends PyCharmTask {
         myStatus = StudyStatus.Solved;
       }
     }
+    if (oldStatus != myStatus) {
+      notifyChanged(listener -> listener.taskStatusChanged(this));
+    }
   }
 
   public boolean activeSubtaskNotLast() {
@@ -0,0 +1,142 @@
+package com.jetbrains.edu.learning.courseGeneration;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.util.ThrowableConvertor;
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.io.zip.JBZipEntry;
+import com.intellij.util.io.zip.JBZipFile;
+import com.jetbrains.edu.learning.StudySerializationUtils;
+import com.jetbrains.edu.learning.core.EduNames;
+import com.jetbrains.edu.learning.courseFormat.Course;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Map;
+
+/**
+ * Reads courses from course archives.
+ * Course list needs only the header of course.json, so lessons are skipped while reading it and are loaded
+ * from the archive when a project is created, see {@link #loadLessons(Course)}.
+ * Headers are cached by archive path until the archive is modified.
+ */
+public class StudyCourseArchiveReader {
+  private static final Logger LOG = Logger.getInstance(StudyCourseArchiveReader.class);
+  private static final String LESSONS = "lessons";
+  private static final Map<String, Header> ourHeaders = ContainerUtil.newConcurrentMap();
+  private static final Map<Course, String> ourArchivePaths = ContainerUtil.createConcurrentWeakMap();
+
+  private StudyCourseArchiveReader() {
+  }
+
+  /**
+   * @return course without lessons, every call returns a new instance
+   */
+  @Nullable
+  public static Course readHeader(@NotNull String zipFilePath) {
+    final File file = new File(zipFilePath);
+    final long timestamp = file.lastModified();
+    final long length = file.length();
+    Header header = ourHeaders.get(zipFilePath);
+    if (header == null || header.myTimestamp != timestamp || header.myLength != length) {
+      final Course course = read(zipFilePath, StudyCourseArchiveReader::parseHeader);
+      if (course == null) {
+        ourHeaders.remove(zipFilePath);
+        return null;
+      }
+      header = new Header(course, timestamp, length);
+      ourHeaders.put(zipFilePath, header);
+    }
+    final Course course = header.myCourse.copy();
+    ourArchivePaths.put(course, zipFilePath);
+    return course;
+  }
+
+  /**
+   * Loads lessons of a course returned by {@link #readHeader}, other courses aren't changed
+   */
+  public static void loadLessons(@NotNull Course course) {
+    final String zipFilePath = ourArchivePaths.remove(course);
+    if (zipFilePath == null) {
+      return;
+    }
+    final Course fullCourse = readCourse(zipFilePath);
+    if (fullCourse == null) {
+      LOG.warn("Failed to load lessons of " + course.getName() + " from " + zipFilePath);
+      return;
+    }
+    course.setLessons(fullCourse.getLessons(true));
+  }
+
+  @Nullable
+  public static Course readCourse(@NotNull String zipFilePath) {
+    return read(zipFilePath, reader -> getGson().fromJson(reader, Course.class));
+  }
+
+  @Nullable
+  private static Course read(@NotNull String zipFilePath, @NotNull ThrowableConvertor<JsonReader, Course, IOException> convertor) {
+    try (JBZipFile zipFile = new JBZipFile(zipFilePath)) {
+      final JBZipEntry entry = zipFile.getEntry(EduNames.COURSE_META_FILE);
+      if (entry == null) {
+        return null;
+      }
+      try (JsonReader reader = new JsonReader(
+        new BufferedReader(new InputStreamReader(entry.getInputStream(), CharsetToolkit.UTF8_CHARSET)))) {
+        return convertor.convert(reader);
+      }
+    }
+    catch (IOException e) {
+      LOG.error("Failed to unzip course archive " + zipFilePath, e);
+    }
+    catch (JsonParseException e) {
+      LOG.warn("Failed to read course from " + zipFilePath, e);
+    }
+    return null;
+  }
+
+  /**
+   * Test files and images are stored in lessons, so they are skipped without being decoded
+   */
+  @NotNull
+  private static Course parseHeader(@NotNull JsonReader reader) throws IOException {
+    final JsonParser parser = new JsonParser();
+    final JsonObject header = new JsonObject();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String name = reader.nextName();
+      if (LESSONS.equals(name)) {
+        reader.skipValue();
+      }
+      else {
+        header.add(name, parser.parse(reader));
+      }
+    }
+    reader.endObject();
+    return getGson().fromJson(header, Course.class);
+  }
+
+  private static Gson getGson() {
+    return StudySerializationUtils.Json.getGson(StudySerializationUtils.Json.GsonProfile.COURSE_ARCHIVE_READER);
+  }
+
+  private static class Header {
+    private final Course myCourse;
+    private final long myTimestamp;
+    private final long myLength;
+
+    private Header(@NotNull Course course, long timestamp, long length) {
+      myCourse = course;
+      myTimestamp = timestamp;
+      myLength = length;
+    }
+  }
+}
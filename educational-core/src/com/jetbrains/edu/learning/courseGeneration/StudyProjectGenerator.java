@@ -1,8 +1,5 @@
 package com.jetbrains.edu.learning.courseGeneration;
 
-import com.google.gson.FieldNamingPolicy;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.intellij.facet.ui.ValidationResult;
 import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.lang.LanguageExtensionPoint;
@@ -12,16 +9,12 @@ import com.intellij.openapi.extensions.Extensions;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
-import com.intellij.openapi.vfs.CharsetToolkit;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.containers.ContainerUtil;
-import com.intellij.util.io.zip.JBZipEntry;
-import com.intellij.util.io.zip.JBZipFile;
 import com.jetbrains.edu.learning.*;
 import com.jetbrains.edu.learning.core.EduNames;
 import com.jetbrains.edu.learning.courseFormat.Course;
 import com.jetbrains.edu.learning.courseFormat.RemoteCourse;
-import com.jetbrains.edu.learning.courseFormat.tasks.Task;
 import com.jetbrains.edu.learning.statistics.EduUsagesCollector;
 import com.jetbrains.edu.learning.stepic.EduStepicConnector;
 import com.jetbrains.edu.learning.stepic.EduStepicNames;
@@ -30,7 +23,6 @@ import com.jetbrains.edu.learning.stepic.StudyStepikSolutionsLoader;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -101,6 +93,7 @@ public class StudyProjectGenerator {
     if (mySelectedCourse instanceof RemoteCourse) {
       return getCourseFromStepic(project, (RemoteCourse)mySelectedCourse);
     }
+    StudyCourseArchiveReader.loadLessons(mySelectedCourse);
     mySelectedCourse.initCourse(false);
     return mySelectedCourse;
   }
@@ -190,7 +183,7 @@ public class StudyProjectGenerator {
       final EduPluginConfigurator configurator = extension.getInstance();
       final List<String> paths = configurator.getBundledCoursePaths();
       for (String path : paths) {
-        courses.add(getCourse(path));
+        courses.add(StudyCourseArchiveReader.readHeader(path));
       }
     }
     return courses;
@@ -198,7 +191,7 @@ public class StudyProjectGenerator {
 
   @Nullable
   public Course addLocalCourse(String zipFilePath) {
-    final Course courseInfo = getCourse(zipFilePath);
+    final Course courseInfo = StudyCourseArchiveReader.readHeader(zipFilePath);
     if (courseInfo != null) {
       myCourses.add(0, courseInfo);
     }
@@ -207,24 +200,6 @@ public class StudyProjectGenerator {
 
   @Nullable
   public static Course getCourse(String zipFilePath) {
-    try {
-      final JBZipFile zipFile = new JBZipFile(zipFilePath);
-      final JBZipEntry entry = zipFile.getEntry(EduNames.COURSE_META_FILE);
-      if (entry == null) {
-        return null;
-      }
-      byte[] bytes = entry.getData();
-      final String jsonText = new String(bytes, CharsetToolkit.UTF8_CHARSET);
-      Gson gson = new GsonBuilder()
-        .registerTypeAdapter(Task.class, new StudySerializationUtils.Json.TaskAdapter())
-        .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
-        .create();
-      return gson.fromJson(jsonText, Course.class);
-    }
-    catch (IOException e) {
-      LOG.error("Failed to unzip course archive");
-      LOG.error(e);
-    }
-    return null;
+    return StudyCourseArchiveReader.readCourse(zipFilePath);
   }
 }
\ No newline at end of file
@@ -88,6 +88,7 @@ class StudyChoiceVariantsPanel(task: ChoiceTask) : JScrollPane() {
       else {
         task.selectedVariants.remove(index)
       }
+      task.notifyChanged(null)
     }
   }
 
@@ -39,7 +39,7 @@ public class StudyEditor extends PsiAwareTextEditorImpl {
   }
 
   public void validateTaskFile() {
-    if (!myTaskFile.isValid(getEditor().getDocument().getText())) {
+    if (!myTaskFile.isValid(getEditor().getDocument().getTextLength())) {
       JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
       panel.add(new JLabel(BROKEN_SOLUTION_ERROR_TEXT_START));
       ActionLink actionLink = new ActionLink(ACTION_TEXT, new StudyRefreshTaskFileAction());
@@ -76,9 +76,9 @@ public class StudyEditorFactoryListener implements EditorFactoryListener {
           return;
         }
 
-        StudyEditor.addDocumentListener(document, new EduDocumentListener(taskFile, true));
+        StudyEditor.addDocumentListener(document, new EduDocumentListener(project, taskFile, true));
 
-        if (!taskFile.getAnswerPlaceholders().isEmpty() && taskFile.isValid(editor.getDocument().getText())) {
+        if (!taskFile.getAnswerPlaceholders().isEmpty() && taskFile.isValid(editor.getDocument().getTextLength())) {
           StudyNavigator.navigateToFirstAnswerPlaceholder(editor, taskFile);
           boolean isStudyProject = course.isStudy();
           StudyUtils.drawAllAnswerPlaceholders(editor, taskFile);
@@ -0,0 +1,192 @@
+package com.jetbrains.edu.learning.stepic;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Ref;
+import com.intellij.util.containers.ContainerUtil;
+import com.jetbrains.edu.learning.courseFormat.RemoteCourse;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Loads tasks of the next recommended lessons of an adaptive course while the student solves the current task,
+ * so moving to the next recommendation takes one request instead of loading lesson and its steps.
+ * Recommendation itself is always requested from Stepik, prefetched task is used only if its lesson is recommended.
+ * Prefetched tasks are dropped when student reacts to a task as too hard or too boring, because it changes recommendations.
+ */
+public class EduAdaptiveRecommendationQueue implements Disposable {
+  private static final Logger LOG = Logger.getInstance(EduAdaptiveRecommendationQueue.class);
+  static final int PREFETCH_COUNT = 2;
+  // choice tasks are created with an attempt which shouldn't be too old when the task is shown
+  static final long EXPIRATION_TIME = TimeUnit.MINUTES.toMillis(10);
+
+  private final TaskLoader myLoader;
+  private final Function<Runnable, Future<?>> myExecutor;
+  private final LongSupplier myClock;
+  private final Map<String, PrefetchedTask> myTasks = new LinkedHashMap<>();
+  @Nullable private Future<?> myPrefetch;
+  private int myGeneration;
+
+  public EduAdaptiveRecommendationQueue() {
+    this(new StepikTaskLoader(), runnable -> ApplicationManager.getApplication().executeOnPooledThread(runnable),
+         System::currentTimeMillis);
+  }
+
+  /**
+   * @param executor starts loading of tasks
+   * @param clock current time in milliseconds
+   */
+  EduAdaptiveRecommendationQueue(@NotNull TaskLoader loader, @NotNull Function<Runnable, Future<?>> executor,
+                                 @NotNull LongSupplier clock) {
+    myLoader = loader;
+    myExecutor = executor;
+    myClock = clock;
+  }
+
+  public static EduAdaptiveRecommendationQueue getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, EduAdaptiveRecommendationQueue.class);
+  }
+
+  /**
+   * Starts loading tasks of the next recommendations in background, previous loading is cancelled
+   */
+  public synchronized void prefetch(@NotNull RemoteCourse course, @NotNull StepicUser user) {
+    cancelPrefetch();
+    final int generation = myGeneration;
+    myPrefetch = myExecutor.apply(() -> loadTasks(course, user.getId(), generation));
+  }
+
+  /**
+   * @return prefetched task of the lesson, the task is removed from the queue
+   */
+  @Nullable
+  public synchronized Task poll(@NotNull String lessonId, int userId) {
+    final PrefetchedTask prefetchedTask = myTasks.remove(lessonId);
+    if (prefetchedTask == null || prefetchedTask.myUserId != userId || isExpired(prefetchedTask)) {
+      return null;
+    }
+    return prefetchedTask.myTask;
+  }
+
+  public synchronized void invalidate() {
+    cancelPrefetch();
+    myTasks.clear();
+  }
+
+  @Override
+  public synchronized void dispose() {
+    invalidate();
+  }
+
+  private void cancelPrefetch() {
+    myGeneration++;
+    if (myPrefetch != null) {
+      myPrefetch.cancel(false);
+      myPrefetch = null;
+    }
+  }
+
+  private void loadTasks(@NotNull RemoteCourse course, int userId, int generation) {
+    try {
+      final List<String> lessonIds = myLoader.getRecommendedLessons(course, PREFETCH_COUNT + 1);
+      // the first recommendation is the lesson which is studied now
+      for (int i = 1; i < lessonIds.size(); i++) {
+        final String lessonId = lessonIds.get(i);
+        if (!isActual(generation)) {
+          return;
+        }
+        if (contains(lessonId, userId)) {
+          continue;
+        }
+        final Task task = myLoader.createTask(course, userId, lessonId);
+        if (task != null) {
+          add(lessonId, new PrefetchedTask(task, userId, myClock.getAsLong()), generation);
+        }
+      }
+    }
+    catch (IOException | URISyntaxException e) {
+      LOG.info("Failed to prefetch recommendations: " + e.getMessage());
+    }
+  }
+
+  private synchronized boolean isActual(int generation) {
+    return generation == myGeneration;
+  }
+
+  private synchronized boolean contains(@NotNull String lessonId, int userId) {
+    final PrefetchedTask prefetchedTask = myTasks.get(lessonId);
+    return prefetchedTask != null && prefetchedTask.myUserId == userId && !isExpired(prefetchedTask);
+  }
+
+  private synchronized void add(@NotNull String lessonId, @NotNull PrefetchedTask prefetchedTask, int generation) {
+    if (!isActual(generation)) {
+      return;
+    }
+    myTasks.remove(lessonId);
+    myTasks.put(lessonId, prefetchedTask);
+    final Iterator<String> iterator = myTasks.keySet().iterator();
+    while (myTasks.size() > PREFETCH_COUNT) {
+      iterator.next();
+      iterator.remove();
+    }
+  }
+
+  private boolean isExpired(@NotNull PrefetchedTask prefetchedTask) {
+    return myClock.getAsLong() - prefetchedTask.myTimestamp > EXPIRATION_TIME;
+  }
+
+  private static class PrefetchedTask {
+    private final Task myTask;
+    private final int myUserId;
+    private final long myTimestamp;
+
+    private PrefetchedTask(@NotNull Task task, int userId, long timestamp) {
+      myTask = task;
+      myUserId = userId;
+      myTimestamp = timestamp;
+    }
+  }
+
+  interface TaskLoader {
+    /**
+     * @return ids of recommended lessons, the first one is the lesson which is studied now
+     */
+    @NotNull
+    List<String> getRecommendedLessons(@NotNull RemoteCourse course, int count) throws IOException, URISyntaxException;
+
+    @Nullable
+    Task createTask(@NotNull RemoteCourse course, int userId, @NotNull String lessonId) throws IOException;
+  }
+
+  private static class StepikTaskLoader implements TaskLoader {
+    @NotNull
+    @Override
+    public List<String> getRecommendedLessons(@NotNull RemoteCourse course, int count) throws IOException, URISyntaxException {
+      final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient();
+      if (client == null) {
+        return Collections.emptyList();
+      }
+      final StepicWrappers.Recommendation[] recommendations = EduAdaptiveStepicConnector.getRecommendations(client, course, count);
+      return ContainerUtil.map(recommendations, recommendation -> recommendation.lesson);
+    }
+
+    @Nullable
+    @Override
+    public Task createTask(@NotNull RemoteCourse course, int userId, @NotNull String lessonId) throws IOException {
+      return EduAdaptiveStepicConnector.createTask(course, userId, lessonId, Ref.create(true));
+    }
+  }
+}
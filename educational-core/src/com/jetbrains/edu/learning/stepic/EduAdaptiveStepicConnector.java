@@ -1,9 +1,7 @@
 package com.jetbrains.edu.learning.stepic;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.internal.LinkedTreeMap;
 import com.intellij.ide.projectView.ProjectView;
 import com.intellij.lang.Language;
@@ -12,14 +10,18 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileTypes.LanguageFileType;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
 import com.jetbrains.edu.learning.EduPluginConfigurator;
 import com.jetbrains.edu.learning.EduSettings;
+import com.jetbrains.edu.learning.StudySerializationUtils.Json.GsonProfile;
 import com.jetbrains.edu.learning.StudyTaskManager;
 import com.jetbrains.edu.learning.StudyUtils;
 import com.jetbrains.edu.learning.actions.StudyCheckAction;
@@ -48,8 +50,11 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import static com.jetbrains.edu.learning.StudySerializationUtils.Json.getGson;
 import static com.jetbrains.edu.learning.stepic.EduStepicConnector.getStep;
 
 public class EduAdaptiveStepicConnector {
@@ -76,54 +81,22 @@ public class EduAdaptiveStepicConnector {
         return null;
       }
 
-      final URI uri = new URIBuilder(EduStepicNames.STEPIC_API_URL + EduStepicNames.RECOMMENDATIONS_URL)
-        .addParameter(EduNames.COURSE, String.valueOf(course.getId()))
-        .build();
-      final HttpGet request = new HttpGet(uri);
-      setTimeout(request);
-
-      final CloseableHttpResponse response = client.execute(request);
-      final HttpEntity responseEntity = response.getEntity();
-      final String responseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
-
-      final int statusCode = response.getStatusLine().getStatusCode();
-      EntityUtils.consume(responseEntity);
-      if (statusCode == HttpStatus.SC_OK) {
-        final Gson gson = new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES).create();
-        final StepicWrappers.RecommendationWrapper recomWrapper = gson.fromJson(responseString, StepicWrappers.RecommendationWrapper.class);
-
-        if (recomWrapper.recommendations.length != 0) {
-          final StepicWrappers.Recommendation recommendation = recomWrapper.recommendations[0];
-          final String lessonId = recommendation.lesson;
-          final StepicWrappers.LessonContainer lessonContainer = EduStepicAuthorizedClient.getFromStepic(EduStepicNames.LESSONS + lessonId,
-                                                                                                         StepicWrappers.LessonContainer.class);
-          if (lessonContainer != null && lessonContainer.lessons.size() == 1) {
-            final Lesson realLesson = lessonContainer.lessons.get(0);
-            course.getLessons().get(0).setId(Integer.parseInt(lessonId));
-
-            for (int stepId : realLesson.steps) {
-              StepicWrappers.StepSource step = getStep(stepId);
-              String stepType = step.block.name;
-              StepikTaskBuilder taskBuilder = new StepikTaskBuilder(course, realLesson.getName(), step, stepId, user.getId());
-              if (taskBuilder.isSupported(stepType)) {
-                final Task taskFromStep = taskBuilder.createTask(stepType);
-                if (taskFromStep != null) return taskFromStep;
-              }
-              else {
-                return skipRecommendation(project, course, user, lessonId);
-              }
-            }
-          }
-          else {
-            LOG.warn("Got unexpected number of lessons: " + (lessonContainer == null ? null : lessonContainer.lessons.size()));
-          }
+      final StepicWrappers.Recommendation[] recommendations = getRecommendations(client, course, 1);
+      if (recommendations.length != 0) {
+        final String lessonId = recommendations[0].lesson;
+        final Task prefetchedTask = EduAdaptiveRecommendationQueue.getInstance(project).poll(lessonId, user.getId());
+        final Ref<Boolean> isSupported = Ref.create(true);
+        final Task task = prefetchedTask != null ? prefetchedTask : createTask(course, user.getId(), lessonId, isSupported);
+        if (task != null) {
+          course.getLessons().get(0).setId(Integer.parseInt(lessonId));
+          return task;
         }
-        else {
-          LOG.warn("Got empty recommendation for the task: " + responseString);
+        if (!isSupported.get()) {
+          return skipRecommendation(project, course, user, lessonId);
         }
       }
       else {
-        throw new IOException("Stepic returned non 200 status code: " + responseString);
+        LOG.warn("Got empty recommendation for the course " + course.getId());
       }
     }
     catch (IOException e) {
@@ -137,7 +110,67 @@ public class EduAdaptiveStepicConnector {
     return null;
   }
 
+  /**
+   * @param count number of recommendations to get, the first one is the lesson student should study now
+   */
+  @NotNull
+  static StepicWrappers.Recommendation[] getRecommendations(@NotNull CloseableHttpClient client, @NotNull RemoteCourse course, int count)
+    throws URISyntaxException, IOException {
+    final URI uri = new URIBuilder(EduStepicNames.STEPIC_API_URL + EduStepicNames.RECOMMENDATIONS_URL)
+      .addParameter(EduNames.COURSE, String.valueOf(course.getId()))
+      .addParameter("count", String.valueOf(count))
+      .build();
+    final HttpGet request = new HttpGet(uri);
+    setTimeout(request);
+
+    final String responseString;
+    try (CloseableHttpResponse response = client.execute(request)) {
+      final HttpEntity responseEntity = response.getEntity();
+      responseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
+
+      final int statusCode = response.getStatusLine().getStatusCode();
+      EntityUtils.consume(responseEntity);
+      if (statusCode != HttpStatus.SC_OK) {
+        throw new IOException("Stepic returned non 200 status code: " + responseString);
+      }
+    }
+    final Gson gson = getGson(GsonProfile.STEPIK_API);
+    final StepicWrappers.RecommendationWrapper recomWrapper = gson.fromJson(responseString, StepicWrappers.RecommendationWrapper.class);
+    return recomWrapper.recommendations != null ? recomWrapper.recommendations : new StepicWrappers.Recommendation[0];
+  }
+
+  /**
+   * @param isSupported set to false if the lesson has steps which can't be solved in the IDE
+   * @return task for the first supported step of the lesson
+   */
+  @Nullable
+  static Task createTask(@NotNull RemoteCourse course, int userId, @NotNull String lessonId, @NotNull Ref<Boolean> isSupported)
+    throws IOException {
+    final StepicWrappers.LessonContainer lessonContainer = EduStepicAuthorizedClient.getFromStepic(EduStepicNames.LESSONS + lessonId,
+                                                                                                   StepicWrappers.LessonContainer.class);
+    if (lessonContainer == null || lessonContainer.lessons.size() != 1) {
+      LOG.warn("Got unexpected number of lessons: " + (lessonContainer == null ? null : lessonContainer.lessons.size()));
+      return null;
+    }
+    final Lesson realLesson = lessonContainer.lessons.get(0);
+    for (int stepId : realLesson.steps) {
+      StepicWrappers.StepSource step = getStep(stepId);
+      String stepType = step.block.name;
+      StepikTaskBuilder taskBuilder = new StepikTaskBuilder(course, realLesson.getName(), step, stepId, userId);
+      if (taskBuilder.isSupported(stepType)) {
+        final Task taskFromStep = taskBuilder.createTask(stepType);
+        if (taskFromStep != null) return taskFromStep;
+      }
+      else {
+        isSupported.set(false);
+        return null;
+      }
+    }
+    return null;
+  }
+
   private static Task skipRecommendation(@NotNull Project project, @NotNull RemoteCourse course, StepicUser user, String lessonId) {
+    EduAdaptiveRecommendationQueue.getInstance(project).invalidate();
     postRecommendationReaction(lessonId, String.valueOf(user.getId()), TOO_HARD_RECOMMENDATION_REACTION);
     return getNextRecommendation(project, course);
   }
@@ -162,7 +195,8 @@ public class EduAdaptiveStepicConnector {
 
   private static StepicWrappers.AdaptiveAttemptWrapper.Attempt createNewAttempt(int id) throws IOException {
     final String response = EduStepicConnector.postAttempt(id);
-    final StepicWrappers.AdaptiveAttemptContainer attempt = new Gson().fromJson(response, StepicWrappers.AdaptiveAttemptContainer.class);
+    final StepicWrappers.AdaptiveAttemptContainer attempt =
+      getGson(GsonProfile.STEPIK_REQUEST).fromJson(response, StepicWrappers.AdaptiveAttemptContainer.class);
     return attempt.attempts.get(0);
   }
 
@@ -178,7 +212,7 @@ public class EduAdaptiveStepicConnector {
     return attempt == null ? null : attempt.attempts;
   }
 
-  private static void setTimeout(HttpGet request) {
+  static void setTimeout(HttpGet request) {
     final RequestConfig requestConfig = RequestConfig.custom()
       .setConnectionRequestTimeout(CONNECTION_TIMEOUT)
       .setConnectTimeout(CONNECTION_TIMEOUT)
@@ -198,14 +232,13 @@ public class EduAdaptiveStepicConnector {
 
   public static boolean postRecommendationReaction(@NotNull String lessonId, @NotNull String user, int reaction) {
     final HttpPost post = new HttpPost(EduStepicNames.STEPIC_API_URL + EduStepicNames.RECOMMENDATION_REACTIONS_URL);
-    final String json = new Gson()
+    final String json = getGson(GsonProfile.STEPIK_REQUEST)
       .toJson(new StepicWrappers.RecommendationReactionWrapper(new StepicWrappers.RecommendationReaction(reaction, user, lessonId)));
     post.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
     final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient();
     if (client == null) return false;
     setTimeout(post);
-    try {
-      final CloseableHttpResponse execute = client.execute(post);
+    try (CloseableHttpResponse execute = client.execute(post)) {
       final int statusCode = execute.getStatusLine().getStatusCode();
       final HttpEntity entity = execute.getEntity();
       final String entityString = EntityUtils.toString(entity);
@@ -245,6 +278,11 @@ public class EduAdaptiveStepicConnector {
       return;
     }
 
+    boolean replaceCurrentTask = reactionToPost == TOO_HARD_RECOMMENDATION_REACTION || reactionToPost == TOO_BORING_RECOMMENDATION_REACTION;
+    final EduAdaptiveRecommendationQueue recommendationQueue = EduAdaptiveRecommendationQueue.getInstance(project);
+    if (replaceCurrentTask) {
+      recommendationQueue.invalidate();
+    }
     final boolean reactionPosted = postRecommendationReaction(String.valueOf(lesson.getId()), String.valueOf(user.getId()), reactionToPost);
     if (!reactionPosted) {
       LOG.warn("Recommendation reaction wasn't posted");
@@ -261,7 +299,6 @@ public class EduAdaptiveStepicConnector {
     }
 
     task.initTask(lesson, false);
-    boolean replaceCurrentTask = reactionToPost == TOO_HARD_RECOMMENDATION_REACTION || reactionToPost == TOO_BORING_RECOMMENDATION_REACTION;
     if (replaceCurrentTask) {
       replaceCurrentTask(project, task, lesson);
     }
@@ -274,6 +311,7 @@ public class EduAdaptiveStepicConnector {
       ProjectView.getInstance(project).refresh();
       StudyNavigator.navigateToTask(project, task);
     });
+    recommendationQueue.prefetch((RemoteCourse)course, user);
   }
 
   private static void addAsNextTask(@NotNull Project project, @NotNull Task task, @NotNull Lesson lesson) {
@@ -283,6 +321,7 @@ public class EduAdaptiveStepicConnector {
     lesson.addTask(task);
     task.setIndex(lesson.getTaskList().size());
     lesson.initLesson(course, true);
+    course.structureChanged();
 
     final String lessonName = EduNames.LESSON + lesson.getIndex();
     createFilesForNewTask(project, task, lessonName, course.getLanguageById());
@@ -310,6 +349,7 @@ public class EduAdaptiveStepicConnector {
 
     task.setIndex(taskIndex);
     lesson.getTaskList().set(taskIndex - 1, task);
+    course.structureChanged();
 
     final String lessonName = EduNames.LESSON + lesson.getIndex();
     updateProjectFiles(project, task, lessonName, course.getLanguageById());
@@ -439,14 +479,17 @@ public class EduAdaptiveStepicConnector {
       StepicWrappers.ResultSubmissionWrapper wrapper = postResultsForCheck(client, submission);
       if (wrapper != null) {
         wrapper = getCheckResults(client, wrapper, attemptId, userId);
-        if (wrapper.submissions.length > 0) {
+        if (wrapper == null) {
+          return new StudyCheckResult(StudyStatus.Unchecked, "Can't get check results for Stepik");
+        }
+        if (wrapper.submissions != null && wrapper.submissions.length > 0) {
           final String status = wrapper.submissions[0].status;
           final String hint = wrapper.submissions[0].hint;
           final boolean isSolved = !status.equals("wrong");
           return new StudyCheckResult(isSolved ? StudyStatus.Solved : StudyStatus.Failed, hint.isEmpty() ? StringUtil.capitalize(status) + " solution" : hint);
         }
         else {
-          LOG.warn("Got a submission wrapper with incorrect submissions number: " + wrapper.submissions.length);
+          LOG.warn("Got a submission wrapper without submissions");
         }
       }
       else {
@@ -460,21 +503,21 @@ public class EduAdaptiveStepicConnector {
   @Nullable
   private static StepicWrappers.ResultSubmissionWrapper postResultsForCheck(@NotNull final CloseableHttpClient client,
                                                                             @NotNull StepicWrappers.SubmissionToPostWrapper submissionToPostWrapper) {
-    final CloseableHttpResponse response;
     try {
       final HttpPost httpPost = new HttpPost(EduStepicNames.STEPIC_API_URL + EduStepicNames.SUBMISSIONS);
       setTimeout(httpPost);
       try {
-        httpPost.setEntity(new StringEntity(new Gson().toJson(submissionToPostWrapper)));
+        httpPost.setEntity(new StringEntity(getGson(GsonProfile.STEPIK_REQUEST).toJson(submissionToPostWrapper)));
       }
       catch (UnsupportedEncodingException e) {
         LOG.warn(e.getMessage());
       }
-      response = client.execute(httpPost);
-      final HttpEntity entity = response.getEntity();
-      final String entityString = EntityUtils.toString(entity);
-      EntityUtils.consume(entity);
-      return new Gson().fromJson(entityString, StepicWrappers.ResultSubmissionWrapper.class);
+      try (CloseableHttpResponse response = client.execute(httpPost)) {
+        final HttpEntity entity = response.getEntity();
+        final String entityString = EntityUtils.toString(entity);
+        EntityUtils.consume(entity);
+        return getGson(GsonProfile.STEPIK_REQUEST).fromJson(entityString, StepicWrappers.ResultSubmissionWrapper.class);
+      }
     }
     catch (IOException e) {
       LOG.warn(e.getMessage());
@@ -482,51 +525,60 @@ public class EduAdaptiveStepicConnector {
     return null;
   }
 
-  @NotNull
+  /**
+   * Waits for evaluation of the submission on the checking thread. The thread is parked until the tracker completes
+   * the result, cancellation of the progress indicator is detected by the tracker.
+   *
+   * @return null if results weren't received
+   */
+  @Nullable
   private static StepicWrappers.ResultSubmissionWrapper getCheckResults(@NotNull CloseableHttpClient client,
                                                                         @NotNull StepicWrappers.ResultSubmissionWrapper wrapper,
                                                                         int attemptId,
                                                                         int userId) {
+    final ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    final long timeout = TimeUnit.SECONDS.toMillis(EduSettings.getInstance().getSubmissionCheckTimeout());
+    final Future<StepicWrappers.ResultSubmissionWrapper> future =
+      EduSubmissionTracker.track(client, wrapper, attemptId, userId, indicator, timeout);
     try {
-      while (wrapper.submissions.length == 1 && wrapper.submissions[0].status.equals("evaluation")) {
-        TimeUnit.MILLISECONDS.sleep(500);
-        final URI submissionURI = new URIBuilder(EduStepicNames.STEPIC_API_URL + EduStepicNames.SUBMISSIONS)
-          .addParameter("attempt", String.valueOf(attemptId))
-          .addParameter("order", "desc")
-          .addParameter("user", String.valueOf(userId))
-          .build();
-        final HttpGet httpGet = new HttpGet(submissionURI);
-        setTimeout(httpGet);
-        final CloseableHttpResponse httpResponse = client.execute(httpGet);
-        final HttpEntity entity = httpResponse.getEntity();
-        final String entityString = EntityUtils.toString(entity);
-        EntityUtils.consume(entity);
-        wrapper = new Gson().fromJson(entityString, StepicWrappers.ResultSubmissionWrapper.class);
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException(e);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof ProcessCanceledException) {
+        throw (ProcessCanceledException)e.getCause();
       }
+      LOG.warn("Failed to get check results: " + e.getCause().getMessage());
+      return null;
     }
-    catch (InterruptedException | URISyntaxException | IOException e) {
-      LOG.warn(e.getMessage());
+    finally {
+      future.cancel(false);
     }
-    return wrapper;
   }
 
   private static int getAttemptId(@NotNull Task task) throws IOException {
     final StepicWrappers.AdaptiveAttemptWrapper attemptWrapper = new StepicWrappers.AdaptiveAttemptWrapper(task.getStepId());
 
     final HttpPost post = new HttpPost(EduStepicNames.STEPIC_API_URL + EduStepicNames.ATTEMPTS);
-    post.setEntity(new StringEntity(new Gson().toJson(attemptWrapper)));
+    post.setEntity(new StringEntity(getGson(GsonProfile.STEPIK_REQUEST).toJson(attemptWrapper)));
 
     final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient();
     if (client == null) return -1;
     setTimeout(post);
-    final CloseableHttpResponse httpResponse = client.execute(post);
-    final int statusCode = httpResponse.getStatusLine().getStatusCode();
-    final HttpEntity entity = httpResponse.getEntity();
-    final String entityString = EntityUtils.toString(entity);
-    EntityUtils.consume(entity);
+    final int statusCode;
+    final String entityString;
+    try (CloseableHttpResponse httpResponse = client.execute(post)) {
+      statusCode = httpResponse.getStatusLine().getStatusCode();
+      final HttpEntity entity = httpResponse.getEntity();
+      entityString = EntityUtils.toString(entity);
+      EntityUtils.consume(entity);
+    }
     if (statusCode == HttpStatus.SC_CREATED) {
       final StepicWrappers.AttemptContainer container =
-        new Gson().fromJson(entityString, StepicWrappers.AttemptContainer.class);
+        getGson(GsonProfile.STEPIK_REQUEST).fromJson(entityString, StepicWrappers.AttemptContainer.class);
       return (container.attempts != null && !container.attempts.isEmpty()) ? container.attempts.get(0).id : -1;
     }
     return -1;
@@ -537,7 +589,7 @@ public class EduAdaptiveStepicConnector {
 
     String testText = "from test_helper import check_samples\n\n" +
                       "if __name__ == '__main__':\n" +
-                      "    check_samples(samples=" + new GsonBuilder().create().toJson(samples) + ")";
+                      "    check_samples(samples=" + getGson(GsonProfile.STEPIK_REQUEST).toJson(samples) + ")";
     task.addTestsTexts("tests.py", testText);
   }
 
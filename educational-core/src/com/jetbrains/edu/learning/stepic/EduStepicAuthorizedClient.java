@@ -1,17 +1,19 @@
 package com.jetbrains.edu.learning.stepic;
 
-import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.jetbrains.edu.learning.EduSettings;
+import com.jetbrains.edu.learning.StudySerializationUtils.Json.GsonProfile;
 import org.apache.http.*;
+import org.apache.http.client.ServiceUnavailableRetryStrategy;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -19,13 +21,28 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
+import static com.jetbrains.edu.learning.StudySerializationUtils.Json.getGson;
 import static com.jetbrains.edu.learning.stepic.EduStepicClient.getBuilder;
 
+/**
+ * Client for requests on behalf of the logged in user.
+ * Expiration of access token is tracked locally: token is refreshed in background shortly before it expires,
+ * and a request rejected with 401 is repeated once with refreshed tokens, so tokens aren't validated with extra requests.
+ */
 public class EduStepicAuthorizedClient {
   private static final Logger LOG = Logger.getInstance(EduStepicAuthorizedClient.class.getName());
+  static final String ACCESS_TOKEN_ATTRIBUTE = "edu.stepik.access.token";
+  static final long REFRESH_MARGIN = TimeUnit.MINUTES.toMillis(10);
+  private static final long REFRESH_RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+  private static final AtomicBoolean ourRefreshInProgress = new AtomicBoolean();
+  private static volatile long ourNextRefreshTime;
 
   private static CloseableHttpClient ourClient;
+  private static StepicUser ourClientUser;
 
   private EduStepicAuthorizedClient() {
   }
@@ -33,6 +50,7 @@ public class EduStepicAuthorizedClient {
   @Nullable
   public static CloseableHttpClient getHttpClient() {
     if (ourClient != null) {
+      refreshBeforeExpiration(ourClientUser);
       return ourClient;
     }
 
@@ -43,17 +61,11 @@ public class EduStepicAuthorizedClient {
     StepicUser stepicUser = eduSettings.getUser();
     assert stepicUser != null;
 
-    if (!EduStepicClient.isTokenUpToDate(stepicUser.getAccessToken())) {
-      StepicWrappers.TokenInfo tokens = getUpdatedTokens(stepicUser.getRefreshToken());
-      if (tokens != null) {
-        stepicUser.setTokenInfo(tokens);
-      }
-      else {
-        return null;
-      }
+    if (isTokenExpired(stepicUser) && !refreshTokens(stepicUser, stepicUser.getAccessToken())) {
+      return null;
     }
 
-    ourClient = createInitializedClient(stepicUser.getAccessToken());
+    ourClient = createInitializedClient(stepicUser);
 
     return ourClient;
   }
@@ -61,7 +73,11 @@ public class EduStepicAuthorizedClient {
   @Nullable
   public static <T> T getFromStepic(@NotNull String link, @NotNull final Class<T> container) throws IOException {
     final CloseableHttpClient client = getHttpClient();
-    return client == null ? null : EduStepicClient.getFromStepic(link, container, client);
+    final StepicUser user = EduSettings.getInstance().getUser();
+    if (client == null || user == null) {
+      return null;
+    }
+    return EduStepicClient.getFromStepic(link, container, client, user.getId());
   }
 
   /*
@@ -71,20 +87,15 @@ public class EduStepicAuthorizedClient {
   @NotNull
   public static CloseableHttpClient getHttpClient(@NotNull final StepicUser stepicUser) {
     if (ourClient != null) {
+      refreshBeforeExpiration(ourClientUser);
       return ourClient;
     }
 
-    if (!EduStepicClient.isTokenUpToDate(stepicUser.getAccessToken())) {
-      StepicWrappers.TokenInfo tokenInfo = getUpdatedTokens(stepicUser.getRefreshToken());
-      if (tokenInfo != null) {
-        stepicUser.setTokenInfo(tokenInfo);
-      }
-      else {
-        return EduStepicClient.getHttpClient();
-      }
+    if (isTokenExpired(stepicUser) && !refreshTokens(stepicUser, stepicUser.getAccessToken())) {
+      return EduStepicClient.getHttpClient();
     }
 
-    ourClient = createInitializedClient(stepicUser.getAccessToken());
+    ourClient = createInitializedClient(stepicUser);
 
     return ourClient;
   }
@@ -94,15 +105,94 @@ public class EduStepicAuthorizedClient {
    * Make sure you saved stepic user in task manager after using this method.
    */
   public static <T> T getFromStepic(String link, final Class<T> container, @NotNull final StepicUser stepicUser) throws IOException {
-    return EduStepicClient.getFromStepic(link, container, getHttpClient(stepicUser));
+    final CloseableHttpClient client = getHttpClient(stepicUser);
+    final int userId = client == EduStepicClient.getHttpClient() ? EduStepicClient.ANONYMOUS_USER_ID : stepicUser.getId();
+    return EduStepicClient.getFromStepic(link, container, client, userId);
   }
 
+  /**
+   * Authorization header is added to each request, so the client keeps working after tokens of the user are refreshed
+   */
   @NotNull
-  private static CloseableHttpClient createInitializedClient(@NotNull String accessToken) {
+  private static CloseableHttpClient createInitializedClient(@NotNull StepicUser user) {
+    ourClientUser = user;
     final List<BasicHeader> headers = new ArrayList<>();
-    headers.add(new BasicHeader("Authorization", "Bearer " + accessToken));
     headers.add(new BasicHeader("Content-type", EduStepicNames.CONTENT_TYPE_APP_JSON));
-    return getBuilder().setDefaultHeaders(headers).build();
+    return getBuilder()
+      .setDefaultHeaders(headers)
+      .addInterceptorLast((HttpRequestInterceptor)(request, context) -> {
+        final String accessToken = user.getAccessToken();
+        context.setAttribute(ACCESS_TOKEN_ATTRIBUTE, accessToken);
+        request.setHeader("Authorization", "Bearer " + accessToken);
+      })
+      .setServiceUnavailableRetryStrategy(new TokenRefreshStrategy(user, EduStepicAuthorizedClient::getUpdatedTokens))
+      .build();
+  }
+
+  private static boolean isTokenExpired(@NotNull StepicUser user) {
+    return isTokenExpired(user, System.currentTimeMillis());
+  }
+
+  static boolean isTokenExpired(@NotNull StepicUser user, long now) {
+    final long expiresAt = user.getTokenExpiresAt();
+    return user.getAccessToken().isEmpty() || expiresAt != 0 && now >= expiresAt;
+  }
+
+  /**
+   * @return true if token of the user expires soon and should be refreshed in advance
+   */
+  static boolean shouldRefresh(@NotNull StepicUser user, long now) {
+    final long expiresAt = user.getTokenExpiresAt();
+    return expiresAt != 0 && expiresAt - now <= REFRESH_MARGIN;
+  }
+
+  private static void refreshBeforeExpiration(@Nullable StepicUser user) {
+    if (user == null) {
+      return;
+    }
+    final long now = System.currentTimeMillis();
+    if (!shouldRefresh(user, now) || now < ourNextRefreshTime) {
+      return;
+    }
+    if (!ourRefreshInProgress.compareAndSet(false, true)) {
+      return;
+    }
+    final String accessToken = user.getAccessToken();
+    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      try {
+        if (!refreshTokens(user, accessToken)) {
+          ourNextRefreshTime = System.currentTimeMillis() + REFRESH_RETRY_DELAY;
+        }
+      }
+      finally {
+        ourRefreshInProgress.set(false);
+      }
+    });
+  }
+
+  /**
+   * @param expiredToken access token which should be replaced, tokens aren't requested again if another request has already replaced it
+   * @return true if user has a new access token
+   */
+  private static boolean refreshTokens(@NotNull StepicUser user, @Nullable String expiredToken) {
+    return refreshTokens(user, expiredToken, EduStepicAuthorizedClient::getUpdatedTokens);
+  }
+
+  /**
+   * @param getTokens requests new tokens by refresh token
+   */
+  static synchronized boolean refreshTokens(@NotNull StepicUser user, @Nullable String expiredToken,
+                                            @NotNull Function<String, StepicWrappers.TokenInfo> getTokens) {
+    if (expiredToken != null && !expiredToken.equals(user.getAccessToken())) {
+      return true;
+    }
+    final StepicWrappers.TokenInfo tokens = getTokens.apply(user.getRefreshToken());
+    if (tokens == null) {
+      LOG.warn("Failed to refresh tokens");
+      return false;
+    }
+    user.setTokenInfo(tokens);
+    return true;
   }
 
   @Nullable
@@ -116,7 +206,7 @@ public class EduStepicAuthorizedClient {
     StepicWrappers.TokenInfo tokenInfo = getTokens(parameters);
     if (tokenInfo != null) {
       final StepicUser user = new StepicUser(tokenInfo);
-      ourClient = createInitializedClient(user.getAccessToken());
+      ourClient = createInitializedClient(user);
 
       final StepicUser currentUser = getCurrentUser();
       if (currentUser != null) {
@@ -132,6 +222,7 @@ public class EduStepicAuthorizedClient {
 
   public static void invalidateClient() {
     ourClient = null;
+    ourClientUser = null;
   }
 
   @Nullable
@@ -166,14 +257,13 @@ public class EduStepicAuthorizedClient {
 
   @Nullable
   private static StepicWrappers.TokenInfo getTokens(@NotNull final List<NameValuePair> parameters) {
-    final Gson gson = new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES).create();
+    final Gson gson = getGson(GsonProfile.STEPIK_API);
 
     final HttpPost request = new HttpPost(EduStepicNames.TOKEN_URL);
     request.setEntity(new UrlEncodedFormEntity(parameters, Consts.UTF_8));
 
-    try {
-      final CloseableHttpClient client = EduStepicClient.getHttpClient();
-      final CloseableHttpResponse response = client.execute(request);
+    final CloseableHttpClient client = EduStepicClient.getHttpClient();
+    try (CloseableHttpResponse response = client.execute(request)) {
       final StatusLine statusLine = response.getStatusLine();
       final HttpEntity responseEntity = response.getEntity();
       final String responseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
@@ -190,4 +280,31 @@ public class EduStepicAuthorizedClient {
     }
     return null;
   }
+
+  /**
+   * Repeats a request rejected with 401 once, after access token is refreshed
+   */
+  static class TokenRefreshStrategy implements ServiceUnavailableRetryStrategy {
+    private final StepicUser myUser;
+    private final Function<String, StepicWrappers.TokenInfo> myGetTokens;
+
+    TokenRefreshStrategy(@NotNull StepicUser user, @NotNull Function<String, StepicWrappers.TokenInfo> getTokens) {
+      myUser = user;
+      myGetTokens = getTokens;
+    }
+
+    @Override
+    public boolean retryRequest(HttpResponse response, int executionCount, HttpContext context) {
+      if (executionCount > 1 || response.getStatusLine().getStatusCode() != HttpStatus.SC_UNAUTHORIZED) {
+        return false;
+      }
+      final Object accessToken = context.getAttribute(ACCESS_TOKEN_ATTRIBUTE);
+      return refreshTokens(myUser, accessToken instanceof String ? (String)accessToken : null, myGetTokens);
+    }
+
+    @Override
+    public long getRetryInterval() {
+      return 0;
+    }
+  }
 }
@@ -1,44 +1,45 @@
 package com.jetbrains.edu.learning.stepic;
 
-import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.util.net.HttpConfigurable;
-import com.intellij.util.net.ssl.CertificateManager;
-import com.intellij.util.net.ssl.ConfirmingTrustManager;
 import com.jetbrains.edu.learning.StudySerializationUtils;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
-import org.apache.http.HttpStatus;
-import org.apache.http.StatusLine;
+import org.apache.http.*;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
-import org.apache.http.message.BasicHeader;
 import org.apache.http.util.EntityUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.URI;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.util.ArrayList;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 public class EduStepicClient {
   private static final Logger LOG = Logger.getInstance(EduStepicClient.class.getName());
   private static CloseableHttpClient ourClient;
   private static final int TIMEOUT_SECONDS = 10;
+  // uploads and checks may be processed by Stepik for a while before the response is sent
+  private static final int DEFAULT_SOCKET_TIMEOUT_SECONDS = 60;
+  static final RequestConfig DEFAULT_REQUEST_CONFIG = RequestConfig.custom()
+    .setConnectionRequestTimeout(TIMEOUT_SECONDS * 1000)
+    .setConnectTimeout(TIMEOUT_SECONDS * 1000)
+    .setSocketTimeout(DEFAULT_SOCKET_TIMEOUT_SECONDS * 1000)
+    .build();
+  static final int ANONYMOUS_USER_ID = 0;
 
   private EduStepicClient() {
   }
@@ -52,7 +53,7 @@ public class EduStepicClient {
   }
 
   public static <T> T getFromStepic(String link, final Class<T> container) throws IOException {
-    return getFromStepic(link, container, getHttpClient());
+    return getFromStepic(link, container, getHttpClient(), ANONYMOUS_USER_ID);
   }
 
   static <T> T getFromStepic(String link, final Class<T> container, @NotNull final CloseableHttpClient client) throws IOException {
@@ -60,15 +61,115 @@ public class EduStepicClient {
     final HttpGet request = new HttpGet(EduStepicNames.STEPIC_API_URL + link);
     addTimeout(request);
 
-    final CloseableHttpResponse response = client.execute(request);
-    final StatusLine statusLine = response.getStatusLine();
+    try (CloseableHttpResponse response = client.execute(request)) {
+      final StatusLine statusLine = response.getStatusLine();
+      final HttpEntity responseEntity = response.getEntity();
+      if (statusLine.getStatusCode() != HttpStatus.SC_OK) {
+        throw createStatusException(responseEntity);
+      }
+      if (responseEntity == null) {
+        return null;
+      }
+      // parse directly from the entity stream to avoid keeping the whole response as a string
+      try {
+        final Reader reader = new InputStreamReader(responseEntity.getContent(), getCharset(responseEntity));
+        return deserializeStepicResponse(container, reader, link);
+      }
+      finally {
+        EntityUtils.consume(responseEntity);
+      }
+    }
+  }
+
+  /**
+   * Same as {@link #getFromStepic(String, Class, CloseableHttpClient)}, but goes through {@link StepicResponseCache}:
+   * cached responses are revalidated with a conditional request and returned when Stepik is unavailable.
+   *
+   * @param userId id of the user whose credentials the client uses, responses of different users are cached separately
+   */
+  static <T> T getFromStepic(String link, final Class<T> container, @NotNull final CloseableHttpClient client, int userId)
+    throws IOException {
+    if (!link.startsWith("/")) link = "/" + link;
+    final String url = EduStepicNames.STEPIC_API_URL + link;
+    final HttpGet request = new HttpGet(url);
+    addTimeout(request);
+    final StepicResponseCache.Entry cachedEntry = StepicResponseCache.get(url, userId);
+    if (cachedEntry != null) {
+      cachedEntry.addValidators(request);
+    }
+
+    final CloseableHttpResponse response;
+    try {
+      response = client.execute(request);
+    }
+    catch (IOException e) {
+      if (cachedEntry == null) throw e;
+      LOG.warn("Failed to get " + url + ", cached response is used: " + e.getMessage());
+      return readCachedResponse(cachedEntry, container, link);
+    }
+    final int statusCode = response.getStatusLine().getStatusCode();
     final HttpEntity responseEntity = response.getEntity();
+    try {
+      if (cachedEntry != null && (statusCode == HttpStatus.SC_NOT_MODIFIED || statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR)) {
+        return readCachedResponse(cachedEntry, container, link);
+      }
+      if (statusCode != HttpStatus.SC_OK) {
+        throw createStatusException(responseEntity);
+      }
+      if (responseEntity == null) {
+        return null;
+      }
+      final String eTag = getHeaderValue(response, HttpHeaders.ETAG);
+      final String lastModified = getHeaderValue(response, HttpHeaders.LAST_MODIFIED);
+      if (eTag == null && lastModified == null) {
+        final Reader reader = new InputStreamReader(responseEntity.getContent(), getCharset(responseEntity));
+        return deserializeStepicResponse(container, reader, link);
+      }
+      final StepicResponseCache.Entry entry =
+        StepicResponseCache.put(url, userId, eTag, lastModified, getCharset(responseEntity), responseEntity.getContent());
+      return readCachedResponse(entry, container, link);
+    }
+    finally {
+      EntityUtils.consume(responseEntity);
+      response.close();
+    }
+  }
+
+  private static <T> T readCachedResponse(@NotNull StepicResponseCache.Entry entry, @NotNull Class<T> container, @NotNull String link)
+    throws IOException {
+    try (Reader reader = entry.openReader()) {
+      return deserializeStepicResponse(container, reader, link);
+    }
+  }
+
+  private static <T> T deserializeStepicResponse(@NotNull Class<T> container, @NotNull Reader reader, @NotNull String link)
+    throws IOException {
+    try {
+      return deserializeStepicResponse(container, reader);
+    }
+    catch (JsonParseException e) {
+      throw new IOException("Failed to parse Stepic response for " + link, e);
+    }
+  }
+
+  @NotNull
+  private static IOException createStatusException(@Nullable HttpEntity responseEntity) throws IOException {
     final String responseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
     EntityUtils.consume(responseEntity);
-    if (statusLine.getStatusCode() != HttpStatus.SC_OK) {
-      throw new IOException("Stepic returned non 200 status code " + responseString);
-    }
-    return deserializeStepicResponse(container, responseString);
+    return new IOException("Stepic returned non 200 status code " + responseString);
+  }
+
+  @Nullable
+  private static String getHeaderValue(@NotNull HttpResponse response, @NotNull String name) {
+    final Header header = response.getFirstHeader(name);
+    return header != null ? header.getValue() : null;
+  }
+
+  @NotNull
+  private static Charset getCharset(@NotNull HttpEntity entity) {
+    final ContentType contentType = ContentType.get(entity);
+    final Charset charset = contentType != null ? contentType.getCharset() : null;
+    return charset != null ? charset : StandardCharsets.UTF_8;
   }
 
   private static void addTimeout(@NotNull HttpGet request) {
@@ -82,11 +183,16 @@ public class EduStepicClient {
   }
 
   static <T> T deserializeStepicResponse(Class<T> container, String responseString) {
-    Gson gson =
-      new GsonBuilder().registerTypeAdapter(StepicWrappers.StepOptions.class, new StudySerializationUtils.Json.StepicStepOptionsAdapter()).
-        setDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'").
-        setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES).create();
-    return gson.fromJson(responseString, container);
+    return getGson().fromJson(responseString, container);
+  }
+
+  static <T> T deserializeStepicResponse(Class<T> container, Reader responseReader) {
+    return getGson().fromJson(responseReader, container);
+  }
+
+  @NotNull
+  private static Gson getGson() {
+    return StudySerializationUtils.Json.getGson(StudySerializationUtils.Json.GsonProfile.STEPIK_API);
   }
 
   private static void initializeClient() {
@@ -96,10 +202,19 @@ public class EduStepicClient {
     }
   }
 
+  /**
+   * Clients created with the builder share connections from {@link EduStepicConnectionPool}
+   * and record their requests in {@link EduStepicMetrics}.
+   * Requests without their own config use {@link #DEFAULT_REQUEST_CONFIG}, so they can't hang on a stalled connection.
+   */
   @NotNull
   static HttpClientBuilder getBuilder() {
-    final HttpClientBuilder builder = HttpClients.custom().setSSLContext(CertificateManager.getInstance().getSslContext()).
-      setMaxConnPerRoute(100000).setConnectionReuseStrategy(DefaultConnectionReuseStrategy.INSTANCE);
+    final HttpClientBuilder builder = HttpClients.custom()
+      .setDefaultRequestConfig(DEFAULT_REQUEST_CONFIG)
+      .setConnectionManager(EduStepicConnectionPool.getConnectionManager())
+      .setConnectionManagerShared(true)
+      .setConnectionReuseStrategy(DefaultConnectionReuseStrategy.INSTANCE);
+    EduStepicMetrics.instrument(builder);
 
     final HttpConfigurable proxyConfigurable = HttpConfigurable.getInstance();
     final List<Proxy> proxies = proxyConfigurable.getOnlyBySettingsSelector().select(URI.create(EduStepicNames.STEPIC_URL));
@@ -107,40 +222,6 @@ public class EduStepicClient {
     if (address != null) {
       builder.setProxy(new HttpHost(address.getHostName(), address.getPort()));
     }
-    final ConfirmingTrustManager trustManager = CertificateManager.getInstance().getTrustManager();
-    try {
-      SSLContext sslContext = SSLContext.getInstance("TLS");
-      sslContext.init(null, new TrustManager[]{trustManager}, new SecureRandom());
-      builder.setSSLContext(sslContext);
-    }
-    catch (NoSuchAlgorithmException | KeyManagementException e) {
-      LOG.error(e.getMessage());
-    }
     return builder;
   }
-
-  static boolean isTokenUpToDate(@NotNull String token) {
-    if (token.isEmpty()) return false;
-
-    final List<BasicHeader> headers = new ArrayList<>();
-    headers.add(new BasicHeader("Authorization", "Bearer " + token));
-    headers.add(new BasicHeader("Content-type", EduStepicNames.CONTENT_TYPE_APP_JSON));
-    CloseableHttpClient httpClient = getBuilder().setDefaultHeaders(headers).build();
-
-    try {
-      final StepicWrappers.AuthorWrapper wrapper =
-        getFromStepic(EduStepicNames.CURRENT_USER, StepicWrappers.AuthorWrapper.class, httpClient);
-      if (wrapper != null && !wrapper.users.isEmpty()) {
-        StepicUser user = wrapper.users.get(0);
-        return user != null && !user.isGuest();
-      }
-      else {
-        throw new IOException(wrapper == null ? "Got a null current user" : "Got an empty wrapper");
-      }
-    }
-    catch (IOException e) {
-      LOG.warn(e.getMessage());
-      return false;
-    }
-  }
 }
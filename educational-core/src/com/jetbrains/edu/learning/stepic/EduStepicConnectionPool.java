@@ -0,0 +1,126 @@
+package com.jetbrains.edu.learning.stepic;
+
+import com.intellij.concurrency.JobScheduler;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.net.ssl.CertificateManager;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.jetbrains.annotations.NotNull;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import java.io.IOException;
+import java.net.Socket;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connections shared by all Stepik clients, so anonymous and authorized clients reuse the same TLS sessions
+ * and parallel loaders can't open unlimited number of sockets.
+ * Expired and idle connections are closed in background, connections idle for a while are validated before reuse.
+ */
+public class EduStepicConnectionPool {
+  private static final Logger LOG = Logger.getInstance(EduStepicConnectionPool.class);
+  // enough for Stepik loaders, uploaders and submission polling running at the same time
+  private static final int MAX_CONNECTIONS_PER_ROUTE = 16;
+  private static final int MAX_CONNECTIONS = 32;
+  private static final int VALIDATE_AFTER_INACTIVITY_MS = 2000;
+  private static final int IDLE_TIMEOUT_SECONDS = 30;
+  private static final AtomicLong ourHandshakeCount = new AtomicLong();
+  private static PoolingHttpClientConnectionManager ourConnectionManager;
+
+  private EduStepicConnectionPool() {
+  }
+
+  @NotNull
+  static synchronized PoolingHttpClientConnectionManager getConnectionManager() {
+    if (ourConnectionManager == null) {
+      ourConnectionManager = createConnectionManager();
+    }
+    return ourConnectionManager;
+  }
+
+  @NotNull
+  public static synchronized Statistics getStatistics() {
+    final PoolStats stats = ourConnectionManager != null ? ourConnectionManager.getTotalStats()
+                                                         : new PoolStats(0, 0, 0, MAX_CONNECTIONS);
+    return new Statistics(stats, ourHandshakeCount.get());
+  }
+
+  @NotNull
+  private static PoolingHttpClientConnectionManager createConnectionManager() {
+    final Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+      .register("http", PlainConnectionSocketFactory.getSocketFactory())
+      .register("https", new CountingSslSocketFactory(createSslContext()))
+      .build();
+    final PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(registry);
+    manager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+    manager.setMaxTotal(MAX_CONNECTIONS);
+    manager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MS);
+    JobScheduler.getScheduler().scheduleWithFixedDelay(() -> {
+      manager.closeExpiredConnections();
+      manager.closeIdleConnections(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }, IDLE_TIMEOUT_SECONDS, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    return manager;
+  }
+
+  @NotNull
+  private static SSLContext createSslContext() {
+    try {
+      final SSLContext sslContext = SSLContext.getInstance("TLS");
+      sslContext.init(null, new TrustManager[]{CertificateManager.getInstance().getTrustManager()}, new SecureRandom());
+      return sslContext;
+    }
+    catch (NoSuchAlgorithmException | KeyManagementException e) {
+      LOG.error(e.getMessage());
+      return CertificateManager.getInstance().getSslContext();
+    }
+  }
+
+  private static class CountingSslSocketFactory extends SSLConnectionSocketFactory {
+    private CountingSslSocketFactory(@NotNull SSLContext sslContext) {
+      super(sslContext);
+    }
+
+    @Override
+    public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+      final Socket sslSocket = super.createLayeredSocket(socket, target, port, context);
+      ourHandshakeCount.incrementAndGet();
+      return sslSocket;
+    }
+  }
+
+  /**
+   * Connections of the pool at some moment and number of TLS handshakes made since the start
+   */
+  public static class Statistics {
+    public final int leased;
+    public final int available;
+    public final int pending;
+    public final int max;
+    public final long handshakes;
+
+    private Statistics(@NotNull PoolStats stats, long handshakes) {
+      leased = stats.getLeased();
+      available = stats.getAvailable();
+      pending = stats.getPending();
+      max = stats.getMax();
+      this.handshakes = handshakes;
+    }
+
+    @Override
+    public String toString() {
+      return "leased: " + leased + ", available: " + available + ", pending: " + pending + ", max: " + max +
+             ", TLS handshakes: " + handshakes;
+    }
+  }
+}
@@ -1,7 +1,5 @@
 package com.jetbrains.edu.learning.stepic;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.intellij.ide.BrowserUtil;
 import com.intellij.lang.LanguageExtensionPoint;
 import com.intellij.lang.java.JavaLanguage;
@@ -15,8 +13,10 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.StreamUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.ConcurrencyUtil;
 import com.jetbrains.edu.learning.EduPluginConfigurator;
 import com.jetbrains.edu.learning.EduSettings;
+import com.jetbrains.edu.learning.StudySerializationUtils.Json.GsonProfile;
 import com.jetbrains.edu.learning.core.EduNames;
 import com.jetbrains.edu.learning.core.EduUtils;
 import com.jetbrains.edu.learning.courseFormat.*;
@@ -49,7 +49,11 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import static com.jetbrains.edu.learning.StudySerializationUtils.Json.getGson;
 import static com.jetbrains.edu.learning.stepic.EduStepicNames.PYCHARM_PREFIX;
 
 public class EduStepicConnector {
@@ -61,6 +65,9 @@ public class EduStepicConnector {
     "\n\nInitially, the adaptive system may behave somewhat randomly, but the more problems you solve, the smarter it becomes!";
   private static final String OPEN_PLACEHOLDER_TAG = "<placeholder>";
   private static final String CLOSE_PLACEHOLDER_TAG = "</placeholder>";
+  private static final int MAX_REQUEST_PARAMS = 100; // restriction of Stepik API for multiple requests
+  private static final int LOADING_THREADS = 4;
+  private static final ExecutorService ourLoadingExecutor = createLoadingExecutor();
 
   private EduStepicConnector() {
   }
@@ -70,11 +77,13 @@ public class EduStepicConnector {
     HttpPost post = new HttpPost(EduStepicNames.STEPIC_API_URL + EduStepicNames.ENROLLMENTS);
     try {
       final StepicWrappers.EnrollmentWrapper enrollment = new StepicWrappers.EnrollmentWrapper(String.valueOf(courseId));
-      post.setEntity(new StringEntity(new GsonBuilder().create().toJson(enrollment)));
+      post.setEntity(new StringEntity(getGson(GsonProfile.STEPIK_REQUEST).toJson(enrollment)));
       final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient(stepicUser);
-      CloseableHttpResponse response = client.execute(post);
-      StatusLine line = response.getStatusLine();
-      return line.getStatusCode() == HttpStatus.SC_CREATED;
+      try (CloseableHttpResponse response = client.execute(post)) {
+        StatusLine line = response.getStatusLine();
+        EntityUtils.consume(response.getEntity());
+        return line.getStatusCode() == HttpStatus.SC_CREATED;
+      }
     }
     catch (IOException e) {
       LOG.warn(e.getMessage());
@@ -190,25 +199,33 @@ public class EduStepicConnector {
   }
 
   static void addAvailableCourses(List<Course> result, StepicWrappers.CoursesContainer coursesContainer) throws IOException {
-    final List<RemoteCourse> courses = coursesContainer.courses;
-    for (RemoteCourse info : courses) {
+    final List<RemoteCourse> availableCourses = new ArrayList<>();
+    final Set<Integer> instructors = new LinkedHashSet<>();
+    for (RemoteCourse info : coursesContainer.courses) {
       if (!info.isAdaptive() && StringUtil.isEmptyOrSpaces(info.getType())) continue;
       setCourseLanguage(info);
 
       if (canBeOpened(info)) {
-        final ArrayList<StepicUser> authors = new ArrayList<>();
-        for (Integer instructor : info.getInstructors()) {
-          final StepicUser author = EduStepicClient.getFromStepic(EduStepicNames.USERS + String.valueOf(instructor),
-                                                                  StepicWrappers.AuthorWrapper.class).users.get(0);
+        availableCourses.add(info);
+        instructors.addAll(info.getInstructors());
+      }
+    }
+
+    final Map<Integer, StepicUser> users = StepicUsersCache.getUsers(instructors);
+    for (RemoteCourse info : availableCourses) {
+      final ArrayList<StepicUser> authors = new ArrayList<>();
+      for (Integer instructor : info.getInstructors()) {
+        final StepicUser author = users.get(instructor);
+        if (author != null) {
           authors.add(author);
         }
-        info.setAuthors(authors);
+      }
+      info.setAuthors(authors);
 
-        if (info.isAdaptive()) {
-          info.setDescription("This is a Stepik Adaptive course.\n\n" + info.getDescription() + ADAPTIVE_NOTE);
-        }
-        result.add(info);
+      if (info.isAdaptive()) {
+        info.setDescription("This is a Stepik Adaptive course.\n\n" + info.getDescription() + ADAPTIVE_NOTE);
       }
+      result.add(info);
     }
   }
 
@@ -287,22 +304,20 @@ public class EduStepicConnector {
   }
 
   public static List<Lesson> getLessons(int sectionId) throws IOException {
-    final StepicWrappers.SectionContainer
-      sectionContainer = getFromStepik(EduStepicNames.SECTIONS + String.valueOf(sectionId),
-                                       StepicWrappers.SectionContainer.class);
-    List<Integer> unitIds = sectionContainer.sections.get(0).units;
+    final List<Lesson> remoteLessons = getSectionLessons(sectionId);
+    final List<Integer> stepIds = remoteLessons.stream().flatMap(lesson -> lesson.steps.stream()).collect(Collectors.toList());
+    final Map<Integer, StepicWrappers.StepSource> stepsById = getSteps(stepIds);
+
     final List<Lesson> lessons = new ArrayList<>();
-    for (Integer unitId : unitIds) {
-      StepicWrappers.UnitContainer
-        unit = getFromStepik(EduStepicNames.UNITS + "/" + String.valueOf(unitId), StepicWrappers.UnitContainer.class);
-      int lessonID = unit.units.get(0).lesson;
-      StepicWrappers.LessonContainer
-        lessonContainer = getFromStepik(EduStepicNames.LESSONS + String.valueOf(lessonID),
-                                        StepicWrappers.LessonContainer.class);
-      Lesson lesson = lessonContainer.lessons.get(0);
+    for (Lesson lesson : remoteLessons) {
       lesson.taskList = new ArrayList<>();
       for (int stepId : lesson.steps) {
-        final Task task = createTask(stepId);
+        final StepicWrappers.StepSource step = stepsById.get(stepId);
+        if (step == null) {
+          LOG.warn("Failed to load step " + stepId + " of lesson " + lesson.getId());
+          continue;
+        }
+        final Task task = createTask(step);
         if (task != null) {
           lesson.addTask(task);
         }
@@ -315,6 +330,106 @@ public class EduStepicConnector {
     return lessons;
   }
 
+  /**
+   * @return lessons of the section with ids of their steps, tasks are not loaded
+   */
+  @NotNull
+  static List<Lesson> getSectionLessons(int sectionId) throws IOException {
+    final StepicWrappers.SectionContainer
+      sectionContainer = getFromStepik(EduStepicNames.SECTIONS + String.valueOf(sectionId),
+                                       StepicWrappers.SectionContainer.class);
+    List<Integer> unitIds = sectionContainer.sections.get(0).units;
+    final List<StepicWrappers.Unit> units = getFromStepikInBatches(EduStepicNames.UNITS, unitIds, StepicWrappers.UnitContainer.class,
+                                                                  container -> container.units, StepicWrappers.Unit::getId);
+    final List<Integer> lessonIds = units.stream().map(unit -> unit.lesson).collect(Collectors.toList());
+    return getFromStepikInBatches(EduStepicNames.LESSONS, lessonIds, StepicWrappers.LessonContainer.class,
+                                  container -> container.lessons, Lesson::getId);
+  }
+
+  @NotNull
+  static Map<Integer, StepicWrappers.StepSource> getSteps(@NotNull List<Integer> stepIds) throws IOException {
+    final List<StepicWrappers.StepSource> steps = getFromStepikInBatches(EduStepicNames.STEPS, stepIds, StepicWrappers.StepContainer.class,
+                                                                         container -> container.steps, step -> step.id);
+    final Map<Integer, StepicWrappers.StepSource> stepsById = new HashMap<>();
+    for (StepicWrappers.StepSource step : steps) {
+      stepsById.put(step.id, step);
+    }
+    return stepsById;
+  }
+
+  /**
+   * Loads items with given ids using Stepik multiple requests (ids[] parameter). Requests are split into batches
+   * of {@link #MAX_REQUEST_PARAMS} ids and executed in parallel in bounded loading pool.
+   *
+   * @return loaded items in the order of requested ids. Items missing in Stepik responses are skipped.
+   */
+  @NotNull
+  static <C, T> List<T> getFromStepikInBatches(@NotNull String apiUrl,
+                                               @NotNull List<Integer> ids,
+                                               @NotNull Class<C> container,
+                                               @NotNull Function<C, List<T>> itemsGetter,
+                                               @NotNull Function<T, Integer> idGetter) throws IOException {
+    final List<Future<C>> futures = new ArrayList<>();
+    for (int i = 0; i < ids.size(); i += MAX_REQUEST_PARAMS) {
+      final String[] batch = ids.subList(i, Math.min(i + MAX_REQUEST_PARAMS, ids.size())).stream()
+        .map(String::valueOf).toArray(String[]::new);
+      futures.add(ourLoadingExecutor.submit(() -> multipleRequestToStepik(apiUrl, batch, container)));
+    }
+
+    final Map<Integer, T> itemsById = new HashMap<>();
+    try {
+      for (Future<C> future : futures) {
+        final C loaded = getLoaded(future);
+        final List<T> items = loaded == null ? null : itemsGetter.apply(loaded);
+        if (items == null) continue;
+        for (T item : items) {
+          itemsById.put(idGetter.apply(item), item);
+        }
+      }
+    }
+    finally {
+      for (Future<C> future : futures) {
+        future.cancel(true);
+      }
+    }
+
+    final List<T> result = new ArrayList<>();
+    for (Integer id : ids) {
+      final T item = itemsById.get(id);
+      if (item != null) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
+  @Nullable
+  private static <C> C getLoaded(@NotNull Future<C> future) throws IOException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Loading from Stepik was interrupted", e);
+    }
+    catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException)cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  @NotNull
+  private static ExecutorService createLoadingExecutor() {
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(LOADING_THREADS, LOADING_THREADS, 60, TimeUnit.SECONDS,
+                                                               new LinkedBlockingQueue<>(),
+                                                               ConcurrencyUtil.newNamedThreadFactory("Stepik Loader"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   private static <T> T getFromStepik(String link, final Class<T> container) throws IOException {
     final StepicUser user = EduSettings.getInstance().getUser();
     final boolean isAuthorized = user != null;
@@ -327,6 +442,13 @@ public class EduStepicConnector {
   @Nullable
   public static Task createTask(int stepicId) throws IOException {
     final StepicWrappers.StepSource step = getStep(stepicId);
+    step.id = stepicId;
+    return createTask(step);
+  }
+
+  @Nullable
+  static Task createTask(@NotNull StepicWrappers.StepSource step) {
+    final int stepicId = step.id;
     final StepicWrappers.Step block = step.block;
     if (!block.name.startsWith(PYCHARM_PREFIX)) {
       LOG.error("Got a block with non-pycharm prefix: " + block.name + " for step: " + stepicId);
@@ -401,7 +523,10 @@ public class EduStepicConnector {
         markInvalid(placeholder);
       }
     }
-
+    final Task task = taskFile.getTask();
+    if (task != null) {
+      task.notifyChanged(null);
+    }
     return isPlaceholdersValid;
   }
 
@@ -438,6 +563,45 @@ public class EduStepicConnector {
     return Collections.emptyList();
   }
 
+  /**
+   * Loads last submissions of the given steps in the bounded loading pool. Stepik filters submissions by a single step only,
+   * so there is still a request per step, but no more than {@link #LOADING_THREADS} of them run at the same time.
+   *
+   * @return solution files by step id. Steps without submissions and steps which failed to load are absent.
+   */
+  @NotNull
+  static Map<Integer, List<StepicWrappers.SolutionFile>> getLastSubmissions(@NotNull Collection<Integer> stepIds, boolean isSolved)
+    throws IOException {
+    final Map<Integer, Future<List<StepicWrappers.SolutionFile>>> futures = new LinkedHashMap<>();
+    for (Integer stepId : stepIds) {
+      futures.put(stepId, ourLoadingExecutor.submit(() -> getLastSubmission(String.valueOf(stepId), isSolved)));
+    }
+
+    final Map<Integer, List<StepicWrappers.SolutionFile>> submissions = new HashMap<>();
+    try {
+      for (Map.Entry<Integer, Future<List<StepicWrappers.SolutionFile>>> entry : futures.entrySet()) {
+        try {
+          final List<StepicWrappers.SolutionFile> solutionFiles = getLoaded(entry.getValue());
+          if (solutionFiles != null && !solutionFiles.isEmpty()) {
+            submissions.put(entry.getKey(), solutionFiles);
+          }
+        }
+        catch (IOException e) {
+          if (Thread.currentThread().isInterrupted()) {
+            throw e;
+          }
+          LOG.warn("Failed to load submissions for step " + entry.getKey() + ": " + e.getMessage());
+        }
+      }
+    }
+    finally {
+      for (Future<List<StepicWrappers.SolutionFile>> future : futures.values()) {
+        future.cancel(true);
+      }
+    }
+    return submissions;
+  }
+
   private static void addPlaceholdersTexts(TaskFile file) {
     final String fileText = file.text;
     final List<AnswerPlaceholder> placeholders = file.getAnswerPlaceholders();
@@ -500,7 +664,7 @@ public class EduStepicConnector {
       final String response = postAttempt(task.getStepId());
       if (response.isEmpty()) return;
       final StepicWrappers.AttemptWrapper.Attempt attempt =
-        new Gson().fromJson(response, StepicWrappers.AttemptContainer.class).attempts.get(0);
+        getGson(GsonProfile.STEPIK_REQUEST).fromJson(response, StepicWrappers.AttemptContainer.class).attempts.get(0);
       final Map<String, TaskFile> taskFiles = task.getTaskFiles();
       final ArrayList<StepicWrappers.SolutionFile> files = new ArrayList<>();
       final VirtualFile taskDir = task.getTaskDir(project);
@@ -541,36 +705,39 @@ public class EduStepicConnector {
     final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient();
     if (client == null || EduSettings.getInstance().getUser() == null) return "";
     final HttpPost attemptRequest = new HttpPost(EduStepicNames.STEPIC_API_URL + EduStepicNames.ATTEMPTS);
-    String attemptRequestBody = new Gson().toJson(new StepicWrappers.AttemptWrapper(id));
+    String attemptRequestBody = getGson(GsonProfile.STEPIK_REQUEST).toJson(new StepicWrappers.AttemptWrapper(id));
     attemptRequest.setEntity(new StringEntity(attemptRequestBody, ContentType.APPLICATION_JSON));
 
-    final CloseableHttpResponse attemptResponse = client.execute(attemptRequest);
-    final HttpEntity responseEntity = attemptResponse.getEntity();
-    final String attemptResponseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
-    final StatusLine statusLine = attemptResponse.getStatusLine();
-    EntityUtils.consume(responseEntity);
-    if (statusLine.getStatusCode() != HttpStatus.SC_CREATED) {
-      LOG.warn("Failed to make attempt " + attemptResponseString);
-      return "";
+    try (CloseableHttpResponse attemptResponse = client.execute(attemptRequest)) {
+      final HttpEntity responseEntity = attemptResponse.getEntity();
+      final String attemptResponseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
+      final StatusLine statusLine = attemptResponse.getStatusLine();
+      EntityUtils.consume(responseEntity);
+      if (statusLine.getStatusCode() != HttpStatus.SC_CREATED) {
+        LOG.warn("Failed to make attempt " + attemptResponseString);
+        return "";
+      }
+      return attemptResponseString;
     }
-    return attemptResponseString;
   }
 
   private static void postSubmission(boolean passed, StepicWrappers.AttemptWrapper.Attempt attempt,
                                      ArrayList<StepicWrappers.SolutionFile> files) throws IOException {
     final HttpPost request = new HttpPost(EduStepicNames.STEPIC_API_URL + EduStepicNames.SUBMISSIONS);
 
-    String requestBody = new Gson().toJson(new StepicWrappers.SubmissionWrapper(attempt.id, passed ? "1" : "0", files));
+    String requestBody =
+      getGson(GsonProfile.STEPIK_REQUEST).toJson(new StepicWrappers.SubmissionWrapper(attempt.id, passed ? "1" : "0", files));
     request.setEntity(new StringEntity(requestBody, ContentType.APPLICATION_JSON));
     final CloseableHttpClient client = EduStepicAuthorizedClient.getHttpClient();
     if (client == null) return;
-    final CloseableHttpResponse response = client.execute(request);
-    final HttpEntity responseEntity = response.getEntity();
-    final String responseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
-    final StatusLine line = response.getStatusLine();
-    EntityUtils.consume(responseEntity);
-    if (line.getStatusCode() != HttpStatus.SC_CREATED) {
-      LOG.error("Failed to make submission " + responseString);
+    try (CloseableHttpResponse response = client.execute(request)) {
+      final HttpEntity responseEntity = response.getEntity();
+      final String responseString = responseEntity != null ? EntityUtils.toString(responseEntity) : "";
+      final StatusLine line = response.getStatusLine();
+      EntityUtils.consume(responseEntity);
+      if (line.getStatusCode() != HttpStatus.SC_CREATED) {
+        LOG.error("Failed to make submission " + responseString);
+      }
     }
   }
 
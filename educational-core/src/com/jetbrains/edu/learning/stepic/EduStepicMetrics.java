@@ -0,0 +1,243 @@
+package com.jetbrains.edu.learning.stepic;
+
+import com.intellij.util.containers.ContainerUtil;
+import com.jetbrains.edu.learning.StudySerializationUtils.Json.GsonProfile;
+import org.apache.http.*;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.jetbrains.edu.learning.StudySerializationUtils.Json.getGson;
+
+/**
+ * Request count, latency, traffic, status codes and retries of Stepik API requests grouped by endpoint,
+ * i.e. by the first segment of the API path: courses, lessons, steps, submissions etc.
+ * Requests of clients created with {@link EduStepicClient#getBuilder()} are recorded, every attempt of a retried request
+ * is recorded separately. Latency is measured until response headers are received, so it doesn't include time
+ * the plugin spends reading and parsing the response.
+ */
+public class EduStepicMetrics {
+  static final long[] LATENCY_BOUNDS = {50, 100, 250, 500, 1000, 2500, 5000, 10000};
+  private static final String ATTEMPTED_ATTRIBUTE = "edu.stepik.metrics.attempted";
+  private static final String API_PATH = "/api/";
+  private static final Map<String, EndpointMetrics> ourMetrics = ContainerUtil.newConcurrentMap();
+  private static volatile long ourStartTime = System.currentTimeMillis();
+
+  private EduStepicMetrics() {
+  }
+
+  static void instrument(@NotNull HttpClientBuilder builder) {
+    builder.setRequestExecutor(new MeasuringRequestExecutor());
+  }
+
+  /**
+   * Should be called when a request is executed again with a new context, retries within one execution are counted automatically
+   */
+  public static void recordRetry(@NotNull HttpRequest request) {
+    getMetrics(request).myRetries.increment();
+  }
+
+  public static void reset() {
+    ourMetrics.clear();
+    ourStartTime = System.currentTimeMillis();
+  }
+
+  public static long getStartTime() {
+    return ourStartTime;
+  }
+
+  @NotNull
+  public static List<EndpointSnapshot> getSnapshot() {
+    final List<EndpointSnapshot> snapshot = new ArrayList<>();
+    for (Map.Entry<String, EndpointMetrics> entry : ourMetrics.entrySet()) {
+      snapshot.add(new EndpointSnapshot(entry.getKey(), entry.getValue()));
+    }
+    snapshot.sort(Comparator.comparing(endpoint -> endpoint.endpoint));
+    return snapshot;
+  }
+
+  @NotNull
+  public static String toJson() {
+    final Map<String, Object> dump = new LinkedHashMap<>();
+    dump.put("since", new Date(ourStartTime).toString());
+    dump.put("connections", EduStepicConnectionPool.getStatistics());
+    dump.put("endpoints", getSnapshot());
+    return getGson(GsonProfile.DIAGNOSTICS).toJson(dump);
+  }
+
+  @NotNull
+  private static EndpointMetrics getMetrics(@NotNull HttpRequest request) {
+    return ourMetrics.computeIfAbsent(getEndpoint(request.getRequestLine().getUri()), endpoint -> new EndpointMetrics());
+  }
+
+  @NotNull
+  static String getEndpoint(@NotNull String uri) {
+    String path;
+    try {
+      path = URI.create(uri).getRawPath();
+    }
+    catch (IllegalArgumentException e) {
+      path = uri;
+    }
+    if (path == null) {
+      return "other";
+    }
+    int start = path.startsWith(API_PATH) ? API_PATH.length() : path.startsWith("/") ? 1 : 0;
+    int end = path.indexOf('/', start);
+    final String endpoint = path.substring(start, end == -1 ? path.length() : end);
+    return endpoint.isEmpty() ? "other" : endpoint;
+  }
+
+  static class EndpointMetrics {
+    private final LongAdder myRequests = new LongAdder();
+    private final LongAdder myErrors = new LongAdder();
+    private final LongAdder myRetries = new LongAdder();
+    private final LongAdder myTotalLatency = new LongAdder();
+    private final LongAccumulator myMaxLatency = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray myLatencyHistogram = new AtomicLongArray(LATENCY_BOUNDS.length + 1);
+    private final LongAdder myBytesSent = new LongAdder();
+    private final LongAdder myBytesReceived = new LongAdder();
+    private final Map<Integer, LongAdder> myStatusCodes = ContainerUtil.newConcurrentMap();
+
+    void recordLatency(long latency) {
+      myRequests.increment();
+      myTotalLatency.add(latency);
+      myMaxLatency.accumulate(latency);
+      int bucket = 0;
+      while (bucket < LATENCY_BOUNDS.length && latency > LATENCY_BOUNDS[bucket]) {
+        bucket++;
+      }
+      myLatencyHistogram.incrementAndGet(bucket);
+    }
+  }
+
+  /**
+   * Metrics of an endpoint at some moment, latencies are in milliseconds
+   */
+  public static class EndpointSnapshot {
+    public final String endpoint;
+    public final long requests;
+    public final long errors;
+    public final long retries;
+    public final long averageLatency;
+    public final long maxLatency;
+    public final Map<String, Long> latencyHistogram = new LinkedHashMap<>();
+    public final long bytesSent;
+    public final long bytesReceived;
+    public final Map<Integer, Long> statusCodes = new TreeMap<>();
+
+    EndpointSnapshot(@NotNull String endpoint, @NotNull EndpointMetrics metrics) {
+      this.endpoint = endpoint;
+      requests = metrics.myRequests.sum();
+      errors = metrics.myErrors.sum();
+      retries = metrics.myRetries.sum();
+      averageLatency = requests == 0 ? 0 : metrics.myTotalLatency.sum() / requests;
+      maxLatency = metrics.myMaxLatency.get();
+      for (int i = 0; i <= LATENCY_BOUNDS.length; i++) {
+        final String bucket = i < LATENCY_BOUNDS.length ? "<=" + LATENCY_BOUNDS[i] : ">" + LATENCY_BOUNDS[i - 1];
+        latencyHistogram.put(bucket, metrics.myLatencyHistogram.get(i));
+      }
+      bytesSent = metrics.myBytesSent.sum();
+      bytesReceived = metrics.myBytesReceived.sum();
+      for (Map.Entry<Integer, LongAdder> entry : metrics.myStatusCodes.entrySet()) {
+        statusCodes.put(entry.getKey(), entry.getValue().sum());
+      }
+    }
+
+    /**
+     * @return upper bound of the histogram bucket containing the percentile, -1 if it's above all bounds
+     */
+    public long getLatencyPercentile(double percentile) {
+      final long threshold = (long)Math.ceil(requests * percentile);
+      long count = 0;
+      int i = 0;
+      for (Long bucketCount : latencyHistogram.values()) {
+        count += bucketCount;
+        if (count >= threshold && count > 0) {
+          return i < LATENCY_BOUNDS.length ? LATENCY_BOUNDS[i] : -1;
+        }
+        i++;
+      }
+      return 0;
+    }
+  }
+
+  private static class MeasuringRequestExecutor extends HttpRequestExecutor {
+    @Override
+    public HttpResponse execute(HttpRequest request, HttpClientConnection connection, HttpContext context)
+      throws IOException, HttpException {
+      final EndpointMetrics metrics = getMetrics(request);
+      if (context.getAttribute(ATTEMPTED_ATTRIBUTE) != null) {
+        metrics.myRetries.increment();
+      }
+      context.setAttribute(ATTEMPTED_ATTRIBUTE, Boolean.TRUE);
+      if (request instanceof HttpEntityEnclosingRequest) {
+        final HttpEntity entity = ((HttpEntityEnclosingRequest)request).getEntity();
+        if (entity != null && entity.getContentLength() > 0) {
+          metrics.myBytesSent.add(entity.getContentLength());
+        }
+      }
+      final long start = System.nanoTime();
+      final HttpResponse response;
+      try {
+        response = super.execute(request, connection, context);
+      }
+      catch (IOException | HttpException | RuntimeException e) {
+        metrics.recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        metrics.myErrors.increment();
+        throw e;
+      }
+      metrics.recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      metrics.myStatusCodes.computeIfAbsent(response.getStatusLine().getStatusCode(), code -> new LongAdder()).increment();
+      final HttpEntity entity = response.getEntity();
+      if (entity != null) {
+        response.setEntity(new CountingEntity(entity, metrics));
+      }
+      return response;
+    }
+  }
+
+  private static class CountingEntity extends HttpEntityWrapper {
+    private final EndpointMetrics myMetrics;
+
+    private CountingEntity(@NotNull HttpEntity entity, @NotNull EndpointMetrics metrics) {
+      super(entity);
+      myMetrics = metrics;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+      return new FilterInputStream(super.getContent()) {
+        @Override
+        public int read() throws IOException {
+          final int b = super.read();
+          if (b != -1) {
+            myMetrics.myBytesReceived.increment();
+          }
+          return b;
+        }
+
+        @Override
+        public int read(@NotNull byte[] b, int off, int len) throws IOException {
+          final int count = super.read(b, off, len);
+          if (count > 0) {
+            myMetrics.myBytesReceived.add(count);
+          }
+          return count;
+        }
+      };
+    }
+  }
+}
@@ -53,6 +53,8 @@ public class EduStepicUpdater {
   private static ActionCallback updateCourseList() {
     ActionCallback callback = new ActionCallback();
     ApplicationManager.getApplication().executeOnPooledThread(() -> {
+      StepicUsersCache.evictExpired();
+      StepicResponseCache.evictExpired();
       final List<Course> courses = EduStepicConnector.getCourses(null);
       EduSettings.getInstance().setLastTimeChecked(System.currentTimeMillis());
 
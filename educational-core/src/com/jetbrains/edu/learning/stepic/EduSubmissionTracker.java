@@ -0,0 +1,207 @@
+package com.jetbrains.edu.learning.stepic;
+
+import com.google.gson.JsonParseException;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.util.ConcurrencyUtil;
+import com.jetbrains.edu.learning.EduSettings;
+import com.jetbrains.edu.learning.StudySerializationUtils.Json.GsonProfile;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.*;
+import java.util.function.LongSupplier;
+
+import static com.jetbrains.edu.learning.StudySerializationUtils.Json.getGson;
+
+/**
+ * Polls Stepik for the result of a submission while it's being evaluated.
+ * Polls of all checks share one scheduler, so waiting for a slow evaluation doesn't hold a thread.
+ * Delay between polls grows exponentially with random jitter, polling stops when the check is cancelled
+ * or after the deadline, see {@link EduSettings#getSubmissionCheckTimeout()}.
+ */
+class EduSubmissionTracker {
+  private static final Logger LOG = Logger.getInstance(EduSubmissionTracker.class);
+  private static final String EVALUATION = "evaluation";
+  private static final int POLLING_THREADS = 2;
+  static final long INITIAL_DELAY = 500;
+  static final long MAX_DELAY = 8000;
+  static final double BACKOFF_FACTOR = 1.5;
+  static final double JITTER = 0.2;
+  static final long CANCELLATION_CHECK_PERIOD = 100;
+  private static final ScheduledExecutorService ourScheduler = createScheduler();
+
+  private final SubmissionsLoader myLoader;
+  @Nullable private final ProgressIndicator myIndicator;
+  private final Scheduler myScheduler;
+  private final LongSupplier myClock;
+  private final long myDeadline;
+  private final CompletableFuture<StepicWrappers.ResultSubmissionWrapper> myResult = new CompletableFuture<>();
+  private long myDelay = INITIAL_DELAY;
+
+  /**
+   * @param timeout how long the submission is polled for, in milliseconds
+   * @param clock   current time in milliseconds
+   */
+  EduSubmissionTracker(@NotNull SubmissionsLoader loader, @Nullable ProgressIndicator indicator, long timeout,
+                       @NotNull Scheduler scheduler, @NotNull LongSupplier clock) {
+    myLoader = loader;
+    myIndicator = indicator;
+    myScheduler = scheduler;
+    myClock = clock;
+    myDeadline = clock.getAsLong() + timeout;
+  }
+
+  /**
+   * @param wrapper submissions returned when the submission was posted
+   * @param timeout how long the submission is polled for, in milliseconds
+   * @return future completed with submissions of the attempt when evaluation is finished,
+   * it fails with {@link ProcessCanceledException} if indicator is cancelled and with {@link TimeoutException} after the deadline.
+   * Cancelling the future stops polling.
+   */
+  @NotNull
+  static CompletableFuture<StepicWrappers.ResultSubmissionWrapper> track(@NotNull CloseableHttpClient client,
+                                                                         @NotNull StepicWrappers.ResultSubmissionWrapper wrapper,
+                                                                         int attemptId, int userId,
+                                                                         @Nullable ProgressIndicator indicator, long timeout) {
+    if (!isBeingEvaluated(wrapper)) {
+      return CompletableFuture.completedFuture(wrapper);
+    }
+    final URI submissionsUri;
+    try {
+      submissionsUri = new URIBuilder(EduStepicNames.STEPIC_API_URL + EduStepicNames.SUBMISSIONS)
+        .addParameter("attempt", String.valueOf(attemptId))
+        .addParameter("order", "desc")
+        .addParameter("user", String.valueOf(userId))
+        .build();
+    }
+    catch (URISyntaxException e) {
+      final CompletableFuture<StepicWrappers.ResultSubmissionWrapper> result = new CompletableFuture<>();
+      result.completeExceptionally(e);
+      return result;
+    }
+    final Scheduler scheduler = (runnable, delay) -> ourScheduler.schedule(runnable, delay, TimeUnit.MILLISECONDS);
+    return new EduSubmissionTracker(() -> loadSubmissions(client, submissionsUri), indicator, timeout, scheduler,
+                                    System::currentTimeMillis).start();
+  }
+
+  @NotNull
+  CompletableFuture<StepicWrappers.ResultSubmissionWrapper> start() {
+    schedulePoll();
+    if (myIndicator != null) {
+      schedule(this::checkCanceled, CANCELLATION_CHECK_PERIOD);
+    }
+    return myResult;
+  }
+
+  private static boolean isBeingEvaluated(@NotNull StepicWrappers.ResultSubmissionWrapper wrapper) {
+    return wrapper.submissions != null && wrapper.submissions.length == 1 && EVALUATION.equals(wrapper.submissions[0].status);
+  }
+
+  private void schedulePoll() {
+    final double jitter = 1 + JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+    final long delay = Math.min((long)(myDelay * jitter), Math.max(0, myDeadline - myClock.getAsLong()));
+    myDelay = Math.min((long)(myDelay * BACKOFF_FACTOR), MAX_DELAY);
+    schedule(this::poll, delay);
+  }
+
+  private void schedule(@NotNull Runnable runnable, long delay) {
+    try {
+      myScheduler.schedule(runnable, delay);
+    }
+    catch (RejectedExecutionException e) {
+      myResult.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Cancellation is checked on the scheduler more often than Stepik is polled, so a thread waiting for the result
+   * is woken up soon after its indicator is cancelled without checking it by itself
+   */
+  private void checkCanceled() {
+    if (myResult.isDone()) {
+      return;
+    }
+    if (myIndicator != null && myIndicator.isCanceled()) {
+      myResult.completeExceptionally(new ProcessCanceledException());
+      return;
+    }
+    schedule(this::checkCanceled, CANCELLATION_CHECK_PERIOD);
+  }
+
+  private void poll() {
+    if (myResult.isDone()) {
+      return;
+    }
+    if (myIndicator != null && myIndicator.isCanceled()) {
+      myResult.completeExceptionally(new ProcessCanceledException());
+      return;
+    }
+    try {
+      final StepicWrappers.ResultSubmissionWrapper wrapper = myLoader.load();
+      if (!isBeingEvaluated(wrapper)) {
+        myResult.complete(wrapper);
+        return;
+      }
+    }
+    catch (IOException | JsonParseException e) {
+      LOG.warn("Failed to get submission status: " + e.getMessage());
+    }
+    if (myClock.getAsLong() >= myDeadline) {
+      myResult.completeExceptionally(new TimeoutException("Submission is still being evaluated"));
+      return;
+    }
+    schedulePoll();
+  }
+
+  @NotNull
+  private static StepicWrappers.ResultSubmissionWrapper loadSubmissions(@NotNull CloseableHttpClient client,
+                                                                        @NotNull URI submissionsUri) throws IOException {
+    final HttpGet request = new HttpGet(submissionsUri);
+    EduAdaptiveStepicConnector.setTimeout(request);
+    try (CloseableHttpResponse response = client.execute(request)) {
+      final String entityString = EntityUtils.toString(response.getEntity());
+      final int statusCode = response.getStatusLine().getStatusCode();
+      if (statusCode != HttpStatus.SC_OK) {
+        throw new IOException("Unexpected status code " + statusCode);
+      }
+      final StepicWrappers.ResultSubmissionWrapper wrapper =
+        getGson(GsonProfile.STEPIK_REQUEST).fromJson(entityString, StepicWrappers.ResultSubmissionWrapper.class);
+      if (wrapper == null) {
+        throw new IOException("Empty response");
+      }
+      return wrapper;
+    }
+  }
+
+  private static ScheduledExecutorService createScheduler() {
+    final ScheduledThreadPoolExecutor executor =
+      new ScheduledThreadPoolExecutor(POLLING_THREADS, ConcurrencyUtil.newNamedThreadFactory("Stepik Submission Tracker"));
+    executor.setKeepAliveTime(60, TimeUnit.SECONDS);
+    executor.allowCoreThreadTimeOut(true);
+    executor.setRemoveOnCancelPolicy(true);
+    return executor;
+  }
+
+  interface SubmissionsLoader {
+    @NotNull
+    StepicWrappers.ResultSubmissionWrapper load() throws IOException;
+  }
+
+  interface Scheduler {
+    /**
+     * @param delay delay in milliseconds
+     */
+    void schedule(@NotNull Runnable runnable, long delay);
+  }
+}
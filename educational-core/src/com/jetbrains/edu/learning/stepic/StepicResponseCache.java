@@ -0,0 +1,167 @@
+package com.jetbrains.edu.learning.stepic;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.text.DateFormatUtil;
+import org.apache.http.client.methods.HttpGet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * On-disk cache of Stepik GET responses stored under the IDE system directory.
+ * Entries are keyed by url and user, only responses with ETag or Last-Modified are stored: they are revalidated
+ * with conditional requests and used as a fallback when Stepik can't be reached.
+ * The cache is cleared when the user logs out or another user logs in.
+ */
+public class StepicResponseCache {
+  private static final Logger LOG = Logger.getInstance(StepicResponseCache.class.getName());
+  private static final int FORMAT_VERSION = 1;
+  private static final long MAX_AGE = 30 * DateFormatUtil.DAY;
+  private static final String CACHE_DIR = "stepik-responses";
+
+  private StepicResponseCache() {
+  }
+
+  @Nullable
+  public static Entry get(@NotNull String url, int userId) {
+    final File file = getCacheFile(url, userId);
+    if (!file.isFile()) {
+      return null;
+    }
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (input.readInt() != FORMAT_VERSION || !url.equals(input.readUTF()) || input.readInt() != userId) {
+        return null;
+      }
+      final String eTag = input.readUTF();
+      final String lastModified = input.readUTF();
+      final Charset charset = Charset.forName(input.readUTF());
+      return new Entry(file, StringUtil.nullize(eTag), StringUtil.nullize(lastModified), charset);
+    }
+    catch (IOException | IllegalArgumentException e) {
+      LOG.warn("Failed to read cached Stepik response for " + url + ": " + e.getMessage());
+      FileUtil.delete(file);
+      return null;
+    }
+  }
+
+  /**
+   * Stores response body read from the given stream. The stream is read till the end but not closed.
+   */
+  @NotNull
+  public static Entry put(@NotNull String url, int userId, @Nullable String eTag, @Nullable String lastModified,
+                          @NotNull Charset charset, @NotNull InputStream body) throws IOException {
+    final File file = getCacheFile(url, userId);
+    FileUtil.createParentDirs(file);
+    final File tempFile = FileUtil.createTempFile(file.getParentFile(), file.getName(), ".tmp", true, false);
+    try {
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        output.writeInt(FORMAT_VERSION);
+        output.writeUTF(url);
+        output.writeInt(userId);
+        output.writeUTF(StringUtil.notNullize(eTag));
+        output.writeUTF(StringUtil.notNullize(lastModified));
+        output.writeUTF(charset.name());
+        FileUtil.copy(body, output);
+      }
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    finally {
+      FileUtil.delete(tempFile);
+    }
+    return new Entry(file, eTag, lastModified, charset);
+  }
+
+  public static void evictExpired() {
+    final File[] files = getCacheDir().listFiles();
+    if (files == null) return;
+    final long now = System.currentTimeMillis();
+    for (File file : files) {
+      if (now - file.lastModified() > MAX_AGE) {
+        FileUtil.delete(file);
+      }
+    }
+  }
+
+  public static void clear() {
+    FileUtil.delete(getCacheDir());
+  }
+
+  @NotNull
+  private static File getCacheDir() {
+    return new File(PathManager.getSystemPath(), CACHE_DIR);
+  }
+
+  @NotNull
+  private static File getCacheFile(@NotNull String url, int userId) {
+    return new File(getCacheDir(), hash(userId + " " + url));
+  }
+
+  @NotNull
+  private static String hash(@NotNull String key) {
+    try {
+      final byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+      return new BigInteger(1, digest).toString(16);
+    }
+    catch (NoSuchAlgorithmException e) {
+      return Integer.toHexString(key.hashCode());
+    }
+  }
+
+  public static class Entry {
+    private final File myFile;
+    private final String myETag;
+    private final String myLastModified;
+    private final Charset myCharset;
+
+    Entry(@NotNull File file, @Nullable String eTag, @Nullable String lastModified, @NotNull Charset charset) {
+      myFile = file;
+      myETag = eTag;
+      myLastModified = lastModified;
+      myCharset = charset;
+    }
+
+    public void addValidators(@NotNull HttpGet request) {
+      if (myETag != null) {
+        request.addHeader("If-None-Match", myETag);
+      }
+      if (myLastModified != null) {
+        request.addHeader("If-Modified-Since", myLastModified);
+      }
+    }
+
+    /**
+     * Opens a reader positioned at the start of the cached response body
+     */
+    @NotNull
+    public Reader openReader() throws IOException {
+      final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(myFile)));
+      try {
+        input.readInt();
+        input.readUTF();
+        input.readInt();
+        input.readUTF();
+        input.readUTF();
+        input.readUTF();
+      }
+      catch (IOException e) {
+        input.close();
+        throw e;
+      }
+      // the file is touched so that entries which are still in use are not evicted
+      //noinspection ResultOfMethodCallIgnored
+      myFile.setLastModified(System.currentTimeMillis());
+      return new InputStreamReader(input, myCharset);
+    }
+  }
+}
@@ -4,12 +4,16 @@ import com.google.gson.annotations.SerializedName;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.concurrent.TimeUnit;
+
 public class StepicUser {
   private int id = -1;
   @SerializedName("first_name") private String myFirstName;
   @SerializedName("last_name") private String myLastName;
-  private String myAccessToken;
-  private String myRefreshToken;
+  // tokens are refreshed on pooled threads and read by requests running in parallel
+  private volatile String myAccessToken;
+  private volatile String myRefreshToken;
+  private volatile long myTokenExpiresAt;
   private boolean isGuest;
 
   private StepicUser() {
@@ -82,9 +86,21 @@ public class StepicUser {
     this.myRefreshToken = refreshToken;
   }
 
+  /**
+   * @return time in milliseconds when access token expires, 0 if it's unknown
+   */
+  public long getTokenExpiresAt() {
+    return myTokenExpiresAt;
+  }
+
+  public void setTokenExpiresAt(long tokenExpiresAt) {
+    myTokenExpiresAt = tokenExpiresAt;
+  }
+
   public void setTokenInfo(@NotNull final StepicWrappers.TokenInfo tokenInfo) {
     myAccessToken = tokenInfo.getAccessToken();
     myRefreshToken = tokenInfo.getRefreshToken();
+    myTokenExpiresAt = tokenInfo.expiresIn > 0 ? System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(tokenInfo.expiresIn) : 0;
   }
 
   public boolean isGuest() {
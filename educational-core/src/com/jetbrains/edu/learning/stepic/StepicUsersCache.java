@@ -0,0 +1,64 @@
+package com.jetbrains.edu.learning.stepic;
+
+import com.intellij.util.text.DateFormatUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of Stepik users (course instructors).
+ * Missing users are loaded with multiple requests, cached entries are evicted after {@link #TTL}.
+ */
+public class StepicUsersCache {
+  private static final long TTL = DateFormatUtil.HOUR;
+  private static final Map<Integer, CachedUser> ourUsers = new ConcurrentHashMap<>();
+
+  private StepicUsersCache() {
+  }
+
+  @NotNull
+  public static Map<Integer, StepicUser> getUsers(@NotNull Collection<Integer> ids) throws IOException {
+    evictExpired();
+    final Map<Integer, StepicUser> result = new HashMap<>();
+    final List<Integer> idsToLoad = new ArrayList<>();
+    for (Integer id : new LinkedHashSet<>(ids)) {
+      final CachedUser cachedUser = ourUsers.get(id);
+      if (cachedUser != null) {
+        result.put(id, cachedUser.myUser);
+      }
+      else {
+        idsToLoad.add(id);
+      }
+    }
+    if (idsToLoad.isEmpty()) {
+      return result;
+    }
+
+    final List<StepicUser> loadedUsers = EduStepicConnector.getFromStepikInBatches(EduStepicNames.USERS, idsToLoad,
+                                                                                 StepicWrappers.AuthorWrapper.class,
+                                                                                 wrapper -> wrapper.users, StepicUser::getId);
+    final long loadTime = System.currentTimeMillis();
+    for (StepicUser user : loadedUsers) {
+      ourUsers.put(user.getId(), new CachedUser(user, loadTime));
+      result.put(user.getId(), user);
+    }
+    return result;
+  }
+
+  public static void evictExpired() {
+    final long now = System.currentTimeMillis();
+    ourUsers.values().removeIf(cachedUser -> now - cachedUser.myLoadTime > TTL);
+  }
+
+  private static class CachedUser {
+    private final StepicUser myUser;
+    private final long myLoadTime;
+
+    CachedUser(@NotNull StepicUser user, long loadTime) {
+      myUser = user;
+      myLoadTime = loadTime;
+    }
+  }
+}
@@ -45,10 +45,10 @@ public class StepicWrappers {
   }
 
   public static class StepOptions {
-    @Expose List<FileWrapper> test;
+    @Expose public List<FileWrapper> test;
     @Expose String title;
     @Expose List<TaskFile> files;
-    @Expose List<FileWrapper> text;
+    @Expose public List<FileWrapper> text;
     @Expose List<List<String>> samples;
     @Expose Integer executionMemoryLimit;
     @Expose Integer executionTimeLimit;
@@ -147,6 +147,10 @@ public class StepicWrappers {
     public StepSourceWrapper(Project project, Task task, int lessonId) {
       stepSource = new StepSource(project, task, lessonId);
     }
+
+    public void setLesson(int lessonId) {
+      stepSource.lesson = lessonId;
+    }
   }
 
   public static class CourseWrapper {
@@ -178,6 +182,7 @@ public class StepicWrappers {
   }
 
   public static class StepSource {
+    int id;
     @Expose public Step block;
     @Expose public int position = 0;
     @Expose public int lesson = 0;
@@ -191,7 +196,7 @@ public class StepicWrappers {
     }
   }
 
-  static class FileWrapper {
+  public static class FileWrapper {
     @Expose public final String name;
     @Expose public final String text;
 
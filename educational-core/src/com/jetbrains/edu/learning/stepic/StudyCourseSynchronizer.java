@@ -0,0 +1,431 @@
+package com.jetbrains.edu.learning.stepic;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.jetbrains.edu.learning.EduSettings;
+import com.jetbrains.edu.learning.core.EduNames;
+import com.jetbrains.edu.learning.courseFormat.Course;
+import com.jetbrains.edu.learning.courseFormat.Lesson;
+import com.jetbrains.edu.learning.courseFormat.RemoteCourse;
+import com.jetbrains.edu.learning.courseFormat.StudyItem;
+import com.jetbrains.edu.learning.courseFormat.StudyStatus;
+import com.jetbrains.edu.learning.courseFormat.TaskFile;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import com.jetbrains.edu.learning.courseGeneration.StudyGenerator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Incremental update of a course opened in study mode. Update dates of remote lessons and steps are compared with
+ * the stored ones, so only steps of changed lessons are loaded and only changed task directories are rewritten.
+ * Task files modified by the student are kept together with their answer placeholders.
+ */
+public class StudyCourseSynchronizer {
+  private static final Logger LOG = Logger.getInstance(StudyCourseSynchronizer.class.getName());
+  private static final String TEMP_PREFIX = "~";
+
+  private StudyCourseSynchronizer() {
+  }
+
+  /**
+   * Loads remote state of the course and compares it with the local one. Supposed to be called under progress.
+   *
+   * @return null if the course isn't available on Stepik
+   */
+  @Nullable
+  public static CourseChanges collectChanges(@NotNull RemoteCourse course) throws IOException {
+    final RemoteCourse remoteCourse = loadRemoteCourse(course);
+    if (remoteCourse == null) {
+      return null;
+    }
+    final CourseChanges changes = new CourseChanges(course, remoteCourse.getUpdateDate());
+    final List<Lesson> lessonsToLoad = new ArrayList<>();
+    final List<Integer> lessonIds = new ArrayList<>();
+    for (Lesson remoteLesson : loadRemoteLessons(remoteCourse)) {
+      lessonIds.add(remoteLesson.getId());
+      final Lesson lesson = course.getLesson(remoteLesson.getId());
+      if (lesson == null || isChanged(lesson, remoteLesson)) {
+        lessonsToLoad.add(remoteLesson);
+      }
+    }
+    changes.setLessonOrder(lessonIds);
+    if (lessonsToLoad.isEmpty()) {
+      return changes;
+    }
+
+    final List<Integer> stepIds = lessonsToLoad.stream().flatMap(lesson -> lesson.steps.stream()).collect(Collectors.toList());
+    final Map<Integer, StepicWrappers.StepSource> steps = EduStepicConnector.getSteps(stepIds);
+    for (Lesson remoteLesson : lessonsToLoad) {
+      final Lesson lesson = course.getLesson(remoteLesson.getId());
+      if (lesson == null) {
+        remoteLesson.taskList = createTasks(remoteLesson.steps, steps);
+        if (!remoteLesson.taskList.isEmpty()) {
+          changes.addNewLesson(remoteLesson);
+        }
+        continue;
+      }
+      final LessonChanges lessonChanges = changes.addLessonChanges(lesson, remoteLesson.getUpdateDate(), remoteLesson.steps);
+      for (int stepId : remoteLesson.steps) {
+        final StepicWrappers.StepSource step = steps.get(stepId);
+        final Task task = lesson.getTask(stepId);
+        if (step == null || (task != null && !isAfter(step.update_date, task.getUpdateDate()))) {
+          continue;
+        }
+        final Task remoteTask = EduStepicConnector.createTask(step);
+        if (remoteTask == null) continue;
+        if (task == null) {
+          lessonChanges.addNewTask(remoteTask);
+        }
+        else {
+          lessonChanges.addChangedTask(task, remoteTask);
+        }
+      }
+      for (Task task : lesson.getTaskList()) {
+        if (!remoteLesson.steps.contains(task.getStepId())) {
+          lessonChanges.addRemovedTask(task);
+        }
+      }
+    }
+    return changes;
+  }
+
+  /**
+   * Compares update dates and steps of lessons with Stepik without loading the steps themselves, so it's cheap enough
+   * to be called on every project open. Supposed to be called under progress.
+   *
+   * @return true if the course isn't available on Stepik
+   */
+  public static boolean isUpToDate(@NotNull RemoteCourse course) throws IOException {
+    final RemoteCourse remoteCourse = loadRemoteCourse(course);
+    return remoteCourse == null || isUpToDate(course, loadRemoteLessons(remoteCourse));
+  }
+
+  /**
+   * Lessons with a newer update date may still have no changed tasks, see {@link CourseChanges#isEmpty()}
+   */
+  static boolean isUpToDate(@NotNull RemoteCourse course, @NotNull List<Lesson> remoteLessons) {
+    final List<Integer> lessonIds = new ArrayList<>();
+    for (Lesson remoteLesson : remoteLessons) {
+      lessonIds.add(remoteLesson.getId());
+      final Lesson lesson = course.getLesson(remoteLesson.getId());
+      if (lesson == null || isChanged(lesson, remoteLesson)) {
+        return false;
+      }
+    }
+    return isSameOrder(course.getLessons(), lessonIds, Lesson::getId);
+  }
+
+  @Nullable
+  private static RemoteCourse loadRemoteCourse(@NotNull RemoteCourse course) throws IOException {
+    final Course loadedCourse = EduStepicConnector.getCourseFromStepik(EduSettings.getInstance().getUser(), course.getId());
+    return loadedCourse instanceof RemoteCourse ? (RemoteCourse)loadedCourse : null;
+  }
+
+  /**
+   * @return lessons of the course without steps, in the Stepik order
+   */
+  @NotNull
+  private static List<Lesson> loadRemoteLessons(@NotNull RemoteCourse remoteCourse) throws IOException {
+    final List<Lesson> lessons = new ArrayList<>();
+    for (Integer section : remoteCourse.getSections()) {
+      for (Lesson remoteLesson : EduStepicConnector.getSectionLessons(section)) {
+        if (!EduNames.PYCHARM_ADDITIONAL.equals(remoteLesson.getName())) {
+          lessons.add(remoteLesson);
+        }
+      }
+    }
+    return lessons;
+  }
+
+  /**
+   * Applies collected changes to the course model and the project directory. Should be called inside write action.
+   * Lessons and tasks are ordered as on Stepik and renumbered, their directories are renamed accordingly.
+   * Local lessons which aren't found on Stepik are kept after the remote ones.
+   */
+  public static void applyChanges(@NotNull Project project, @NotNull RemoteCourse course, @NotNull CourseChanges changes) {
+    final VirtualFile baseDir = project.getBaseDir();
+    for (LessonChanges lessonChanges : changes.myLessonChanges) {
+      final Lesson lesson = lessonChanges.myLesson;
+      for (Map.Entry<Task, Task> entry : lessonChanges.myChangedTasks.entrySet()) {
+        updateTask(project, entry.getKey(), entry.getValue());
+      }
+      final VirtualFile lessonDir = baseDir.findChild(EduNames.LESSON + String.valueOf(lesson.getIndex()));
+      for (Task task : lessonChanges.myRemovedTasks) {
+        deleteDirectory(lessonDir, EduNames.TASK + task.getIndex());
+      }
+      lesson.taskList.removeIf(task -> containsIdentity(lessonChanges.myRemovedTasks, task));
+
+      final List<Task> tasks = order(lesson.getTaskList(), lessonChanges.myNewTasks, lessonChanges.myStepIds, Task::getStepId);
+      renumber(lessonDir, tasks, lessonChanges.myNewTasks, EduNames.TASK);
+      lesson.updateTaskList(tasks);
+      for (Task task : lessonChanges.myNewTasks) {
+        task.initTask(lesson, false);
+        if (lessonDir != null) {
+          try {
+            StudyGenerator.createTask(task, lessonDir);
+          }
+          catch (IOException e) {
+            LOG.warn("Failed to create task " + task.getStepId() + ": " + e.getMessage());
+          }
+        }
+      }
+      if (lessonChanges.myUpdateDate != null) {
+        lesson.setUpdateDate(lessonChanges.myUpdateDate);
+      }
+    }
+
+    final List<Lesson> lessons = order(course.getLessons(), changes.myNewLessons, changes.myLessonIds, Lesson::getId);
+    renumber(baseDir, lessons, changes.myNewLessons, EduNames.LESSON);
+    final List<Lesson> additionalLessons = new ArrayList<>(course.getLessons(true));
+    additionalLessons.removeAll(course.getLessons());
+    for (Lesson lesson : additionalLessons) {
+      // additional files are stored in the course directory, the lesson has no directory to rename
+      lesson.setIndex(lessons.size() + 1);
+    }
+    lessons.addAll(additionalLessons);
+    course.setLessons(lessons);
+    for (Lesson lesson : changes.myNewLessons) {
+      try {
+        StudyGenerator.createLesson(lesson, baseDir);
+      }
+      catch (IOException e) {
+        LOG.warn("Failed to create lesson " + lesson.getId() + ": " + e.getMessage());
+      }
+      lesson.initLesson(course, false);
+    }
+    if (changes.myCourseUpdateDate != null) {
+      course.setUpdateDate(changes.myCourseUpdateDate);
+    }
+    course.structureChanged();
+  }
+
+  /**
+   * @return local and new items ordered by remote ids, local items missing on Stepik follow in their current order
+   */
+  @NotNull
+  private static <T extends StudyItem> List<T> order(@NotNull List<T> localItems, @NotNull List<T> newItems,
+                                                     @NotNull List<Integer> remoteIds, @NotNull Function<T, Integer> getId) {
+    final Map<Integer, T> items = new LinkedHashMap<>();
+    for (T item : localItems) {
+      items.put(getId.apply(item), item);
+    }
+    for (T item : newItems) {
+      items.put(getId.apply(item), item);
+    }
+    final List<T> ordered = new ArrayList<>();
+    for (Integer id : remoteIds) {
+      final T item = items.remove(id);
+      if (item != null) {
+        ordered.add(item);
+      }
+    }
+    ordered.addAll(items.values());
+    return ordered;
+  }
+
+  /**
+   * Sets indices of items by their position and renames directories of existing items whose index is changed.
+   * Directories are renamed through temporary names, so an item can take the name of another one.
+   */
+  private static void renumber(@Nullable VirtualFile parentDir, @NotNull List<? extends StudyItem> items,
+                               @NotNull Collection<? extends StudyItem> newItems, @NotNull String prefix) {
+    final Map<VirtualFile, String> renamedDirs = new LinkedHashMap<>();
+    for (int i = 0; i < items.size(); i++) {
+      final StudyItem item = items.get(i);
+      final int index = i + 1;
+      if (!containsIdentity(newItems, item) && item.getIndex() != index && parentDir != null) {
+        final VirtualFile dir = parentDir.findChild(prefix + item.getIndex());
+        if (dir != null) {
+          try {
+            dir.rename(StudyCourseSynchronizer.class, TEMP_PREFIX + dir.getName());
+            renamedDirs.put(dir, prefix + index);
+          }
+          catch (IOException e) {
+            LOG.warn("Failed to rename " + dir.getPath() + ": " + e.getMessage());
+          }
+        }
+      }
+      item.setIndex(index);
+    }
+    for (Map.Entry<VirtualFile, String> entry : renamedDirs.entrySet()) {
+      try {
+        entry.getKey().rename(StudyCourseSynchronizer.class, entry.getValue());
+      }
+      catch (IOException e) {
+        LOG.warn("Failed to rename " + entry.getKey().getPath() + ": " + e.getMessage());
+      }
+    }
+  }
+
+  // tasks are compared by content, identity is needed to tell a new task from an existing one
+  private static boolean containsIdentity(@NotNull Collection<?> items, @NotNull Object item) {
+    return items.stream().anyMatch(each -> each == item);
+  }
+
+  private static void deleteDirectory(@Nullable VirtualFile parentDir, @NotNull String name) {
+    final VirtualFile dir = parentDir != null ? parentDir.findChild(name) : null;
+    if (dir == null) {
+      return;
+    }
+    try {
+      dir.delete(StudyCourseSynchronizer.class);
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to delete " + dir.getPath() + ": " + e.getMessage());
+    }
+  }
+
+  private static void updateTask(@NotNull Project project, @NotNull Task task, @NotNull Task remoteTask) {
+    task.setName(remoteTask.getName());
+    task.setTaskTexts(remoteTask.getTaskTexts());
+    task.setTestsText(remoteTask.getTestsText());
+    task.setUpdateDate(remoteTask.getUpdateDate());
+
+    final VirtualFile taskDir = task.getTaskDir(project);
+    if (taskDir == null) {
+      return;
+    }
+    try {
+      // tests aren't edited by students, so they are always replaced
+      for (Map.Entry<String, String> entry : remoteTask.getTestsText().entrySet()) {
+        StudyGenerator.createChildFile(taskDir, entry.getKey(), entry.getValue());
+      }
+      int index = task.getTaskFiles().size();
+      for (TaskFile remoteTaskFile : remoteTask.getTaskFiles().values()) {
+        final TaskFile taskFile = task.getTaskFile(remoteTaskFile.name);
+        if (taskFile != null && !isUntouched(taskFile, taskDir)) {
+          continue;
+        }
+        remoteTaskFile.setIndex(taskFile != null ? taskFile.getIndex() : index++);
+        remoteTaskFile.initTaskFile(task, false);
+        task.taskFiles.put(remoteTaskFile.name, remoteTaskFile);
+        StudyGenerator.createTaskFile(taskDir, remoteTaskFile);
+      }
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to update task " + task.getStepId() + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * @return true if the student hasn't checked the task and the file still has its initial text
+   */
+  private static boolean isUntouched(@NotNull TaskFile taskFile, @NotNull VirtualFile taskDir) throws IOException {
+    if (taskFile.getTask().getStatus() != StudyStatus.Unchecked) {
+      return false;
+    }
+    final VirtualFile file = taskDir.findFileByRelativePath(taskFile.name);
+    return file == null || VfsUtilCore.loadText(file).equals(taskFile.text);
+  }
+
+  @NotNull
+  private static List<Task> createTasks(@NotNull List<Integer> stepIds, @NotNull Map<Integer, StepicWrappers.StepSource> steps) {
+    final List<Task> tasks = new ArrayList<>();
+    for (int stepId : stepIds) {
+      final StepicWrappers.StepSource step = steps.get(stepId);
+      final Task task = step != null ? EduStepicConnector.createTask(step) : null;
+      if (task != null) {
+        tasks.add(task);
+      }
+    }
+    return tasks;
+  }
+
+  private static boolean isChanged(@NotNull Lesson lesson, @NotNull Lesson remoteLesson) {
+    if (isAfter(remoteLesson.getUpdateDate(), lesson.getUpdateDate())) {
+      return true;
+    }
+    final Set<Integer> stepIds = lesson.getTaskList().stream().map(Task::getStepId).collect(Collectors.toSet());
+    return !stepIds.equals(new HashSet<>(remoteLesson.steps));
+  }
+
+  private static boolean isAfter(@Nullable Date remoteDate, @Nullable Date localDate) {
+    return remoteDate != null && (localDate == null || remoteDate.after(localDate));
+  }
+
+  public static class CourseChanges {
+    private final Course myCourse;
+    private final Date myCourseUpdateDate;
+    private final List<Integer> myLessonIds = new ArrayList<>();
+    private final List<Lesson> myNewLessons = new ArrayList<>();
+    private final List<LessonChanges> myLessonChanges = new ArrayList<>();
+
+    CourseChanges(@NotNull Course course, @Nullable Date courseUpdateDate) {
+      myCourse = course;
+      myCourseUpdateDate = courseUpdateDate;
+    }
+
+    void setLessonOrder(@NotNull List<Integer> lessonIds) {
+      myLessonIds.clear();
+      myLessonIds.addAll(lessonIds);
+    }
+
+    void addNewLesson(@NotNull Lesson lesson) {
+      myNewLessons.add(lesson);
+    }
+
+    @NotNull
+    LessonChanges addLessonChanges(@NotNull Lesson lesson, @Nullable Date updateDate, @NotNull List<Integer> stepIds) {
+      final LessonChanges lessonChanges = new LessonChanges(lesson, updateDate, stepIds);
+      myLessonChanges.add(lessonChanges);
+      return lessonChanges;
+    }
+
+    /**
+     * @return true if there are no new, changed, removed or reordered lessons and tasks. Update dates may still differ.
+     */
+    public boolean isEmpty() {
+      return myNewLessons.isEmpty() && myLessonChanges.stream().allMatch(LessonChanges::isEmpty) &&
+             isSameOrder(myCourse.getLessons(), myLessonIds, Lesson::getId);
+    }
+  }
+
+  static class LessonChanges {
+    private final Lesson myLesson;
+    private final Date myUpdateDate;
+    private final List<Integer> myStepIds;
+    private final Map<Task, Task> myChangedTasks = new LinkedHashMap<>();
+    private final List<Task> myNewTasks = new ArrayList<>();
+    private final List<Task> myRemovedTasks = new ArrayList<>();
+
+    private LessonChanges(@NotNull Lesson lesson, @Nullable Date updateDate, @NotNull List<Integer> stepIds) {
+      myLesson = lesson;
+      myUpdateDate = updateDate;
+      myStepIds = new ArrayList<>(stepIds);
+    }
+
+    void addNewTask(@NotNull Task task) {
+      myNewTasks.add(task);
+    }
+
+    void addChangedTask(@NotNull Task task, @NotNull Task remoteTask) {
+      myChangedTasks.put(task, remoteTask);
+    }
+
+    void addRemovedTask(@NotNull Task task) {
+      myRemovedTasks.add(task);
+    }
+
+    private boolean isEmpty() {
+      return myChangedTasks.isEmpty() && myNewTasks.isEmpty() && myRemovedTasks.isEmpty() &&
+             isSameOrder(myLesson.getTaskList(), myStepIds, Task::getStepId);
+    }
+  }
+
+  /**
+   * @return true if local items present on Stepik go in the remote order
+   */
+  private static <T> boolean isSameOrder(@NotNull List<T> localItems, @NotNull List<Integer> remoteIds,
+                                         @NotNull Function<T, Integer> getId) {
+    final List<Integer> localIds = localItems.stream().map(getId).filter(remoteIds::contains).collect(Collectors.toList());
+    final List<Integer> remoteLocalIds = remoteIds.stream().filter(localIds::contains).collect(Collectors.toList());
+    return localIds.equals(remoteLocalIds);
+  }
+}
@@ -1,12 +1,14 @@
 package com.jetbrains.edu.learning.stepic;
 
-import com.intellij.ide.SaveAndSyncHandler;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.command.CommandProcessor;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.DefaultLogger;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.impl.EditorImpl;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.fileEditor.FileEditorManagerListener;
 import com.intellij.openapi.progress.ProgressIndicator;
@@ -32,11 +34,11 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
-import static com.jetbrains.edu.learning.stepic.EduStepicConnector.getLastSubmission;
 import static com.jetbrains.edu.learning.stepic.EduStepicConnector.removeAllTags;
 
 public class StudyStepikSolutionsLoader implements Disposable{
@@ -44,6 +46,7 @@ public class StudyStepikSolutionsLoader implements Disposable{
   private static final int MAX_REQUEST_PARAMS = 100; // restriction of Stepik API for multiple requests
   private static final String PROGRESS_ID_PREFIX = "77-";
   private final HashMap<Integer, Future> myFutures = new HashMap<>();
+  private final Map<Integer, List<StepicWrappers.SolutionFile>> myLoadedSubmissions = new ConcurrentHashMap<>();
   private final Project myProject;
   private MessageBusConnection myBusConnection;
   private Task mySelectedTask;
@@ -118,19 +121,10 @@ public class StudyStepikSolutionsLoader implements Disposable{
     cancelUnfinishedTasks();
     myFutures.clear();
 
-    CountDownLatch countDownLatch = new CountDownLatch(tasksToUpdate.size());
+    // solutions are loaded together and applied in a single write action, so all tasks share one future
+    Future<?> future = ApplicationManager.getApplication().executeOnPooledThread(() -> loadSolutions(tasksToUpdate, progressIndicator));
     for (Task task : tasksToUpdate) {
-      if (progressIndicator == null || !progressIndicator.isCanceled()) {
-          Future<?> future = ApplicationManager.getApplication().executeOnPooledThread(() -> {
-          boolean isSolved = task.getStatus() == StudyStatus.Solved;
-          loadSolution(myProject, task, isSolved);
-          countDownLatch.countDown();
-        });
-        myFutures.put(task.getStepId(), future);
-      }
-      else {
-        countDownLatch.countDown();
-      }
+      myFutures.put(task.getStepId(), future);
     }
 
     ApplicationManager.getApplication().invokeLater(() -> {
@@ -143,15 +137,49 @@ public class StudyStepikSolutionsLoader implements Disposable{
     });
 
     try {
-      countDownLatch.await();
+      future.get();
       ApplicationManager.getApplication().invokeLater(() -> ApplicationManager.getApplication().runWriteAction(EduUtils::synchronize));
       myBusConnection.disconnect();
     }
-    catch (InterruptedException e) {
+    catch (InterruptedException | ExecutionException | CancellationException e) {
       LOG.warn(e.getCause());
     }
   }
 
+  private void loadSolutions(@NotNull List<Task> tasks, @Nullable ProgressIndicator progressIndicator) {
+    final List<Integer> solvedSteps = new ArrayList<>();
+    final List<Integer> failedSteps = new ArrayList<>();
+    for (Task task : tasks) {
+      if (task instanceof TaskWithSubtasks || myLoadedSubmissions.containsKey(task.getStepId())) continue;
+      (task.getStatus() == StudyStatus.Solved ? solvedSteps : failedSteps).add(task.getStepId());
+    }
+
+    final Map<Integer, List<StepicWrappers.SolutionFile>> submissions = new HashMap<>(myLoadedSubmissions);
+    myLoadedSubmissions.clear();
+    try {
+      submissions.putAll(EduStepicConnector.getLastSubmissions(solvedSteps, true));
+      submissions.putAll(EduStepicConnector.getLastSubmissions(failedSteps, false));
+    }
+    catch (IOException e) {
+      LOG.warn(e.getMessage());
+      return;
+    }
+
+    final Map<Task, String> solutions = new LinkedHashMap<>();
+    for (Task task : tasks) {
+      if (progressIndicator != null && progressIndicator.isCanceled()) {
+        return;
+      }
+      if (task instanceof TaskWithSubtasks) continue;
+      final boolean isSolved = task.getStatus() == StudyStatus.Solved;
+      final String solutionText = getSolutionText(task, isSolved, submissions.getOrDefault(task.getStepId(), Collections.emptyList()));
+      if (!solutionText.isEmpty()) {
+        solutions.put(task, solutionText);
+      }
+    }
+    updateFiles(myProject, solutions);
+  }
+
   private void cancelUnfinishedTasks() {
     for (Future future : myFutures.values()) {
       if (!future.isDone()) {
@@ -161,24 +189,46 @@ public class StudyStepikSolutionsLoader implements Disposable{
   }
 
   private List<Task> tasksToUpdate(@NotNull Course course) {
+    myLoadedSubmissions.clear();
     List<Task> tasksToUpdate = new ArrayList<>();
     Task[] allTasks = course.getLessons().stream().flatMap(lesson -> lesson.getTaskList().stream()).toArray(Task[]::new);
     int length = allTasks.length;
+    Map<Integer, Task> unsolvedTasks = new LinkedHashMap<>();
     for (int i = 0; i < length; i += MAX_REQUEST_PARAMS) {
       List<Task> sublist = Arrays.asList(allTasks).subList(i, Math.min(i + MAX_REQUEST_PARAMS, length));
       String[] progresses = sublist.stream().map(task -> PROGRESS_ID_PREFIX + String.valueOf(task.getStepId())).toArray(String[]::new);
       Boolean[] taskStatuses = EduStepicConnector.taskStatuses(progresses);
-      if (taskStatuses == null) return tasksToUpdate;
+      if (taskStatuses == null) break;
       for (int j = 0; j < sublist.size(); j++) {
         Boolean isSolved = taskStatuses[j];
-        Task task = allTasks[j];
-        if (isSolved != null && isToUpdate(isSolved, task.getStatus(), task.getStepId())) {
-          StudyStatus studyStatus = isSolved ? StudyStatus.Solved : StudyStatus.Failed;
-          task.setStatus(studyStatus);
-          tasksToUpdate.add(task);
+        Task task = sublist.get(j);
+        if (isSolved == null) continue;
+        if (isSolved) {
+          if (task.getStatus() != StudyStatus.Solved) {
+            task.setStatus(StudyStatus.Solved);
+            tasksToUpdate.add(task);
+          }
+        }
+        else {
+          unsolvedTasks.put(task.getStepId(), task);
         }
       }
     }
+
+    // unsolved tasks need an update only if there are wrong submissions, they are kept to be reused when solutions are loaded
+    try {
+      myLoadedSubmissions.putAll(EduStepicConnector.getLastSubmissions(unsolvedTasks.keySet(), false));
+    }
+    catch (IOException e) {
+      LOG.warn(e.getMessage());
+    }
+    for (Map.Entry<Integer, Task> entry : unsolvedTasks.entrySet()) {
+      if (myLoadedSubmissions.containsKey(entry.getKey())) {
+        Task task = entry.getValue();
+        task.setStatus(StudyStatus.Failed);
+        tasksToUpdate.add(task);
+      }
+    }
     return tasksToUpdate;
   }
 
@@ -224,42 +274,7 @@ public class StudyStepikSolutionsLoader implements Disposable{
     });
   }
 
-  private static boolean isToUpdate(@NotNull Boolean isSolved, @NotNull StudyStatus currentStatus, int stepId) {
-    if (isSolved && currentStatus != StudyStatus.Solved) {
-      return true;
-    }
-    else if (!isSolved) {
-      try {
-        List<StepicWrappers.SolutionFile> solutionFiles = EduStepicConnector.getLastSubmission(String.valueOf(stepId), isSolved);
-        if (!solutionFiles.isEmpty()) {
-          return true;
-        }
-      }
-      catch (IOException e) {
-        LOG.warn(e.getMessage());
-      }
-    }
-
-    return false;
-  }
-
-  private static void loadSolution(@NotNull Project project, @NotNull Task task, boolean isSolved) {
-    if (task instanceof TaskWithSubtasks) {
-      return;
-    }
-
-    try {
-      String solutionText = loadSolution(task, isSolved);
-      if (solutionText.isEmpty()) return;
-      updateFiles(project, task, solutionText);
-    }
-    catch (IOException e) {
-      LOG.warn(e.getMessage());
-    }
-  }
-
-  private static String loadSolution(@NotNull Task task, boolean isSolved) throws IOException {
-    List<StepicWrappers.SolutionFile> solutionFiles = getLastSubmission(String.valueOf(task.getStepId()), isSolved);
+  private static String getSolutionText(@NotNull Task task, boolean isSolved, @NotNull List<StepicWrappers.SolutionFile> solutionFiles) {
     if (solutionFiles.isEmpty()) {
       task.setStatus(StudyStatus.Unchecked);
       return "";
@@ -279,29 +294,56 @@ public class StudyStepikSolutionsLoader implements Disposable{
     return "";
   }
 
-  private static void updateFiles(@NotNull Project project, @NotNull Task task, String solutionText) {
-    VirtualFile taskDir = task.getTaskDir(project);
-    if (taskDir == null) {
+  private static void updateFiles(@NotNull Project project, @NotNull Map<Task, String> solutions) {
+    if (solutions.isEmpty()) {
       return;
     }
-    ApplicationManager.getApplication().invokeLater(() -> ApplicationManager.getApplication().runWriteAction(() -> {
-      for (TaskFile taskFile : task.getTaskFiles().values()) {
-        VirtualFile vFile = taskDir.findChild(taskFile.name);
-        if (vFile != null) {
-          try {
-            taskFile.setTrackChanges(false);
-            VfsUtil.saveText(vFile, solutionText);
-            SaveAndSyncHandler.getInstance().refreshOpenFiles();
-            taskFile.setTrackChanges(true);
-          }
-          catch (IOException e) {
-            LOG.warn(e.getMessage());
+    ApplicationManager.getApplication().invokeLater(() -> applySolutions(project, solutions));
+  }
+
+  static void applySolutions(@NotNull Project project, @NotNull Map<Task, String> solutions) {
+    CommandProcessor.getInstance().runUndoTransparentAction(() -> ApplicationManager.getApplication().runWriteAction(() -> {
+      for (Map.Entry<Task, String> entry : solutions.entrySet()) {
+        Task task = entry.getKey();
+        VirtualFile taskDir = task.getTaskDir(project);
+        if (taskDir == null) {
+          continue;
+        }
+        for (TaskFile taskFile : task.getTaskFiles().values()) {
+          VirtualFile vFile = taskDir.findChild(taskFile.name);
+          if (vFile != null) {
+            updateFile(taskFile, vFile, entry.getValue());
           }
         }
       }
     }));
   }
 
+  /**
+   * Loaded documents are updated directly instead of being reloaded from disk later,
+   * so document events are fired while placeholders aren't tracked
+   */
+  private static void updateFile(@NotNull TaskFile taskFile, @NotNull VirtualFile vFile, @NotNull String text) {
+    taskFile.setTrackChanges(false);
+    try {
+      final FileDocumentManager documentManager = FileDocumentManager.getInstance();
+      final Document document = documentManager.getCachedDocument(vFile);
+      if (document != null) {
+        document.setText(text);
+        documentManager.saveDocument(document);
+      }
+      else {
+        VfsUtil.saveText(vFile, text);
+      }
+    }
+    catch (IOException e) {
+      LOG.warn(e.getMessage());
+    }
+    finally {
+      taskFile.setTrackChanges(true);
+    }
+  }
+
   @Override
   public void dispose() {
     myBusConnection.disconnect();
@@ -0,0 +1,178 @@
+package com.jetbrains.edu.learning.ui;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.actionSystem.ActionManager;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.DefaultActionGroup;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.DumbAwareAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.ui.SimpleToolWindowPanel;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.text.DateFormatUtil;
+import com.jetbrains.edu.learning.stepic.EduStepicConnectionPool;
+import com.jetbrains.edu.learning.stepic.EduStepicMetrics;
+import com.jetbrains.edu.learning.stepic.EduStepicMetrics.EndpointSnapshot;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shows {@link EduStepicMetrics} of Stepik requests and state of the connection pool, refreshed every few seconds
+ * while the panel is showing
+ */
+public class StudyStepikDiagnosticsPanel extends SimpleToolWindowPanel implements Disposable {
+  private static final Logger LOG = Logger.getInstance(StudyStepikDiagnosticsPanel.class);
+  private static final int REFRESH_INTERVAL_MS = 5000;
+  private static final String[] COLUMNS = {"Endpoint", "Requests", "Errors", "Retries", "Avg, ms", "p50, ms", "p90, ms",
+    "Max, ms", "Sent", "Received", "Status codes"};
+
+  private final Project myProject;
+  private final MetricsTableModel myModel = new MetricsTableModel();
+  private final JBLabel myConnectionsLabel = new JBLabel();
+  private final Timer myTimer = new Timer(REFRESH_INTERVAL_MS, e -> refresh());
+
+  public StudyStepikDiagnosticsPanel(@NotNull Project project) {
+    super(true, true);
+    myProject = project;
+    final DefaultActionGroup group = new DefaultActionGroup();
+    group.add(new DumbAwareAction("Refresh", "Refresh metrics", AllIcons.Actions.Refresh) {
+      @Override
+      public void actionPerformed(AnActionEvent e) {
+        refresh();
+      }
+    });
+    group.add(new DumbAwareAction("Reset", "Reset metrics", AllIcons.Actions.GC) {
+      @Override
+      public void actionPerformed(AnActionEvent e) {
+        EduStepicMetrics.reset();
+        refresh();
+      }
+    });
+    group.add(new DumbAwareAction("Export to JSON", "Save metrics to JSON file", AllIcons.Actions.Export) {
+      @Override
+      public void actionPerformed(AnActionEvent e) {
+        export();
+      }
+    });
+    setToolbar(ActionManager.getInstance().createActionToolbar("StepikDiagnostics", group, true).getComponent());
+
+    final JPanel content = new JPanel(new BorderLayout());
+    content.add(ScrollPaneFactory.createScrollPane(new JBTable(myModel)), BorderLayout.CENTER);
+    content.add(myConnectionsLabel, BorderLayout.SOUTH);
+    setContent(content);
+
+    refresh();
+    addHierarchyListener(e -> {
+      if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+        setRefreshing(isShowing());
+      }
+    });
+  }
+
+  void setRefreshing(boolean refreshing) {
+    if (refreshing == myTimer.isRunning()) {
+      return;
+    }
+    if (refreshing) {
+      refresh();
+      myTimer.start();
+    }
+    else {
+      myTimer.stop();
+    }
+  }
+
+  boolean isRefreshing() {
+    return myTimer.isRunning();
+  }
+
+  private void refresh() {
+    myModel.setSnapshot(EduStepicMetrics.getSnapshot());
+    myConnectionsLabel.setText("Since " + DateFormatUtil.formatDateTime(EduStepicMetrics.getStartTime()) + ". Connections: " +
+                               EduStepicConnectionPool.getStatistics());
+  }
+
+  private void export() {
+    final FileSaverDescriptor descriptor = new FileSaverDescriptor("Export Stepik Metrics", "Save Stepik request metrics", "json");
+    final VirtualFileWrapper wrapper =
+      FileChooserFactory.getInstance().createSaveFileDialog(descriptor, myProject).save(null, "stepik-metrics.json");
+    if (wrapper == null) {
+      return;
+    }
+    try {
+      FileUtil.writeToFile(wrapper.getFile(), EduStepicMetrics.toJson());
+    }
+    catch (IOException e) {
+      LOG.warn(e);
+      Messages.showErrorDialog(myProject, "Failed to save metrics: " + e.getMessage(), "Export Stepik Metrics");
+    }
+  }
+
+  @Override
+  public void dispose() {
+    myTimer.stop();
+  }
+
+  private static class MetricsTableModel extends AbstractTableModel {
+    private List<EndpointSnapshot> mySnapshot = new ArrayList<>();
+
+    private void setSnapshot(@NotNull List<EndpointSnapshot> snapshot) {
+      mySnapshot = snapshot;
+      fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+      return mySnapshot.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+      return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+      return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+      final EndpointSnapshot endpoint = mySnapshot.get(row);
+      switch (column) {
+        case 0: return endpoint.endpoint;
+        case 1: return endpoint.requests;
+        case 2: return endpoint.errors;
+        case 3: return endpoint.retries;
+        case 4: return endpoint.averageLatency;
+        case 5: return formatPercentile(endpoint.getLatencyPercentile(0.5));
+        case 6: return formatPercentile(endpoint.getLatencyPercentile(0.9));
+        case 7: return endpoint.maxLatency;
+        case 8: return StringUtil.formatFileSize(endpoint.bytesSent);
+        case 9: return StringUtil.formatFileSize(endpoint.bytesReceived);
+        default: return endpoint.statusCodes.toString();
+      }
+    }
+
+    @NotNull
+    private static String formatPercentile(long bound) {
+      return bound < 0 ? "> 10000" : "<= " + bound;
+    }
+  }
+}
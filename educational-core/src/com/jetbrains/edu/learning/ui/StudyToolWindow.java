@@ -18,6 +18,7 @@ package com.jetbrains.edu.learning.ui;
 import com.intellij.ide.browsers.WebBrowserManager;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.*;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.CommandProcessor;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
@@ -44,6 +45,7 @@ import com.jetbrains.edu.learning.StudyTaskManager;
 import com.jetbrains.edu.learning.StudyUtils;
 import com.jetbrains.edu.learning.courseFormat.Course;
 import com.jetbrains.edu.learning.courseFormat.Lesson;
+import com.jetbrains.edu.learning.courseFormat.StudyCourseListener;
 import com.jetbrains.edu.learning.courseFormat.StudyStatus;
 import com.jetbrains.edu.learning.courseFormat.tasks.Task;
 import com.jetbrains.edu.learning.courseFormat.tasks.TaskWithSubtasks;
@@ -55,6 +57,7 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class StudyToolWindow extends SimpleToolWindowPanel implements DataProvider, Disposable {
   private static final Logger LOG = Logger.getInstance(StudyToolWindow.class);
@@ -71,6 +74,7 @@ public abstract class StudyToolWindow extends SimpleToolWindowPanel implements D
 
   private Task myCurrentTask = null;
   private int myCurrentSubtaskIndex = -1;
+  private final AtomicBoolean myProgressUpdateQueued = new AtomicBoolean();
 
   public StudyToolWindow() {
     super(true, true);
@@ -105,6 +109,17 @@ public abstract class StudyToolWindow extends SimpleToolWindowPanel implements D
 
     if (isToolwindow) {
       project.getMessageBus().connect().subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, new StudyFileEditorManagerListener(this, project));
+      ApplicationManager.getApplication().getMessageBus().connect(this).subscribe(StudyCourseListener.TOPIC, new StudyCourseListener() {
+        @Override
+        public void taskStatusChanged(@NotNull Task task) {
+          courseProgressChanged(project, task);
+        }
+
+        @Override
+        public void subtaskChanged(@NotNull TaskWithSubtasks task) {
+          courseProgressChanged(project, task);
+        }
+      });
       Task task = StudyUtils.getCurrentTask(project);
       setCurrentTask(project, task);
     }
@@ -285,6 +300,19 @@ public abstract class StudyToolWindow extends SimpleToolWindowPanel implements D
     return contentPanel;
   }
 
+  private void courseProgressChanged(@NotNull Project project, @NotNull Task task) {
+    final Lesson lesson = task.getLesson();
+    if (lesson == null || lesson.getCourse() != StudyTaskManager.getInstance(project).getCourse()) {
+      return;
+    }
+    if (myProgressUpdateQueued.compareAndSet(false, true)) {
+      ApplicationManager.getApplication().invokeLater(() -> {
+        myProgressUpdateQueued.set(false);
+        updateCourseProgress(project);
+      }, project.getDisposed());
+    }
+  }
+
   public void updateCourseProgress(@NotNull final Project project) {
     final Course course = StudyTaskManager.getInstance(project).getCourse();
     if (course != null) {
@@ -0,0 +1,65 @@
+package com.jetbrains.edu.coursecreator;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.jetbrains.edu.learning.StudyTaskManager;
+import com.jetbrains.edu.learning.core.EduUtils;
+import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholder;
+import com.jetbrains.edu.learning.courseFormat.Course;
+import com.jetbrains.edu.learning.courseFormat.TaskFile;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import com.jetbrains.edu.learning.courseGeneration.StudyProjectGenerator;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class CCCourseArchiveBuilderTest extends CCTestCase {
+
+  public void testOnePlaceholder() throws IOException {
+    doTest("test_before.txt");
+  }
+
+  public void testSeveralPlaceholders() throws IOException {
+    doTest("several_before.txt");
+  }
+
+  /**
+   * Compares text conversion of the archive builder with the document based {@link EduUtils#createStudentFile}
+   */
+  private void doTest(@NotNull String name) throws IOException {
+    final VirtualFile file = configureByTaskFile(name);
+    final Course course = StudyTaskManager.getInstance(getProject()).getCourse();
+    assertNotNull(course);
+    final Task task = course.getLessons().get(0).getTaskList().get(0);
+    final List<Integer> answerOffsets = getOffsets(task.getTaskFile(name));
+    final TaskFile expected = ApplicationManager.getApplication().runWriteAction(
+      (Computable<TaskFile>)() -> EduUtils.createStudentFile(getProject(), file, task.copy(), 0));
+    assertNotNull(expected);
+
+    final File zipFile = FileUtil.createTempFile("course", ".zip", true);
+    CCCourseArchiveBuilder.build(getProject(), course, zipFile, null);
+    final Course archivedCourse = StudyProjectGenerator.getCourse(zipFile.getPath());
+    assertNotNull(archivedCourse);
+    final TaskFile actual = archivedCourse.getLessons().get(0).getTaskList().get(0).getTaskFile(name);
+    assertNotNull(actual);
+    assertEquals(expected.text, actual.text);
+    assertEquals(getOffsets(expected), getOffsets(actual));
+    // the archive is built from a copy, placeholders of the project course stay in answer positions
+    assertEquals(answerOffsets, getOffsets(task.getTaskFile(name)));
+  }
+
+  @NotNull
+  private static List<Integer> getOffsets(@NotNull TaskFile taskFile) {
+    return taskFile.getAnswerPlaceholders().stream().map(AnswerPlaceholder::getOffset).collect(Collectors.toList());
+  }
+
+  @Override
+  protected String getBasePath() {
+    return super.getBasePath() + "/actions/preview";
+  }
+}
@@ -0,0 +1,84 @@
+package com.jetbrains.edu.coursecreator.handlers;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.openapi.vfs.VfsUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiManager;
+import com.jetbrains.edu.coursecreator.CCTestCase;
+import com.jetbrains.edu.learning.StudyTaskManager;
+import com.jetbrains.edu.learning.StudyUtils;
+import com.jetbrains.edu.learning.courseFormat.Course;
+import com.jetbrains.edu.learning.courseFormat.Lesson;
+import com.jetbrains.edu.learning.courseFormat.TaskFile;
+import com.jetbrains.edu.learning.courseFormat.tasks.PyCharmTask;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+public class CCTaskMoveHandlerTest extends CCTestCase {
+
+  public void testMovedTaskIsResolved() throws IOException {
+    final Course course = StudyTaskManager.getInstance(getProject()).getCourse();
+    assertNotNull(course);
+    final Lesson lesson1 = course.getLessons().get(0);
+    final Task task1 = lesson1.getTaskList().get(0);
+    final Task task2 = new PyCharmTask();
+    task2.setName("task2");
+    task2.setIndex(2);
+    lesson1.addTask(task2);
+    final Lesson lesson2 = new Lesson();
+    lesson2.setName("lesson2");
+    lesson2.setIndex(2);
+    course.addLesson(lesson2);
+    course.initCourse(false);
+
+    final VirtualFile file1 = createTaskFile(task1, "lesson1/task1");
+    final VirtualFile file2 = createTaskFile(task2, "lesson1/task2");
+    final VirtualFile lesson2Dir = createDirectory("lesson2");
+    // resolve before the move, so files are remembered by the index
+    assertSame(task1, StudyUtils.getTaskForFile(getProject(), file1));
+    assertSame(task2, StudyUtils.getTaskForFile(getProject(), file2));
+
+    final PsiManager psiManager = PsiManager.getInstance(getProject());
+    final PsiDirectory sourceDir = psiManager.findDirectory(file1.getParent());
+    final PsiDirectory targetDir = psiManager.findDirectory(lesson2Dir);
+    assertNotNull(sourceDir);
+    assertNotNull(targetDir);
+    new CCTaskMoveHandlerDelegate().doMove(getProject(), new PsiElement[]{sourceDir}, targetDir, null);
+
+    assertSame(lesson2, task1.getLesson());
+    assertEquals(1, task1.getIndex());
+    assertEquals(1, task2.getIndex());
+    final VirtualFile movedFile = getProject().getBaseDir().findFileByRelativePath("lesson2/task1/task.py");
+    assertNotNull(movedFile);
+    assertSame(task1, StudyUtils.getTaskForFile(getProject(), movedFile));
+    assertSame(task1.getTaskFile("task.py"), StudyUtils.getTaskFile(getProject(), movedFile));
+    final VirtualFile renamedFile = getProject().getBaseDir().findFileByRelativePath("lesson1/task1/task.py");
+    assertNotNull(renamedFile);
+    assertSame(task2, StudyUtils.getTaskForFile(getProject(), renamedFile));
+    assertSame(task2.getTaskFile("task.py"), StudyUtils.getTaskFile(getProject(), renamedFile));
+  }
+
+  @NotNull
+  private VirtualFile createTaskFile(@NotNull Task task, @NotNull String taskPath) throws IOException {
+    final TaskFile taskFile = new TaskFile();
+    taskFile.name = "task.py";
+    taskFile.text = "";
+    task.addTaskFile(taskFile);
+    taskFile.setTask(task);
+    return ApplicationManager.getApplication().runWriteAction((ThrowableComputable<VirtualFile, IOException>)() -> {
+      final VirtualFile taskDir = VfsUtil.createDirectoryIfMissing(getProject().getBaseDir(), taskPath);
+      return taskDir.createChildData(this, taskFile.name);
+    });
+  }
+
+  @NotNull
+  private VirtualFile createDirectory(@NotNull String path) throws IOException {
+    return ApplicationManager.getApplication().runWriteAction(
+      (ThrowableComputable<VirtualFile, IOException>)() -> VfsUtil.createDirectoryIfMissing(getProject().getBaseDir(), path));
+  }
+}
@@ -0,0 +1,138 @@
+package com.jetbrains.edu.coursecreator.stepik;
+
+import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import org.apache.http.client.methods.HttpPost;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class CCStepicConnectorTest extends LightPlatformCodeInsightFixtureTestCase {
+  private final HttpPost myRequest = new HttpPost("https://stepik.org/api/step-sources");
+  private final List<Long> mySleeps = new ArrayList<>();
+  private final AtomicInteger myAttempts = new AtomicInteger();
+
+  public void testUnavailableServerIsRetriedWithBackoff() throws IOException {
+    final CCStepicConnector.UploadResponse response = execute(responses(503, 429, 201));
+    assertEquals(201, response.myStatusCode);
+    assertEquals(3, myAttempts.get());
+    assertEquals(Arrays.asList(CCStepicConnector.RETRY_DELAY, 2 * CCStepicConnector.RETRY_DELAY), mySleeps);
+  }
+
+  public void testRetriesAreLimited() throws IOException {
+    final CCStepicConnector.UploadResponse response = execute(() -> {
+      myAttempts.incrementAndGet();
+      return new CCStepicConnector.UploadResponse(503, "");
+    });
+    assertEquals(503, response.myStatusCode);
+    assertEquals(CCStepicConnector.MAX_ATTEMPTS, myAttempts.get());
+    assertEquals(CCStepicConnector.MAX_ATTEMPTS - 1, mySleeps.size());
+  }
+
+  public void testClientErrorIsNotRetried() throws IOException {
+    final CCStepicConnector.UploadResponse response = execute(responses(400, 201));
+    assertEquals(400, response.myStatusCode);
+    assertEquals(1, myAttempts.get());
+    assertEmpty(mySleeps);
+  }
+
+  public void testConnectionFailureIsRethrownAfterLastAttempt() {
+    try {
+      execute(() -> {
+        myAttempts.incrementAndGet();
+        throw new ConnectException("Connection refused");
+      });
+      fail("ConnectException expected");
+    }
+    catch (IOException e) {
+      assertInstanceOf(e, ConnectException.class);
+    }
+    assertEquals(CCStepicConnector.MAX_ATTEMPTS, myAttempts.get());
+    assertEquals(CCStepicConnector.MAX_ATTEMPTS - 1, mySleeps.size());
+  }
+
+  public void testUploadsRunInParallel() {
+    final List<Integer> items = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+    final CountDownLatch bothStarted = new CountDownLatch(2);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final List<String> results = CCStepicConnector.uploadInParallel(items, item -> {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      try {
+        bothStarted.countDown();
+        // fails by timeout if uploads are run one by one
+        assertTrue(bothStarted.await(10, TimeUnit.SECONDS));
+        Thread.sleep(20);
+      }
+      catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      finally {
+        running.decrementAndGet();
+      }
+      return "step" + item;
+    }, (item, e) -> null);
+
+    assertEquals(items.stream().map(item -> "step" + item).collect(Collectors.toList()), results);
+    assertTrue(maxRunning.get() > 1);
+    assertTrue(maxRunning.get() <= CCStepicConnector.UPLOAD_THREADS);
+  }
+
+  public void testSubmittingThreadWaitsForFullQueue() {
+    final int count = CCStepicConnector.UPLOAD_THREADS + CCStepicConnector.UPLOAD_QUEUE_CAPACITY + 10;
+    final List<Integer> items = IntStream.range(0, count).boxed().collect(Collectors.toList());
+    final Thread submittingThread = Thread.currentThread();
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final List<Boolean> results = CCStepicConnector.uploadInParallel(items, item -> {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(5);
+      }
+      catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      finally {
+        running.decrementAndGet();
+      }
+      return Thread.currentThread() != submittingThread;
+    }, (item, e) -> false);
+
+    assertFalse("Upload was run on the submitting thread", results.contains(false));
+    assertTrue(maxRunning.get() <= CCStepicConnector.UPLOAD_THREADS);
+  }
+
+  public void testFailedUploadIsConvertedToResult() {
+    final List<String> results = CCStepicConnector.uploadInParallel(Arrays.asList(1, 2, 3), item -> {
+      if (item == 2) {
+        throw new IllegalStateException("broken step");
+      }
+      return "step" + item;
+    }, (item, e) -> "failed " + item + ": " + e.getMessage());
+
+    assertEquals(Arrays.asList("step1", "failed 2: broken step", "step3"), results);
+  }
+
+  @NotNull
+  private CCStepicConnector.UploadResponse execute(@NotNull ThrowableComputable<CCStepicConnector.UploadResponse, IOException> send)
+    throws IOException {
+    return CCStepicConnector.execute(myRequest, send, mySleeps::add);
+  }
+
+  @NotNull
+  private ThrowableComputable<CCStepicConnector.UploadResponse, IOException> responses(int... statusCodes) {
+    return () -> {
+      final int attempt = myAttempts.getAndIncrement();
+      return new CCStepicConnector.UploadResponse(statusCodes[Math.min(attempt, statusCodes.length - 1)], "");
+    };
+  }
+}
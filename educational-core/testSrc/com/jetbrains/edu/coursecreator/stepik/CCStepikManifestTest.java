@@ -0,0 +1,75 @@
+package com.jetbrains.edu.coursecreator.stepik;
+
+import com.jetbrains.edu.coursecreator.CCProjectService;
+import com.jetbrains.edu.learning.courseFormat.Lesson;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CCStepikManifestTest {
+  private static final String STEP_SOURCE = "{\"stepSource\":{\"lesson\":1,\"position\":1}}";
+
+  @Test
+  public void testStepChanges() {
+    final CCStepikManifest manifest = new CCStepikManifest();
+    assertTrue(manifest.isStepChanged(10, STEP_SOURCE));
+
+    manifest.stepPublished(10, STEP_SOURCE);
+    assertFalse(manifest.isStepChanged(10, STEP_SOURCE));
+    assertTrue(manifest.isStepChanged(10, STEP_SOURCE.replace("position\":1", "position\":2")));
+    assertTrue(manifest.isStepChanged(11, STEP_SOURCE));
+  }
+
+  @Test
+  public void testRemovedStepIsPruned() {
+    final CCStepikManifest manifest = new CCStepikManifest();
+    manifest.stepPublished(10, STEP_SOURCE);
+    // lesson update posts the same step under a new id and deletes the old one
+    manifest.stepPublished(11, STEP_SOURCE);
+    manifest.stepRemoved(10);
+
+    assertEquals(1, manifest.steps.size());
+    assertTrue(manifest.isStepChanged(10, STEP_SOURCE));
+    assertFalse(manifest.isStepChanged(11, STEP_SOURCE));
+  }
+
+  @Test
+  public void testLessonChanges() {
+    final CCStepikManifest manifest = new CCStepikManifest();
+    final Lesson lesson = createLesson();
+    assertTrue(manifest.isLessonChanged(lesson));
+
+    manifest.lessonPublished(lesson);
+    assertFalse(manifest.isLessonChanged(lesson));
+    lesson.setName("renamed");
+    assertTrue(manifest.isLessonChanged(lesson));
+  }
+
+  @Test
+  public void testManifestIsSavedWithCourseCreatorState() {
+    final CCProjectService service = new CCProjectService();
+    assertNull(service.getState());
+
+    service.getStepikManifest().stepPublished(10, STEP_SOURCE);
+    service.getStepikManifest().lessonPublished(createLesson());
+    final Element state = service.getState();
+    assertNotNull(state);
+
+    final CCProjectService loaded = new CCProjectService();
+    loaded.loadState(state);
+    assertNull(loaded.getCourse());
+    assertFalse(loaded.getStepikManifest().isStepChanged(10, STEP_SOURCE));
+    assertFalse(loaded.getStepikManifest().isLessonChanged(createLesson()));
+  }
+
+  @NotNull
+  private static Lesson createLesson() {
+    final Lesson lesson = new Lesson();
+    lesson.setId(5);
+    lesson.setName("lesson1");
+    lesson.setIndex(1);
+    return lesson;
+  }
+}
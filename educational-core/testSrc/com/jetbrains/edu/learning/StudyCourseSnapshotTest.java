@@ -0,0 +1,35 @@
+package com.jetbrains.edu.learning;
+
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.util.xmlb.XmlSerializer;
+import com.jetbrains.edu.learning.courseFormat.Course;
+import com.jetbrains.edu.learning.courseFormat.RemoteCourse;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class StudyCourseSnapshotTest {
+
+  @Test
+  public void testSnapshotIsReadAsOriginal() throws IOException {
+    final RemoteCourse course = StudyTestsUtil.createCourse();
+    final byte[] snapshot = StudyCourseSnapshot.write(course);
+    assertNotNull(snapshot);
+    final Course restored = StudyCourseSnapshot.read(snapshot);
+    assertTrue(restored instanceof RemoteCourse);
+    assertTrue(JDOMUtil.areElementsEqual(XmlSerializer.serialize(course), XmlSerializer.serialize(restored)));
+  }
+
+  @Test
+  public void testSnapshotIsStable() {
+    final RemoteCourse course = StudyTestsUtil.createCourse();
+    final byte[] snapshot = StudyCourseSnapshot.write(course);
+    assertNotNull(snapshot);
+    assertEquals(StudyCourseSnapshot.checksum(snapshot), StudyCourseSnapshot.checksum(StudyCourseSnapshot.write(course)));
+
+    course.getLessons().get(0).getTaskList().get(0).getTaskFiles().get("task.py").text = "def g():\n    pass";
+    assertNotEquals(StudyCourseSnapshot.checksum(snapshot), StudyCourseSnapshot.checksum(StudyCourseSnapshot.write(course)));
+  }
+}
@@ -0,0 +1,48 @@
+package com.jetbrains.edu.learning;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.jetbrains.edu.coursecreator.CCTestCase;
+import com.jetbrains.edu.learning.courseFormat.Course;
+import com.jetbrains.edu.learning.courseFormat.TaskFile;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import org.jetbrains.annotations.NotNull;
+
+public class StudyTaskFileIndexTest extends CCTestCase {
+  private static final String FILE_NAME = "test_before.txt";
+
+  public void testTaskFileIsFound() {
+    final VirtualFile file = configureByTaskFile(FILE_NAME);
+    final Task task = getCourse().getLessons().get(0).getTaskList().get(0);
+    final StudyTaskFileIndex index = StudyTaskFileIndex.getInstance(getProject());
+
+    final TaskFile taskFile = index.getTaskFile(file);
+    assertSame(task.getTaskFile(FILE_NAME), taskFile);
+    assertSame(taskFile, index.getTaskFile(file));
+    assertSame(task, index.getTask(file));
+  }
+
+  public void testRemovedTaskIsNotFound() {
+    final VirtualFile file = configureByTaskFile(FILE_NAME);
+    final StudyTaskFileIndex index = StudyTaskFileIndex.getInstance(getProject());
+    assertNotNull(index.getTaskFile(file));
+    assertNotNull(index.getTask(file));
+
+    final Course course = getCourse();
+    course.getLessons().get(0).getTaskList().clear();
+    course.structureChanged();
+    assertNull(index.getTaskFile(file));
+    assertNull(index.getTask(file));
+  }
+
+  @NotNull
+  private Course getCourse() {
+    final Course course = StudyTaskManager.getInstance(getProject()).getCourse();
+    assertNotNull(course);
+    return course;
+  }
+
+  @Override
+  protected String getBasePath() {
+    return super.getBasePath() + "/actions/preview";
+  }
+}
@@ -0,0 +1,128 @@
+package com.jetbrains.edu.learning;
+
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import com.intellij.util.xmlb.XmlSerializer;
+import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholder;
+import com.jetbrains.edu.learning.courseFormat.Course;
+import com.jetbrains.edu.learning.courseFormat.RemoteCourse;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+
+public class StudyTaskManagerTest extends LightPlatformCodeInsightFixtureTestCase {
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    FileUtil.delete(getSnapshotFile());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      FileUtil.delete(getSnapshotFile());
+      PropertiesComponent.getInstance().unsetValue(StudyTaskManager.DISABLE_SNAPSHOT_PROPERTY);
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testSaveLoadRoundTrip() {
+    final RemoteCourse course = StudyTestsUtil.createCourse();
+    final StudyTaskManager manager = createManager(course);
+    final Element state = manager.getState();
+    assertNotNull(state);
+
+    final StudyTaskManager loaded = new StudyTaskManager(getProject());
+    loaded.loadState(state.clone());
+    final Course loadedCourse = loaded.getCourse();
+    assertNotNull(loadedCourse);
+    assertTrue(loadedCourse instanceof RemoteCourse);
+    assertTrue(JDOMUtil.areElementsEqual(XmlSerializer.serialize(course), XmlSerializer.serialize(loadedCourse)));
+    assertTrue(JDOMUtil.areElementsEqual(state, loaded.getState()));
+  }
+
+  public void testUntrackedChangesAreSerialized() {
+    final RemoteCourse course = StudyTestsUtil.createCourse();
+    final StudyTaskManager manager = createManager(course);
+    final Element state = manager.getState();
+    assertNotNull(state);
+    assertTrue(JDOMUtil.areElementsEqual(state, manager.getState()));
+
+    // changes which don't notify the course are saved too
+    final Task task = course.getLessons().get(0).getTaskList().get(0);
+    task.getTaskFile("task.py").setHighlightErrors(true);
+    final Element changedState = manager.getState();
+    assertNotNull(changedState);
+    assertFalse(JDOMUtil.areElementsEqual(state, changedState));
+
+    final StudyTaskManager loaded = new StudyTaskManager(getProject());
+    loaded.loadState(changedState.clone());
+    assertNotNull(loaded.getCourse());
+    assertTrue(loaded.getCourse().getLessons().get(0).getTaskList().get(0).getTaskFile("task.py").isHighlightErrors());
+  }
+
+  public void testResetPlaceholderIsSaved() {
+    final RemoteCourse course = StudyTestsUtil.createCourse();
+    final StudyTaskManager manager = createManager(course);
+    final AnswerPlaceholder placeholder = getPlaceholder(course);
+    placeholder.setOffset(10);
+    placeholder.setLength(5);
+    assertNotNull(manager.getState());
+
+    placeholder.reset();
+    final Element state = manager.getState();
+    assertNotNull(state);
+
+    final StudyTaskManager loaded = new StudyTaskManager(getProject());
+    loaded.loadState(state.clone());
+    final Course loadedCourse = loaded.getCourse();
+    assertNotNull(loadedCourse);
+    final AnswerPlaceholder loadedPlaceholder = getPlaceholder(loadedCourse);
+    assertEquals(4, loadedPlaceholder.getOffset());
+    assertEquals(1, loadedPlaceholder.getLength());
+  }
+
+  public void testSnapshotOfOtherXmlIsIgnored() {
+    final StudyTaskManager manager = createManager(StudyTestsUtil.createCourse());
+    assertNotNull(manager.getState());
+    assertTrue(getSnapshotFile().isFile());
+
+    // the snapshot of the first course stays on disk, while xml is saved with another course
+    PropertiesComponent.getInstance().setValue(StudyTaskManager.DISABLE_SNAPSHOT_PROPERTY, true);
+    final RemoteCourse otherCourse = StudyTestsUtil.createCourse();
+    otherCourse.setName("other course");
+    final Element state = createManager(otherCourse).getState();
+    assertNotNull(state);
+    PropertiesComponent.getInstance().unsetValue(StudyTaskManager.DISABLE_SNAPSHOT_PROPERTY);
+
+    final StudyTaskManager loaded = new StudyTaskManager(getProject());
+    loaded.loadState(state.clone());
+    assertNotNull(loaded.getCourse());
+    assertEquals("other course", loaded.getCourse().getName());
+  }
+
+  @NotNull
+  private StudyTaskManager createManager(@NotNull Course course) {
+    final StudyTaskManager manager = new StudyTaskManager(getProject());
+    manager.setCourse(course);
+    return manager;
+  }
+
+  @NotNull
+  private static AnswerPlaceholder getPlaceholder(@NotNull Course course) {
+    return course.getLessons().get(0).getTaskList().get(0).getTaskFile("task.py").getAnswerPlaceholders().get(0);
+  }
+
+  @NotNull
+  private File getSnapshotFile() {
+    return new File(new File(getProject().getBasePath(), Project.DIRECTORY_STORE_FOLDER), StudyCourseSnapshot.FILE_NAME);
+  }
+}
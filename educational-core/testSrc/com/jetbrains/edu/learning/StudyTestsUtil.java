@@ -0,0 +1,65 @@
+package com.jetbrains.edu.learning;
+
+import com.jetbrains.edu.learning.courseFormat.*;
+import com.jetbrains.edu.learning.courseFormat.tasks.ChoiceTask;
+import com.jetbrains.edu.learning.courseFormat.tasks.TaskWithSubtasks;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class StudyTestsUtil {
+
+  private StudyTestsUtil() {
+  }
+
+  /**
+   * @return initialized course with a task with subtasks and a placeholder, and a choice task
+   */
+  @NotNull
+  public static RemoteCourse createCourse() {
+    final RemoteCourse course = new RemoteCourse();
+    course.setName("course");
+    course.setLanguage("Python 3");
+    course.setId(42);
+
+    final Lesson lesson = new Lesson();
+    lesson.setName("lesson1");
+    lesson.setIndex(1);
+    lesson.setId(17);
+    course.addLesson(lesson);
+
+    final TaskWithSubtasks task = new TaskWithSubtasks();
+    task.setName("task1");
+    task.setIndex(1);
+    task.setLastSubtaskIndex(1);
+    task.addTaskText("task", "Task text");
+    task.addTestsTexts("tests.py", "print('tests')");
+    final TaskFile taskFile = new TaskFile();
+    taskFile.name = "task.py";
+    taskFile.text = "def f():\n    pass";
+    final AnswerPlaceholder placeholder = new AnswerPlaceholder();
+    placeholder.setOffset(4);
+    placeholder.setLength(1);
+    placeholder.setInitialState(new AnswerPlaceholder.MyInitialState(4, 1));
+    final AnswerPlaceholderSubtaskInfo info = new AnswerPlaceholderSubtaskInfo();
+    info.setPossibleAnswer("f");
+    info.setPlaceholderText("type here");
+    info.setHints(Collections.singletonList("hint"));
+    placeholder.getSubtaskInfos().put(0, info);
+    taskFile.addAnswerPlaceholder(placeholder);
+    task.addTaskFile(taskFile);
+    lesson.addTask(task);
+
+    final ChoiceTask choiceTask = new ChoiceTask();
+    choiceTask.setName("task2");
+    choiceTask.setIndex(2);
+    choiceTask.setChoiceVariants(Arrays.asList("first", "second"));
+    choiceTask.setSelectedVariants(Collections.singletonList(1));
+    choiceTask.setMultipleChoice(true);
+    lesson.addTask(choiceTask);
+
+    course.initCourse(false);
+    return course;
+  }
+}
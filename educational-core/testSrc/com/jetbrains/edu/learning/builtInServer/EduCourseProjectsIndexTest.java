@@ -0,0 +1,109 @@
+package com.jetbrains.edu.learning.builtInServer;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jdom.input.SAXBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.jetbrains.edu.learning.core.EduNames.STUDY_PROJECT_XML_PATH;
+import static org.junit.Assert.*;
+
+public class EduCourseProjectsIndexTest {
+  private File myRoot;
+
+  @Before
+  public void setUp() throws IOException {
+    myRoot = FileUtil.createTempDirectory("courseProjects", null);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.delete(myRoot);
+  }
+
+  @Test
+  public void testCourseIdIsReadFromXml() throws JDOMException, IOException {
+    assertEquals(42, EduCourseProjectsIndex.getCourseId(parseComponent(remoteCourse(42))));
+    // course of an old version which isn't migrated yet
+    assertEquals(17, EduCourseProjectsIndex.getCourseId(parseComponent("<Course><option name=\"id\" value=\"17\" /></Course>")));
+    assertEquals(0, EduCourseProjectsIndex.getCourseId(parseComponent("<Course><option name=\"name\" value=\"local\" /></Course>")));
+    assertEquals(0, EduCourseProjectsIndex.getCourseId(parseComponent("")));
+  }
+
+  @Test
+  public void testFindProject() throws IOException {
+    final String first = createProject("first", remoteCourse(1));
+    final String second = createProject("second", remoteCourse(2));
+    final String local = createProject("local", "<Course><option name=\"name\" value=\"local\" /></Course>");
+    final EduCourseProjectsIndex index = new EduCourseProjectsIndex();
+
+    assertEquals(second, index.findProject(2, Arrays.asList(first, second, local)));
+    assertEquals(first, index.findProject(1, Arrays.asList(first, second, local)));
+    assertNull(index.findProject(3, Arrays.asList(first, second, local)));
+    assertNull(index.findProject(1, Arrays.asList(second, local)));
+    assertEquals(2, index.getState().PROJECTS.size());
+  }
+
+  @Test
+  public void testPruningKeepsProjectWithSameCourse() throws IOException {
+    final String first = createProject("first", remoteCourse(1));
+    final String second = createProject("second", remoteCourse(1));
+    final EduCourseProjectsIndex index = new EduCourseProjectsIndex();
+
+    assertEquals(second, index.findProject(1, Arrays.asList(first, second)));
+    // the first project is up to date and isn't read again, but it still has to be found
+    assertEquals(first, index.findProject(1, Collections.singletonList(first)));
+  }
+
+  @Test
+  public void testChangedProjectIsReadAgain() throws IOException {
+    final String project = createProject("project", remoteCourse(1));
+    final EduCourseProjectsIndex index = new EduCourseProjectsIndex();
+    assertEquals(project, index.findProject(1, Collections.singletonList(project)));
+
+    final File xml = new File(project + STUDY_PROJECT_XML_PATH);
+    FileUtil.writeToFile(xml, getXml(remoteCourse(2)));
+    assertTrue(xml.setLastModified(xml.lastModified() + 10000));
+    assertNull(index.findProject(1, Collections.singletonList(project)));
+    assertEquals(project, index.findProject(2, Collections.singletonList(project)));
+  }
+
+  @NotNull
+  private String createProject(@NotNull String name, @NotNull String course) throws IOException {
+    final File projectDir = new File(myRoot, name);
+    FileUtil.writeToFile(new File(projectDir.getPath() + STUDY_PROJECT_XML_PATH), getXml(course));
+    return projectDir.getPath();
+  }
+
+  @NotNull
+  private static String remoteCourse(int id) {
+    return "<RemoteCourse><option name=\"id\" value=\"" + id + "\" /></RemoteCourse>";
+  }
+
+  @NotNull
+  private static Element parseComponent(@NotNull String course) throws JDOMException, IOException {
+    return new SAXBuilder().build(new StringReader(getXml(course))).getRootElement().getChild("component");
+  }
+
+  @NotNull
+  private static String getXml(@NotNull String course) {
+    return "<project version=\"4\">\n" +
+           "  <component name=\"StudySettings\">\n" +
+           "    <StudyTaskManager>\n" +
+           "      <option name=\"VERSION\" value=\"6\" />\n" +
+           (course.isEmpty() ? "" : "      <option name=\"course\">" + course + "</option>\n") +
+           "    </StudyTaskManager>\n" +
+           "  </component>\n" +
+           "</project>";
+  }
+}
@@ -0,0 +1,104 @@
+package com.jetbrains.edu.learning.core;
+
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.impl.DocumentImpl;
+import com.intellij.openapi.editor.markup.MarkupModel;
+import com.intellij.openapi.editor.markup.RangeHighlighter;
+import com.intellij.ui.JBColor;
+import com.jetbrains.edu.coursecreator.CCTestCase;
+import com.jetbrains.edu.learning.StudyTaskManager;
+import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholder;
+import com.jetbrains.edu.learning.courseFormat.Course;
+import com.jetbrains.edu.learning.courseFormat.TaskFile;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class EduAnswerPlaceholderHighlightersTest extends CCTestCase {
+  private final Map<AnswerPlaceholder, JBColor> myColors = new HashMap<>();
+
+  public void testColorChangeRedrawsOnlyThatPlaceholder() {
+    final TaskFile taskFile = configureTaskFile();
+    final List<AnswerPlaceholder> placeholders = taskFile.getAnswerPlaceholders();
+    final AnswerPlaceholder first = placeholders.get(0);
+    final AnswerPlaceholder second = placeholders.get(1);
+    final MarkupModel markupModel = myFixture.getEditor().getMarkupModel();
+    final RangeHighlighter firstHighlighter = getHighlighter(markupModel, first);
+    final RangeHighlighter secondHighlighter = getHighlighter(markupModel, second);
+    assertNotNull(firstHighlighter);
+    assertNotNull(secondHighlighter);
+
+    // status of the second placeholder changed
+    myColors.put(second, JBColor.GREEN);
+    update(taskFile);
+
+    assertSame(firstHighlighter, getHighlighter(markupModel, first));
+    assertTrue(firstHighlighter.isValid());
+    assertFalse(secondHighlighter.isValid());
+    final RangeHighlighter redrawn = getHighlighter(markupModel, second);
+    assertNotNull(redrawn);
+    assertEquals(JBColor.GREEN, redrawn.getTextAttributes().getEffectColor());
+  }
+
+  public void testRemovedPlaceholderIsNotHighlighted() {
+    final TaskFile taskFile = configureTaskFile();
+    final AnswerPlaceholder first = taskFile.getAnswerPlaceholders().get(0);
+    final AnswerPlaceholder second = taskFile.getAnswerPlaceholders().get(1);
+    final Editor editor = myFixture.getEditor();
+    final RangeHighlighter firstHighlighter = getHighlighter(editor.getMarkupModel(), first);
+    final RangeHighlighter secondHighlighter = getHighlighter(editor.getMarkupModel(), second);
+    assertNotNull(secondHighlighter);
+    final int highlighters = editor.getMarkupModel().getAllHighlighters().length;
+    final int guardedBlocks = getGuardedBlocksCount(editor);
+
+    taskFile.getAnswerPlaceholders().remove(second);
+    update(taskFile);
+
+    assertFalse(secondHighlighter.isValid());
+    assertNull(getHighlighter(editor.getMarkupModel(), second));
+    assertSame(firstHighlighter, getHighlighter(editor.getMarkupModel(), first));
+    // highlighter and guarded blocks on both sides of the placeholder
+    assertEquals(highlighters - 3, editor.getMarkupModel().getAllHighlighters().length);
+    assertEquals(guardedBlocks - 2, getGuardedBlocksCount(editor));
+  }
+
+  public void testRemoveAll() {
+    final TaskFile taskFile = configureTaskFile();
+    final Editor editor = myFixture.getEditor();
+
+    EduAnswerPlaceholderHighlighters.removeAll(editor);
+
+    for (AnswerPlaceholder placeholder : taskFile.getAnswerPlaceholders()) {
+      assertNull(getHighlighter(editor.getMarkupModel(), placeholder));
+    }
+    assertEquals(0, getGuardedBlocksCount(editor));
+  }
+
+  private TaskFile configureTaskFile() {
+    configureByTaskFile("several_before.txt");
+    final Course course = StudyTaskManager.getInstance(getProject()).getCourse();
+    assertNotNull(course);
+    final TaskFile taskFile = course.getLessons().get(0).getTaskList().get(0).getTaskFile("several_before.txt");
+    assertNotNull(taskFile);
+    assertEquals(2, taskFile.getAnswerPlaceholders().size());
+    for (AnswerPlaceholder placeholder : taskFile.getAnswerPlaceholders()) {
+      myColors.put(placeholder, JBColor.BLUE);
+    }
+    update(taskFile);
+    return taskFile;
+  }
+
+  private void update(TaskFile taskFile) {
+    EduAnswerPlaceholderHighlighters.update(myFixture.getEditor(), taskFile, myColors::get);
+  }
+
+  private static int getGuardedBlocksCount(Editor editor) {
+    return ((DocumentImpl)editor.getDocument()).getGuardedBlocks().size();
+  }
+
+  @Override
+  protected String getBasePath() {
+    return super.getBasePath() + "/actions/preview";
+  }
+}
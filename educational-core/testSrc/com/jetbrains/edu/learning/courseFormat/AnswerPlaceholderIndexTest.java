@@ -0,0 +1,66 @@
+package com.jetbrains.edu.learning.courseFormat;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AnswerPlaceholderIndexTest {
+
+  @Test
+  public void testPlaceholderAtOffset() {
+    final TaskFile taskFile = new TaskFile();
+    // added out of order on purpose
+    final AnswerPlaceholder second = addPlaceholder(taskFile, 10, 2);
+    final AnswerPlaceholder first = addPlaceholder(taskFile, 2, 3);
+    final AnswerPlaceholder third = addPlaceholder(taskFile, 20, 0);
+
+    assertNull(taskFile.getAnswerPlaceholder(0));
+    assertSame(first, taskFile.getAnswerPlaceholder(2));
+    assertSame(first, taskFile.getAnswerPlaceholder(5));
+    assertNull(taskFile.getAnswerPlaceholder(6));
+    assertSame(second, taskFile.getAnswerPlaceholder(11));
+    assertSame(third, taskFile.getAnswerPlaceholder(20));
+    assertNull(taskFile.getAnswerPlaceholder(21));
+  }
+
+  @Test
+  public void testFirstEndingAtOrAfter() {
+    final TaskFile taskFile = new TaskFile();
+    addPlaceholder(taskFile, 2, 3);
+    addPlaceholder(taskFile, 10, 2);
+    final AnswerPlaceholderIndex index = taskFile.getPlaceholderIndex();
+
+    assertEquals(0, index.firstEndingAtOrAfter(0));
+    assertEquals(0, index.firstEndingAtOrAfter(5));
+    assertEquals(1, index.firstEndingAtOrAfter(6));
+    assertEquals(1, index.firstEndingAtOrAfter(12));
+    assertEquals(2, index.firstEndingAtOrAfter(13));
+  }
+
+  @Test
+  public void testIndexIsUpdatedWhenPlaceholdersChange() {
+    final TaskFile taskFile = new TaskFile();
+    addPlaceholder(taskFile, 10, 2);
+    assertNull(taskFile.getAnswerPlaceholder(3));
+
+    final AnswerPlaceholder added = addPlaceholder(taskFile, 2, 3);
+    assertSame(added, taskFile.getAnswerPlaceholder(3));
+    assertSame(added, taskFile.getPlaceholderIndex().get(0));
+
+    // the list is also modified directly by actions
+    taskFile.getAnswerPlaceholders().remove(added);
+    assertNull(taskFile.getAnswerPlaceholder(3));
+    assertEquals(1, taskFile.getPlaceholderIndex().size());
+  }
+
+  @NotNull
+  private static AnswerPlaceholder addPlaceholder(@NotNull TaskFile taskFile, int offset, int length) {
+    final AnswerPlaceholder placeholder = new AnswerPlaceholder();
+    placeholder.setOffset(offset);
+    placeholder.setLength(length);
+    placeholder.getSubtaskInfos().put(0, new AnswerPlaceholderSubtaskInfo());
+    taskFile.addAnswerPlaceholder(placeholder);
+    return placeholder;
+  }
+}
@@ -0,0 +1,68 @@
+package com.jetbrains.edu.learning.courseFormat;
+
+import com.jetbrains.edu.learning.StudyTestsUtil;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CourseModificationTest {
+
+  @Test
+  public void testTaskStatusChange() {
+    final RemoteCourse course = StudyTestsUtil.createCourse();
+    final Task task = course.getLessons().get(0).getTaskList().get(0);
+    final long modificationCount = course.getModificationCount();
+
+    task.setStatus(StudyStatus.Solved);
+    assertTrue(course.getModificationCount() > modificationCount);
+    final List<Task> changedTasks = course.pollChangedTasks();
+    assertEquals(1, changedTasks.size());
+    assertSame(task, changedTasks.get(0));
+    assertTrue(course.pollChangedTasks().isEmpty());
+  }
+
+  @Test
+  public void testPlaceholderStatusChange() {
+    final RemoteCourse course = StudyTestsUtil.createCourse();
+    final Task task = course.getLessons().get(0).getTaskList().get(0);
+    final AnswerPlaceholder placeholder = task.getTaskFile("task.py").getAnswerPlaceholders().get(0);
+    course.pollChangedTasks();
+
+    final long modificationCount = course.getModificationCount();
+    placeholder.setStatus(placeholder.getStatus());
+    assertEquals(modificationCount, course.getModificationCount());
+    assertTrue(course.pollChangedTasks().isEmpty());
+
+    placeholder.setStatus(StudyStatus.Failed);
+    assertEquals(modificationCount + 1, course.getModificationCount());
+    final List<Task> changedTasks = course.pollChangedTasks();
+    assertEquals(1, changedTasks.size());
+    assertSame(task, changedTasks.get(0));
+  }
+
+  @Test
+  public void testCopyIsNotTracked() {
+    final RemoteCourse course = StudyTestsUtil.createCourse();
+    course.pollChangedTasks();
+    final long modificationCount = course.getModificationCount();
+
+    final Task copy = course.getLessons().get(0).getTaskList().get(0).copy();
+    copy.setStatus(StudyStatus.Solved);
+    assertEquals(modificationCount, course.getModificationCount());
+    assertTrue(course.pollChangedTasks().isEmpty());
+  }
+
+  @Test
+  public void testStructureChange() {
+    final RemoteCourse course = StudyTestsUtil.createCourse();
+    course.pollChangedTasks();
+    final long modificationCount = course.getModificationCount();
+
+    course.structureChanged();
+    assertEquals(modificationCount + 1, course.getModificationCount());
+    assertTrue(course.pollChangedTasks().isEmpty());
+  }
+}
@@ -0,0 +1,40 @@
+package com.jetbrains.edu.learning.courseFormat;
+
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.util.xmlb.XmlSerializer;
+import com.jetbrains.edu.learning.StudyTestsUtil;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StudyCourseCopyTest {
+
+  @Test
+  public void testCopyIsSerializedAsOriginal() {
+    final RemoteCourse course = StudyTestsUtil.createCourse();
+    final Course copy = course.copy();
+    assertTrue(JDOMUtil.areElementsEqual(XmlSerializer.serialize(course), XmlSerializer.serialize(copy)));
+  }
+
+  @Test
+  public void testCopyIsDeep() {
+    final RemoteCourse course = StudyTestsUtil.createCourse();
+    final Course copy = course.copy();
+    final Lesson lessonCopy = copy.getLessons().get(0);
+    assertSame(copy, lessonCopy.getCourse());
+
+    final Task taskCopy = lessonCopy.getTaskList().get(0);
+    final TaskFile taskFileCopy = taskCopy.getTaskFile("task.py");
+    assertSame(taskCopy, taskFileCopy.getTask());
+    final AnswerPlaceholder placeholderCopy = taskFileCopy.getAnswerPlaceholders().get(0);
+    assertSame(taskFileCopy, placeholderCopy.getTaskFile());
+
+    placeholderCopy.setOffset(0);
+    placeholderCopy.getSubtaskInfos().get(0).setStatus(StudyStatus.Solved);
+    final AnswerPlaceholder placeholder = course.getLessons().get(0).getTaskList().get(0).getTaskFile("task.py")
+      .getAnswerPlaceholders().get(0);
+    assertEquals(4, placeholder.getOffset());
+    assertEquals(StudyStatus.Unchecked, placeholder.getSubtaskInfos().get(0).getStatus());
+  }
+}
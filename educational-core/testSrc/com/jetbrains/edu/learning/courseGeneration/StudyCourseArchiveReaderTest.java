@@ -0,0 +1,116 @@
+package com.jetbrains.edu.learning.courseGeneration;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import com.jetbrains.edu.learning.StudySerializationUtils;
+import com.jetbrains.edu.learning.core.EduNames;
+import com.jetbrains.edu.learning.courseFormat.Course;
+import com.jetbrains.edu.learning.courseFormat.Lesson;
+import com.jetbrains.edu.learning.courseFormat.TaskFile;
+import com.jetbrains.edu.learning.courseFormat.tasks.PyCharmTask;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class StudyCourseArchiveReaderTest extends LightPlatformCodeInsightFixtureTestCase {
+  private File myArchive;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myArchive = FileUtil.createTempFile("course", ".zip", true);
+  }
+
+  public void testHeaderHasNoLessons() throws IOException {
+    writeArchive("Introduction");
+
+    final Course header = StudyCourseArchiveReader.readHeader(myArchive.getPath());
+    assertNotNull(header);
+    assertEquals("Introduction", header.getName());
+    assertEquals("Introduction course", header.getDescription());
+    assertEquals("Python", header.getLanguageID());
+    assertEquals("3", header.getLanguageVersion());
+    assertTrue(header.getLessons(true).isEmpty());
+    assertNotSame(header, StudyCourseArchiveReader.readHeader(myArchive.getPath()));
+  }
+
+  public void testUnchangedArchiveIsNotReadAgain() throws IOException {
+    writeArchive("Introduction");
+    assertNotNull(StudyCourseArchiveReader.readHeader(myArchive.getPath()));
+
+    // same path, size and modification time, so the cached header is used
+    final long timestamp = myArchive.lastModified();
+    FileUtil.writeToFile(myArchive, new byte[(int)myArchive.length()]);
+    assertTrue(myArchive.setLastModified(timestamp));
+
+    final Course header = StudyCourseArchiveReader.readHeader(myArchive.getPath());
+    assertNotNull(header);
+    assertEquals("Introduction", header.getName());
+  }
+
+  public void testChangedArchiveIsReadAgain() throws IOException {
+    writeArchive("Introduction");
+    final long timestamp = myArchive.lastModified();
+    assertNotNull(StudyCourseArchiveReader.readHeader(myArchive.getPath()));
+
+    writeArchive("Advanced topics");
+    assertTrue(myArchive.setLastModified(timestamp + 10000));
+
+    final Course header = StudyCourseArchiveReader.readHeader(myArchive.getPath());
+    assertNotNull(header);
+    assertEquals("Advanced topics", header.getName());
+  }
+
+  public void testLessonsAreLoadedWhenProjectIsCreated() throws IOException {
+    writeArchive("Introduction");
+    final Course header = StudyCourseArchiveReader.readHeader(myArchive.getPath());
+    final Course otherHeader = StudyCourseArchiveReader.readHeader(myArchive.getPath());
+    assertNotNull(header);
+    assertNotNull(otherHeader);
+
+    final StudyProjectGenerator generator = new StudyProjectGenerator();
+    generator.setSelectedCourse(header);
+    final Course course = generator.getCourse(getProject());
+
+    assertSame(header, course);
+    assertEquals(1, course.getLessons().size());
+    final Lesson lesson = course.getLessons().get(0);
+    assertEquals("lesson1", lesson.getName());
+    final Task task = lesson.getTaskList().get(0);
+    assertEquals("task1", task.getName());
+    final TaskFile taskFile = task.getTaskFile("task.py");
+    assertNotNull(taskFile);
+    assertEquals("print('hello')", taskFile.text);
+    assertSame(task, taskFile.getTask());
+    assertTrue(otherHeader.getLessons(true).isEmpty());
+  }
+
+  private void writeArchive(@NotNull String name) throws IOException {
+    final Course course = new Course();
+    course.setName(name);
+    course.setDescription(name + " course");
+    course.setLanguage("Python 3");
+    final Lesson lesson = new Lesson();
+    lesson.setName("lesson1");
+    final Task task = new PyCharmTask();
+    task.setName("task1");
+    final TaskFile taskFile = new TaskFile();
+    taskFile.name = "task.py";
+    taskFile.text = "print('hello')";
+    task.addTaskFile(taskFile);
+    lesson.addTask(task);
+    course.addLesson(lesson);
+
+    try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(myArchive)))) {
+      zos.putNextEntry(new ZipEntry(EduNames.COURSE_META_FILE));
+      final Writer writer = new OutputStreamWriter(zos, CharsetToolkit.UTF8_CHARSET);
+      StudySerializationUtils.Json.getGson(StudySerializationUtils.Json.GsonProfile.COURSE_ARCHIVE).toJson(course, writer);
+      writer.flush();
+      zos.closeEntry();
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package com.jetbrains.edu.learning.stepic;
+
+import com.jetbrains.edu.learning.courseFormat.RemoteCourse;
+import com.jetbrains.edu.learning.courseFormat.tasks.PyCharmTask;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class EduAdaptiveRecommendationQueueTest {
+  private final RemoteCourse myCourse = new RemoteCourse();
+  private final List<String> myRecommendations = new ArrayList<>(Arrays.asList("1", "2", "3"));
+  private final List<String> myLoadedLessons = new ArrayList<>();
+  private final List<Runnable> myPendingLoads = new ArrayList<>();
+  private long myTime;
+
+  @Test
+  public void testNextRecommendationsArePrefetched() {
+    final EduAdaptiveRecommendationQueue queue = createQueue();
+    queue.prefetch(myCourse, createUser(7));
+    runPendingLoads();
+
+    // the first recommendation is the current lesson
+    assertEquals(Arrays.asList("2", "3"), myLoadedLessons);
+    assertNull(queue.poll("1", 7));
+    final Task task = queue.poll("2", 7);
+    assertNotNull(task);
+    assertEquals("2", task.getName());
+    assertNull("Polled task should be removed", queue.poll("2", 7));
+    assertNotNull(queue.poll("3", 7));
+  }
+
+  @Test
+  public void testPrefetchedTaskIsNotLoadedAgain() {
+    final EduAdaptiveRecommendationQueue queue = createQueue();
+    queue.prefetch(myCourse, createUser(7));
+    runPendingLoads();
+    myRecommendations.remove("1");
+    myRecommendations.add("4");
+    queue.prefetch(myCourse, createUser(7));
+    runPendingLoads();
+
+    assertEquals(Arrays.asList("2", "3", "4"), myLoadedLessons);
+    assertNotNull(queue.poll("4", 7));
+    assertNotNull(queue.poll("3", 7));
+    assertNull("Only " + EduAdaptiveRecommendationQueue.PREFETCH_COUNT + " tasks are kept", queue.poll("2", 7));
+  }
+
+  @Test
+  public void testTaskOfOtherUserIsNotUsed() {
+    final EduAdaptiveRecommendationQueue queue = createQueue();
+    queue.prefetch(myCourse, createUser(7));
+    runPendingLoads();
+
+    assertNull(queue.poll("2", 8));
+  }
+
+  @Test
+  public void testExpiredTaskIsNotUsed() {
+    final EduAdaptiveRecommendationQueue queue = createQueue();
+    queue.prefetch(myCourse, createUser(7));
+    runPendingLoads();
+    myTime += EduAdaptiveRecommendationQueue.EXPIRATION_TIME;
+    assertNotNull(queue.poll("2", 7));
+
+    myTime += 1;
+    assertNull(queue.poll("3", 7));
+  }
+
+  @Test
+  public void testInvalidatedPrefetchDoesNotAddTasks() {
+    final EduAdaptiveRecommendationQueue queue = createQueue();
+    queue.prefetch(myCourse, createUser(7));
+    // student reacted to the task before the prefetch was run
+    queue.invalidate();
+    runPendingLoads();
+
+    assertTrue(myLoadedLessons.isEmpty());
+    assertNull(queue.poll("2", 7));
+  }
+
+  @NotNull
+  private EduAdaptiveRecommendationQueue createQueue() {
+    final EduAdaptiveRecommendationQueue.TaskLoader loader = new EduAdaptiveRecommendationQueue.TaskLoader() {
+      @NotNull
+      @Override
+      public List<String> getRecommendedLessons(@NotNull RemoteCourse course, int count) {
+        assertEquals(EduAdaptiveRecommendationQueue.PREFETCH_COUNT + 1, count);
+        return new ArrayList<>(myRecommendations);
+      }
+
+      @Nullable
+      @Override
+      public Task createTask(@NotNull RemoteCourse course, int userId, @NotNull String lessonId) {
+        myLoadedLessons.add(lessonId);
+        final Task task = new PyCharmTask();
+        task.setName(lessonId);
+        return task;
+      }
+    };
+    return new EduAdaptiveRecommendationQueue(loader, this::addPendingLoad, () -> myTime);
+  }
+
+  @NotNull
+  private Future<?> addPendingLoad(@NotNull Runnable runnable) {
+    myPendingLoads.add(runnable);
+    return new CompletableFuture<>();
+  }
+
+  private void runPendingLoads() {
+    final List<Runnable> loads = new ArrayList<>(myPendingLoads);
+    myPendingLoads.clear();
+    loads.forEach(Runnable::run);
+  }
+
+  @NotNull
+  private static StepicUser createUser(int id) {
+    final StepicUser user = StepicUser.createEmptyUser();
+    user.setId(id);
+    return user;
+  }
+}
@@ -0,0 +1,145 @@
+package com.jetbrains.edu.learning.stepic;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class EduStepicAuthorizedClientTest {
+  private final List<String> myRefreshTokens = Collections.synchronizedList(new ArrayList<>());
+
+  @Test
+  public void testTokenExpiration() {
+    final long now = 1000000;
+    assertTrue("Empty token", EduStepicAuthorizedClient.isTokenExpired(createUser("", 0), now));
+    assertFalse("Unknown expiration", EduStepicAuthorizedClient.isTokenExpired(createUser("access", 0), now));
+    assertFalse(EduStepicAuthorizedClient.isTokenExpired(createUser("access", now + 1), now));
+    assertTrue(EduStepicAuthorizedClient.isTokenExpired(createUser("access", now), now));
+
+    assertFalse(EduStepicAuthorizedClient.shouldRefresh(createUser("access", 0), now));
+    assertFalse(EduStepicAuthorizedClient.shouldRefresh(createUser("access", now + EduStepicAuthorizedClient.REFRESH_MARGIN + 1), now));
+    assertTrue(EduStepicAuthorizedClient.shouldRefresh(createUser("access", now + EduStepicAuthorizedClient.REFRESH_MARGIN), now));
+  }
+
+  @Test
+  public void testRefreshReplacesTokens() {
+    final StepicUser user = createUser("old", 1);
+    final long before = System.currentTimeMillis();
+    assertTrue(EduStepicAuthorizedClient.refreshTokens(user, "old", issueTokens("new")));
+
+    assertEquals(Collections.singletonList("old refresh"), myRefreshTokens);
+    assertEquals("new", user.getAccessToken());
+    assertEquals("new refresh", user.getRefreshToken());
+    assertTrue(user.getTokenExpiresAt() >= before + TimeUnit.HOURS.toMillis(1));
+  }
+
+  @Test
+  public void testTokenReplacedByAnotherRequestIsKept() {
+    final StepicUser user = createUser("new", 1);
+    assertTrue(EduStepicAuthorizedClient.refreshTokens(user, "old", issueTokens("newer")));
+
+    assertTrue(myRefreshTokens.isEmpty());
+    assertEquals("new", user.getAccessToken());
+  }
+
+  @Test
+  public void testFailedRefreshKeepsTokens() {
+    final StepicUser user = createUser("old", 1);
+    assertFalse(EduStepicAuthorizedClient.refreshTokens(user, "old", refreshToken -> null));
+    assertEquals("old", user.getAccessToken());
+  }
+
+  @Test
+  public void testUnauthorizedRequestIsRepeatedOnce() {
+    final StepicUser user = createUser("old", 1);
+    final EduStepicAuthorizedClient.TokenRefreshStrategy strategy =
+      new EduStepicAuthorizedClient.TokenRefreshStrategy(user, issueTokens("new"));
+
+    assertFalse(strategy.retryRequest(createResponse(HttpStatus.SC_OK), 1, createContext("old")));
+    assertTrue(myRefreshTokens.isEmpty());
+    assertTrue(strategy.retryRequest(createResponse(HttpStatus.SC_UNAUTHORIZED), 1, createContext("old")));
+    assertEquals("new", user.getAccessToken());
+    assertFalse(strategy.retryRequest(createResponse(HttpStatus.SC_UNAUTHORIZED), 2, createContext("new")));
+    assertEquals(1, myRefreshTokens.size());
+  }
+
+  @Test
+  public void testConcurrentRefreshesShareOneRequest() throws InterruptedException, ExecutionException {
+    final StepicUser user = createUser("old", 1);
+    final CountDownLatch started = new CountDownLatch(1);
+    final Function<String, StepicWrappers.TokenInfo> slowTokens = refreshToken -> {
+      started.countDown();
+      try {
+        Thread.sleep(100);
+      }
+      catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      return issueTokens("new").apply(refreshToken);
+    };
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<Boolean>> results = new ArrayList<>();
+      results.add(executor.submit(() -> EduStepicAuthorizedClient.refreshTokens(user, "old", slowTokens)));
+      started.await();
+      for (int i = 0; i < 3; i++) {
+        // requests rejected with the old token while it's being refreshed
+        results.add(executor.submit(() -> EduStepicAuthorizedClient.refreshTokens(user, "old", slowTokens)));
+      }
+      for (Future<Boolean> result : results) {
+        assertTrue(result.get());
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, myRefreshTokens.size());
+    assertEquals("new", user.getAccessToken());
+  }
+
+  @NotNull
+  private Function<String, StepicWrappers.TokenInfo> issueTokens(@NotNull String accessToken) {
+    return refreshToken -> {
+      myRefreshTokens.add(refreshToken);
+      final StepicWrappers.TokenInfo tokenInfo = new StepicWrappers.TokenInfo();
+      tokenInfo.accessToken = accessToken;
+      tokenInfo.refreshToken = accessToken + " refresh";
+      tokenInfo.expiresIn = (int)TimeUnit.HOURS.toSeconds(1);
+      return tokenInfo;
+    };
+  }
+
+  @NotNull
+  private static StepicUser createUser(@NotNull String accessToken, long expiresAt) {
+    final StepicUser user = StepicUser.createEmptyUser();
+    user.setAccessToken(accessToken);
+    user.setRefreshToken(accessToken + " refresh");
+    user.setTokenExpiresAt(expiresAt);
+    return user;
+  }
+
+  @NotNull
+  private static HttpResponse createResponse(int statusCode) {
+    return new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, null);
+  }
+
+  @NotNull
+  private static HttpContext createContext(@Nullable String accessToken) {
+    final HttpContext context = new BasicHttpContext();
+    context.setAttribute(EduStepicAuthorizedClient.ACCESS_TOKEN_ATTRIBUTE, accessToken);
+    return context;
+  }
+}
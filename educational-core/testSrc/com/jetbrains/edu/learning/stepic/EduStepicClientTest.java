@@ -0,0 +1,23 @@
+package com.jetbrains.edu.learning.stepic;
+
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.Configurable;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import java.io.IOException;
+
+public class EduStepicClientTest extends LightPlatformCodeInsightFixtureTestCase {
+
+  public void testRequestsWithoutConfigTimeOut() throws IOException {
+    try (CloseableHttpClient client = EduStepicClient.getBuilder().build()) {
+      assertTrue(client instanceof Configurable);
+      final RequestConfig config = ((Configurable)client).getConfig();
+      assertSame(EduStepicClient.DEFAULT_REQUEST_CONFIG, config);
+      // zero or negative timeout means the request may wait forever
+      assertTrue(config.getConnectTimeout() > 0);
+      assertTrue(config.getConnectionRequestTimeout() > 0);
+      assertTrue(config.getSocketTimeout() > 0);
+    }
+  }
+}
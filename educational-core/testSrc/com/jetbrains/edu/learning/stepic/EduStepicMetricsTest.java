@@ -0,0 +1,64 @@
+package com.jetbrains.edu.learning.stepic;
+
+import com.jetbrains.edu.learning.stepic.EduStepicMetrics.EndpointMetrics;
+import com.jetbrains.edu.learning.stepic.EduStepicMetrics.EndpointSnapshot;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class EduStepicMetricsTest {
+
+  @Test
+  public void testEndpoint() {
+    assertEquals("courses", EduStepicMetrics.getEndpoint("/api/courses?page=2"));
+    assertEquals("lessons", EduStepicMetrics.getEndpoint("https://stepik.org/api/lessons/12"));
+    assertEquals("oauth2", EduStepicMetrics.getEndpoint("/oauth2/token/"));
+    assertEquals("oauth2", EduStepicMetrics.getEndpoint("oauth2/token/"));
+    // not escaped uri is used as a path
+    assertEquals("steps", EduStepicMetrics.getEndpoint("/api/steps/a b"));
+  }
+
+  @Test
+  public void testEndpointWithoutPath() {
+    assertEquals("other", EduStepicMetrics.getEndpoint("/api/"));
+    assertEquals("other", EduStepicMetrics.getEndpoint("/"));
+    assertEquals("other", EduStepicMetrics.getEndpoint(""));
+    assertEquals("other", EduStepicMetrics.getEndpoint("mailto:support@stepik.org"));
+  }
+
+  @Test
+  public void testLatencyPercentile() {
+    final EndpointSnapshot snapshot = createSnapshot(10, 50, 300, 700);
+    assertEquals(50, snapshot.getLatencyPercentile(0.5));
+    assertEquals(500, snapshot.getLatencyPercentile(0.75));
+    assertEquals(1000, snapshot.getLatencyPercentile(0.9));
+    assertEquals(1000, snapshot.getLatencyPercentile(1));
+  }
+
+  @Test
+  public void testLatencyPercentileAboveAllBounds() {
+    final long maxBound = EduStepicMetrics.LATENCY_BOUNDS[EduStepicMetrics.LATENCY_BOUNDS.length - 1];
+    final EndpointSnapshot snapshot = createSnapshot(10, maxBound, maxBound + 1, maxBound * 2);
+    assertEquals(50, snapshot.getLatencyPercentile(0.25));
+    assertEquals(maxBound, snapshot.getLatencyPercentile(0.5));
+    assertEquals(-1, snapshot.getLatencyPercentile(0.75));
+    assertEquals(-1, snapshot.getLatencyPercentile(1));
+  }
+
+  @Test
+  public void testLatencyPercentileWithoutRequests() {
+    final EndpointSnapshot snapshot = createSnapshot();
+    assertEquals(0, snapshot.getLatencyPercentile(0.5));
+    assertEquals(0, snapshot.getLatencyPercentile(1));
+  }
+
+  @NotNull
+  private static EndpointSnapshot createSnapshot(long... latencies) {
+    final EndpointMetrics metrics = new EndpointMetrics();
+    for (long latency : latencies) {
+      metrics.recordLatency(latency);
+    }
+    return new EndpointSnapshot("courses", metrics);
+  }
+}
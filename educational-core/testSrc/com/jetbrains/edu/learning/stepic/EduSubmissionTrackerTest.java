@@ -0,0 +1,169 @@
+package com.jetbrains.edu.learning.stepic;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.jetbrains.edu.learning.stepic.StepicWrappers.ResultSubmissionWrapper.ResultSubmission;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.jetbrains.edu.learning.stepic.EduSubmissionTracker.*;
+import static org.junit.Assert.*;
+
+public class EduSubmissionTrackerTest {
+  private static final long TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+  private final List<ScheduledTask> myTasks = new ArrayList<>();
+  private final List<Long> myPolls = new ArrayList<>();
+  private long myTime;
+  private int myScheduledCount;
+
+  @Test
+  public void testDelaysGrowUntilDeadline() throws InterruptedException {
+    final CompletableFuture<StepicWrappers.ResultSubmissionWrapper> result = track(() -> poll("evaluation"), null);
+    runUntilDone(result);
+
+    assertFailsWith(result, TimeoutException.class);
+    assertTrue(myPolls.size() > 2);
+    long delay = INITIAL_DELAY;
+    long previous = 0;
+    for (int i = 0; i < myPolls.size() - 1; i++) {
+      final long actual = myPolls.get(i) - previous;
+      // jittered delays are truncated to milliseconds
+      assertTrue("Poll " + i + " after " + actual + " ms", actual >= delay * (1 - JITTER) - 1 && actual <= delay * (1 + JITTER));
+      previous = myPolls.get(i);
+      delay = Math.min((long)(delay * BACKOFF_FACTOR), MAX_DELAY);
+    }
+    // the last poll is shortened to happen right at the deadline
+    assertEquals(TIMEOUT, (long)myPolls.get(myPolls.size() - 1));
+    assertTrue(myTasks.isEmpty());
+  }
+
+  @Test
+  public void testDeadlineIsConfigurable() throws InterruptedException {
+    final long timeout = TimeUnit.SECONDS.toMillis(10);
+    final CompletableFuture<StepicWrappers.ResultSubmissionWrapper> result = track(() -> poll("evaluation"), null, timeout);
+    runUntilDone(result);
+
+    assertFailsWith(result, TimeoutException.class);
+    assertEquals(timeout, (long)myPolls.get(myPolls.size() - 1));
+  }
+
+  @Test
+  public void testEvaluatedSubmissionIsReturned() throws InterruptedException, ExecutionException {
+    final CompletableFuture<StepicWrappers.ResultSubmissionWrapper> result =
+      track(() -> poll(myPolls.size() < 2 ? "evaluation" : "correct"), null);
+    runUntilDone(result);
+
+    assertEquals("correct", result.get().submissions[0].status);
+    assertEquals(3, myPolls.size());
+  }
+
+  @Test
+  public void testFailedPollIsRetried() throws InterruptedException, ExecutionException {
+    final CompletableFuture<StepicWrappers.ResultSubmissionWrapper> result = track(() -> {
+      if (myPolls.isEmpty()) {
+        myPolls.add(myTime);
+        throw new IOException("Connection reset");
+      }
+      return poll("wrong");
+    }, null);
+    runUntilDone(result);
+
+    assertEquals("wrong", result.get().submissions[0].status);
+    assertEquals(2, myPolls.size());
+  }
+
+  @Test
+  public void testCancellationIsNoticedBeforeNextPoll() throws InterruptedException {
+    final ProgressIndicator indicator = new EmptyProgressIndicator();
+    final CompletableFuture<StepicWrappers.ResultSubmissionWrapper> result = track(() -> poll("evaluation"), indicator);
+    while (myPolls.size() < 3) {
+      runNext();
+    }
+    final long cancelled = myTime;
+    indicator.cancel();
+    runUntilDone(result);
+
+    assertFailsWith(result, ProcessCanceledException.class);
+    assertTrue(myTime - cancelled <= CANCELLATION_CHECK_PERIOD);
+    assertEquals(3, myPolls.size());
+  }
+
+  @NotNull
+  private CompletableFuture<StepicWrappers.ResultSubmissionWrapper> track(@NotNull SubmissionsLoader loader,
+                                                                          @Nullable ProgressIndicator indicator) {
+    return track(loader, indicator, TIMEOUT);
+  }
+
+  @NotNull
+  private CompletableFuture<StepicWrappers.ResultSubmissionWrapper> track(@NotNull SubmissionsLoader loader,
+                                                                          @Nullable ProgressIndicator indicator, long timeout) {
+    final Scheduler scheduler = (runnable, delay) -> myTasks.add(new ScheduledTask(myTime + delay, myScheduledCount++, runnable));
+    return new EduSubmissionTracker(loader, indicator, timeout, scheduler, () -> myTime).start();
+  }
+
+  @NotNull
+  private StepicWrappers.ResultSubmissionWrapper poll(@NotNull String status) {
+    myPolls.add(myTime);
+    final ResultSubmission submission = new ResultSubmission();
+    submission.status = status;
+    submission.hint = "";
+    final StepicWrappers.ResultSubmissionWrapper wrapper = new StepicWrappers.ResultSubmissionWrapper();
+    wrapper.submissions = new ResultSubmission[]{submission};
+    return wrapper;
+  }
+
+  private void runUntilDone(@NotNull CompletableFuture<?> result) {
+    while (!result.isDone()) {
+      runNext();
+    }
+    // tasks scheduled before completion do nothing
+    while (!myTasks.isEmpty()) {
+      final int polls = myPolls.size();
+      runNext();
+      assertEquals(polls, myPolls.size());
+    }
+  }
+
+  private void runNext() {
+    assertFalse("Nothing is scheduled", myTasks.isEmpty());
+    final ScheduledTask task = myTasks.stream().min(Comparator.comparingLong((ScheduledTask t) -> t.myTime)
+                                                      .thenComparingInt(t -> t.myOrder)).get();
+    myTasks.remove(task);
+    myTime = task.myTime;
+    task.myRunnable.run();
+  }
+
+  private static void assertFailsWith(@NotNull CompletableFuture<?> result, @NotNull Class<? extends Throwable> exceptionClass)
+    throws InterruptedException {
+    try {
+      result.get();
+      fail(exceptionClass.getSimpleName() + " expected");
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause().toString(), exceptionClass.isInstance(e.getCause()));
+    }
+  }
+
+  private static class ScheduledTask {
+    private final long myTime;
+    private final int myOrder;
+    private final Runnable myRunnable;
+
+    private ScheduledTask(long time, int order, @NotNull Runnable runnable) {
+      myTime = time;
+      myOrder = order;
+      myRunnable = runnable;
+    }
+  }
+}
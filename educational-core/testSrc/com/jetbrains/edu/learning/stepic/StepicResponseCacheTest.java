@@ -0,0 +1,194 @@
+package com.jetbrains.edu.learning.stepic;
+
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import org.apache.http.*;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+public class StepicResponseCacheTest extends LightPlatformCodeInsightFixtureTestCase {
+  private static final String LINK = "/steps/1";
+  private static final String FIRST_MODIFIED = "Mon, 02 Oct 2017 10:00:00 GMT";
+  private static final String SECOND_MODIFIED = "Tue, 03 Oct 2017 10:00:00 GMT";
+  private static final int USER_ID = 1;
+
+  private final FakeClient myClient = new FakeClient();
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    StepicResponseCache.clear();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      StepicResponseCache.clear();
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testETagIsRevalidated() throws IOException {
+    myClient.respond(HttpStatus.SC_OK, "first", HttpHeaders.ETAG, "\"v1\"");
+    assertEquals("first", get(USER_ID));
+    assertNull(myClient.getLastRequest().getFirstHeader("If-None-Match"));
+
+    myClient.respond(HttpStatus.SC_NOT_MODIFIED, null);
+    assertEquals("first", get(USER_ID));
+    assertEquals("\"v1\"", getHeader("If-None-Match"));
+  }
+
+  public void testLastModifiedIsRevalidated() throws IOException {
+    myClient.respond(HttpStatus.SC_OK, "first", HttpHeaders.LAST_MODIFIED, FIRST_MODIFIED);
+    assertEquals("first", get(USER_ID));
+
+    myClient.respond(HttpStatus.SC_OK, "second", HttpHeaders.LAST_MODIFIED, SECOND_MODIFIED);
+    assertEquals("second", get(USER_ID));
+    assertEquals(FIRST_MODIFIED, getHeader("If-Modified-Since"));
+    assertNull(myClient.getLastRequest().getFirstHeader("If-None-Match"));
+
+    myClient.respond(HttpStatus.SC_NOT_MODIFIED, null);
+    assertEquals("second", get(USER_ID));
+    assertEquals(SECOND_MODIFIED, getHeader("If-Modified-Since"));
+  }
+
+  public void testCachedResponseIsUsedWhenStepikIsUnavailable() throws IOException {
+    myClient.respond(HttpStatus.SC_OK, "first", HttpHeaders.ETAG, "\"v1\"");
+    assertEquals("first", get(USER_ID));
+
+    myClient.failNext();
+    assertEquals("first", get(USER_ID));
+
+    myClient.respond(HttpStatus.SC_SERVICE_UNAVAILABLE, "");
+    assertEquals("first", get(USER_ID));
+  }
+
+  public void testResponseWithoutValidatorsIsNotCached() throws IOException {
+    myClient.respond(HttpStatus.SC_OK, "first");
+    assertEquals("first", get(USER_ID));
+
+    myClient.failNext();
+    try {
+      get(USER_ID);
+      fail("Network failure without cached response should be reported");
+    }
+    catch (IOException ignored) {
+    }
+    assertNull(myClient.getLastRequest().getFirstHeader("If-None-Match"));
+  }
+
+  public void testUsersHaveSeparateEntries() throws IOException {
+    myClient.respond(HttpStatus.SC_OK, "first", HttpHeaders.ETAG, "\"v1\"");
+    assertEquals("first", get(USER_ID));
+
+    myClient.respond(HttpStatus.SC_OK, "second", HttpHeaders.ETAG, "\"v2\"");
+    assertEquals("second", get(USER_ID + 1));
+    assertNull(myClient.getLastRequest().getFirstHeader("If-None-Match"));
+
+    myClient.failNext();
+    assertEquals("first", get(USER_ID));
+    myClient.failNext();
+    assertEquals("second", get(USER_ID + 1));
+  }
+
+  @Nullable
+  private String get(int userId) throws IOException {
+    final Value value = EduStepicClient.getFromStepic(LINK, Value.class, myClient, userId);
+    return value != null ? value.text : null;
+  }
+
+  @Nullable
+  private String getHeader(@NotNull String name) {
+    final Header header = myClient.getLastRequest().getFirstHeader(name);
+    assertNotNull("No " + name + " header", header);
+    return header.getValue();
+  }
+
+  private static class Value {
+    String text;
+  }
+
+  /**
+   * Returns queued responses instead of sending requests
+   */
+  private static class FakeClient extends CloseableHttpClient {
+    // null stands for a failed request
+    private final LinkedList<CloseableHttpResponse> myResponses = new LinkedList<>();
+    private final List<HttpRequest> myRequests = new ArrayList<>();
+
+    private void respond(int statusCode, @Nullable String text, @NotNull String... headers) {
+      final FakeResponse response = new FakeResponse(statusCode);
+      if (text != null) {
+        response.setEntity(new StringEntity("{\"text\": \"" + text + "\"}", ContentType.APPLICATION_JSON));
+      }
+      for (int i = 0; i < headers.length; i += 2) {
+        response.addHeader(headers[i], headers[i + 1]);
+      }
+      myResponses.add(response);
+    }
+
+    /**
+     * Next request fails as if Stepik can't be reached
+     */
+    private void failNext() {
+      myResponses.add(null);
+    }
+
+    @NotNull
+    private HttpRequest getLastRequest() {
+      assertFalse(myRequests.isEmpty());
+      return myRequests.get(myRequests.size() - 1);
+    }
+
+    @Override
+    protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context) throws IOException {
+      myRequests.add(request);
+      assertFalse("Unexpected request", myResponses.isEmpty());
+      final CloseableHttpResponse response = myResponses.poll();
+      if (response == null) {
+        throw new IOException("Connection refused");
+      }
+      return response;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public HttpParams getParams() {
+      throw new UnsupportedOperationException();
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public ClientConnectionManager getConnectionManager() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static class FakeResponse extends BasicHttpResponse implements CloseableHttpResponse {
+    private FakeResponse(int statusCode) {
+      super(HttpVersion.HTTP_1_1, statusCode, null);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
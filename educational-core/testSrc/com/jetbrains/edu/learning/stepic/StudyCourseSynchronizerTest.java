@@ -0,0 +1,172 @@
+package com.jetbrains.edu.learning.stepic;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+import com.jetbrains.edu.learning.courseFormat.Lesson;
+import com.jetbrains.edu.learning.courseFormat.RemoteCourse;
+import com.jetbrains.edu.learning.courseFormat.TaskFile;
+import com.jetbrains.edu.learning.courseFormat.tasks.PyCharmTask;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+import com.jetbrains.edu.learning.courseGeneration.StudyGenerator;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.stream.Collectors;
+
+public class StudyCourseSynchronizerTest extends LightPlatformCodeInsightFixtureTestCase {
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    // light tests share the project, so lessons of previous tests are removed
+    ApplicationManager.getApplication().runWriteAction(() -> {
+      for (VirtualFile child : getProject().getBaseDir().getChildren()) {
+        try {
+          child.delete(this);
+        }
+        catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+  }
+
+  public void testRemoveMiddleTaskAndInsertNew() throws IOException {
+    final RemoteCourse course = createCourse(createLesson(1, 11, 12, 13));
+    final Lesson lesson = course.getLessons().get(0);
+
+    final StudyCourseSynchronizer.CourseChanges changes = new StudyCourseSynchronizer.CourseChanges(course, null);
+    changes.setLessonOrder(Collections.singletonList(1));
+    final StudyCourseSynchronizer.LessonChanges lessonChanges = changes.addLessonChanges(lesson, null, Arrays.asList(14, 11, 13));
+    lessonChanges.addRemovedTask(lesson.getTask(12));
+    lessonChanges.addNewTask(createTask(14));
+    assertFalse(changes.isEmpty());
+    applyChanges(course, changes);
+
+    assertEquals(Arrays.asList(14, 11, 13), lesson.getTaskList().stream().map(Task::getStepId).collect(Collectors.toList()));
+    assertEquals(Arrays.asList(1, 2, 3), lesson.getTaskList().stream().map(Task::getIndex).collect(Collectors.toList()));
+    final VirtualFile lessonDir = getProject().getBaseDir().findChild("lesson1");
+    assertNotNull(lessonDir);
+    assertEquals(3, lessonDir.getChildren().length);
+    for (Task task : lesson.getTaskList()) {
+      final VirtualFile taskDir = task.getTaskDir(getProject());
+      assertNotNull(taskDir);
+      assertEquals("task" + task.getIndex(), taskDir.getName());
+      assertEquals(getText(task.getStepId()), VfsUtilCore.loadText(taskDir.findChild("task.py")));
+    }
+  }
+
+  public void testLessonsAreReordered() throws IOException {
+    final RemoteCourse course = createCourse(createLesson(1, 11), createLesson(2, 21));
+
+    final StudyCourseSynchronizer.CourseChanges changes = new StudyCourseSynchronizer.CourseChanges(course, null);
+    changes.setLessonOrder(Arrays.asList(3, 2, 1));
+    final Lesson newLesson = new Lesson();
+    newLesson.setId(3);
+    newLesson.setName("lesson3");
+    newLesson.addTask(createTask(31));
+    changes.addNewLesson(newLesson);
+    assertFalse(changes.isEmpty());
+    applyChanges(course, changes);
+
+    assertEquals(Arrays.asList(3, 2, 1), course.getLessons().stream().map(Lesson::getId).collect(Collectors.toList()));
+    for (Lesson lesson : course.getLessons()) {
+      final Task task = lesson.getTaskList().get(0);
+      final VirtualFile taskDir = task.getTaskDir(getProject());
+      assertNotNull(taskDir);
+      assertEquals("lesson" + lesson.getIndex(), taskDir.getParent().getName());
+      assertEquals(getText(task.getStepId()), VfsUtilCore.loadText(taskDir.findChild("task.py")));
+    }
+  }
+
+  public void testSameOrderIsEmpty() {
+    final RemoteCourse course = createCourse(createLesson(1, 11, 12), createLesson(2, 21));
+    final StudyCourseSynchronizer.CourseChanges changes = new StudyCourseSynchronizer.CourseChanges(course, null);
+    changes.setLessonOrder(Arrays.asList(1, 2));
+    changes.addLessonChanges(course.getLessons().get(0), null, Arrays.asList(11, 12));
+    assertTrue(changes.isEmpty());
+  }
+
+  public void testUpToDateCourse() {
+    final RemoteCourse course = createCourse(createLesson(1, 11, 12), createLesson(2, 21));
+    assertTrue(StudyCourseSynchronizer.isUpToDate(course, Arrays.asList(createRemoteLesson(course, 1, 0, 11, 12),
+                                                                        createRemoteLesson(course, 2, 0, 21))));
+  }
+
+  public void testCourseWithChangedLessonsIsNotUpToDate() {
+    final RemoteCourse course = createCourse(createLesson(1, 11, 12), createLesson(2, 21));
+    assertFalse("Lesson is updated", StudyCourseSynchronizer.isUpToDate(
+      course, Arrays.asList(createRemoteLesson(course, 1, 1000, 11, 12), createRemoteLesson(course, 2, 0, 21))));
+    assertFalse("Step is added", StudyCourseSynchronizer.isUpToDate(
+      course, Arrays.asList(createRemoteLesson(course, 1, 0, 11, 12, 13), createRemoteLesson(course, 2, 0, 21))));
+    assertFalse("Lesson is added", StudyCourseSynchronizer.isUpToDate(
+      course, Arrays.asList(createRemoteLesson(course, 1, 0, 11, 12), createRemoteLesson(course, 2, 0, 21),
+                            createRemoteLesson(course, 3, 0, 31))));
+    assertFalse("Lessons are reordered", StudyCourseSynchronizer.isUpToDate(
+      course, Arrays.asList(createRemoteLesson(course, 2, 0, 21), createRemoteLesson(course, 1, 0, 11, 12))));
+  }
+
+  private void applyChanges(@NotNull RemoteCourse course, @NotNull StudyCourseSynchronizer.CourseChanges changes) {
+    ApplicationManager.getApplication().runWriteAction(() -> StudyCourseSynchronizer.applyChanges(getProject(), course, changes));
+  }
+
+  @NotNull
+  private RemoteCourse createCourse(@NotNull Lesson... lessons) {
+    final RemoteCourse course = new RemoteCourse();
+    course.setName("course");
+    for (Lesson lesson : lessons) {
+      course.addLesson(lesson);
+    }
+    course.initCourse(false);
+    ApplicationManager.getApplication().runWriteAction(() -> StudyGenerator.createCourse(course, getProject().getBaseDir()));
+    return course;
+  }
+
+  @NotNull
+  private static Lesson createLesson(int id, int... stepIds) {
+    final Lesson lesson = new Lesson();
+    lesson.setId(id);
+    lesson.setName("lesson" + id);
+    lesson.setUpdateDate(new Date(1000000));
+    for (int stepId : stepIds) {
+      lesson.addTask(createTask(stepId));
+    }
+    return lesson;
+  }
+
+  /**
+   * @param delay how much later than the local lesson the remote one is updated, in milliseconds
+   */
+  @NotNull
+  private static Lesson createRemoteLesson(@NotNull RemoteCourse course, int id, long delay, Integer... stepIds) {
+    final Lesson localLesson = course.getLesson(id);
+    final Lesson lesson = new Lesson();
+    lesson.setId(id);
+    lesson.setName("lesson" + id);
+    lesson.setUpdateDate(new Date((localLesson != null ? localLesson.getUpdateDate().getTime() : 0) + delay));
+    lesson.steps = Arrays.asList(stepIds);
+    return lesson;
+  }
+
+  @NotNull
+  private static Task createTask(int stepId) {
+    final Task task = new PyCharmTask();
+    task.setName("task" + stepId);
+    task.setStepId(stepId);
+    final TaskFile taskFile = new TaskFile();
+    taskFile.name = "task.py";
+    taskFile.text = getText(stepId);
+    task.addTaskFile(taskFile);
+    return task;
+  }
+
+  @NotNull
+  private static String getText(int stepId) {
+    return "print(" + stepId + ")";
+  }
+}
@@ -1,12 +1,11 @@
 package com.jetbrains.edu.learning.stepic;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.*;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.FileUtilRt;
 import com.intellij.util.containers.ContainerUtil;
 import com.jetbrains.edu.learning.StudySerializationUtils;
+import com.jetbrains.edu.learning.core.EduNames;
 import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholder;
 import com.jetbrains.edu.learning.courseFormat.AnswerPlaceholderSubtaskInfo;
 import com.jetbrains.edu.learning.courseFormat.TaskFile;
@@ -18,6 +17,7 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
@@ -58,6 +58,88 @@ public class StudyStepicFormatTest {
     return options;
   }
 
+  @Test
+  public void streamingMatchesTreeParsing() throws IOException {
+    final JsonObject options = loadStepOptions("3.json");
+    options.getAsJsonArray("test").add(createFileWrapper("tests_subtask1.py", "print('second')"));
+    final JsonArray texts = new JsonArray();
+    texts.add(createFileWrapper("task.html", "<b>first</b>"));
+    texts.add(createFileWrapper("task_subtask1.html", "second"));
+    options.add("text", texts);
+
+    final StepicWrappers.StepOptions streamed =
+      EduStepicClient.deserializeStepicResponse(StepicWrappers.StepOptions.class, options.toString());
+    assertEquals(toJson(parseAsTree(options.toString())), toJson(streamed));
+    assertEquals(ContainerUtil.list("tests_subtask0.py", "tests_subtask1.py"), getNames(streamed.test));
+    assertEquals(ContainerUtil.list("task_subtask0.html", "task_subtask1.html"), getNames(streamed.text));
+    assertEquals("<b>first</b>", streamed.text.get(0).text);
+    assertEquals(EduStepicConnector.CURRENT_VERSION, streamed.formatVersion);
+  }
+
+  @Test
+  public void streamingWithoutDescriptionFiles() throws IOException {
+    final JsonObject options = loadStepOptions("2.json");
+    options.add("text", JsonNull.INSTANCE);
+
+    final StepicWrappers.StepOptions streamed =
+      EduStepicClient.deserializeStepicResponse(StepicWrappers.StepOptions.class, options.toString());
+    assertEquals(toJson(parseAsTree(options.toString())), toJson(streamed));
+    assertNull(streamed.text);
+    assertEquals(ContainerUtil.list("tests.py"), getNames(streamed.test));
+  }
+
+  /**
+   * Conversion of a second version step the way it was done on a json tree before options were read from the stream
+   */
+  private static StepicWrappers.StepOptions parseAsTree(@NotNull String json) {
+    final JsonObject options = new JsonParser().parse(json).getAsJsonObject();
+    assertEquals(2, options.get("format_version").getAsInt());
+    if (options.get("last_subtask_index").getAsInt() != 0) {
+      addSubtaskMarker(options.getAsJsonArray("test"));
+      addSubtaskMarker(options.getAsJsonArray("text"));
+    }
+    for (JsonElement file : options.getAsJsonArray("files")) {
+      for (JsonElement placeholder : file.getAsJsonObject().getAsJsonArray("placeholders")) {
+        StudySerializationUtils.Json.removeIndexFromSubtaskInfos(placeholder.getAsJsonObject());
+      }
+    }
+    final StepicWrappers.StepOptions stepOptions = new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+      .create().fromJson(options, StepicWrappers.StepOptions.class);
+    stepOptions.formatVersion = EduStepicConnector.CURRENT_VERSION;
+    return stepOptions;
+  }
+
+  private static void addSubtaskMarker(JsonArray files) {
+    if (files == null || files.size() == 0) return;
+    final JsonObject file = files.get(0).getAsJsonObject();
+    final String name = FileUtil.getNameWithoutExtension(file.get("name").getAsString());
+    if (!name.contains(EduNames.SUBTASK_MARKER)) {
+      file.addProperty("name", name + "_subtask0." + FileUtilRt.getExtension(file.get("name").getAsString()));
+    }
+  }
+
+  @NotNull
+  private static JsonObject loadStepOptions(@NotNull String fileName) throws IOException {
+    final JsonObject response = new JsonParser().parse(FileUtil.loadFile(new File(getTestDataPath(), fileName))).getAsJsonObject();
+    return response.getAsJsonArray("steps").get(0).getAsJsonObject().getAsJsonObject("block").getAsJsonObject("options");
+  }
+
+  @NotNull
+  private static JsonObject createFileWrapper(@NotNull String name, @NotNull String text) {
+    final JsonObject wrapper = new JsonObject();
+    wrapper.addProperty("name", name);
+    wrapper.addProperty("text", text);
+    return wrapper;
+  }
+
+  private static List<String> getNames(@NotNull List<StepicWrappers.FileWrapper> wrappers) {
+    return wrappers.stream().map(wrapper -> wrapper.name).collect(Collectors.toList());
+  }
+
+  private static String toJson(@NotNull StepicWrappers.StepOptions options) {
+    return StudySerializationUtils.Json.getGson(StudySerializationUtils.Json.GsonProfile.EXPOSED_ONLY).toJson(options);
+  }
+
   @Test
   public void testAvailableCourses() throws IOException {
     String responseString = FileUtil.loadFile(new File(getTestDataPath(), "courses.json"));
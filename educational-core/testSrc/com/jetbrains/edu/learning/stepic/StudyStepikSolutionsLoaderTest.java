@@ -0,0 +1,33 @@
+package com.jetbrains.edu.learning.stepic;
+
+import com.intellij.openapi.editor.Document;
+import com.jetbrains.edu.coursecreator.CCTestCase;
+import com.jetbrains.edu.learning.StudyTaskManager;
+import com.jetbrains.edu.learning.courseFormat.Course;
+import com.jetbrains.edu.learning.courseFormat.TaskFile;
+import com.jetbrains.edu.learning.courseFormat.tasks.Task;
+
+import java.util.Collections;
+
+public class StudyStepikSolutionsLoaderTest extends CCTestCase {
+
+  public void testOpenedDocumentIsUpdated() {
+    configureByTaskFile("test_before.txt");
+    final Course course = StudyTaskManager.getInstance(getProject()).getCourse();
+    assertNotNull(course);
+    final Task task = course.getLessons().get(0).getTaskList().get(0);
+
+    // document changes outside of a command are reported as errors
+    StudyStepikSolutionsLoader.applySolutions(getProject(), Collections.singletonMap(task, "solution"));
+    final Document document = myFixture.getEditor().getDocument();
+    assertEquals("solution", document.getText());
+    final TaskFile taskFile = task.getTaskFile("test_before.txt");
+    assertNotNull(taskFile);
+    assertTrue(taskFile.isTrackChanges());
+  }
+
+  @Override
+  protected String getBasePath() {
+    return super.getBasePath() + "/actions/preview";
+  }
+}
@@ -0,0 +1,28 @@
+package com.jetbrains.edu.learning.ui;
+
+import com.intellij.openapi.util.Disposer;
+import com.intellij.testFramework.fixtures.LightPlatformCodeInsightFixtureTestCase;
+
+import javax.swing.*;
+import java.awt.event.HierarchyEvent;
+
+public class StudyStepikDiagnosticsPanelTest extends LightPlatformCodeInsightFixtureTestCase {
+
+  public void testRefreshedOnlyWhileShowing() {
+    final StudyStepikDiagnosticsPanel panel = new StudyStepikDiagnosticsPanel(getProject());
+    try {
+      assertFalse("Panel isn't showing yet", panel.isRefreshing());
+      panel.setRefreshing(true);
+      assertTrue(panel.isRefreshing());
+
+      // a hidden tool window notifies its components that they are no longer showing
+      final JPanel parent = new JPanel();
+      panel.dispatchEvent(new HierarchyEvent(panel, HierarchyEvent.HIERARCHY_CHANGED, panel, parent, HierarchyEvent.SHOWING_CHANGED));
+      assertFalse(panel.isRefreshing());
+    }
+    finally {
+      Disposer.dispose(panel);
+    }
+    assertFalse(panel.isRefreshing());
+  }
+}